@@ -215,39 +215,49 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 		}
 
 		// TODO: INT-1117 - make the lock global?
-		Lock lock = this.lockRegistry.obtain(UUIDConverter.getUUID(correlationKey).toString());
+		Lock lock = this.obtainLock(correlationKey);
 
 		lock.lockInterruptibly();
 		try {
-			MessageGroup messageGroup = messageStore.getMessageGroup(correlationKey);
-			if (this.sequenceAware){
-				messageGroup = new SequenceAwareMessageGroup(messageGroup);
+			this.handleCorrelatedMessage(correlationKey, message);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Add the message to its group and release the group if the release strategy allows.
+	 * Invoked while holding the lock for the correlation key; subclasses may override
+	 * to manage the group differently.
+	 * @since 3.0
+	 */
+	protected void handleCorrelatedMessage(Object correlationKey, Message<?> message) {
+		MessageGroup messageGroup = messageStore.getMessageGroup(correlationKey);
+		if (this.sequenceAware){
+			messageGroup = new SequenceAwareMessageGroup(messageGroup);
+		}
+
+		if (!messageGroup.isComplete() && messageGroup.canAdd(message)) {
+			if (logger.isTraceEnabled()) {
+				logger.trace("Adding message to group [ " + messageGroup + "]");
 			}
+			messageGroup = this.store(correlationKey, message);
 
-			if (!messageGroup.isComplete() && messageGroup.canAdd(message)) {
-				if (logger.isTraceEnabled()) {
-					logger.trace("Adding message to group [ " + messageGroup + "]");
+			if (releaseStrategy.canRelease(messageGroup)) {
+				Collection<Message<?>> completedMessages = null;
+				try {
+					completedMessages = this.completeGroup(message, correlationKey, messageGroup);
 				}
-				messageGroup = this.store(correlationKey, message);
-
-				if (releaseStrategy.canRelease(messageGroup)) {
-					Collection<Message<?>> completedMessages = null;
-					try {
-						completedMessages = this.completeGroup(message, correlationKey, messageGroup);
-					}
-					finally {
-						// Always clean up even if there was an exception
-						// processing messages
-						this.afterRelease(messageGroup, completedMessages);
-					}
+				finally {
+					// Always clean up even if there was an exception
+					// processing messages
+					this.afterRelease(messageGroup, completedMessages);
 				}
 			}
-			else {
-				discardChannel.send(message);
-			}
 		}
-		finally {
-			lock.unlock();
+		else {
+			this.discard(message);
 		}
 	}
 
@@ -261,8 +271,7 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 	private void forceComplete(MessageGroup group) {
 
 		Object correlationKey = group.getGroupId();
-		// UUIDConverter is no-op if already converted
-		Lock lock = this.lockRegistry.obtain(UUIDConverter.getUUID(correlationKey).toString());
+		Lock lock = this.obtainLock(correlationKey);
 		boolean removeGroup = true;
 		try {
 			lock.lockInterruptibly();
@@ -318,6 +327,11 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 		}
 	}
 
+	Lock obtainLock(Object correlationKey) {
+		// UUIDConverter is no-op if already converted
+		return this.lockRegistry.obtain(UUIDConverter.getUUID(correlationKey).toString());
+	}
+
 	void remove(MessageGroup group) {
 		Object correlationKey = group.getGroupId();
 		messageStore.removeMessageGroup(correlationKey);
@@ -381,6 +395,23 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 		return partialSequence;
 	}
 
+	/**
+	 * Send a single message to the output channel, or to its reply channel header
+	 * if there is no output channel.
+	 * @since 3.0
+	 */
+	protected void sendOutput(Message<?> message) {
+		this.sendReplies(message, message);
+	}
+
+	/**
+	 * Send a message that cannot be added to its group to the discard channel.
+	 * @since 3.0
+	 */
+	protected void discard(Message<?> message) {
+		this.discardChannel.send(message);
+	}
+
 	private void verifyResultCollectionConsistsOfMessages(Collection<?> elements){
 		Class<?> commonElementType = CollectionUtils.findCommonElementType(elements);
 		Assert.isAssignable(Message.class, commonElementType, "The expected collection of Messages contains non-Message element: " + commonElementType);
@@ -451,8 +482,10 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 			}
 			Integer messageSequenceNumber = message.getHeaders().getSequenceNumber();
 			if (messageSequenceNumber != null && messageSequenceNumber > 0) {
-				Integer messageSequenceSize = message.getHeaders().getSequenceSize();
-				if (!messageSequenceSize.equals(this.getSequenceSize())) {
+				int messageSequenceSize = message.getHeaders().getSequenceSize();
+				int groupSequenceSize = this.getSequenceSize();
+				// a sequence size of 0 is unknown, e.g. all but the last message of a streamed sequence
+				if (messageSequenceSize != 0 && groupSequenceSize != 0 && messageSequenceSize != groupSequenceSize) {
 					return false;
 				}
 				else {
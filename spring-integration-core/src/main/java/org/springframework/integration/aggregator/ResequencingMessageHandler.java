@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -14,20 +14,53 @@
 package org.springframework.integration.aggregator;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.integration.Message;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.util.Assert;
 
 /**
  * Resequencer specific implementation of {@link AbstractCorrelatingMessageHandler}. 
  * Will remove {@link MessageGroup}s only if 'sequenceSize' is provided and reached. 
+ * <p>
+ * When a 'windowSize' is set, the resequencer works in streaming mode instead: each
+ * correlation key has an in-memory reorder window, a ring of that many slots indexed
+ * by sequence number. A message with the next expected sequence number is released
+ * immediately, together with the contiguous run that follows it in the window,
+ * without being added to the {@link MessageGroupStore}; only the out-of-order
+ * messages held in the window are stored. Once a group has been stored, each release
+ * also updates its last released sequence number, so that a reaper does not expire
+ * the group while the stream is active. The window of a correlation key that has not
+ * received a message for the {@link #setWindowIdleTimeout(long) window idle timeout}
+ * is discarded, so that streams that never complete do not hold on to it; it is
+ * rebuilt from the store if a message for that key arrives later. The release
+ * strategy and the group
+ * processor are not consulted in this mode. If a message arrives that does not fit
+ * in the window, the missing sequence numbers are skipped and the buffered messages
+ * released in order, to make room for it.
  *
  * @author Oleg Zhurakousky
  * @since 2.1
  */
 public class ResequencingMessageHandler extends AbstractCorrelatingMessageHandler {
 
+	private static final Log logger = LogFactory.getLog(ResequencingMessageHandler.class);
+
+	private final Map<Object, ReorderWindow> windows = new ConcurrentHashMap<Object, ReorderWindow>();
+
+	private volatile int windowSize;
+
+	private volatile long windowIdleTimeout = 60000;
+
+	private final AtomicLong nextIdleWindowCheck = new AtomicLong();
+
 	public ResequencingMessageHandler(MessageGroupProcessor processor,
 			MessageGroupStore store, CorrelationStrategy correlationStrategy,
 			ReleaseStrategy releaseStrategy) {
@@ -44,16 +77,111 @@ public class ResequencingMessageHandler extends AbstractCorrelatingMessageHandle
 	public ResequencingMessageHandler(MessageGroupProcessor processor) {
 		super(processor);
 	}
+
+	/**
+	 * Set the size of the reorder window to enable the streaming mode; 0 (the default)
+	 * disables it. The window bounds how far ahead of the next expected sequence number
+	 * a message may arrive before the gap is skipped.
+	 * @since 3.0
+	 */
+	public void setWindowSize(int windowSize) {
+		Assert.isTrue(windowSize >= 0, "'windowSize' must not be negative");
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Set the time in milliseconds after which the reorder window of a correlation key
+	 * that has not received a message is discarded; 0 means never. Default 60 seconds.
+	 * Idle windows are looked for at most once per timeout, when a message for any
+	 * correlation key is handled. Out-of-order messages of a discarded window stay in
+	 * the store, where a reaper can expire them, and a later message for the key
+	 * restores the window from the store.
+	 * @since 3.0
+	 */
+	public void setWindowIdleTimeout(long windowIdleTimeout) {
+		Assert.isTrue(windowIdleTimeout >= 0, "'windowIdleTimeout' must not be negative");
+		this.windowIdleTimeout = windowIdleTimeout;
+	}
+
+	@Override
+	protected void handleCorrelatedMessage(Object correlationKey, Message<?> message) {
+		if (this.windowSize == 0) {
+			super.handleCorrelatedMessage(correlationKey, message);
+			return;
+		}
+		Integer sequenceNumber = message.getHeaders().getSequenceNumber();
+		if (sequenceNumber == null || sequenceNumber < 1) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Discarding message without a sequence number: " + message);
+			}
+			this.discard(message);
+			return;
+		}
+		long now = System.currentTimeMillis();
+		this.removeIdleWindows(correlationKey, now);
+		ReorderWindow window = this.windows.get(correlationKey);
+		if (window == null) {
+			window = this.restoreWindow(correlationKey);
+			this.windows.put(correlationKey, window);
+		}
+		window.lastActivity = now;
+		window.updateSequenceSize(message);
+		if (sequenceNumber < window.next || window.isBuffered(sequenceNumber)) {
+			this.discard(message);
+			return;
+		}
+		if (sequenceNumber - window.next >= window.slots.length) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Sequence number " + sequenceNumber + " is beyond the reorder window of group ["
+						+ correlationKey + "], skipping missing sequence numbers from " + window.next);
+			}
+			int skipTo = sequenceNumber - window.slots.length + 1;
+			// the buffered messages all lie within the window, so this takes at most one pass over it
+			while (window.buffered > 0 && window.next < skipTo) {
+				this.releaseNext(correlationKey, window);
+			}
+			if (window.next < skipTo) {
+				window.next = skipTo;
+			}
+			while (window.isBuffered(window.next)) {
+				this.releaseNext(correlationKey, window);
+			}
+		}
+		if (sequenceNumber == window.next) {
+			this.sendOutput(message);
+			window.next++;
+			while (window.isBuffered(window.next)) {
+				this.releaseNext(correlationKey, window);
+			}
+		}
+		else {
+			window.buffer(message);
+			this.messageStore.addMessageToGroup(correlationKey, message);
+			window.inStore = true;
+		}
+		if (window.isComplete()) {
+			this.remove(this.messageStore.getMessageGroup(correlationKey));
+		}
+		else if (window.inStore) {
+			/*
+			 * Once the group is in the store, record each release, which also keeps the
+			 * group from being expired by a reaper while the stream is still active.
+			 */
+			this.messageStore.setLastReleasedSequenceNumberForGroup(correlationKey, window.next - 1);
+		}
+	}
+
+	@Override
+	void remove(MessageGroup group) {
+		this.windows.remove(group.getGroupId());
+		super.remove(group);
+	}
 	
 	@Override
 	protected void afterRelease(MessageGroup messageGroup, Collection<Message<?>> completedMessages) {
 			
 		int size = messageGroup.getMessages().size();
-		int sequenceSize = 0;
-		Message<?> message = messageGroup.getOne();
-		if (message != null){
-			sequenceSize = message.getHeaders().getSequenceSize();
-		}
+		int sequenceSize = messageGroup.getSequenceSize();
 		// If there is no sequence then it must be incomplete or unbounded
 		if (sequenceSize > 0 && sequenceSize == size){
 			remove(messageGroup);
@@ -61,6 +189,11 @@ public class ResequencingMessageHandler extends AbstractCorrelatingMessageHandle
 		else {
 			if (completedMessages != null){ 
 				int lastReleasedSequenceNumber = this.findLastReleasedSequenceNumber(messageGroup.getGroupId(), completedMessages);
+				if (sequenceSize > 0 && lastReleasedSequenceNumber == sequenceSize) {
+					// the end of a partially released sequence
+					remove(messageGroup);
+					return;
+				}
 				messageStore.setLastReleasedSequenceNumberForGroup(messageGroup.getGroupId(), lastReleasedSequenceNumber);
 				for (Message<?> msg : completedMessages) {
 					this.messageStore.removeMessageFromGroup(messageGroup.getGroupId(), msg);
@@ -69,4 +202,125 @@ public class ResequencingMessageHandler extends AbstractCorrelatingMessageHandle
 		}
 	}
 
+	/**
+	 * Release the buffered message with the next expected sequence number, if any, and
+	 * advance the window.
+	 */
+	private void releaseNext(Object correlationKey, ReorderWindow window) {
+		Message<?> message = window.take(window.next);
+		window.next++;
+		if (message != null) {
+			this.messageStore.removeMessageFromGroup(correlationKey, message);
+			this.sendOutput(message);
+		}
+	}
+
+	/**
+	 * Discard the windows of other correlation keys that have been idle for longer
+	 * than the window idle timeout, if the timeout has elapsed since the last check.
+	 */
+	private void removeIdleWindows(Object currentKey, long now) {
+		long timeout = this.windowIdleTimeout;
+		long nextCheck = this.nextIdleWindowCheck.get();
+		if (timeout == 0 || now < nextCheck || !this.nextIdleWindowCheck.compareAndSet(nextCheck, now + timeout)) {
+			return;
+		}
+		for (Map.Entry<Object, ReorderWindow> entry : this.windows.entrySet()) {
+			Object correlationKey = entry.getKey();
+			if (correlationKey.equals(currentKey) || now - entry.getValue().lastActivity < timeout) {
+				continue;
+			}
+			Lock lock = this.obtainLock(correlationKey);
+			// the lock may be held by a thread waiting for the lock of the current key
+			if (lock.tryLock()) {
+				try {
+					ReorderWindow window = this.windows.get(correlationKey);
+					if (window != null && now - window.lastActivity >= timeout) {
+						this.windows.remove(correlationKey);
+					}
+				}
+				finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Rebuild the window of a group from the store, e.g. after a restart or after the
+	 * group has been expired.
+	 */
+	private ReorderWindow restoreWindow(Object correlationKey) {
+		MessageGroup group = this.messageStore.getMessageGroup(correlationKey);
+		ReorderWindow window = new ReorderWindow(this.windowSize, group.getLastReleasedMessageSequenceNumber() + 1);
+		window.inStore = group.size() > 0 || group.getLastReleasedMessageSequenceNumber() > 0;
+		for (Message<?> message : group.getMessages()) {
+			Integer sequenceNumber = message.getHeaders().getSequenceNumber();
+			if (sequenceNumber != null && sequenceNumber >= window.next
+					&& sequenceNumber - window.next < window.slots.length) {
+				window.updateSequenceSize(message);
+				window.buffer(message);
+			}
+		}
+		return window;
+	}
+
+
+	/**
+	 * The out-of-order messages of one correlation key, in a ring indexed by sequence
+	 * number; only accessed while holding the lock of the key.
+	 */
+	private static class ReorderWindow {
+
+		private final Message<?>[] slots;
+
+		private int next;
+
+		private int buffered;
+
+		private int sequenceSize;
+
+		private boolean inStore;
+
+		private volatile long lastActivity;
+
+		private ReorderWindow(int size, int next) {
+			this.slots = new Message<?>[size];
+			this.next = next;
+		}
+
+		private boolean isBuffered(int sequenceNumber) {
+			Message<?> message = this.slots[sequenceNumber % this.slots.length];
+			return message != null && message.getHeaders().getSequenceNumber() == sequenceNumber;
+		}
+
+		private void buffer(Message<?> message) {
+			this.slots[message.getHeaders().getSequenceNumber() % this.slots.length] = message;
+			this.buffered++;
+		}
+
+		private Message<?> take(int sequenceNumber) {
+			if (!this.isBuffered(sequenceNumber)) {
+				return null;
+			}
+			int index = sequenceNumber % this.slots.length;
+			Message<?> message = this.slots[index];
+			this.slots[index] = null;
+			this.buffered--;
+			return message;
+		}
+
+		private void updateSequenceSize(Message<?> message) {
+			Integer sequenceSize = message.getHeaders().getSequenceSize();
+			if (sequenceSize != null && sequenceSize > 0) {
+				this.sequenceSize = sequenceSize;
+			}
+		}
+
+		private boolean isComplete() {
+			return this.sequenceSize > 0 && this.next > this.sequenceSize;
+		}
+
+	}
+
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.aggregator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.MessageTimeoutException;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.store.SimpleMessageGroup;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.Assert;
+
+/**
+ * A handler that sends each request to all subscribers of a
+ * {@link PublishSubscribeChannel} (scatter), waits for their replies and
+ * combines them into a single reply (gather).
+ * <p>
+ * The replies are collected in memory for the duration of the exchange only;
+ * no {@link org.springframework.integration.store.MessageGroupStore} is
+ * involved. Each subscriber is expected to send one reply to the
+ * 'replyChannel' header of the message it receives. The channel must have an
+ * Executor, so that the subscribers are invoked in parallel and the latency of
+ * the exchange is that of the slowest recipient rather than the sum; when the
+ * channel applies sequence details, the replies are gathered in subscriber
+ * order, otherwise in the order of arrival.
+ * <p>
+ * Recipients that have not replied within the 'recipientTimeout' are left out
+ * of the result, unless 'requireAllReplies' is set. By default the gathered
+ * reply has the list of reply payloads as its payload; a
+ * {@link MessageGroupProcessor} may be provided to combine the replies instead.
+ *
+ * @since 3.0
+ */
+public class ScatterGatherHandler extends AbstractReplyProducingMessageHandler {
+
+	private static final long DEFAULT_RECIPIENT_TIMEOUT = 1000;
+
+	private final PublishSubscribeChannel scatterChannel;
+
+	private volatile MessageGroupProcessor outputProcessor;
+
+	private volatile long recipientTimeout = DEFAULT_RECIPIENT_TIMEOUT;
+
+	private volatile boolean requireAllReplies;
+
+	private volatile boolean ignoreFailures;
+
+	public ScatterGatherHandler(PublishSubscribeChannel scatterChannel) {
+		Assert.notNull(scatterChannel, "'scatterChannel' must not be null");
+		Assert.isTrue(scatterChannel.hasExecutor(),
+				"'scatterChannel' must have an Executor, so that the recipients are invoked in parallel");
+		this.scatterChannel = scatterChannel;
+	}
+
+	/**
+	 * Provide a processor to combine the gathered replies, which are passed in as a
+	 * {@link SimpleMessageGroup}. By default the reply payload is the list of the
+	 * reply payloads.
+	 */
+	public void setOutputProcessor(MessageGroupProcessor outputProcessor) {
+		this.outputProcessor = outputProcessor;
+	}
+
+	/**
+	 * Set how long, in milliseconds, each recipient has to reply, counted from the
+	 * moment the request is scattered. Since the recipients work in parallel, this is
+	 * also the longest time the exchange waits. A negative value means no timeout.
+	 * Default 1000.
+	 */
+	public void setRecipientTimeout(long recipientTimeout) {
+		this.recipientTimeout = recipientTimeout;
+	}
+
+	/**
+	 * Specify whether the exchange fails with a {@link MessageTimeoutException} if
+	 * a recipient does not reply within the timeout. By default the replies that
+	 * have arrived are gathered.
+	 */
+	public void setRequireAllReplies(boolean requireAllReplies) {
+		this.requireAllReplies = requireAllReplies;
+	}
+
+	/**
+	 * Specify whether recipients that reply with an {@link ErrorMessage} are left out
+	 * of the result. By default the first failure fails the whole exchange.
+	 */
+	public void setIgnoreFailures(boolean ignoreFailures) {
+		this.ignoreFailures = ignoreFailures;
+	}
+
+	@Override
+	public String getComponentType() {
+		return "scatter-gather";
+	}
+
+	@Override
+	protected Object handleRequestMessage(Message<?> requestMessage) {
+		Gatherer gatherer = new Gatherer(this.scatterChannel.getSubscriberCount());
+		Message<?> scatterMessage = MessageBuilder.fromMessage(requestMessage)
+				.setReplyChannel(gatherer)
+				.setErrorChannel(gatherer)
+				.build();
+		this.scatterChannel.send(scatterMessage);
+		List<Message<?>> replies = gatherer.gather(this.recipientTimeout);
+		int missing = gatherer.getRecipientCount() - replies.size();
+		if (missing > 0 && this.requireAllReplies) {
+			throw new MessageTimeoutException(requestMessage, missing + " of " + gatherer.getRecipientCount()
+					+ " recipients did not reply within " + this.recipientTimeout + "ms");
+		}
+		List<Message<?>> results = new ArrayList<Message<?>>(replies.size());
+		for (Message<?> reply : replies) {
+			if (reply instanceof ErrorMessage) {
+				if (!this.ignoreFailures) {
+					Throwable failure = ((ErrorMessage) reply).getPayload();
+					if (failure instanceof MessagingException) {
+						throw (MessagingException) failure;
+					}
+					throw new MessageHandlingException(requestMessage, "recipient failed", failure);
+				}
+				if (logger.isWarnEnabled()) {
+					logger.warn("Suppressing recipient failure since 'ignoreFailures' is set to TRUE.",
+							((ErrorMessage) reply).getPayload());
+				}
+			}
+			else {
+				results.add(reply);
+			}
+		}
+		if (this.outputProcessor != null) {
+			return this.outputProcessor.processMessageGroup(
+					new SimpleMessageGroup(results, requestMessage.getHeaders().getId()));
+		}
+		List<Object> payloads = new ArrayList<Object>(results.size());
+		for (Message<?> result : results) {
+			payloads.add(result.getPayload());
+		}
+		return payloads;
+	}
+
+
+	/**
+	 * Reply channel of one exchange; collects the replies in slots indexed by the
+	 * sequence number of the request each recipient received.
+	 */
+	private class Gatherer implements MessageChannel {
+
+		private final Message<?>[] slots;
+
+		private final CountDownLatch latch;
+
+		private int received;
+
+		private boolean closed;
+
+		private Gatherer(int recipientCount) {
+			this.slots = new Message<?>[recipientCount];
+			this.latch = new CountDownLatch(recipientCount);
+		}
+
+		public int getRecipientCount() {
+			return this.slots.length;
+		}
+
+		public boolean send(Message<?> message) {
+			return this.send(message, -1);
+		}
+
+		public boolean send(Message<?> message, long timeout) {
+			synchronized (this) {
+				if (this.closed || this.received == this.slots.length) {
+					if (logger.isWarnEnabled()) {
+						logger.warn("Reply message being sent, but the scatter-gather has already completed:" + message);
+					}
+					return true;
+				}
+				int index = this.getSequenceNumber(message) - 1;
+				if (index < 0 || index >= this.slots.length || this.slots[index] != null) {
+					index = 0;
+					while (this.slots[index] != null) {
+						index++;
+					}
+				}
+				this.slots[index] = message;
+				this.received++;
+			}
+			this.latch.countDown();
+			return true;
+		}
+
+		public List<Message<?>> gather(long timeout) {
+			try {
+				if (timeout < 0) {
+					this.latch.await();
+				}
+				else {
+					this.latch.await(timeout, TimeUnit.MILLISECONDS);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			synchronized (this) {
+				this.closed = true;
+				List<Message<?>> replies = new ArrayList<Message<?>>(this.received);
+				for (Message<?> reply : this.slots) {
+					if (reply != null) {
+						replies.add(reply);
+					}
+				}
+				return replies;
+			}
+		}
+
+		private int getSequenceNumber(Message<?> message) {
+			if (message instanceof ErrorMessage && message.getPayload() instanceof MessagingException) {
+				Message<?> failedMessage = ((MessagingException) message.getPayload()).getFailedMessage();
+				if (failedMessage != null) {
+					return failedMessage.getHeaders().getSequenceNumber();
+				}
+			}
+			return message.getHeaders().getSequenceNumber();
+		}
+
+	}
+
+}
@@ -29,7 +29,9 @@ import org.springframework.integration.store.MessageGroup;
 
 /**
  * An implementation of {@link ReleaseStrategy} that simply compares the current size of the message list to the
- * expected 'sequenceSize'.
+ * expected 'sequenceSize'. The expected size is taken from {@link MessageGroup#getSequenceSize()}, so messages with
+ * a 'sequenceSize' of 0 (unknown) are counted as well, as produced by a splitter that only sets the size on the
+ * last message.
  * 
  * @author Mark Fisher
  * @author Marius Bogoevici
@@ -91,7 +93,8 @@ public class SequenceSizeReleaseStrategy implements ReleaseStrategy {
 				canRelease = true;
 			}
 			else {
-				int sequenceSize = messageGroup.getOne().getHeaders().getSequenceSize();
+				// the last message of a streamed sequence may be the only one to carry the size
+				int sequenceSize = messageGroup.getSequenceSize();
 				// If there is no sequence then it must be incomplete....
 				if (sequenceSize == size){
 					canRelease = true;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,12 +27,20 @@ import org.springframework.integration.util.UpperBound;
 /**
  * A message channel that prioritizes messages based on a {@link Comparator}.
  * The default comparator is based upon the message header's 'priority'.
- * 
+ * <p>
+ * When created with a range of priorities instead, the channel is backed by a
+ * {@link PriorityLevelQueue}, which keeps one FIFO queue per priority level
+ * and avoids the global lock and the comparisons of the default queue.
+ *
  * @author Mark Fisher
  * @author Oleg Zhurakousky
  */
 public class PriorityChannel extends QueueChannel {
 
+	/**
+	 * Null when the channel is backed by a {@link PriorityLevelQueue}, which
+	 * enforces the capacity itself.
+	 */
 	private final UpperBound upperBound;
 	
 	private final AtomicLong sequenceCounter = new AtomicLong();
@@ -75,8 +83,23 @@ public class PriorityChannel extends QueueChannel {
 		this(0, null);
 	}
 
+	/**
+	 * Create a channel with the specified queue capacity, backed by a
+	 * {@link PriorityLevelQueue} for the given (inclusive) range of
+	 * {@link MessageHeaders#getPriority()} values. If the capacity is a
+	 * non-positive value, the queue will be unbounded.
+	 * @since 3.0
+	 */
+	public PriorityChannel(int capacity, int minPriority, int maxPriority) {
+		super(new PriorityLevelQueue(capacity, minPriority, maxPriority));
+		this.upperBound = null;
+	}
+
 	@Override
 	protected boolean doSend(Message<?> message, long timeout) {
+		if (this.upperBound == null) {
+			return super.doSend(message, timeout);
+		}
 		if (!upperBound.tryAcquire(timeout)) {
 			return false;
 		}
@@ -87,7 +110,7 @@ public class PriorityChannel extends QueueChannel {
 	@Override
 	protected Message<?> doReceive(long timeout) {
 		Message<?> message = super.doReceive(timeout);
-		if (message != null) {
+		if (message != null && this.upperBound != null) {
 			message = ((MessageWrapper)message).getRootMessage();
 			upperBound.release();
 		}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link BlockingQueue} that orders messages by their
+ * {@link MessageHeaders#getPriority() priority} header, for a small range of
+ * discrete priority values.
+ * <p>
+ * Each priority level has its own lock-free FIFO queue and a bitmap records which
+ * levels may be non-empty, so neither insertion nor removal takes a global lock or
+ * compares messages; messages of the same priority are received in the order they
+ * were sent. Priorities outside the range are treated as the nearest bound, and a
+ * missing priority header as priority 0 (or the nearest bound). At most 64 levels are
+ * supported.
+ *
+ * @since 3.0
+ */
+public class PriorityLevelQueue extends AbstractQueue<Message<?>> implements BlockingQueue<Message<?>> {
+
+	private static final int MAX_LEVELS = 64;
+
+	private final int minPriority;
+
+	private final ConcurrentLinkedQueue<Message<?>>[] levels;
+
+	private final AtomicLong nonEmptyLevels = new AtomicLong();
+
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * One permit per message that can be received; acquired by a receiver before it
+	 * removes a message, which guarantees that a message is there to be removed.
+	 */
+	private final Semaphore available = new Semaphore(0);
+
+	/**
+	 * One permit per free slot, or null if the queue is unbounded.
+	 */
+	private final Semaphore space;
+
+	/**
+	 * Create an unbounded queue for the given (inclusive) range of priorities.
+	 */
+	public PriorityLevelQueue(int minPriority, int maxPriority) {
+		this(0, minPriority, maxPriority);
+	}
+
+	/**
+	 * Create a queue for the given (inclusive) range of priorities. If the capacity is
+	 * a non-positive value, the queue is unbounded.
+	 */
+	public PriorityLevelQueue(int capacity, int minPriority, int maxPriority) {
+		Assert.isTrue(maxPriority >= minPriority, "'maxPriority' must not be less than 'minPriority'");
+		long levelCount = (long) maxPriority - minPriority + 1;
+		Assert.isTrue(levelCount <= MAX_LEVELS, "At most " + MAX_LEVELS + " priority levels are supported");
+		this.minPriority = minPriority;
+		@SuppressWarnings("unchecked")
+		ConcurrentLinkedQueue<Message<?>>[] levels =
+				(ConcurrentLinkedQueue<Message<?>>[]) new ConcurrentLinkedQueue<?>[(int) levelCount];
+		for (int i = 0; i < levels.length; i++) {
+			levels[i] = new ConcurrentLinkedQueue<Message<?>>();
+		}
+		this.levels = levels;
+		this.space = (capacity > 0) ? new Semaphore(capacity) : null;
+	}
+
+	public boolean offer(Message<?> message) {
+		Assert.notNull(message, "'message' must not be null");
+		if (this.space != null && !this.space.tryAcquire()) {
+			return false;
+		}
+		this.enqueue(message);
+		return true;
+	}
+
+	public boolean offer(Message<?> message, long timeout, TimeUnit unit) throws InterruptedException {
+		Assert.notNull(message, "'message' must not be null");
+		if (this.space != null && !this.space.tryAcquire(timeout, unit)) {
+			return false;
+		}
+		this.enqueue(message);
+		return true;
+	}
+
+	public void put(Message<?> message) throws InterruptedException {
+		Assert.notNull(message, "'message' must not be null");
+		if (this.space != null) {
+			this.space.acquire();
+		}
+		this.enqueue(message);
+	}
+
+	public Message<?> poll() {
+		if (!this.available.tryAcquire()) {
+			return null;
+		}
+		return this.dequeue();
+	}
+
+	public Message<?> poll(long timeout, TimeUnit unit) throws InterruptedException {
+		if (!this.available.tryAcquire(timeout, unit)) {
+			return null;
+		}
+		return this.dequeue();
+	}
+
+	public Message<?> take() throws InterruptedException {
+		this.available.acquire();
+		return this.dequeue();
+	}
+
+	public Message<?> peek() {
+		for (int i = this.levels.length - 1; i >= 0; i--) {
+			Message<?> message = this.levels[i].peek();
+			if (message != null) {
+				return message;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (o == null || !this.available.tryAcquire()) {
+			return false;
+		}
+		for (ConcurrentLinkedQueue<Message<?>> level : this.levels) {
+			if (level.remove(o)) {
+				this.removed();
+				return true;
+			}
+		}
+		this.available.release();
+		return false;
+	}
+
+	public int drainTo(Collection<? super Message<?>> c) {
+		return this.drainTo(c, Integer.MAX_VALUE);
+	}
+
+	public int drainTo(Collection<? super Message<?>> c, int maxElements) {
+		Assert.notNull(c, "'c' must not be null");
+		Assert.isTrue(c != this, "cannot drain a queue to itself");
+		int count = 0;
+		Message<?> message;
+		while (count < maxElements && (message = this.poll()) != null) {
+			c.add(message);
+			count++;
+		}
+		return count;
+	}
+
+	public int remainingCapacity() {
+		return (this.space != null) ? this.space.availablePermits() : Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int size() {
+		return this.size.get();
+	}
+
+	/**
+	 * Return a snapshot of the queued messages, highest priority first; the iterator
+	 * does not support removal.
+	 */
+	@Override
+	public Iterator<Message<?>> iterator() {
+		List<Message<?>> snapshot = new ArrayList<Message<?>>(this.size());
+		for (int i = this.levels.length - 1; i >= 0; i--) {
+			snapshot.addAll(this.levels[i]);
+		}
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+
+	private void enqueue(Message<?> message) {
+		int level = this.levelOf(message);
+		this.levels[level].offer(message);
+		this.setNonEmpty(level);
+		this.size.incrementAndGet();
+		this.available.release();
+	}
+
+	/**
+	 * Remove the first message of the highest non-empty level; the caller holds an
+	 * 'available' permit, so there is at least one message that no other receiver
+	 * can take.
+	 */
+	private Message<?> dequeue() {
+		while (true) {
+			long bits = this.nonEmptyLevels.get();
+			if (bits == 0) {
+				// a sender has released its permit but the bit is not visible yet
+				Thread.yield();
+				continue;
+			}
+			int level = 63 - Long.numberOfLeadingZeros(bits);
+			Message<?> message = this.levels[level].poll();
+			if (message != null) {
+				this.removed();
+				return message;
+			}
+			this.clearIfEmpty(level);
+		}
+	}
+
+	private void removed() {
+		this.size.decrementAndGet();
+		if (this.space != null) {
+			this.space.release();
+		}
+	}
+
+	private void setNonEmpty(int level) {
+		long mask = 1L << level;
+		long bits;
+		do {
+			bits = this.nonEmptyLevels.get();
+			if ((bits & mask) != 0) {
+				return;
+			}
+		}
+		while (!this.nonEmptyLevels.compareAndSet(bits, bits | mask));
+	}
+
+	private void clearIfEmpty(int level) {
+		long mask = 1L << level;
+		long bits;
+		do {
+			bits = this.nonEmptyLevels.get();
+			if ((bits & mask) == 0) {
+				return;
+			}
+		}
+		while (!this.nonEmptyLevels.compareAndSet(bits, bits & ~mask));
+		// a sender may have added to the level after we found it empty, but set
+		// the bit before we cleared it
+		if (!this.levels[level].isEmpty()) {
+			this.setNonEmpty(level);
+		}
+	}
+
+	private int levelOf(Message<?> message) {
+		Integer priority = message.getHeaders().getPriority();
+		long level = (long) (priority != null ? priority : 0) - this.minPriority;
+		if (level < 0) {
+			return 0;
+		}
+		return (int) Math.min(level, this.levels.length - 1);
+	}
+
+}
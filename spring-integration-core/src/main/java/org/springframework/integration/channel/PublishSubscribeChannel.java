@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -116,6 +116,25 @@ public class PublishSubscribeChannel extends AbstractSubscribableChannel {
 		this.maxSubscribers = maxSubscribers;
 		this.getDispatcher().setMaxSubscribers(maxSubscribers);
 	}
+
+	/**
+	 * @return the current number of subscribers, i.e. the number of handlers
+	 * each message sent to this channel is dispatched to.
+	 * @since 3.0
+	 */
+	public int getSubscriberCount() {
+		return this.getDispatcher().getHandlerCount();
+	}
+
+	/**
+	 * @return true if the handlers are invoked by an {@link Executor} rather than
+	 * in the message sender's thread.
+	 * @since 3.0
+	 */
+	public boolean hasExecutor() {
+		return this.executor != null;
+	}
+
 	/**
 	 * Callback method for initialization.
 	 */
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,9 +16,20 @@
 
 package org.springframework.integration.channel.interceptor;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.Lifecycle;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.channel.ChannelInterceptor;
@@ -31,11 +42,17 @@ import org.springframework.util.Assert;
 /**
  * A {@link ChannelInterceptor} that publishes a copy of the intercepted message
  * to a secondary target while still sending the original message to the main channel.
+ * <p>
+ * By default the copy is sent on the caller's thread, so a slow secondary target
+ * adds latency to the main flow. When a 'bufferCapacity' is set, intercepted messages
+ * are instead added to a bounded lock-free buffer that a dedicated thread drains to
+ * the secondary target; when the buffer is full, messages are dropped according to
+ * the {@link OverflowPolicy}, and counted, rather than blocking the caller.
  * 
  * @author Mark Fisher
  */
 @ManagedResource
-public class WireTap extends ChannelInterceptorAdapter implements Lifecycle {
+public class WireTap extends ChannelInterceptorAdapter implements Lifecycle, DisposableBean {
 
 	private static final Log logger = LogFactory.getLog(WireTap.class);
 
@@ -47,6 +64,30 @@ public class WireTap extends ChannelInterceptorAdapter implements Lifecycle {
 
 	private volatile boolean running = true;
 
+	private volatile int bufferCapacity;
+
+	private volatile OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+	private volatile int sampleRate = 10;
+
+	private volatile Executor taskExecutor;
+
+	private final Queue<Message<?>> buffer = new ConcurrentLinkedQueue<Message<?>>();
+
+	private final AtomicInteger bufferSize = new AtomicInteger();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final AtomicLong sampleCounter = new AtomicLong();
+
+	private final AtomicBoolean drainerStarted = new AtomicBoolean();
+
+	private volatile Thread drainerThread;
+
+	private volatile boolean drainerWaiting;
+
+	private volatile boolean destroyed;
+
 
 	/**
 	 * Create a new wire tap with <em>no</em> {@link MessageSelector}.
@@ -80,6 +121,67 @@ public class WireTap extends ChannelInterceptorAdapter implements Lifecycle {
 		this.timeout = timeout;
 	}
 
+	/**
+	 * Set the capacity of the buffer from which a dedicated thread sends the
+	 * intercepted messages to the secondary target. If 0 (the default), messages are
+	 * sent on the caller's thread.
+	 * @since 3.0
+	 */
+	public void setBufferCapacity(int bufferCapacity) {
+		Assert.isTrue(bufferCapacity >= 0, "'bufferCapacity' must not be negative");
+		this.bufferCapacity = bufferCapacity;
+	}
+
+	/**
+	 * Specify which messages are dropped when the buffer is full. Default
+	 * {@link OverflowPolicy#DROP_NEWEST}.
+	 * @since 3.0
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		Assert.notNull(overflowPolicy, "'overflowPolicy' must not be null");
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	/**
+	 * With the {@link OverflowPolicy#SAMPLE} policy, the one in how many messages that
+	 * is buffered once the buffer is half full. Default 10.
+	 * @since 3.0
+	 */
+	public void setSampleRate(int sampleRate) {
+		Assert.isTrue(sampleRate > 0, "'sampleRate' must be positive");
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Provide the Executor that runs the thread draining the buffer. By default, a
+	 * {@link SimpleAsyncTaskExecutor} creates a daemon thread when the first message
+	 * is buffered. The thread runs until this wire tap is destroyed.
+	 * @since 3.0
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		Assert.notNull(taskExecutor, "'taskExecutor' must not be null");
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * @return the number of messages dropped because the buffer was full (or, with
+	 * {@link OverflowPolicy#SAMPLE}, filling up).
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public long getDroppedCount() {
+		return this.droppedCount.get();
+	}
+
+	/**
+	 * @return the number of messages waiting in the buffer.
+	 * @since 3.0
+	 */
+	@ManagedAttribute
+	public int getBufferSize() {
+		return this.bufferSize.get();
+	}
+
 	/**
 	 * Check whether the wire tap is currently running.
 	 */
@@ -118,14 +220,126 @@ public class WireTap extends ChannelInterceptorAdapter implements Lifecycle {
 			return message;
 		}
 		if (this.running && (this.selector == null || this.selector.accept(message))) {
-			boolean sent = (this.timeout >= 0)
-					? this.channel.send(message, this.timeout)
-					: this.channel.send(message);
-			if (!sent && logger.isWarnEnabled()) {
-				logger.warn("failed to send message to WireTap channel '" + this.channel + "'");
+			if (this.bufferCapacity > 0) {
+				this.enqueue(message);
+			}
+			else {
+				this.sendToTap(message);
 			}
 		}
 		return message;
 	}
 
+	/**
+	 * Stop the thread draining the buffer; messages still buffered are discarded.
+	 */
+	public void destroy() {
+		this.destroyed = true;
+		Thread drainerThread = this.drainerThread;
+		if (drainerThread != null) {
+			LockSupport.unpark(drainerThread);
+		}
+	}
+
+	private void sendToTap(Message<?> message) {
+		boolean sent = (this.timeout >= 0)
+				? this.channel.send(message, this.timeout)
+				: this.channel.send(message);
+		if (!sent && logger.isWarnEnabled()) {
+			logger.warn("failed to send message to WireTap channel '" + this.channel + "'");
+		}
+	}
+
+	private void enqueue(Message<?> message) {
+		int capacity = this.bufferCapacity;
+		if (this.overflowPolicy == OverflowPolicy.SAMPLE && this.bufferSize.get() >= (capacity + 1) / 2
+				&& this.sampleCounter.incrementAndGet() % this.sampleRate != 0) {
+			this.droppedCount.incrementAndGet();
+			return;
+		}
+		while (this.bufferSize.incrementAndGet() > capacity) {
+			this.bufferSize.decrementAndGet();
+			if (this.overflowPolicy != OverflowPolicy.DROP_OLDEST) {
+				this.droppedCount.incrementAndGet();
+				return;
+			}
+			if (this.buffer.poll() != null) {
+				// make room for this message by dropping the oldest one
+				this.bufferSize.decrementAndGet();
+				this.droppedCount.incrementAndGet();
+			}
+		}
+		this.buffer.offer(message);
+		if (this.drainerStarted.compareAndSet(false, true)) {
+			Executor executor = this.taskExecutor;
+			if (executor == null) {
+				SimpleAsyncTaskExecutor defaultExecutor = new SimpleAsyncTaskExecutor("wireTap-");
+				defaultExecutor.setDaemon(true);
+				executor = defaultExecutor;
+			}
+			executor.execute(new Drainer());
+		}
+		else if (this.drainerWaiting) {
+			LockSupport.unpark(this.drainerThread);
+		}
+	}
+
+
+	/**
+	 * Which intercepted messages to drop when the buffer of an asynchronous
+	 * {@link WireTap} is full.
+	 * @since 3.0
+	 */
+	public static enum OverflowPolicy {
+
+		/**
+		 * Drop the message being intercepted.
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * Drop the oldest buffered message to make room for the one being intercepted.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Once the buffer is half full, only buffer one in 'sampleRate' messages; drop
+		 * the message being intercepted when the buffer is full.
+		 */
+		SAMPLE
+
+	}
+
+
+	private class Drainer implements Runnable {
+
+		public void run() {
+			drainerThread = Thread.currentThread();
+			while (!destroyed) {
+				Message<?> message = buffer.poll();
+				if (message != null) {
+					bufferSize.decrementAndGet();
+					try {
+						sendToTap(message);
+					}
+					catch (Exception e) {
+						if (logger.isWarnEnabled()) {
+							logger.warn("failed to send message to WireTap channel '" + channel + "'", e);
+						}
+					}
+					continue;
+				}
+				drainerWaiting = true;
+				if (buffer.isEmpty() && !destroyed) {
+					// the timeout only guards against a lost wake-up
+					LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+				}
+				drainerWaiting = false;
+			}
+			buffer.clear();
+			bufferSize.set(0);
+		}
+
+	}
+
 }
@@ -22,6 +22,7 @@ import org.springframework.integration.splitter.AbstractMessageSplitter;
 import org.springframework.integration.splitter.DefaultMessageSplitter;
 import org.springframework.integration.splitter.ExpressionEvaluatingSplitter;
 import org.springframework.integration.splitter.MethodInvokingSplitter;
+import org.springframework.integration.splitter.SequenceSizeMode;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -41,6 +42,7 @@ public class SplitterFactoryBean extends AbstractStandardMessageHandlerFactoryBe
 
 	private volatile String delimiters;
 
+	private volatile SequenceSizeMode sequenceSizeMode;
 
 	public void setSendTimeout(Long sendTimeout) {
 		this.sendTimeout = sendTimeout;
@@ -62,6 +64,10 @@ public class SplitterFactoryBean extends AbstractStandardMessageHandlerFactoryBe
 		this.delimiters = delimiters;
 	}
 
+	public void setSequenceSizeMode(SequenceSizeMode sequenceSizeMode) {
+		this.sequenceSizeMode = sequenceSizeMode;
+	}
+
 	@Override
 	MessageHandler createMethodInvokingHandler(Object targetObject, String targetMethodName) {
 		Assert.notNull(targetObject, "targetObject must not be null");
@@ -108,6 +114,9 @@ public class SplitterFactoryBean extends AbstractStandardMessageHandlerFactoryBe
 		}
 		splitter.setRequiresReply(requiresReply);
 		splitter.setApplySequence(applySequence);
+		if (this.sequenceSizeMode != null) {
+			splitter.setSequenceSizeMode(this.sequenceSizeMode);
+		}
 		return splitter;
 	}
 
@@ -68,6 +68,11 @@ public class DelayerParser extends AbstractConsumerEndpointParser {
 
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "message-store");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "send-timeout");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "tick-duration");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "ticks-per-wheel");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "release-poll-interval");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "release-batch-size");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "release-transaction-manager");
 
 		Element txElement = DomUtils.getChildElementByTagName(element, "transactional");
 		Element adviceChainElement = DomUtils.getChildElementByTagName(element, "advice-chain");
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -41,7 +41,8 @@ import org.springframework.util.xml.DomUtils;
 public class GatewayParser extends AbstractSimpleBeanDefinitionParser {
 
 	private static String[] referenceAttributes = new String[] {
-		"default-request-channel", "default-reply-channel", "error-channel", "message-mapper", "async-executor"
+		"default-request-channel", "default-reply-channel", "error-channel", "message-mapper", "async-executor",
+		"reply-correlating-channel"
 	};
 
 	private static String[] innerAttributes = new String[] {
@@ -82,6 +83,7 @@ public class GatewayParser extends AbstractSimpleBeanDefinitionParser {
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "reply-timeout", "defaultReplyTimeout");		
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "error-channel");
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "async-executor");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "reply-correlating-channel");
 	}
 
 	private void postProcessGateway(BeanDefinitionBuilder builder, Element element) {
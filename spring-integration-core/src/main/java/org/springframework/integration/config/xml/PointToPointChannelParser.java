@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -69,10 +69,30 @@ public class PointToPointChannelParser extends AbstractChannelParser {
 		}
 		else if ((queueElement = DomUtils.getChildElementByTagName(element, "priority-queue")) != null) {
 			builder = BeanDefinitionBuilder.genericBeanDefinition(PriorityChannel.class);
-			this.parseQueueCapacity(builder, queueElement);
 			String comparatorRef = queueElement.getAttribute("comparator");
-			if (StringUtils.hasText(comparatorRef)) {
-				builder.addConstructorArgReference(comparatorRef);
+			String minPriority = queueElement.getAttribute("min-priority");
+			String maxPriority = queueElement.getAttribute("max-priority");
+			if (StringUtils.hasText(minPriority) || StringUtils.hasText(maxPriority)) {
+				if (!StringUtils.hasText(minPriority) || !StringUtils.hasText(maxPriority)) {
+					parserContext.getReaderContext().error(
+							"Both 'min-priority' and 'max-priority' must be provided.", element);
+				}
+				if (StringUtils.hasText(comparatorRef)) {
+					parserContext.getReaderContext().error(
+							"The 'comparator' attribute is not allowed with 'min-priority' and 'max-priority'.",
+							element);
+				}
+				if (!this.parseQueueCapacity(builder, queueElement)) {
+					builder.addConstructorArgValue(0);
+				}
+				builder.addConstructorArgValue(minPriority);
+				builder.addConstructorArgValue(maxPriority);
+			}
+			else {
+				this.parseQueueCapacity(builder, queueElement);
+				if (StringUtils.hasText(comparatorRef)) {
+					builder.addConstructorArgReference(comparatorRef);
+				}
 			}
 		}
 		else if ((queueElement = DomUtils.getChildElementByTagName(element, "rendezvous-queue")) != null) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -34,6 +34,10 @@ public class ResequencerParser extends AbstractCorrelatingMessageHandlerParser {
 	private static final String COMPARATOR_REF_ATTRIBUTE = "comparator";
 
 	private static final String RELEASE_PARTIAL_SEQUENCES_ATTRIBUTE = "release-partial-sequences";
+
+	private static final String WINDOW_SIZE_ATTRIBUTE = "window-size";
+
+	private static final String WINDOW_IDLE_TIMEOUT_ATTRIBUTE = "window-idle-timeout";
 	
 	@Override
 	protected BeanDefinitionBuilder parseHandler(Element element, ParserContext parserContext) {
@@ -57,6 +61,8 @@ public class ResequencerParser extends AbstractCorrelatingMessageHandlerParser {
 		this.doParse(builder, element, processorBuilder.getBeanDefinition(), parserContext);
 		
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, RELEASE_PARTIAL_SEQUENCES_ATTRIBUTE);
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, WINDOW_SIZE_ATTRIBUTE);
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, WINDOW_IDLE_TIMEOUT_ATTRIBUTE);
 		
 		return builder;
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2008 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -44,6 +44,10 @@ public class WireTapParser implements BeanDefinitionRegisteringParser {
 		if (StringUtils.hasText(timeout)) {
 			builder.addPropertyValue("timeout", Long.parseLong(timeout));
 		}
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "buffer-capacity");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "overflow-policy");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "sample-rate");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "task-executor");
 		String id = element.getAttribute("id");
 		if (StringUtils.hasText(id)) {
 			BeanDefinitionReaderUtils.registerBeanDefinition(new BeanDefinitionHolder(builder.getBeanDefinition(), id),
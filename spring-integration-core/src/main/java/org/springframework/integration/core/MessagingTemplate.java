@@ -16,8 +16,11 @@
 
 package org.springframework.integration.core;
 
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,6 +39,7 @@ import org.springframework.integration.support.channel.ChannelResolutionExceptio
 import org.springframework.integration.support.channel.ChannelResolver;
 import org.springframework.integration.support.converter.MessageConverter;
 import org.springframework.integration.support.converter.SimpleMessageConverter;
+import org.springframework.integration.util.SettableFuture;
 import org.springframework.util.Assert;
 
 /**
@@ -67,6 +71,8 @@ public class MessagingTemplate implements MessagingOperations, BeanFactoryAware,
 
 	private volatile boolean throwExceptionOnLateReply = false;
 
+	private volatile ReplyCorrelatingChannel replyCorrelatingChannel;
+
 
 	/**
 	 * Create a MessagingTemplate with no default channel. Note, that one
@@ -148,6 +154,19 @@ public class MessagingTemplate implements MessagingOperations, BeanFactoryAware,
 		this.throwExceptionOnLateReply = throwExceptionOnLateReply;
 	}
 
+	/**
+	 * Provide a shared reply channel for request-reply operations. Replies are then
+	 * correlated by the {@link ReplyCorrelatingChannel#REPLY_CORRELATION_ID} header
+	 * instead of being sent to a temporary channel created for each request. If the
+	 * channel is a bean, the 'replyChannel' header of the request is its name, so the
+	 * request can be sent over transports that serialize the headers.
+	 * @param replyCorrelatingChannel the reply channel.
+	 * @since 3.0
+	 */
+	public void setReplyCorrelatingChannel(ReplyCorrelatingChannel replyCorrelatingChannel) {
+		this.replyCorrelatingChannel = replyCorrelatingChannel;
+	}
+
 	public void afterPropertiesSet() {
 		synchronized (this.initializationMonitor) {
 			if (this.initialized) {
@@ -326,6 +345,10 @@ public class MessagingTemplate implements MessagingOperations, BeanFactoryAware,
 	private <S, R> Message<R> doSendAndReceive(MessageChannel channel, Message<S> requestMessage) {
 		Object originalReplyChannelHeader = requestMessage.getHeaders().getReplyChannel();
 		Object originalErrorChannelHeader = requestMessage.getHeaders().getErrorChannel();
+		if (this.replyCorrelatingChannel != null) {
+			return this.doSendAndReceiveCorrelated(channel, requestMessage, originalReplyChannelHeader,
+					originalErrorChannelHeader);
+		}
 		TemporaryReplyChannel replyChannel = new TemporaryReplyChannel(this.receiveTimeout, this.throwExceptionOnLateReply);
 		requestMessage = MessageBuilder.fromMessage(requestMessage)
 				.setReplyChannel(replyChannel)
@@ -348,6 +371,53 @@ public class MessagingTemplate implements MessagingOperations, BeanFactoryAware,
 		return reply;
 	}
 
+	@SuppressWarnings("unchecked")
+	private <S, R> Message<R> doSendAndReceiveCorrelated(MessageChannel channel, Message<S> requestMessage,
+			Object originalReplyChannelHeader, Object originalErrorChannelHeader) {
+		ReplyCorrelatingChannel replyChannel = this.replyCorrelatingChannel;
+		Object originalCorrelationHeader = requestMessage.getHeaders().get(ReplyCorrelatingChannel.REPLY_CORRELATION_ID);
+		String correlationKey = requestMessage.getHeaders().getId().toString();
+		long timeout = this.receiveTimeout;
+		SettableFuture<Message<?>> future = replyChannel.register(correlationKey, timeout);
+		requestMessage = MessageBuilder.fromMessage(requestMessage)
+				.setHeader(MessageHeaders.REPLY_CHANNEL, replyChannel.getReplyChannelHeader())
+				.setHeader(MessageHeaders.ERROR_CHANNEL, replyChannel.getReplyChannelHeader())
+				.setHeader(ReplyCorrelatingChannel.REPLY_CORRELATION_ID, correlationKey)
+				.build();
+		Message<R> reply = null;
+		try {
+			this.doSend(channel, requestMessage);
+			reply = (Message<R>) ((timeout < 0) ? future.get() : future.get(timeout, TimeUnit.MILLISECONDS));
+		}
+		catch (TimeoutException e) {
+			if (this.logger.isTraceEnabled()) {
+				this.logger.trace("failed to receive reply for '" + correlationKey + "' within timeout: " + timeout);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			// the future is only completed exceptionally when cancelled
+		}
+		catch (CancellationException e) {
+			// cancelled by another thread
+		}
+		finally {
+			if (reply == null) {
+				replyChannel.cancel(correlationKey);
+			}
+		}
+		if (reply != null) {
+			reply = MessageBuilder.fromMessage(reply)
+					.setHeader(MessageHeaders.REPLY_CHANNEL, originalReplyChannelHeader)
+					.setHeader(MessageHeaders.ERROR_CHANNEL, originalErrorChannelHeader)
+					.setHeader(ReplyCorrelatingChannel.REPLY_CORRELATION_ID, originalCorrelationHeader)
+					.build();
+		}
+		return reply;
+	}
+
 	private MessageChannel getRequiredDefaultChannel() {
 		Assert.state(this.defaultChannel != null,
 				"No 'defaultChannel' specified for MessagingTemplate. "
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.core;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageDeliveryException;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.util.SettableFuture;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * A long-lived reply channel shared by many request-reply exchanges. Each
+ * exchange {@link #register(String, long) registers} a correlation key, which
+ * is sent along in the {@link #REPLY_CORRELATION_ID} header of the request,
+ * and receives a future that is completed by the reply carrying the same key.
+ * This replaces a temporary reply channel per request and, when the channel
+ * is a bean, allows the 'replyChannel' header to be the bean name, so request
+ * messages remain serializable and can cross remote transports.
+ * <p>
+ * Error messages are correlated through the failed message of their
+ * {@link MessagingException} payload. Exchanges whose timeout has elapsed are
+ * completed with null by a single sweep task, scheduled on the configured
+ * {@link TaskScheduler} or, by default, on the application context's
+ * 'taskScheduler'; without a scheduler, callers must enforce their own
+ * timeouts and {@link #cancel(String) cancel} the registration (see
+ * {@link #isSweeping()}).
+ *
+ * @since 3.0
+ */
+public class ReplyCorrelatingChannel implements MessageChannel, BeanNameAware, BeanFactoryAware, DisposableBean {
+
+	public static final String REPLY_CORRELATION_ID = "replyCorrelationId";
+
+	private static final long DEFAULT_SWEEP_INTERVAL = 1000;
+
+	private final Log logger = LogFactory.getLog(this.getClass());
+
+	private final ConcurrentMap<String, PendingReply> pendingReplies = new ConcurrentHashMap<String, PendingReply>();
+
+	private final AtomicLong lateReplyCount = new AtomicLong();
+
+	private volatile String beanName;
+
+	private volatile BeanFactory beanFactory;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile long sweepInterval = DEFAULT_SWEEP_INTERVAL;
+
+	private volatile boolean throwExceptionOnLateReply;
+
+	private volatile ScheduledFuture<?> sweepTask;
+
+	private volatile boolean taskSchedulerResolved;
+
+	private final Object sweepMonitor = new Object();
+
+	public void setBeanName(String beanName) {
+		this.beanName = beanName;
+	}
+
+	public void setBeanFactory(BeanFactory beanFactory) {
+		this.beanFactory = beanFactory;
+	}
+
+	/**
+	 * Set the scheduler on which expired exchanges are swept. Defaults to the
+	 * 'taskScheduler' bean, if any.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+		this.taskSchedulerResolved = false;
+	}
+
+	/**
+	 * Set how often, in milliseconds, expired exchanges are swept; this is the
+	 * precision of the timeouts enforced by this channel. Default 1000.
+	 */
+	public void setSweepInterval(long sweepInterval) {
+		Assert.isTrue(sweepInterval > 0, "'sweepInterval' must be greater than 0");
+		this.sweepInterval = sweepInterval;
+	}
+
+	/**
+	 * Specify whether a reply that no exchange is waiting for (because it has
+	 * timed out, or has already been completed) causes a
+	 * {@link MessageDeliveryException}. Default false - just a WARN log is emitted.
+	 */
+	public void setThrowExceptionOnLateReply(boolean throwExceptionOnLateReply) {
+		this.throwExceptionOnLateReply = throwExceptionOnLateReply;
+	}
+
+	/**
+	 * @return the value to use as the 'replyChannel' and 'errorChannel' header of
+	 * requests: the bean name, if this channel is a bean, otherwise the channel itself.
+	 */
+	public Object getReplyChannelHeader() {
+		return (this.beanName != null) ? this.beanName : this;
+	}
+
+	/**
+	 * Register an exchange that expects a reply with the given correlation key.
+	 * @param correlationKey the key, sent in the {@link #REPLY_CORRELATION_ID} header.
+	 * @param timeout the timeout in milliseconds after which the future is
+	 * completed with null, or a negative value for no timeout.
+	 * @return the future completed with the reply.
+	 */
+	public SettableFuture<Message<?>> register(String correlationKey, long timeout) {
+		Assert.notNull(correlationKey, "'correlationKey' must not be null");
+		long deadline = (timeout < 0) ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+		PendingReply pendingReply = new PendingReply(deadline);
+		Assert.state(this.pendingReplies.putIfAbsent(correlationKey, pendingReply) == null,
+				"an exchange is already registered for '" + correlationKey + "'");
+		if (timeout >= 0 && this.sweepTask == null && !this.taskSchedulerResolved) {
+			this.startSweeper();
+		}
+		return pendingReply;
+	}
+
+	/**
+	 * Resolve the task scheduler and start the sweep task, if not done yet.
+	 * @return true if exchanges are timed out by the sweep task; otherwise callers
+	 * must enforce their own timeouts.
+	 */
+	public boolean isSweeping() {
+		if (this.sweepTask == null && !this.taskSchedulerResolved) {
+			this.startSweeper();
+		}
+		return this.sweepTask != null;
+	}
+
+	/**
+	 * Remove the registration for the given key, e.g. because the caller has
+	 * given up waiting; a reply arriving later is treated as a late reply.
+	 */
+	public void cancel(String correlationKey) {
+		PendingReply pendingReply = this.pendingReplies.remove(correlationKey);
+		if (pendingReply != null) {
+			pendingReply.cancel(false);
+		}
+	}
+
+	public boolean send(Message<?> message) {
+		return this.send(message, -1);
+	}
+
+	public boolean send(Message<?> message, long timeout) {
+		String correlationKey = this.getCorrelationKey(message);
+		PendingReply pendingReply = (correlationKey != null) ? this.pendingReplies.remove(correlationKey) : null;
+		if (pendingReply == null || !pendingReply.set(message)) {
+			this.lateReplyCount.incrementAndGet();
+			String exceptionMessage = (correlationKey == null)
+					? "Reply message has no '" + REPLY_CORRELATION_ID + "' header"
+					: "Reply message being sent, but no exchange is waiting for it";
+			if (logger.isWarnEnabled()) {
+				logger.warn(exceptionMessage + ":" + message);
+			}
+			if (this.throwExceptionOnLateReply) {
+				throw new MessageDeliveryException(message, exceptionMessage);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Complete all exchanges whose timeout has elapsed with null. Invoked by the
+	 * sweep task; exposed so that the sweep can also be driven by the caller.
+	 */
+	public void sweep() {
+		long now = System.currentTimeMillis();
+		Iterator<Map.Entry<String, PendingReply>> iterator = this.pendingReplies.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<String, PendingReply> entry = iterator.next();
+			PendingReply pendingReply = entry.getValue();
+			if (pendingReply.deadline <= now && this.pendingReplies.remove(entry.getKey(), pendingReply)) {
+				if (pendingReply.set(null) && logger.isDebugEnabled()) {
+					logger.debug("no reply received for '" + entry.getKey() + "' within timeout");
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of exchanges waiting for a reply.
+	 */
+	public int getPendingReplyCount() {
+		return this.pendingReplies.size();
+	}
+
+	/**
+	 * @return the number of replies that arrived when no exchange was waiting for them.
+	 */
+	public long getLateReplyCount() {
+		return this.lateReplyCount.get();
+	}
+
+	public void destroy() {
+		synchronized (this.sweepMonitor) {
+			if (this.sweepTask != null) {
+				this.sweepTask.cancel(false);
+				this.sweepTask = null;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return (this.beanName != null) ? this.beanName : super.toString();
+	}
+
+	private String getCorrelationKey(Message<?> message) {
+		Object correlationKey = message.getHeaders().get(REPLY_CORRELATION_ID);
+		if (correlationKey == null && message.getPayload() instanceof MessagingException) {
+			Message<?> failedMessage = ((MessagingException) message.getPayload()).getFailedMessage();
+			if (failedMessage != null) {
+				correlationKey = failedMessage.getHeaders().get(REPLY_CORRELATION_ID);
+			}
+		}
+		return (correlationKey != null) ? correlationKey.toString() : null;
+	}
+
+	private void startSweeper() {
+		synchronized (this.sweepMonitor) {
+			if (this.taskScheduler == null && this.beanFactory != null) {
+				this.taskScheduler = IntegrationContextUtils.getTaskScheduler(this.beanFactory);
+			}
+			this.taskSchedulerResolved = true;
+			if (this.sweepTask == null && this.taskScheduler != null) {
+				this.sweepTask = this.taskScheduler.scheduleAtFixedRate(new Runnable() {
+					public void run() {
+						sweep();
+					}
+				}, this.sweepInterval);
+			}
+		}
+	}
+
+
+	private static class PendingReply extends SettableFuture<Message<?>> {
+
+		private final long deadline;
+
+		private PendingReply(long deadline) {
+			this.deadline = deadline;
+		}
+
+	}
+
+}
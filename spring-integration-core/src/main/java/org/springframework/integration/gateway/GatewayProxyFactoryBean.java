@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -46,10 +46,12 @@ import org.springframework.integration.MessagingException;
 import org.springframework.integration.annotation.Gateway;
 import org.springframework.integration.annotation.Payload;
 import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.core.ReplyCorrelatingChannel;
 import org.springframework.integration.endpoint.AbstractEndpoint;
 import org.springframework.integration.history.TrackableComponent;
 import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
 import org.springframework.integration.support.channel.ChannelResolver;
+import org.springframework.integration.util.SettableFuture;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
@@ -96,6 +98,10 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint implements Trackab
 
 	private volatile AsyncTaskExecutor asyncExecutor = new SimpleAsyncTaskExecutor();
 
+	private volatile boolean nonBlocking;
+
+	private volatile ReplyCorrelatingChannel replyCorrelatingChannel;
+
 	private volatile boolean initialized;
 
 	private final Object initializationMonitor = new Object();
@@ -195,6 +201,31 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint implements Trackab
 				: new TaskExecutorAdapter(executor);
 	}
 
+	/**
+	 * Specify whether methods with a {@link Future} return type should send the
+	 * request on the caller's thread and return a {@link SettableFuture} that is
+	 * completed by the thread delivering the reply, instead of occupying a thread
+	 * of the 'asyncExecutor' while waiting for the reply. Reply timeouts are then
+	 * enforced by the shared {@link org.springframework.scheduling.TaskScheduler};
+	 * a timed-out future is completed with null, just as a synchronous method
+	 * returns null. Methods without arguments only receive and always use the
+	 * 'asyncExecutor'. Defaults to false.
+	 * @since 3.0
+	 */
+	public void setNonBlocking(boolean nonBlocking) {
+		this.nonBlocking = nonBlocking;
+	}
+
+	/**
+	 * Provide a reply channel shared by all methods of this gateway; replies are
+	 * correlated by header rather than sent to a temporary channel per request.
+	 * @see MessagingGatewaySupport#setReplyCorrelatingChannel(ReplyCorrelatingChannel)
+	 * @since 3.0
+	 */
+	public void setReplyCorrelatingChannel(ReplyCorrelatingChannel replyCorrelatingChannel) {
+		this.replyCorrelatingChannel = replyCorrelatingChannel;
+	}
+
 	public void setTypeConverter(TypeConverter typeConverter) {
 		Assert.notNull(typeConverter, "typeConverter must not be null");
 		this.typeConverter = typeConverter;
@@ -254,12 +285,27 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint implements Trackab
 	}
 
 	public Object invoke(final MethodInvocation invocation) throws Throwable {
-		if (Future.class.isAssignableFrom(invocation.getMethod().getReturnType())) {
+		Method method = invocation.getMethod();
+		if (Future.class.isAssignableFrom(method.getReturnType())) {
+			if (this.nonBlocking && !this.isReceiveOnly(method)) {
+				return this.invokeNonBlocking(invocation);
+			}
 			return this.asyncExecutor.submit(new AsyncInvocationTask(invocation));
 		}
 		return this.doInvoke(invocation);
 	}
 
+	private Object invokeNonBlocking(MethodInvocation invocation) {
+		if (!this.initialized) {
+			this.afterPropertiesSet();
+		}
+		Method method = invocation.getMethod();
+		MethodInvocationGateway gateway = this.gatewayMap.get(method);
+		Object[] args = invocation.getArguments();
+		return hasFutureParameterizedWithMessage(method)
+				? gateway.sendAndReceiveMessageAsync(args) : gateway.sendAndReceiveAsync(args);
+	}
+
 	private Object doInvoke(MethodInvocation invocation) throws Throwable {
 		Method method = invocation.getMethod();
 		if (AopUtils.isToStringMethod(method)) {
@@ -284,15 +330,8 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint implements Trackab
 		boolean shouldReturnMessage = Message.class.isAssignableFrom(returnType)
 				|| hasFutureParameterizedWithMessage(method);
 		boolean shouldReply = returnType != void.class;
-		int paramCount = method.getParameterTypes().length;
 		Object response = null;
-		boolean hasPayloadExpression = method.isAnnotationPresent(Payload.class);
-		if (!hasPayloadExpression && this.methodMetadataMap != null) {
-			// check for the method metadata next
-			GatewayMethodMetadata metadata = this.methodMetadataMap.get(method.getName());
-			hasPayloadExpression = (metadata != null) && StringUtils.hasText(metadata.getPayloadExpression());
-		}
-		if (paramCount == 0 && !hasPayloadExpression) {
+		if (this.isReceiveOnly(method)) {
 			if (shouldReply) {
 				if (shouldReturnMessage) {
 					return gateway.receive();
@@ -313,6 +352,19 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint implements Trackab
 		return (response != null) ? this.convert(response, returnType) : null;
 	}
 
+	private boolean isReceiveOnly(Method method) {
+		if (method.getParameterTypes().length > 0) {
+			return false;
+		}
+		boolean hasPayloadExpression = method.isAnnotationPresent(Payload.class);
+		if (!hasPayloadExpression && this.methodMetadataMap != null) {
+			// check for the method metadata next
+			GatewayMethodMetadata metadata = this.methodMetadataMap.get(method.getName());
+			hasPayloadExpression = (metadata != null) && StringUtils.hasText(metadata.getPayloadExpression());
+		}
+		return !hasPayloadExpression;
+	}
+
 	private void rethrowExceptionCauseIfPossible(Throwable originalException, Method method) throws Throwable {
 		Class<?>[] exceptionTypes = method.getExceptionTypes();
 		Throwable t = originalException;
@@ -400,6 +452,9 @@ public class GatewayProxyFactoryBean extends AbstractEndpoint implements Trackab
 		gateway.setBeanName(this.getComponentName());
 		gateway.setRequestChannel(requestChannel);
 		gateway.setReplyChannel(replyChannel);
+		if (this.replyCorrelatingChannel != null) {
+			gateway.setReplyCorrelatingChannel(this.replyCorrelatingChannel);
+		}
 		if (requestTimeout == null) {
 			gateway.setRequestTimeout(-1);
 		}
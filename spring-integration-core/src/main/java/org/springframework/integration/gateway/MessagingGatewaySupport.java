@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,16 @@
 
 package org.springframework.integration.gateway;
 
+import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
+
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.MessagingException;
-import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.core.PollableChannel;
+import org.springframework.integration.core.ReplyCorrelatingChannel;
 import org.springframework.integration.core.SubscribableChannel;
 import org.springframework.integration.endpoint.AbstractEndpoint;
 import org.springframework.integration.endpoint.EventDrivenConsumer;
@@ -34,6 +38,8 @@ import org.springframework.integration.mapping.OutboundMessageMapper;
 import org.springframework.integration.message.ErrorMessage;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.support.converter.SimpleMessageConverter;
+import org.springframework.integration.util.SettableFuture;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
 
 /**
@@ -41,6 +47,11 @@ import org.springframework.util.Assert;
  * {@link MessageChannel}s for sending, receiving, or request-reply operations.
  * Exposes setters for configuring request and reply {@link MessageChannel}s as
  * well as the timeout values for sending and receiving Messages.
+ * <p>
+ * Request-reply operations are also available in a non-blocking form that
+ * returns a {@link SettableFuture} as soon as the request has been sent; the
+ * future is completed by the thread that sends the reply, and the reply timeout
+ * is enforced by a task on the shared {@link TaskScheduler}.
  * 
  * @author Mark Fisher
  */
@@ -72,6 +83,8 @@ public abstract class MessagingGatewaySupport extends AbstractEndpoint implement
 
 	private final Object replyMessageCorrelatorMonitor = new Object();
 
+	private volatile ReplyCorrelatingChannel replyCorrelatingChannel;
+
 
 	public MessagingGatewaySupport() {
 		MessagingTemplate template = new MessagingTemplate();
@@ -131,6 +144,19 @@ public abstract class MessagingGatewaySupport extends AbstractEndpoint implement
 		this.messagingTemplate.setReceiveTimeout(replyTimeout);
 	}
 
+	/**
+	 * Provide a shared reply channel that correlates replies by the
+	 * {@link ReplyCorrelatingChannel#REPLY_CORRELATION_ID} header, instead of
+	 * creating a temporary reply channel for each request. The reply timeouts of
+	 * asynchronous requests are then enforced by the channel's sweep task or, if
+	 * the channel has no task scheduler, by this gateway's task scheduler.
+	 * @since 3.0
+	 */
+	public void setReplyCorrelatingChannel(ReplyCorrelatingChannel replyCorrelatingChannel) {
+		this.replyCorrelatingChannel = replyCorrelatingChannel;
+		this.messagingTemplate.setReplyCorrelatingChannel(replyCorrelatingChannel);
+	}
+
 	/**
 	 * Provide an {@link InboundMessageMapper} for creating request Messages
 	 * from any object passed in a send or sendAndReceive operation.
@@ -207,6 +233,27 @@ public abstract class MessagingGatewaySupport extends AbstractEndpoint implement
 		return (Message<?>) this.doSendAndReceive(object, false);
 	}
 
+	/**
+	 * Send the request without waiting for the reply. The returned future is
+	 * completed with the (converted) reply, with null if no reply arrives within
+	 * the reply timeout, or with the failure. If an error channel is configured,
+	 * failures are sent to it and the future is completed with the result of the
+	 * error flow instead.
+	 * @since 3.0
+	 */
+	protected SettableFuture<Object> sendAndReceiveAsync(Object object) {
+		return this.doSendAndReceiveAsync(object, true);
+	}
+
+	/**
+	 * Like {@link #sendAndReceiveAsync(Object)}, but the future is completed with
+	 * the reply Message itself.
+	 * @since 3.0
+	 */
+	protected SettableFuture<Object> sendAndReceiveMessageAsync(Object object) {
+		return this.doSendAndReceiveAsync(object, false);
+	}
+
 	@SuppressWarnings("unchecked")
 	private Object doSendAndReceive(Object object, boolean shouldConvert) {
 		this.initializeIfNecessary();
@@ -270,6 +317,132 @@ public abstract class MessagingGatewaySupport extends AbstractEndpoint implement
 		return reply;
 	}
 
+	@SuppressWarnings("unchecked")
+	private SettableFuture<Object> doSendAndReceiveAsync(Object object, boolean shouldConvert) {
+		SettableFuture<Object> future = new SettableFuture<Object>();
+		ReplyCorrelatingChannel correlatingChannel = this.replyCorrelatingChannel;
+		String correlationKey = null;
+		FutureReplyChannel replyChannel = null;
+		try {
+			this.initializeIfNecessary();
+			Assert.notNull(object, "request must not be null");
+			if (this.requestChannel == null) {
+				throw new MessagingException("No request channel available. Cannot send request message.");
+			}
+			if (this.replyChannel != null && this.replyMessageCorrelator == null) {
+				this.registerReplyMessageCorrelator();
+			}
+			Message<?> requestMessage = null;
+			if (shouldConvert) {
+				requestMessage = this.messageConverter.toMessage(object);
+			}
+			else {
+				requestMessage = (object instanceof Message<?>)
+						? (Message<?>) object : this.requestMapper.toMessage(object);
+			}
+			requestMessage = this.historyWritingPostProcessor.postProcessMessage(requestMessage);
+			replyChannel = new FutureReplyChannel(future, shouldConvert, false,
+					requestMessage.getHeaders().getReplyChannel(), requestMessage.getHeaders().getErrorChannel());
+			if (correlatingChannel != null) {
+				correlationKey = requestMessage.getHeaders().getId().toString();
+				this.registerForReply(correlatingChannel, correlationKey, replyChannel, future);
+				requestMessage = MessageBuilder.fromMessage(requestMessage)
+						.setHeader(MessageHeaders.REPLY_CHANNEL, correlatingChannel.getReplyChannelHeader())
+						.setHeader(MessageHeaders.ERROR_CHANNEL, correlatingChannel.getReplyChannelHeader())
+						.setHeader(ReplyCorrelatingChannel.REPLY_CORRELATION_ID, correlationKey)
+						.build();
+			}
+			else {
+				requestMessage = MessageBuilder.fromMessage(requestMessage)
+						.setReplyChannel(replyChannel)
+						.setErrorChannel(replyChannel)
+						.build();
+				this.scheduleReplyTimeout(future);
+			}
+			this.messagingTemplate.send(this.requestChannel, requestMessage);
+		}
+		catch (Exception e) {
+			logger.warn("failure occurred in gateway sendAndReceive", e);
+			this.handleAsyncError(e, future, shouldConvert);
+			if (correlationKey != null) {
+				correlatingChannel.cancel(correlationKey);
+			}
+		}
+		return future;
+	}
+
+	private void registerForReply(final ReplyCorrelatingChannel correlatingChannel, final String correlationKey,
+			final FutureReplyChannel replyChannel, final SettableFuture<Object> future) {
+		correlatingChannel.register(correlationKey, this.replyTimeout).addCallback(
+				new SettableFuture.Callback<Message<?>>() {
+					public void onSuccess(Message<?> reply) {
+						if (reply != null) {
+							replyChannel.send(reply);
+						}
+						else if (future.set(null) && logger.isDebugEnabled()) {
+							logger.debug("no reply received within timeout: " + replyTimeout);
+						}
+					}
+					public void onFailure(Throwable exception) {
+						future.cancel(false);
+					}
+				});
+		if (this.replyTimeout >= 0 && !correlatingChannel.isSweeping()) {
+			// the channel cannot time out the exchange, so do it here and remove the registration
+			this.scheduleReplyTimeout(future);
+			future.addCallback(new SettableFuture.Callback<Object>() {
+				public void onSuccess(Object result) {
+					correlatingChannel.cancel(correlationKey);
+				}
+				public void onFailure(Throwable exception) {
+					correlatingChannel.cancel(correlationKey);
+				}
+			});
+		}
+	}
+
+	private void scheduleReplyTimeout(final SettableFuture<Object> future) {
+		if (this.replyTimeout < 0) {
+			return;
+		}
+		TaskScheduler taskScheduler = this.getTaskScheduler();
+		Assert.state(taskScheduler != null, "a TaskScheduler is required to time out asynchronous replies");
+		final ScheduledFuture<?> timeoutTask = taskScheduler.schedule(new Runnable() {
+			public void run() {
+				if (future.set(null) && logger.isDebugEnabled()) {
+					logger.debug("no reply received within timeout: " + replyTimeout);
+				}
+			}
+		}, new Date(System.currentTimeMillis() + this.replyTimeout));
+		future.addCallback(new SettableFuture.Callback<Object>() {
+			public void onSuccess(Object result) {
+				timeoutTask.cancel(false);
+			}
+			public void onFailure(Throwable exception) {
+				timeoutTask.cancel(false);
+			}
+		});
+	}
+
+	private void handleAsyncError(Throwable error, SettableFuture<Object> future, boolean shouldConvert) {
+		if (this.errorChannel == null) {
+			future.setException(error);
+			return;
+		}
+		FutureReplyChannel errorReplyChannel = new FutureReplyChannel(future, shouldConvert, true, null, null);
+		Message<?> errorMessage = MessageBuilder.withPayload(error)
+				.setReplyChannel(errorReplyChannel)
+				.setErrorChannel(errorReplyChannel)
+				.build();
+		try {
+			this.messagingTemplate.send(this.errorChannel, errorMessage);
+		}
+		catch (Exception errorFlowFailure) {
+			future.setException(new MessagingException(errorMessage, "failure occurred in error-handling flow",
+					errorFlowFailure));
+		}
+	}
+
 	private void rethrow(Throwable t, String description) {
 		if (t instanceof RuntimeException) {
 			throw (RuntimeException) t;
@@ -283,7 +456,12 @@ public abstract class MessagingGatewaySupport extends AbstractEndpoint implement
 				return;
 			}
 			AbstractEndpoint correlator = null;
-			MessageHandler handler = new BridgeHandler();
+			BridgeHandler handler = new BridgeHandler();
+			if (this.getBeanFactory() != null) {
+				// allows replies whose 'replyChannel' header is a channel name
+				handler.setBeanFactory(this.getBeanFactory());
+				handler.afterPropertiesSet();
+			}
 			if (this.replyChannel instanceof SubscribableChannel) {
 				correlator = new EventDrivenConsumer(
 						(SubscribableChannel) this.replyChannel, handler);
@@ -318,6 +496,77 @@ public abstract class MessagingGatewaySupport extends AbstractEndpoint implement
 	}
 
 
+	/**
+	 * Reply channel that completes a future with the reply instead of handing
+	 * it to a waiting thread.
+	 */
+	private class FutureReplyChannel implements MessageChannel {
+
+		private final SettableFuture<Object> future;
+
+		private final boolean shouldConvert;
+
+		private final boolean errorFlow;
+
+		private final Object originalReplyChannelHeader;
+
+		private final Object originalErrorChannelHeader;
+
+		private FutureReplyChannel(SettableFuture<Object> future, boolean shouldConvert, boolean errorFlow,
+				Object originalReplyChannelHeader, Object originalErrorChannelHeader) {
+			this.future = future;
+			this.shouldConvert = shouldConvert;
+			this.errorFlow = errorFlow;
+			this.originalReplyChannelHeader = originalReplyChannelHeader;
+			this.originalErrorChannelHeader = originalErrorChannelHeader;
+		}
+
+		public boolean send(Message<?> message) {
+			return this.send(message, -1);
+		}
+
+		public boolean send(Message<?> message, long timeout) {
+			if (this.future.isDone()) {
+				if (logger.isWarnEnabled()) {
+					logger.warn("Reply message being sent, but the gateway has already " +
+							(this.future.isCancelled() ? "been cancelled" : "completed or timed out") + ":" + message);
+				}
+				return true;
+			}
+			try {
+				Object reply = this.shouldConvert ? messageConverter.fromMessage(message)
+						: MessageBuilder.fromMessage(message)
+								.setHeader(MessageHeaders.REPLY_CHANNEL, this.originalReplyChannelHeader)
+								.setHeader(MessageHeaders.ERROR_CHANNEL, this.originalErrorChannelHeader)
+								.setHeader(ReplyCorrelatingChannel.REPLY_CORRELATION_ID, null)
+								.build();
+				Throwable error = null;
+				if (this.shouldConvert && reply instanceof Throwable) {
+					error = (Throwable) reply;
+				}
+				else if (!this.shouldConvert && (message instanceof ErrorMessage
+						|| (this.errorFlow && message.getPayload() instanceof Throwable))) {
+					error = (Throwable) message.getPayload();
+				}
+				if (error == null) {
+					this.future.set(reply);
+				}
+				else if (this.errorFlow) {
+					this.future.setException(error);
+				}
+				else {
+					handleAsyncError(error, this.future, this.shouldConvert);
+				}
+			}
+			catch (Exception e) {
+				this.future.setException(e);
+			}
+			return true;
+		}
+
+	}
+
+
 	private static class DefaultRequestMapper implements InboundMessageMapper<Object> {
 
 		public Message<?> toMessage(Object object) throws Exception {
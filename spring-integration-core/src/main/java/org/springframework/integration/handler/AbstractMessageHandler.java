@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.integration.handler;
 
 import org.springframework.core.Ordered;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageHandlingException;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.context.IntegrationObjectSupport;
@@ -61,6 +62,16 @@ public abstract class AbstractMessageHandler extends IntegrationObjectSupport im
 	}
 
 	public final void handleMessage(Message<?> message) {
+		this.handleMessage(message, null);
+	}
+
+	/**
+	 * Handle the message as {@link #handleMessage(Message)} does, but have a handler that
+	 * produces replies send them directly to the given channel instead of resolving its
+	 * output channel; used by a {@link MessageHandlerChain} to invoke its handlers in a loop.
+	 * @since 3.0
+	 */
+	final void handleMessage(Message<?> message, MessageChannel replyTarget) {
 		Assert.notNull(message, "Message must not be null");
 		Assert.notNull(message.getPayload(), "Message payload must not be null");
 		if (this.logger.isDebugEnabled()) {
@@ -70,7 +81,12 @@ public abstract class AbstractMessageHandler extends IntegrationObjectSupport im
 			if (message != null && this.shouldTrack) {
 				message = MessageHistory.write(message, this);
 			}
-			this.handleMessageInternal(message);
+			if (replyTarget == null) {
+				this.handleMessageInternal(message);
+			}
+			else {
+				this.handleMessageInternal(message, replyTarget);
+			}
 		}
 		catch (Exception e) {
 			if (e instanceof MessagingException) {
@@ -82,4 +98,13 @@ public abstract class AbstractMessageHandler extends IntegrationObjectSupport im
 
 	protected abstract void handleMessageInternal(Message<?> message) throws Exception;
 
+	/**
+	 * Only handlers that produce replies make use of the reply target; by default the
+	 * message is handled as usual.
+	 * @since 3.0
+	 */
+	void handleMessageInternal(Message<?> message, MessageChannel replyTarget) throws Exception {
+		this.handleMessageInternal(message);
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -132,6 +132,15 @@ public abstract class AbstractReplyProducingMessageHandler extends AbstractMessa
 	 */
 	@Override
 	protected final void handleMessageInternal(Message<?> message) {
+		this.doHandleMessage(message, null);
+	}
+
+	@Override
+	final void handleMessageInternal(Message<?> message, MessageChannel replyTarget) {
+		this.doHandleMessage(message, replyTarget);
+	}
+
+	private void doHandleMessage(Message<?> message, MessageChannel replyTarget) {
 		Object result;
 		if (this.advisedRequestHandler == null) {
 			result = this.handleRequestMessage(message);
@@ -141,7 +150,7 @@ public abstract class AbstractReplyProducingMessageHandler extends AbstractMessa
 		}
 		if (result != null) {
 			MessageHeaders requestHeaders = message.getHeaders();
-			this.handleResult(result, requestHeaders);
+			this.handleResult(result, requestHeaders, replyTarget);
 		}
 		else if (this.requiresReply) {
 			throw new ReplyRequiredException(message, "No reply produced by handler '" +
@@ -156,20 +165,25 @@ public abstract class AbstractReplyProducingMessageHandler extends AbstractMessa
 		return this.advisedRequestHandler.handleRequestMessage(message);
 	}
 
-	private void handleResult(Object result, MessageHeaders requestHeaders) {
-		if (result instanceof Iterable<?> && this.shouldSplitReply((Iterable<?>) result)) {
+	private void handleResult(Object result, MessageHeaders requestHeaders, MessageChannel replyTarget) {
+		if (result instanceof Iterable<?> && this.shouldSplitOutput((Iterable<?>) result)) {
 			for (Object o : (Iterable<?>) result) {
-				this.produceReply(o, requestHeaders);
+				this.produceReply(o, requestHeaders, replyTarget);
 			}
 		}
 		else if (result != null) {
-			this.produceReply(result, requestHeaders);
+			this.produceReply(result, requestHeaders, replyTarget);
 		}
 	}
 
-	private void produceReply(Object reply, MessageHeaders requestHeaders) {
+	private void produceReply(Object reply, MessageHeaders requestHeaders, MessageChannel replyTarget) {
 		Message<?> replyMessage = this.createReplyMessage(reply, requestHeaders);
-		this.sendReplyMessage(replyMessage, requestHeaders.getReplyChannel());
+		if (replyTarget != null) {
+			replyTarget.send(replyMessage);
+		}
+		else {
+			this.sendReplyMessage(replyMessage, requestHeaders.getReplyChannel());
+		}
 	}
 
 	private Message<?> createReplyMessage(Object reply, MessageHeaders requestHeaders) {
@@ -231,7 +245,14 @@ public abstract class AbstractReplyProducingMessageHandler extends AbstractMessa
 		}
 	}
 
-	private boolean shouldSplitReply(Iterable<?> reply) {
+	/**
+	 * Determine whether an {@link Iterable} result is sent as one reply per element
+	 * rather than as a single reply. By default, this is the case if any element is
+	 * a Message or a MessageBuilder. Subclasses that return results which can only
+	 * be iterated once must override this, as the default implementation iterates
+	 * the result.
+	 */
+	protected boolean shouldSplitOutput(Iterable<?> reply) {
 		for (Object next : reply) {
 			if (next instanceof Message<?> || next instanceof MessageBuilder<?>) {
 				return true;
@@ -19,24 +19,33 @@ package org.springframework.integration.handler;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.aopalliance.aop.Advice;
 import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.store.DelayedMessageGroupStore;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
 import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.util.HashedTimerWheel;
+import org.springframework.jmx.export.annotation.ManagedMetric;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
@@ -64,6 +73,19 @@ import org.springframework.util.CollectionUtils;
  * seconds from the current time). If the value is a Date, it will be
  * delayed at least until that Date occurs (i.e. the delay in that case is
  * equivalent to <code>headerDate.getTime() - new Date().getTime()</code>).
+ * <p>
+ * By default each delayed Message is scheduled as its own task. When a
+ * 'tickDuration' is configured, delayed Messages are instead placed on a
+ * {@link HashedTimerWheel} which releases all Messages that have become due
+ * in per-tick batches using a single scheduled task; this is preferable
+ * when very many Messages are delayed at the same time, at the cost of
+ * rounding each delay up to the next tick.
+ * <p>
+ * When a 'releasePollInterval' is configured, the 'messageStore' must be a
+ * {@link DelayedMessageGroupStore}: delayed Messages are stored with their due
+ * time and nothing is scheduled in memory. Instead, the store is polled for due
+ * Messages in batches. Restarting is then independent of the number of delayed
+ * Messages, and several instances sharing the same store share the release work.
  *
  * @author Mark Fisher
  * @author Artem Bilan
@@ -71,7 +93,8 @@ import org.springframework.util.CollectionUtils;
  */
 
 @ManagedResource
-public class DelayHandler extends AbstractReplyProducingMessageHandler implements DelayHandlerManagement, ApplicationListener<ContextRefreshedEvent> {
+public class DelayHandler extends AbstractReplyProducingMessageHandler implements DelayHandlerManagement,
+		ApplicationListener<ContextRefreshedEvent>, DisposableBean {
 
 	private final String messageGroupId;
 
@@ -87,6 +110,22 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 
 	private volatile MessageHandler releaseHandler = new ReleaseMessageHandler();
 
+	private volatile long tickDuration;
+
+	private volatile int ticksPerWheel = HashedTimerWheel.DEFAULT_TICKS_PER_WHEEL;
+
+	private volatile HashedTimerWheel<Message<?>> timerWheel;
+
+	private volatile long releasePollInterval;
+
+	private volatile int releaseBatchSize = 100;
+
+	private volatile ScheduledFuture<?> releasePollTask;
+
+	private volatile PlatformTransactionManager releaseTransactionManager;
+
+	private volatile TransactionTemplate releaseTransactionTemplate;
+
 	/**
 	 * Create a DelayHandler with the given 'messageGroupId' that is used as 'key' for {@link MessageGroup}
 	 * to store delayed Messages in the {@link MessageGroupStore}. The sending of Messages after
@@ -147,6 +186,60 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 		this.delayedAdviceChain = delayedAdviceChain;
 	}
 
+	/**
+	 * Set the tick duration in milliseconds of the timer wheel used to release
+	 * delayed Messages. Messages are released at the first tick at or after
+	 * their due time, in one batch per tick, on the scheduler thread that runs
+	 * the tick. The default (0) schedules a separate task for each delayed
+	 * Message instead.
+	 *
+	 * @see HashedTimerWheel
+	 */
+	public void setTickDuration(long tickDuration) {
+		Assert.isTrue(tickDuration >= 0, "'tickDuration' must not be negative");
+		this.tickDuration = tickDuration;
+	}
+
+	/**
+	 * Set the number of buckets of the timer wheel; ignored unless a
+	 * 'tickDuration' is set. Default {@value HashedTimerWheel#DEFAULT_TICKS_PER_WHEEL}.
+	 */
+	public void setTicksPerWheel(int ticksPerWheel) {
+		this.ticksPerWheel = ticksPerWheel;
+	}
+
+	/**
+	 * Set the interval in milliseconds at which the 'messageStore' is polled for
+	 * due Messages. When set, the 'messageStore' must be a {@link DelayedMessageGroupStore}
+	 * and Messages are no longer scheduled in memory. The default (0) schedules
+	 * each Message when it is delayed, and all persisted Messages on startup.
+	 *
+	 * @see #setReleaseBatchSize(int)
+	 */
+	public void setReleasePollInterval(long releasePollInterval) {
+		Assert.isTrue(releasePollInterval >= 0, "'releasePollInterval' must not be negative");
+		this.releasePollInterval = releasePollInterval;
+	}
+
+	/**
+	 * Set the maximum number of due Messages claimed from the 'messageStore' at
+	 * once; ignored unless a 'releasePollInterval' is set. Default 100.
+	 */
+	public void setReleaseBatchSize(int releaseBatchSize) {
+		Assert.isTrue(releaseBatchSize > 0, "'releaseBatchSize' must be greater than 0");
+		this.releaseBatchSize = releaseBatchSize;
+	}
+
+	/**
+	 * Set the {@link PlatformTransactionManager} in which each batch of due Messages
+	 * is claimed from the 'messageStore'; ignored unless a 'releasePollInterval' is set.
+	 * The claim joins a transaction of this manager when one is active, otherwise a
+	 * new one is started. By default the claim runs without a transaction of its own.
+	 */
+	public void setReleaseTransactionManager(PlatformTransactionManager releaseTransactionManager) {
+		this.releaseTransactionManager = releaseTransactionManager;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "delayer";
@@ -155,7 +248,15 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 	@Override
 	protected void onInit() {
 		super.onInit();
-		if (this.messageStore == null) {
+		if (this.releasePollInterval > 0) {
+			Assert.isInstanceOf(DelayedMessageGroupStore.class, this.messageStore,
+					"A 'releasePollInterval' requires a DelayedMessageGroupStore");
+			Assert.isTrue(this.tickDuration == 0, "'releasePollInterval' and 'tickDuration' are mutually exclusive");
+			if (this.releaseTransactionManager != null) {
+				this.releaseTransactionTemplate = new TransactionTemplate(this.releaseTransactionManager);
+			}
+		}
+		else if (this.messageStore == null) {
 			this.messageStore = new SimpleMessageStore();
 		}
 		else {
@@ -163,6 +264,15 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 		}
 
 		this.releaseHandler = this.createReleaseMessageTask();
+
+		if (this.tickDuration > 0) {
+			this.timerWheel = new HashedTimerWheel<Message<?>>(this.tickDuration, this.ticksPerWheel,
+					new HashedTimerWheel.ExpiryCallback<Message<?>>() {
+						public void expired(List<Message<?>> messages) {
+							releaseMessages(messages);
+						}
+					});
+		}
 	}
 
 	private MessageHandler createReleaseMessageTask() {
@@ -240,11 +350,26 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 		else {
 			messageWrapper = new DelayedMessageWrapper(message);
 			delayedMessage = MessageBuilder.withPayload(messageWrapper).copyHeaders(message.getHeaders()).build();
+			if (this.releasePollInterval > 0) {
+				((DelayedMessageGroupStore) this.messageStore).addMessageToGroup(this.messageGroupId, delayedMessage,
+						messageWrapper.getRequestDate() + delay);
+				this.startReleasePolling();
+				return;
+			}
 			this.messageStore.addMessageToGroup(this.messageGroupId, delayedMessage);
 		}
 
 		final Message<?> messageToSchedule = delayedMessage;
 
+		HashedTimerWheel<Message<?>> timerWheel = this.timerWheel;
+		if (timerWheel != null) {
+			if (!timerWheel.isRunning()) {
+				timerWheel.start(this.getTaskScheduler());
+			}
+			timerWheel.schedule(messageToSchedule, messageWrapper.getRequestDate() + delay);
+			return;
+		}
+
 		this.getTaskScheduler().schedule(new Runnable() {
 			public void run() {
 				releaseMessage(messageToSchedule);
@@ -256,8 +381,78 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 		this.releaseHandler.handleMessage(message);
 	}
 
+	/**
+	 * Release a batch of Messages, from a timer wheel tick or from a poll of
+	 * the 'messageStore'. A failure to release one Message does not prevent
+	 * the release of the others; the first failure is rethrown once all have
+	 * been attempted.
+	 */
+	private void releaseMessages(List<Message<?>> messages) {
+		RuntimeException failure = null;
+		for (Message<?> message : messages) {
+			try {
+				this.releaseMessage(message);
+			}
+			catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				}
+				else {
+					logger.error("Failed to release delayed message: " + message, e);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private synchronized void startReleasePolling() {
+		if (this.releasePollTask == null) {
+			this.releasePollTask = this.getTaskScheduler().scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					releaseDueMessages();
+				}
+			}, this.releasePollInterval);
+		}
+	}
+
+	/**
+	 * Claim and release due Messages from the 'messageStore', batch by batch,
+	 * until a batch is not full.
+	 */
+	private void releaseDueMessages() {
+		List<Message<?>> messages;
+		do {
+			if (this.releaseTransactionTemplate != null) {
+				messages = this.releaseTransactionTemplate.execute(new TransactionCallback<List<Message<?>>>() {
+					public List<Message<?>> doInTransaction(TransactionStatus status) {
+						return claimDueMessages();
+					}
+				});
+			}
+			else {
+				messages = this.claimDueMessages();
+			}
+			if (!messages.isEmpty()) {
+				this.releaseMessages(messages);
+			}
+		}
+		while (messages.size() == this.releaseBatchSize);
+	}
+
+	private List<Message<?>> claimDueMessages() {
+		return ((DelayedMessageGroupStore) this.messageStore).claimDueMessages(this.messageGroupId,
+				System.currentTimeMillis(), this.releaseBatchSize);
+	}
+
 	private void doReleaseMessage(Message<?> message) {
-		if (this.messageStore instanceof SimpleMessageStore
+		if (this.releasePollInterval > 0) {
+			// the message is claimed by this instance; removing it is part of the (advised) release
+			this.messageStore.removeMessageFromGroup(this.messageGroupId, message);
+			this.handleMessageInternal(message);
+		}
+		else if (this.messageStore instanceof SimpleMessageStore
 				|| ((MessageStore) this.messageStore).removeMessage(message.getHeaders().getId()) != null) {
 			this.messageStore.removeMessageFromGroup(this.messageGroupId, message);
 			this.handleMessageInternal(message);
@@ -274,15 +469,59 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 		return this.messageStore.messageGroupSize(this.messageGroupId);
 	}
 
+	/**
+	 * @return the largest time in milliseconds by which the timer wheel released a
+	 * Message after its due time, or 0 if no 'tickDuration' is configured.
+	 */
+	@ManagedMetric
+	public long getMaxReleaseLag() {
+		HashedTimerWheel<Message<?>> timerWheel = this.timerWheel;
+		return timerWheel == null ? 0 : timerWheel.getMaxLag();
+	}
+
+	/**
+	 * @return the mean time in milliseconds by which the timer wheel released
+	 * Messages after their due time, or 0 if no 'tickDuration' is configured.
+	 */
+	@ManagedMetric
+	public double getMeanReleaseLag() {
+		HashedTimerWheel<Message<?>> timerWheel = this.timerWheel;
+		return timerWheel == null ? 0 : timerWheel.getMeanLag();
+	}
+
+	/**
+	 * @return how late in milliseconds the most recent timer wheel tick ran,
+	 * or 0 if no 'tickDuration' is configured.
+	 */
+	@ManagedMetric
+	public long getTickLag() {
+		HashedTimerWheel<Message<?>> timerWheel = this.timerWheel;
+		return timerWheel == null ? 0 : timerWheel.getLastTickLag();
+	}
+
 	/**
 	 * Used for reading persisted Messages in the 'messageStore'
 	 * to reschedule them e.g. upon application restart.
 	 * The logic is based on iteration over 'messageGroup.getMessages()'
 	 * and schedules task about 'delay' logic.
 	 * This behavior is dictated by the avoidance of invocation thread overload.
+	 * When a 'releasePollInterval' is set, nothing is loaded; this only makes
+	 * sure that the 'messageStore' is being polled.
 	 */
 	public void reschedulePersistedMessages() {
+		if (this.releasePollInterval > 0) {
+			// persisted messages are released by polling the store; nothing to load
+			this.startReleasePolling();
+			return;
+		}
 		MessageGroup messageGroup = this.messageStore.getMessageGroup(this.messageGroupId);
+		if (this.timerWheel != null) {
+			// the wheel only costs an entry per message, no need to defer to the scheduler
+			for (Message<?> message : messageGroup.getMessages()) {
+				this.releaseMessageAfterDelay(message, Math.max(this.determineDelayForMessage(message), 0));
+			}
+			return;
+		}
 		for (final Message<?> message : messageGroup.getMessages()) {
 			this.getTaskScheduler().schedule(new Runnable() {
 				public void run() {
@@ -316,6 +555,21 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 		}
 	}
 
+	/**
+	 * Stops the timer wheel or the polling of the 'messageStore', if any;
+	 * Messages that are still delayed remain in the 'messageStore'.
+	 */
+	public synchronized void destroy() {
+		HashedTimerWheel<Message<?>> timerWheel = this.timerWheel;
+		if (timerWheel != null) {
+			timerWheel.stop();
+		}
+		if (this.releasePollTask != null) {
+			this.releasePollTask.cancel(false);
+			this.releasePollTask = null;
+		}
+	}
+
 
 	/**
 	 * Delegate {@link MessageHandler} implementation for 'release Message task'.
@@ -54,6 +54,14 @@ import java.util.concurrent.locks.ReentrantLock;
  * This component can be used from the namespace to improve the readability of
  * the configuration by removing channels that can be created implicitly.
  * <p>
+ * By default each handler sends its reply to the next one through an internal
+ * channel, so that every handler adds to the call stack. When the chain is
+ * 'flattened', it invokes its handlers in a loop instead: handlers that extend
+ * {@link AbstractReplyProducingMessageHandler} hand their replies back to the chain,
+ * which passes them on to the next handler. The semantics are the same; a handler
+ * that produces no reply ends the flow, and multiple replies are each passed
+ * through the rest of the chain in turn.
+ * <p>
  *
  * <pre>
  * &lt;chain&gt;
@@ -73,6 +81,13 @@ public class MessageHandlerChain extends AbstractMessageHandler implements Messa
 
 	private volatile List<MessageHandler> handlers;
 
+	private volatile boolean flatten;
+
+	/**
+	 * For each handler, whether a flattened chain invokes it in its loop.
+	 */
+	private volatile boolean[] loopInvoked;
+
 	private volatile MessageChannel outputChannel;
 
 	/**
@@ -108,6 +123,15 @@ public class MessageHandlerChain extends AbstractMessageHandler implements Messa
 		this.sendTimeout = sendTimeout;
 	}
 
+	/**
+	 * Specify whether the chain invokes its handlers in a loop rather than through the
+	 * nested calls of the internal channels between them. Default false.
+	 * @since 3.0
+	 */
+	public void setFlatten(boolean flatten) {
+		this.flatten = flatten;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "chain";
@@ -133,27 +157,65 @@ public class MessageHandlerChain extends AbstractMessageHandler implements Messa
 		if (!this.initialized) {
 			this.onInit();
 		}
-		this.handlers.get(0).handleMessage(message);
+		if (this.flatten) {
+			this.invokeHandlers(0, message);
+		}
+		else {
+			this.handlers.get(0).handleMessage(message);
+		}
+	}
+
+	/**
+	 * Pass the message through the handlers, starting at the given index. Handlers that
+	 * are invoked in the loop hand their replies to a {@link ReplyCollector}; any other
+	 * handler sends its replies to its output channel, which continues the chain.
+	 */
+	private void invokeHandlers(int start, Message<?> message) {
+		int last = this.handlers.size() - 1;
+		for (int i = start; i < last; i++) {
+			MessageHandler handler = this.handlers.get(i);
+			if (!this.loopInvoked[i]) {
+				handler.handleMessage(message);
+				return;
+			}
+			ReplyCollector collector = new ReplyCollector(i + 1);
+			((AbstractMessageHandler) handler).handleMessage(message, collector);
+			message = collector.lastReply;
+			if (message == null) {
+				return;
+			}
+		}
+		this.handlers.get(last).handleMessage(message);
 	}
 
 	private void configureChain() {
 		Assert.isTrue(this.handlers.size() == new HashSet<MessageHandler>(this.handlers).size(),
 				"duplicate handlers are not allowed in a chain");
+		this.loopInvoked = new boolean[this.handlers.size()];
 		for (int i = 0; i < this.handlers.size(); i++) {
 			MessageHandler handler = handlers.get(i);
 			if (i < handlers.size() - 1) { // not the last handler
 				Assert.isTrue(handler instanceof MessageProducer, "All handlers except for " +
 						"the last one in the chain must implement the MessageProducer interface.");
 				final MessageHandler nextHandler = handlers.get(i + 1);
+				final int nextIndex = i + 1;
 				final MessageChannel nextChannel = new MessageChannel() {
 					public boolean send(Message<?> message, long timeout) {
 						return this.send(message);
 					}
 					public boolean send(Message<?> message) {
-						nextHandler.handleMessage(message);
+						if (flatten) {
+							invokeHandlers(nextIndex, message);
+						}
+						else {
+							nextHandler.handleMessage(message);
+						}
 						return true;
 					}
 				};
+				// a proxy would not apply its advice to the package-private entry point
+				this.loopInvoked[i] = handler instanceof AbstractReplyProducingMessageHandler
+						&& !AopUtils.isAopProxy(handler);
 				((MessageProducer) handler).setOutputChannel(nextChannel);
 
 				// If this 'handler' is a nested non-last &lt;chain&gt;, it is  necessary
@@ -264,6 +326,35 @@ public class MessageHandlerChain extends AbstractMessageHandler implements Messa
 		}
 	}
 
+	/**
+	 * Receives the replies of a handler invoked in the loop of a flattened chain. The
+	 * last reply is left for the loop to pass on; any earlier one is passed through the
+	 * rest of the chain as soon as the next reply arrives, so that multiple replies are
+	 * processed in order.
+	 */
+	private class ReplyCollector implements MessageChannel {
+
+		private final int nextIndex;
+
+		private Message<?> lastReply;
+
+		private ReplyCollector(int nextIndex) {
+			this.nextIndex = nextIndex;
+		}
+
+		public boolean send(Message<?> message) {
+			if (this.lastReply != null) {
+				invokeHandlers(this.nextIndex, this.lastReply);
+			}
+			this.lastReply = message;
+			return true;
+		}
+
+		public boolean send(Message<?> message, long timeout) {
+			return this.send(message);
+		}
+	}
+
 	private class ReplyForwardingMessageChannel implements MessageChannel {
 
 		public boolean send(Message<?> message) {
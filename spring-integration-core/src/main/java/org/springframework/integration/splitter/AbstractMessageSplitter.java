@@ -17,18 +17,31 @@
 package org.springframework.integration.splitter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ObjectUtils;
 
 /**
  * Base class for Message-splitting handlers.
+ * <p>
+ * Messages are built and sent one at a time while the split result is iterated,
+ * so a blocking output channel (such as a bounded queue) slows down the iteration.
+ * Besides Collections and arrays, the split result may be an {@link Iterator},
+ * which allows large results (such as the lines of a file) to be produced lazily.
+ * Unless the {@link #setSequenceSizeMode(SequenceSizeMode) sequenceSizeMode} is
+ * {@link SequenceSizeMode#ALL}, such results are never held in memory as a whole.
+ * Any other object, including an {@link Iterable} that is not a Collection, is
+ * sent as a single Message.
  * 
  * @author Mark Fisher
  * @author Dave Syer
@@ -37,6 +50,8 @@ public abstract class AbstractMessageSplitter extends AbstractReplyProducingMess
 
 	private boolean applySequence = true;
 
+	private volatile SequenceSizeMode sequenceSizeMode = SequenceSizeMode.ALL;
+
 	/**
 	 * Set the applySequence flag to the specified value. Defaults to true.
 	 */
@@ -44,6 +59,17 @@ public abstract class AbstractMessageSplitter extends AbstractReplyProducingMess
 		this.applySequence = applySequence;
 	}
 
+	/**
+	 * Set which of the produced Messages carry the 'sequenceSize' header when
+	 * 'applySequence' is true. With {@link SequenceSizeMode#ALL} (the default),
+	 * an Iterator result is buffered to determine its size; with {@link SequenceSizeMode#LAST} or
+	 * {@link SequenceSizeMode#NONE} it is not.
+	 */
+	public void setSequenceSizeMode(SequenceSizeMode sequenceSizeMode) {
+		Assert.notNull(sequenceSizeMode, "'sequenceSizeMode' must not be null");
+		this.sequenceSizeMode = sequenceSizeMode;
+	}
+
 	@SuppressWarnings("rawtypes")
 	@Override
 	protected final Object handleRequestMessage(Message<?> message) {
@@ -55,27 +81,44 @@ public abstract class AbstractMessageSplitter extends AbstractReplyProducingMess
 		}
 		MessageHeaders headers = message.getHeaders();
 		Object correlationId = headers.getId();
-		List<MessageBuilder<?>> messageBuilders = new ArrayList<MessageBuilder<?>>();
+		Iterator<?> items;
+		int sequenceSize;
 		if (result instanceof Collection) {
-			Collection<?> items = (Collection<?>) result;
-			int sequenceNumber = 0;
-			int sequenceSize = items.size();
-			for (Object item : items) {
-				messageBuilders.add(this.createBuilder(item, headers, correlationId, ++sequenceNumber, sequenceSize));
-			}
+			items = ((Collection<?>) result).iterator();
+			sequenceSize = ((Collection<?>) result).size();
 		}
 		else if (result.getClass().isArray()) {
-			Object[] items = (Object[]) result;
-			int sequenceNumber = 0;
-			int sequenceSize = items.length;
-			for (Object item : items) {
-				messageBuilders.add(this.createBuilder(item, headers, correlationId, ++sequenceNumber, sequenceSize));
+			items = Arrays.asList((Object[]) result).iterator();
+			sequenceSize = ((Object[]) result).length;
+		}
+		else if (result instanceof Iterator) {
+			items = (Iterator<?>) result;
+			if (!items.hasNext()) {
+				return null;
+			}
+			sequenceSize = 0;
+			if (this.applySequence && this.sequenceSizeMode == SequenceSizeMode.ALL) {
+				List<Object> buffer = new ArrayList<Object>();
+				while (items.hasNext()) {
+					buffer.add(items.next());
+				}
+				items = buffer.iterator();
+				sequenceSize = buffer.size();
 			}
 		}
 		else {
-			messageBuilders.add(this.createBuilder(result, headers, correlationId, 1, 1));
+			return Collections.singletonList(this.createBuilder(result, headers, correlationId, 1, 1));
 		}
-		return messageBuilders;
+		return new SplitResult(items, sequenceSize, headers, correlationId);
+	}
+
+	/**
+	 * A {@link SplitResult} can only be iterated once, so it is always split
+	 * without inspecting its elements.
+	 */
+	@Override
+	protected boolean shouldSplitOutput(Iterable<?> reply) {
+		return reply instanceof SplitResult || super.shouldSplitOutput(reply);
 	}
 
 	@SuppressWarnings( { "unchecked", "rawtypes" })
@@ -101,11 +144,67 @@ public abstract class AbstractMessageSplitter extends AbstractReplyProducingMess
 	}
 
 	/**
-	 * Subclasses must override this method to split the received Message. The return value may be a Collection or
-	 * Array. The individual elements may be Messages, but it is not necessary. If the elements are not Messages, each
-	 * will be provided as the payload of a Message. It is also acceptable to return a single Object or Message. In that
-	 * case, a single reply Message will be produced.
+	 * Subclasses must override this method to split the received Message. The return value may be a Collection,
+	 * Array or Iterator. The individual elements may be Messages, but it is not necessary. If the elements
+	 * are not Messages, each will be provided as the payload of a Message. It is also acceptable to return a single
+	 * Object or Message. In that case, a single reply Message will be produced.
 	 */
 	protected abstract Object splitMessage(Message<?> message);
 
+
+	/**
+	 * Builds the reply Messages while the split result is iterated.
+	 */
+	private class SplitResult implements Iterable<MessageBuilder<?>>, Iterator<MessageBuilder<?>> {
+
+		private final Iterator<?> items;
+
+		private final int sequenceSize;
+
+		private final MessageHeaders headers;
+
+		private final Object correlationId;
+
+		private final SequenceSizeMode sequenceSizeMode = AbstractMessageSplitter.this.sequenceSizeMode;
+
+		private int sequenceNumber;
+
+		private boolean iterated;
+
+		private SplitResult(Iterator<?> items, int sequenceSize, MessageHeaders headers, Object correlationId) {
+			this.items = items;
+			this.sequenceSize = sequenceSize;
+			this.headers = headers;
+			this.correlationId = correlationId;
+		}
+
+		public Iterator<MessageBuilder<?>> iterator() {
+			Assert.state(!this.iterated, "The split result can only be iterated once");
+			this.iterated = true;
+			return this;
+		}
+
+		public boolean hasNext() {
+			return this.items.hasNext();
+		}
+
+		public MessageBuilder<?> next() {
+			Object item = this.items.next();
+			int sequenceNumber = ++this.sequenceNumber;
+			int sequenceSize = 0;
+			if (this.sequenceSizeMode == SequenceSizeMode.ALL) {
+				sequenceSize = this.sequenceSize;
+			}
+			else if (this.sequenceSizeMode == SequenceSizeMode.LAST && !this.items.hasNext()) {
+				sequenceSize = sequenceNumber;
+			}
+			return createBuilder(item, this.headers, this.correlationId, sequenceNumber, sequenceSize);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.splitter;
+
+/**
+ * Determines which of the Messages produced by an {@link AbstractMessageSplitter}
+ * carry the 'sequenceSize' header. A 'sequenceSize' of 0 means that the size is
+ * unknown.
+ *
+ * @since 3.0
+ */
+public enum SequenceSizeMode {
+
+	/**
+	 * Every Message carries the 'sequenceSize'. When the split result is an
+	 * Iterator, its elements are buffered to count them before the first
+	 * Message is sent.
+	 */
+	ALL,
+
+	/**
+	 * Only the last Message carries the 'sequenceSize'; the other Messages
+	 * have a 'sequenceSize' of 0. Messages are sent while the split result is
+	 * being iterated, so Iterator results are never buffered.
+	 */
+	LAST,
+
+	/**
+	 * No Message carries the 'sequenceSize'; Messages are sent while the split
+	 * result is being iterated. Aggregating the Messages then requires a release
+	 * strategy that does not depend on the sequence size.
+	 */
+	NONE
+
+}
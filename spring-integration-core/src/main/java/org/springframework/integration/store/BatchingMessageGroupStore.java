@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.integration.store;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.integration.Message;
+
+/**
+ * A {@link MessageGroupStore} that can add and poll several messages of a group in a single
+ * operation, typically a single round trip to the underlying storage. {@link MessageGroupQueue}
+ * uses these operations for <code>addAll</code> and <code>drainTo</code> when its store
+ * implements this interface.
+ *
+ * @since 3.0
+ */
+public interface BatchingMessageGroupStore extends MessageGroupStore {
+
+	/**
+	 * Store the messages with an association to a group id, preserving the iteration order of
+	 * the provided collection.
+	 *
+	 * @param groupId the group id to store the messages under
+	 * @param messages the messages to store
+	 */
+	void addMessagesToGroup(Object groupId, Collection<? extends Message<?>> messages);
+
+	/**
+	 * Poll up to <code>maxMessages</code> messages from the group (in FIFO style if supported
+	 * by the implementation) while also removing the polled messages.
+	 *
+	 * @param groupId the group id to poll from
+	 * @param maxMessages the maximum number of messages to return
+	 * @return the polled messages; never null, empty if the group has no messages or
+	 * <code>maxMessages</code> is not positive
+	 */
+	List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages);
+
+}
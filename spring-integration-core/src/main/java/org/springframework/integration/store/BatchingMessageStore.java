@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.integration.store;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.integration.Message;
+
+/**
+ * A {@link MessageStore} that can add several messages in a single operation, typically a
+ * single round trip to the underlying storage. {@link CachingMessageStore} uses this
+ * operation to write pending messages when its backing store implements this interface.
+ *
+ * @since 3.0
+ */
+public interface BatchingMessageStore extends MessageStore {
+
+	/**
+	 * Put the provided messages into the MessageStore. Each message is stored as by
+	 * {@link #addMessage(Message)}.
+	 *
+	 * @param messages the messages to store
+	 * @return the messages as stored, in the iteration order of the provided collection
+	 */
+	List<Message<?>> addMessages(Collection<? extends Message<?>> messages);
+
+}
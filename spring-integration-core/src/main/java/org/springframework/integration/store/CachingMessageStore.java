@@ -0,0 +1,622 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.integration.Message;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link MessageStore} and {@link MessageGroupStore} that decorates another
+ * (usually persistent) store with a bounded in-memory cache of messages, for
+ * components such as the claim check transformers that read messages back
+ * shortly after writing them.
+ * <p>
+ * The cache holds up to {@link #setCapacity(int) capacity} messages, evicting
+ * the least recently used ones, and optionally expires them after a
+ * {@link #setTimeToLive(long) time to live}. Expired messages are removed by a
+ * background task, so that they do not stay in memory until they are read.
+ * <p>
+ * When a {@link #setWriteDelay(long) write delay} is set, messages added with
+ * {@link #addMessage(Message)} are written to the backing store by a background
+ * task, at the latest after about the write delay, or as soon as
+ * {@link #setWriteBatchSize(int) writeBatchSize} messages are pending. If the
+ * backing store is a {@link BatchingMessageStore}, they are written in batches of
+ * up to {@code writeBatchSize} messages, each in a single operation; otherwise
+ * they are written one at a time. Messages that are removed before they are
+ * written are never written at all. The write
+ * delay is the window during which messages are lost if the application fails,
+ * so it should only be used where that is acceptable. In that mode,
+ * {@link #addMessage(Message)} returns the provided message rather than the
+ * one returned by the backing store.
+ * <p>
+ * Message group operations are delegated to the backing store, which must then
+ * be a {@link MessageGroupStore}; messages added to or polled from groups are
+ * neither cached nor written behind.
+ *
+ * @since 3.0
+ */
+@ManagedResource
+public class CachingMessageStore implements MessageStore, MessageGroupStore, InitializingBean, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(CachingMessageStore.class);
+
+	private final MessageStore messageStore;
+
+	private final Lock lock = new ReentrantLock();
+
+	private final Map<UUID, CacheEntry> cache = new LinkedHashMap<UUID, CacheEntry>(16, 0.75f, true);
+
+	private final Map<UUID, Message<?>> pendingWrites = new LinkedHashMap<UUID, Message<?>>();
+
+	private final Map<UUID, Message<?>> inFlightWrites = new LinkedHashMap<UUID, Message<?>>();
+
+	/*
+	 * Held exclusively while a batch is written to the backing store, so that
+	 * removals of messages being written wait for the write to complete.
+	 */
+	private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	private final AtomicLong removals = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong flushes = new AtomicLong();
+
+	private final AtomicLong flushedMessages = new AtomicLong();
+
+	private final Runnable flushTask = new Runnable() {
+		public void run() {
+			try {
+				flush();
+			}
+			catch (RuntimeException e) {
+				logger.error("Failed to write pending messages to the backing store", e);
+			}
+		}
+	};
+
+	private final Runnable expiryTask = new Runnable() {
+		public void run() {
+			evictExpired();
+		}
+	};
+
+	private volatile int capacity = 1000;
+
+	private volatile long timeToLive;
+
+	private volatile long writeDelay;
+
+	private volatile int writeBatchSize = 100;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile ThreadPoolTaskScheduler ownTaskScheduler;
+
+	private volatile ScheduledFuture<?> flushFuture;
+
+	private volatile ScheduledFuture<?> expiryFuture;
+
+	private volatile boolean writeBehind;
+
+	public CachingMessageStore(MessageStore messageStore) {
+		Assert.notNull(messageStore, "'messageStore' must not be null");
+		this.messageStore = messageStore;
+	}
+
+	/**
+	 * The maximum number of messages held in the cache, not counting messages
+	 * that are waiting to be written. Default 1000.
+	 *
+	 * @param capacity the capacity
+	 */
+	public void setCapacity(int capacity) {
+		Assert.isTrue(capacity > 0, "'capacity' must be greater than 0");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * The time in milliseconds after which a cached message is evicted; 0 (the
+	 * default) means that messages are only evicted when the capacity is reached.
+	 * Expired messages are removed from memory within about twice the time to live.
+	 *
+	 * @param timeToLive the time to live
+	 */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive >= 0, "'timeToLive' must not be negative");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * The maximum time in milliseconds that added messages are held before being
+	 * written to the backing store; 0 (the default) writes them immediately.
+	 *
+	 * @param writeDelay the write delay
+	 */
+	public void setWriteDelay(long writeDelay) {
+		Assert.isTrue(writeDelay >= 0, "'writeDelay' must not be negative");
+		this.writeDelay = writeDelay;
+	}
+
+	/**
+	 * The number of pending messages that triggers a write to the backing store
+	 * before the write delay has elapsed. Default 100.
+	 *
+	 * @param writeBatchSize the batch size
+	 */
+	public void setWriteBatchSize(int writeBatchSize) {
+		Assert.isTrue(writeBatchSize > 0, "'writeBatchSize' must be greater than 0");
+		this.writeBatchSize = writeBatchSize;
+	}
+
+	/**
+	 * The scheduler used to write pending messages and evict expired ones. If not
+	 * set and a write delay or time to live is configured, a single threaded
+	 * scheduler is created.
+	 *
+	 * @param taskScheduler the task scheduler
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		Assert.notNull(taskScheduler, "'taskScheduler' must not be null");
+		this.taskScheduler = taskScheduler;
+	}
+
+	public void afterPropertiesSet() {
+		if ((this.writeDelay > 0 || this.timeToLive > 0) && this.taskScheduler == null) {
+			this.ownTaskScheduler = new ThreadPoolTaskScheduler();
+			this.ownTaskScheduler.setThreadNamePrefix("caching-message-store-");
+			this.ownTaskScheduler.initialize();
+			this.taskScheduler = this.ownTaskScheduler;
+		}
+		if (this.writeDelay > 0) {
+			this.flushFuture = this.taskScheduler.scheduleWithFixedDelay(this.flushTask, this.writeDelay);
+			this.writeBehind = true;
+		}
+		if (this.timeToLive > 0) {
+			this.expiryFuture = this.taskScheduler.scheduleWithFixedDelay(this.expiryTask, this.timeToLive);
+		}
+	}
+
+	/**
+	 * Write the pending messages and stop the background tasks.
+	 */
+	public void destroy() {
+		this.writeBehind = false;
+		if (this.flushFuture != null) {
+			this.flushFuture.cancel(false);
+		}
+		if (this.expiryFuture != null) {
+			this.expiryFuture.cancel(false);
+		}
+		this.flush();
+		if (this.ownTaskScheduler != null) {
+			this.ownTaskScheduler.shutdown();
+		}
+	}
+
+	public Message<?> getMessage(UUID id) {
+		long removalsBefore = this.removals.get();
+		this.lock.lock();
+		try {
+			Message<?> message = this.pendingWrites.get(id);
+			if (message == null) {
+				message = this.inFlightWrites.get(id);
+			}
+			if (message == null) {
+				CacheEntry entry = this.cache.get(id);
+				if (entry != null) {
+					if (entry.isExpired()) {
+						this.cache.remove(id);
+					}
+					else {
+						message = entry.message;
+					}
+				}
+			}
+			if (message != null) {
+				this.hits.incrementAndGet();
+				return message;
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+		this.misses.incrementAndGet();
+		Message<?> message = this.messageStore.getMessage(id);
+		// don't cache a message that may have been removed concurrently
+		if (message != null && this.removals.get() == removalsBefore) {
+			this.cache(message);
+		}
+		return message;
+	}
+
+	public <T> Message<T> addMessage(Message<T> message) {
+		if (this.writeBehind) {
+			int pending;
+			this.lock.lock();
+			try {
+				this.pendingWrites.put(message.getHeaders().getId(), message);
+				pending = this.pendingWrites.size();
+			}
+			finally {
+				this.lock.unlock();
+			}
+			if (pending >= this.writeBatchSize && this.flushScheduled.compareAndSet(false, true)) {
+				this.taskScheduler.schedule(this.flushTask, new Date());
+			}
+			return message;
+		}
+		Message<T> result = this.messageStore.addMessage(message);
+		this.cache(result);
+		return result;
+	}
+
+	public Message<?> removeMessage(UUID id) {
+		this.removals.incrementAndGet();
+		this.lock.lock();
+		try {
+			this.cache.remove(id);
+			Message<?> pendingMessage = this.pendingWrites.remove(id);
+			if (pendingMessage != null) {
+				return pendingMessage;
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+		this.flushLock.readLock().lock();
+		try {
+			// a flush that was writing the message has cached it again
+			this.lock.lock();
+			try {
+				this.cache.remove(id);
+			}
+			finally {
+				this.lock.unlock();
+			}
+			return this.messageStore.removeMessage(id);
+		}
+		finally {
+			this.flushLock.readLock().unlock();
+		}
+	}
+
+	@ManagedAttribute
+	public long getMessageCount() {
+		return this.messageStore.getMessageCount() + this.getPendingWriteCount();
+	}
+
+	/**
+	 * Write the pending messages to the backing store. If a write fails, the
+	 * messages that were not written are kept pending and written by the next flush.
+	 */
+	@ManagedOperation
+	public void flush() {
+		this.flushLock.writeLock().lock();
+		try {
+			List<Message<?>> batch;
+			this.lock.lock();
+			try {
+				this.flushScheduled.set(false);
+				if (this.pendingWrites.isEmpty()) {
+					return;
+				}
+				batch = new ArrayList<Message<?>>(this.pendingWrites.values());
+				this.inFlightWrites.putAll(this.pendingWrites);
+				this.pendingWrites.clear();
+			}
+			finally {
+				this.lock.unlock();
+			}
+			this.flushes.incrementAndGet();
+			int chunkSize = this.messageStore instanceof BatchingMessageStore ? this.writeBatchSize : 1;
+			int written = 0;
+			while (written < batch.size()) {
+				List<Message<?>> chunk = batch.subList(written, Math.min(written + chunkSize, batch.size()));
+				List<Message<?>> results;
+				try {
+					results = this.write(chunk);
+				}
+				catch (RuntimeException e) {
+					this.lock.lock();
+					try {
+						for (Message<?> unwritten : batch.subList(written, batch.size())) {
+							UUID id = unwritten.getHeaders().getId();
+							this.inFlightWrites.remove(id);
+							if (!this.pendingWrites.containsKey(id)) {
+								this.pendingWrites.put(id, unwritten);
+							}
+						}
+					}
+					finally {
+						this.lock.unlock();
+					}
+					throw e;
+				}
+				written += chunk.size();
+				this.flushedMessages.addAndGet(chunk.size());
+				this.lock.lock();
+				try {
+					for (Message<?> result : results) {
+						this.inFlightWrites.remove(result.getHeaders().getId());
+						this.doCache(result);
+					}
+				}
+				finally {
+					this.lock.unlock();
+				}
+			}
+		}
+		finally {
+			this.flushLock.writeLock().unlock();
+		}
+	}
+
+	private List<Message<?>> write(List<Message<?>> messages) {
+		if (this.messageStore instanceof BatchingMessageStore) {
+			return ((BatchingMessageStore) this.messageStore).addMessages(messages);
+		}
+		List<Message<?>> results = new ArrayList<Message<?>>(messages.size());
+		for (Message<?> message : messages) {
+			results.add(this.messageStore.addMessage(message));
+		}
+		return results;
+	}
+
+	/**
+	 * Remove the expired messages from the cache.
+	 */
+	private void evictExpired() {
+		this.lock.lock();
+		try {
+			Iterator<CacheEntry> iterator = this.cache.values().iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().isExpired()) {
+					iterator.remove();
+				}
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	@ManagedMetric
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	@ManagedMetric
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	@ManagedMetric
+	public long getFlushCount() {
+		return this.flushes.get();
+	}
+
+	@ManagedMetric
+	public long getFlushedMessageCount() {
+		return this.flushedMessages.get();
+	}
+
+	@ManagedMetric
+	public int getCacheSize() {
+		this.lock.lock();
+		try {
+			return this.cache.size();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	@ManagedMetric
+	public int getPendingWriteCount() {
+		this.lock.lock();
+		try {
+			return this.pendingWrites.size() + this.inFlightWrites.size();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	@ManagedAttribute
+	public int getMessageCountForAllMessageGroups() {
+		return this.getMessageGroupStore().getMessageCountForAllMessageGroups();
+	}
+
+	@ManagedAttribute
+	public int getMessageGroupCount() {
+		return this.getMessageGroupStore().getMessageGroupCount();
+	}
+
+	@ManagedAttribute
+	public int messageGroupSize(Object groupId) {
+		return this.getMessageGroupStore().messageGroupSize(groupId);
+	}
+
+	public MessageGroup getMessageGroup(Object groupId) {
+		return this.getMessageGroupStore().getMessageGroup(groupId);
+	}
+
+	/**
+	 * Add the message to the group in the backing store. If the message was added
+	 * with {@link #addMessage(Message)} and has not been written yet, it is written
+	 * first, and the message as written is added to the group.
+	 */
+	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+		UUID id = message.getHeaders().getId();
+		Message<?> pendingMessage;
+		boolean inFlight;
+		this.lock.lock();
+		try {
+			pendingMessage = this.pendingWrites.remove(id);
+			inFlight = this.inFlightWrites.containsKey(id);
+		}
+		finally {
+			this.lock.unlock();
+		}
+		this.flushLock.readLock().lock();
+		try {
+			Message<?> messageToAdd = message;
+			if (pendingMessage != null) {
+				messageToAdd = this.messageStore.addMessage(pendingMessage);
+				this.cache(messageToAdd);
+			}
+			else if (inFlight) {
+				this.lock.lock();
+				try {
+					CacheEntry entry = this.cache.get(id);
+					if (entry != null) {
+						messageToAdd = entry.message;
+					}
+				}
+				finally {
+					this.lock.unlock();
+				}
+			}
+			return this.getMessageGroupStore().addMessageToGroup(groupId, messageToAdd);
+		}
+		finally {
+			this.flushLock.readLock().unlock();
+		}
+	}
+
+	public MessageGroup removeMessageFromGroup(Object key, Message<?> messageToRemove) {
+		this.evict(messageToRemove.getHeaders().getId());
+		return this.getMessageGroupStore().removeMessageFromGroup(key, messageToRemove);
+	}
+
+	public void removeMessageGroup(Object groupId) {
+		this.getMessageGroupStore().removeMessageGroup(groupId);
+	}
+
+	public void registerMessageGroupExpiryCallback(MessageGroupCallback callback) {
+		this.getMessageGroupStore().registerMessageGroupExpiryCallback(callback);
+	}
+
+	public int expireMessageGroups(long timeout) {
+		return this.getMessageGroupStore().expireMessageGroups(timeout);
+	}
+
+	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+		this.getMessageGroupStore().setLastReleasedSequenceNumberForGroup(groupId, sequenceNumber);
+	}
+
+	public Iterator<MessageGroup> iterator() {
+		return this.getMessageGroupStore().iterator();
+	}
+
+	public Message<?> pollMessageFromGroup(Object groupId) {
+		Message<?> message = this.getMessageGroupStore().pollMessageFromGroup(groupId);
+		if (message != null) {
+			this.evict(message.getHeaders().getId());
+		}
+		return message;
+	}
+
+	public void completeGroup(Object groupId) {
+		this.getMessageGroupStore().completeGroup(groupId);
+	}
+
+	private MessageGroupStore getMessageGroupStore() {
+		Assert.state(this.messageStore instanceof MessageGroupStore,
+				"The backing store does not support message groups: " + this.messageStore);
+		return (MessageGroupStore) this.messageStore;
+	}
+
+	private void cache(Message<?> message) {
+		this.lock.lock();
+		try {
+			this.doCache(message);
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void doCache(Message<?> message) {
+		this.cache.put(message.getHeaders().getId(), new CacheEntry(message, this.timeToLive));
+		if (this.cache.size() > this.capacity) {
+			Iterator<CacheEntry> iterator = this.cache.values().iterator();
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	private void evict(UUID id) {
+		this.removals.incrementAndGet();
+		this.lock.lock();
+		try {
+			this.cache.remove(id);
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+
+	private static class CacheEntry {
+
+		private final Message<?> message;
+
+		private final long expiresAt;
+
+		private CacheEntry(Message<?> message, long timeToLive) {
+			this.message = message;
+			this.expiresAt = timeToLive > 0 ? System.currentTimeMillis() + timeToLive : Long.MAX_VALUE;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() > this.expiresAt;
+		}
+
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.List;
+
+import org.springframework.integration.Message;
+
+/**
+ * A {@link MessageGroupStore} that stores a due time with each message and can
+ * hand out the messages that have become due, so that delayed messages can be
+ * released by polling the store instead of being scheduled in memory. Several
+ * consumers, possibly on different nodes, may poll the same group: each due
+ * message is claimed by one of them, and is only handed out again if it is not
+ * removed from the group before the claim expires.
+ *
+ * @since 3.0
+ * @see org.springframework.integration.handler.DelayHandler#setReleasePollInterval(long)
+ */
+public interface DelayedMessageGroupStore extends MessageGroupStore {
+
+	/**
+	 * Store a message with an association to a group id and the time at which it
+	 * becomes due.
+	 *
+	 * @param groupId the group id to store the message under
+	 * @param message the message
+	 * @param dueTime the due time in milliseconds since the epoch
+	 */
+	void addMessageToGroup(Object groupId, Message<?> message, long dueTime);
+
+	/**
+	 * Claim up to <code>maxMessages</code> of the messages in the group whose due
+	 * time is not after <code>dueTime</code>, earliest first, skipping messages
+	 * claimed by others. The messages stay in the group; the caller removes each
+	 * of them with {@link #removeMessageFromGroup(Object, Message)} once processed.
+	 *
+	 * @param groupId the group id to poll from
+	 * @param dueTime the due time in milliseconds since the epoch, typically the current time
+	 * @param maxMessages the maximum number of messages to return
+	 * @return the claimed messages; never null, empty if no unclaimed message is due
+	 */
+	List<Message<?>> claimDueMessages(Object groupId, long dueTime, int maxMessages);
+
+}
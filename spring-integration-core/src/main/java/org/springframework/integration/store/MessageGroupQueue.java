@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -160,18 +160,26 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 
 	public int drainTo(Collection<? super Message<?>> collection, int maxElements) {
 		Assert.notNull(collection, "'collection' must not be null");
+		if (maxElements <= 0) {
+			return 0;
+		}
 		int originalSize = collection.size();
 		ArrayList<Message<?>> list = new ArrayList<Message<?>>();
 		final Lock storeLock = this.storeLock;
 		try {
 			storeLock.lockInterruptibly();
 			try {
-				Message<?> message = this.messageGroupStore.pollMessageFromGroup(groupId);
-				for (int i = 0; i < maxElements && message != null; i++) {
-					list.add(message);
-					message = this.messageGroupStore.pollMessageFromGroup(groupId);
+				if (this.messageGroupStore instanceof BatchingMessageGroupStore) {
+					list.addAll(((BatchingMessageGroupStore) this.messageGroupStore).pollMessagesFromGroup(groupId, maxElements));
+				}
+				else {
+					Message<?> message = this.messageGroupStore.pollMessageFromGroup(groupId);
+					for (int i = 0; i < maxElements && message != null; i++) {
+						list.add(message);
+						message = this.messageGroupStore.pollMessageFromGroup(groupId);
+					}
 				}
-				this.messageStoreNotFull.signal();
+				this.messageStoreNotFull.signalAll();
 			}
 			finally {
 				storeLock.unlock();
@@ -185,6 +193,39 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		return collection.size() - originalSize;
 	}
 
+	/**
+	 * Adds all of the messages to the queue. If the store is a {@link BatchingMessageGroupStore}
+	 * and the queue is unbounded, the messages are stored in a single operation; otherwise they
+	 * are added one at a time as specified by {@link AbstractQueue#addAll(Collection)}.
+	 */
+	@Override
+	public boolean addAll(Collection<? extends Message<?>> messages) {
+		if (!(this.messageGroupStore instanceof BatchingMessageGroupStore) || this.capacity != Integer.MAX_VALUE) {
+			return super.addAll(messages);
+		}
+		Assert.notNull(messages, "'messages' must not be null");
+		Assert.isTrue(messages != this, "A queue cannot be added to itself");
+		if (messages.isEmpty()) {
+			return false;
+		}
+		final Lock storeLock = this.storeLock;
+		try {
+			storeLock.lockInterruptibly();
+			try {
+				((BatchingMessageGroupStore) this.messageGroupStore).addMessagesToGroup(groupId, messages);
+				this.messageStoreNotEmpty.signalAll();
+			}
+			finally {
+				storeLock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return true;
+	}
+
 	public boolean offer(Message<?> message) {
 		boolean offered = true;
 		final Lock storeLock = this.storeLock;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -13,16 +13,27 @@
 
 package org.springframework.integration.store;
 
+import java.util.AbstractList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.RandomAccess;
 
 import org.springframework.integration.Message;
 
 /**
  * Represents a mutable group of correlated messages that is bound to a certain {@link MessageStore} and group id. The
- * group will grow during its lifetime, when messages are <code>add</code>ed to it. This MessageGroup is thread safe.
+ * group will grow during its lifetime, when messages are <code>add</code>ed to it.
+ * <p>
+ * Messages are held in a plain array rather than in a concurrent queue so that an idle group costs only a handful of
+ * fields; this keeps the footprint low for aggregators that hold very large numbers of small groups. The group
+ * itself is therefore not safe for concurrent modification - stores that share a group between threads (such as
+ * {@link SimpleMessageStore}) must guard it with their group lock. The collection returned by {@link #getMessages()}
+ * is an immutable snapshot, and copies made with {@link #SimpleMessageGroup(MessageGroup)} share the message array
+ * with the original until either of them is modified, so taking a copy of a group is cheap.
+ * <p>
+ * The {@link #getSequenceSize() sequence size} is the first non-zero 'sequenceSize' header of the messages added to
+ * the group, so that it is known once any message carries it; a streaming splitter may only set it on the last
+ * message of a sequence.
  *
  * @author Iwein Fuld
  * @author Oleg Zhurakousky
@@ -32,9 +43,29 @@ import org.springframework.integration.Message;
  */
 public class SimpleMessageGroup implements MessageGroup {
 
+	private static final Message<?>[] EMPTY_MESSAGES = new Message<?>[0];
+
+	private static final int MINIMUM_CAPACITY = 4;
+
 	private final Object groupId;
 
-	public final BlockingQueue<Message<?>> messages = new LinkedBlockingQueue<Message<?>>();
+	/*
+	 * The live messages are messages[head] to messages[head + size - 1]. Removing the first message
+	 * only advances 'head' so that draining a group in arrival order does not shift the array.
+	 */
+	private Message<?>[] messages = EMPTY_MESSAGES;
+
+	private int head;
+
+	private int size;
+
+	/*
+	 * Set when the array may be referenced by a snapshot or by a copy of this group; the next
+	 * modification then works on a private copy of the array.
+	 */
+	private boolean shared;
+
+	private int sequenceSize;
 
 	private volatile int lastReleasedMessageSequence;
 
@@ -56,15 +87,34 @@ public class SimpleMessageGroup implements MessageGroup {
 		this.groupId = groupId;
 		this.timestamp = timestamp;
 		this.complete = complete;
-		for (Message<?> message : messages) {
-			if (message != null){ //see INT-2666
-				addMessage(message);
+		if (!messages.isEmpty()) {
+			this.messages = new Message<?>[messages.size()];
+			for (Message<?> message : messages) {
+				if (message != null){ //see INT-2666
+					this.messages[this.size++] = message;
+					this.updateSequenceSize(message);
+				}
 			}
 		}
 	}
 
+	/**
+	 * Create a copy of the provided group. When the provided group is a {@link SimpleMessageGroup}
+	 * the message array is shared rather than copied; it is copied lazily by whichever group is
+	 * modified first.
+	 */
 	public SimpleMessageGroup(MessageGroup messageGroup) {
-		this(messageGroup.getMessages(), messageGroup.getGroupId(), messageGroup.getTimestamp(), messageGroup.isComplete());
+		this(messageGroup instanceof SimpleMessageGroup ? Collections.<Message<?>> emptyList() : messageGroup.getMessages(),
+				messageGroup.getGroupId(), messageGroup.getTimestamp(), messageGroup.isComplete());
+		if (messageGroup instanceof SimpleMessageGroup) {
+			SimpleMessageGroup template = (SimpleMessageGroup) messageGroup;
+			template.shared = true;
+			this.messages = template.messages;
+			this.head = template.head;
+			this.size = template.size;
+			this.sequenceSize = template.sequenceSize;
+			this.shared = true;
+		}
 	}
 
 	public long getTimestamp() {
@@ -88,7 +138,29 @@ public class SimpleMessageGroup implements MessageGroup {
 	}
 
 	public void remove(Message<?> message) {
-		messages.remove(message);
+		int index = this.indexOf(message);
+		if (index < 0) {
+			return;
+		}
+		if (index == this.head) {
+			if (!this.shared) {
+				this.messages[index] = null;
+			}
+			this.head++;
+		}
+		else {
+			if (this.shared) {
+				index -= this.head;
+				this.unshare(this.size);
+			}
+			int tail = this.head + this.size - 1;
+			System.arraycopy(this.messages, index + 1, this.messages, index, tail - index);
+			this.messages[tail] = null;
+		}
+		this.size--;
+		if (this.size == 0) {
+			this.clear();
+		}
 	}
 
 	public int getLastReleasedMessageSequenceNumber() {
@@ -96,11 +168,29 @@ public class SimpleMessageGroup implements MessageGroup {
 	}
 
 	private boolean addMessage(Message<?> message) {
-		return this.messages.offer(message);
+		int end = this.head + this.size;
+		if (this.shared || end == this.messages.length) {
+			this.unshare(this.size + 1);
+			end = this.size;
+		}
+		this.messages[end] = message;
+		this.size++;
+		this.updateSequenceSize(message);
+		return true;
+	}
+
+	private void updateSequenceSize(Message<?> message) {
+		if (this.sequenceSize == 0 && message.getHeaders() != null) {
+			this.sequenceSize = message.getHeaders().getSequenceSize();
+		}
 	}
 
 	public Collection<Message<?>> getMessages() {
-		return Collections.unmodifiableCollection(messages);
+		if (this.size == 0) {
+			return Collections.emptyList();
+		}
+		this.shared = true;
+		return new MessageArrayList(this.messages, this.head, this.size);
 	}
 
 	public void setLastReleasedMessageSequenceNumber(int sequenceNumber){
@@ -123,29 +213,91 @@ public class SimpleMessageGroup implements MessageGroup {
 		if (size() == 0) {
 			return 0;
 		}
-		return getOne().getHeaders().getSequenceSize();
+		return this.sequenceSize;
 	}
 
 	public int size() {
-		return this.messages.size();
+		return this.size;
 	}
 
 	public Message<?> getOne() {
-		Message<?> one = messages.peek();
-		return one;
+		return (this.size > 0) ? this.messages[this.head] : null;
 	}
 
 	public void clear(){
-		this.messages.clear();
+		this.messages = EMPTY_MESSAGES;
+		this.head = 0;
+		this.size = 0;
+		this.sequenceSize = 0;
+		this.shared = false;
+	}
+
+	private int indexOf(Message<?> message) {
+		int end = this.head + this.size;
+		for (int i = this.head; i < end; i++) {
+			if (this.messages[i].equals(message)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Move the live messages to the start of a private array with room for at least
+	 * the requested number of messages.
+	 */
+	private void unshare(int requiredCapacity) {
+		int capacity = this.messages.length;
+		if (capacity < requiredCapacity) {
+			capacity = Math.max(MINIMUM_CAPACITY, Math.max(requiredCapacity, capacity + (capacity >> 1)));
+		}
+		Message<?>[] copy = new Message<?>[capacity];
+		System.arraycopy(this.messages, this.head, copy, 0, this.size);
+		this.messages = copy;
+		this.head = 0;
+		this.shared = false;
 	}
 
 	@Override
 	public String toString() {
 		return "SimpleMessageGroup{" +
 				"groupId=" + groupId +
-				", messages=" + messages +
+				", messages=" + getMessages() +
 				", timestamp=" + timestamp +
 				", lastModified=" + lastModified +
 				'}';
 	}
-}
\ No newline at end of file
+
+
+	/**
+	 * Read-only view of a range of a message array that is never modified in place while shared.
+	 */
+	private static class MessageArrayList extends AbstractList<Message<?>> implements RandomAccess {
+
+		private final Message<?>[] messages;
+
+		private final int offset;
+
+		private final int size;
+
+		MessageArrayList(Message<?>[] messages, int offset, int size) {
+			this.messages = messages;
+			this.offset = offset;
+			this.size = size;
+		}
+
+		@Override
+		public Message<?> get(int index) {
+			if (index < 0 || index >= this.size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+			}
+			return this.messages[this.offset + index];
+		}
+
+		@Override
+		public int size() {
+			return this.size;
+		}
+	}
+
+}
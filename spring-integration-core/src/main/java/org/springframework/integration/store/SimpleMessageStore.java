@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -13,9 +13,10 @@
 
 package org.springframework.integration.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -29,7 +30,6 @@ import org.springframework.integration.util.UpperBound;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.util.Assert;
-import org.springframework.util.CollectionUtils;
 
 /**
  * Map-based in-memory implementation of {@link MessageStore} and {@link MessageGroupStore}. Enforces a maximum capacity for the
@@ -44,7 +44,7 @@ import org.springframework.util.CollectionUtils;
  * @since 2.0
  */
 @ManagedResource
-public class SimpleMessageStore extends AbstractMessageGroupStore implements MessageStore, MessageGroupStore {
+public class SimpleMessageStore extends AbstractMessageGroupStore implements MessageStore, BatchingMessageGroupStore {
 
 	private volatile LockRegistry lockRegistry;
 
@@ -131,16 +131,32 @@ public class SimpleMessageStore extends AbstractMessageGroupStore implements Mes
 			return null;
 	}
 
+	/**
+	 * Returns a copy of the group that is isolated from subsequent changes to the stored group.
+	 * The copy shares the message array with the stored group until either of them is modified,
+	 * so obtaining it does not copy the messages.
+	 */
 	public MessageGroup getMessageGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
 
-		SimpleMessageGroup group = groupIdToMessageGroup.get(groupId);
-		if (group == null) {
-			return new SimpleMessageGroup(groupId);
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+			try {
+				SimpleMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+				if (group == null) {
+					return new SimpleMessageGroup(groupId);
+				}
+				return this.copyOf(group);
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
 		}
-		SimpleMessageGroup simpleMessageGroup = new SimpleMessageGroup(group);
-		simpleMessageGroup.setLastModified(group.getLastModified());
-		return simpleMessageGroup;
 	}
 
 	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
@@ -158,8 +174,37 @@ public class SimpleMessageStore extends AbstractMessageGroupStore implements Mes
 					this.groupIdToMessageGroup.putIfAbsent(groupId, group);
 				}
 				group.add(message);
-				this.groupIdToMessageGroup.get(groupId).setLastModified(System.currentTimeMillis());
-				return group;
+				group.setLastModified(System.currentTimeMillis());
+				return this.copyOf(group);
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
+	}
+
+	public void addMessagesToGroup(Object groupId, Collection<? extends Message<?>> messages) {
+		if (!groupUpperBound.tryAcquire(messages.size(), 0)) {
+			throw new MessagingException(this.getClass().getSimpleName()
+					+ " was out of capacity at, try constructing it with a larger capacity.");
+		}
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+			try {
+				SimpleMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+				if (group == null) {
+					group = new SimpleMessageGroup(groupId);
+					this.groupIdToMessageGroup.putIfAbsent(groupId, group);
+				}
+				for (Message<?> message : messages) {
+					group.add(message);
+				}
+				group.setLastModified(System.currentTimeMillis());
 			}
 			finally {
 				lock.unlock();
@@ -203,7 +248,7 @@ public class SimpleMessageStore extends AbstractMessageGroupStore implements Mes
 						"can not be located while attempting to remove Message from the MessageGroup");
 				group.remove(messageToRemove);
 				group.setLastModified(System.currentTimeMillis());
-				return group;
+				return this.copyOf(group);
 			}
 			finally {
 				lock.unlock();
@@ -216,7 +261,27 @@ public class SimpleMessageStore extends AbstractMessageGroupStore implements Mes
 	}
 
 	public Iterator<MessageGroup> iterator() {
-		return new HashSet<MessageGroup>(groupIdToMessageGroup.values()).iterator();
+		List<MessageGroup> groups = new ArrayList<MessageGroup>(this.groupIdToMessageGroup.size());
+		for (Object groupId : this.groupIdToMessageGroup.keySet()) {
+			Lock lock = this.lockRegistry.obtain(groupId);
+			try {
+				lock.lockInterruptibly();
+				try {
+					SimpleMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+					if (group != null) {
+						groups.add(this.copyOf(group));
+					}
+				}
+				finally {
+					lock.unlock();
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MessagingException("Interrupted while obtaining lock", e);
+			}
+		}
+		return groups.iterator();
 	}
 
 	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
@@ -262,18 +327,84 @@ public class SimpleMessageStore extends AbstractMessageGroupStore implements Mes
 	}
 
 	public Message<?> pollMessageFromGroup(Object groupId) {
-		Collection<Message<?>> messageList = this.getMessageGroup(groupId).getMessages();
-		Message<?> message = null;
-		if (!CollectionUtils.isEmpty(messageList)){
-			message = messageList.iterator().next();
-			if (message != null){
-				this.removeMessageFromGroup(groupId, message);
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+			try {
+				SimpleMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+				if (group == null) {
+					return null;
+				}
+				Message<?> message = group.getOne();
+				if (message != null) {
+					group.remove(message);
+					group.setLastModified(System.currentTimeMillis());
+				}
+				return message;
+			}
+			finally {
+				lock.unlock();
 			}
 		}
-		return message;
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
+	}
+
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+			try {
+				SimpleMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+				if (group == null || group.size() == 0) {
+					return new ArrayList<Message<?>>();
+				}
+				List<Message<?>> messages = new ArrayList<Message<?>>(Math.min(maxMessages, group.size()));
+				while (messages.size() < maxMessages && group.size() > 0) {
+					Message<?> message = group.getOne();
+					group.remove(message);
+					messages.add(message);
+				}
+				group.setLastModified(System.currentTimeMillis());
+				return messages;
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
 	}
 
 	public int messageGroupSize(Object groupId) {
-		return this.getMessageGroup(groupId).size();
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+			try {
+				SimpleMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+				return (group != null) ? group.size() : 0;
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
+	}
+
+	/**
+	 * Must be called while holding the lock for the group.
+	 */
+	private SimpleMessageGroup copyOf(SimpleMessageGroup group) {
+		SimpleMessageGroup copy = new SimpleMessageGroup(group);
+		copy.setLastModified(group.getLastModified());
+		copy.setLastReleasedMessageSequenceNumber(group.getLastReleasedMessageSequenceNumber());
+		return copy;
 	}
 }
@@ -0,0 +1,458 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * A compact, versioned binary format for {@link Message}s, usable wherever a
+ * message store accepts a {@link Serializer} and {@link Deserializer}.
+ * <p>
+ * Instead of serializing the whole message with Java serialization, the id
+ * and timestamp are written as fixed-size fields, well-known header names are
+ * written as a small index into a dictionary, and common header and payload
+ * types (String, byte[], Integer, Long, Boolean, UUID) are written directly.
+ * Other {@link Serializable} values fall back to Java serialization, and
+ * header values that are not Serializable are dropped, as they are by Java
+ * serialization of {@link MessageHeaders}. Additional payload types can be
+ * supported with {@link PayloadCodec}s.
+ * <p>
+ * Each message starts with {@link #MAGIC} and the format version. Data written
+ * with Java serialization (for example by a store that previously used the
+ * default serializer) is recognized and read as before.
+ *
+ * @since 3.0
+ */
+public class CompactMessageSerializer implements Serializer<Message<?>>, Deserializer<Message<?>> {
+
+	/**
+	 * The first byte of every message written by this serializer.
+	 */
+	public static final byte MAGIC = (byte) 0xB1;
+
+	/**
+	 * The version of the format written by this serializer.
+	 */
+	public static final int VERSION = 1;
+
+	public static final int MIN_CUSTOM_TYPE_ID = 32;
+
+	public static final int MAX_CUSTOM_TYPE_ID = 127;
+
+	/*
+	 * Header names that are written as an index into this array (index + 1, as 0
+	 * denotes a literal name). Entries must only ever be appended; removing or
+	 * reordering them requires a new format version.
+	 */
+	private static final String[] WELL_KNOWN_HEADERS = new String[] {
+		MessageHeaders.CORRELATION_ID,
+		MessageHeaders.REPLY_CHANNEL,
+		MessageHeaders.ERROR_CHANNEL,
+		MessageHeaders.EXPIRATION_DATE,
+		MessageHeaders.PRIORITY,
+		MessageHeaders.SEQUENCE_NUMBER,
+		MessageHeaders.SEQUENCE_SIZE,
+		MessageHeaders.SEQUENCE_DETAILS,
+		MessageHeaders.CONTENT_TYPE,
+		MessageHeaders.POSTPROCESS_RESULT,
+		MessageHistory.HEADER_NAME,
+		// headers added by the JDBC message stores
+		"JdbcMessageStore.SAVED",
+		"JdbcMessageStore.CREATED_DATE",
+		"JdbcChannelMessageStore.SAVED",
+		"JdbcChannelMessageStore.CREATED_DATE"
+	};
+
+	private static final Map<String, Integer> WELL_KNOWN_HEADER_INDEXES = new HashMap<String, Integer>();
+
+	static {
+		for (int i = 0; i < WELL_KNOWN_HEADERS.length; i++) {
+			WELL_KNOWN_HEADER_INDEXES.put(WELL_KNOWN_HEADERS[i], i + 1);
+		}
+	}
+
+	private static final byte JAVA_SERIALIZATION_MAGIC = (byte) 0xAC;
+
+	private static final int KIND_GENERIC = 0;
+
+	private static final int KIND_ERROR = 1;
+
+	private static final int KIND_SERIALIZED = 2;
+
+	private static final int TYPE_NULL = 0;
+
+	private static final int TYPE_STRING = 1;
+
+	private static final int TYPE_BYTES = 2;
+
+	private static final int TYPE_INTEGER = 3;
+
+	private static final int TYPE_LONG = 4;
+
+	private static final int TYPE_BOOLEAN = 5;
+
+	private static final int TYPE_UUID = 6;
+
+	private static final int TYPE_SERIALIZABLE = 7;
+
+	private static final Field HEADERS_FIELD = ReflectionUtils.findField(MessageHeaders.class, "headers");
+
+	static {
+		ReflectionUtils.makeAccessible(HEADERS_FIELD);
+	}
+
+	private volatile List<PayloadCodec> payloadCodecs = new ArrayList<PayloadCodec>();
+
+	private volatile PayloadCodec[] payloadCodecsByTypeId = new PayloadCodec[MAX_CUSTOM_TYPE_ID + 1];
+
+	/**
+	 * Set the {@link PayloadCodec}s to use for payloads. They are consulted in
+	 * order, before the built-in encodings, so they can also replace the encoding
+	 * of String or byte[] payloads.
+	 *
+	 * @param payloadCodecs the codecs
+	 */
+	public void setPayloadCodecs(List<PayloadCodec> payloadCodecs) {
+		Assert.notNull(payloadCodecs, "'payloadCodecs' must not be null");
+		PayloadCodec[] codecsByTypeId = new PayloadCodec[MAX_CUSTOM_TYPE_ID + 1];
+		for (PayloadCodec codec : payloadCodecs) {
+			int typeId = codec.getTypeId();
+			Assert.isTrue(typeId >= MIN_CUSTOM_TYPE_ID && typeId <= MAX_CUSTOM_TYPE_ID,
+					"The type id of a PayloadCodec must be between " + MIN_CUSTOM_TYPE_ID + " and " + MAX_CUSTOM_TYPE_ID);
+			Assert.isNull(codecsByTypeId[typeId], "Duplicate PayloadCodec type id: " + typeId);
+			codecsByTypeId[typeId] = codec;
+		}
+		this.payloadCodecs = new ArrayList<PayloadCodec>(payloadCodecs);
+		this.payloadCodecsByTypeId = codecsByTypeId;
+	}
+
+	public void serialize(Message<?> message, OutputStream outputStream) throws IOException {
+		DataOutputStream out = new DataOutputStream(outputStream);
+		out.writeByte(MAGIC);
+		out.writeByte(VERSION);
+
+		int kind = messageKind(message);
+		out.writeByte(kind);
+		if (kind == KIND_SERIALIZED) {
+			writeSerializable(message, out);
+			out.flush();
+			return;
+		}
+
+		MessageHeaders headers = message.getHeaders();
+		UUID id = headers.getId();
+		out.writeLong(id.getMostSignificantBits());
+		out.writeLong(id.getLeastSignificantBits());
+		out.writeLong(headers.getTimestamp());
+
+		int headerCount = 0;
+		for (Map.Entry<String, Object> header : headers.entrySet()) {
+			if (isWrittenHeader(header)) {
+				headerCount++;
+			}
+		}
+		writeVarInt(headerCount, out);
+		for (Map.Entry<String, Object> header : headers.entrySet()) {
+			if (isWrittenHeader(header)) {
+				Integer index = WELL_KNOWN_HEADER_INDEXES.get(header.getKey());
+				if (index != null) {
+					writeVarInt(index, out);
+				}
+				else {
+					writeVarInt(0, out);
+					writeString(header.getKey(), out);
+				}
+				writeValue(header.getValue(), out);
+			}
+		}
+
+		writePayload(message.getPayload(), out);
+		out.flush();
+	}
+
+	public Message<?> deserialize(InputStream inputStream) throws IOException {
+		PushbackInputStream pushbackInputStream = new PushbackInputStream(inputStream, 1);
+		int first = pushbackInputStream.read();
+		if (first < 0) {
+			throw new EOFException("No message data");
+		}
+		if ((byte) first == JAVA_SERIALIZATION_MAGIC) {
+			pushbackInputStream.unread(first);
+			return (Message<?>) readObject(new ObjectInputStream(pushbackInputStream));
+		}
+		if ((byte) first != MAGIC) {
+			throw new IOException("Unknown message format: " + first);
+		}
+
+		DataInputStream in = new DataInputStream(pushbackInputStream);
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported message format version: " + version);
+		}
+
+		int kind = in.readUnsignedByte();
+		if (kind == KIND_SERIALIZED) {
+			return (Message<?>) readSerializable(in);
+		}
+
+		UUID id = new UUID(in.readLong(), in.readLong());
+		Long timestamp = in.readLong();
+
+		int headerCount = readVarInt(in);
+		Map<String, Object> headers = new HashMap<String, Object>(headerCount + 2);
+		for (int i = 0; i < headerCount; i++) {
+			int index = readVarInt(in);
+			String key;
+			if (index == 0) {
+				key = readString(in);
+			}
+			else if (index <= WELL_KNOWN_HEADERS.length) {
+				key = WELL_KNOWN_HEADERS[index - 1];
+			}
+			else {
+				throw new IOException("Unknown header index: " + index);
+			}
+			headers.put(key, readValue(in));
+		}
+
+		Object payload = readPayload(in);
+
+		Message<?> message;
+		if (kind == KIND_ERROR) {
+			message = new ErrorMessage((Throwable) payload, headers);
+		}
+		else if (kind == KIND_GENERIC) {
+			message = new GenericMessage<Object>(payload, headers);
+		}
+		else {
+			throw new IOException("Unknown message kind: " + kind);
+		}
+		// the id and timestamp are immutable through MessageHeaders
+		@SuppressWarnings("unchecked")
+		Map<String, Object> innerMap = (Map<String, Object>) ReflectionUtils.getField(HEADERS_FIELD, message.getHeaders());
+		innerMap.put(MessageHeaders.ID, id);
+		innerMap.put(MessageHeaders.TIMESTAMP, timestamp);
+		return message;
+	}
+
+	private int messageKind(Message<?> message) {
+		Class<?> messageClass = message.getClass();
+		if (messageClass == GenericMessage.class) {
+			return KIND_GENERIC;
+		}
+		if (messageClass == ErrorMessage.class) {
+			return KIND_ERROR;
+		}
+		return KIND_SERIALIZED;
+	}
+
+	private boolean isWrittenHeader(Map.Entry<String, Object> header) {
+		String key = header.getKey();
+		Object value = header.getValue();
+		return !MessageHeaders.ID.equals(key) && !MessageHeaders.TIMESTAMP.equals(key)
+				&& (value == null || value instanceof Serializable);
+	}
+
+	private void writePayload(Object payload, DataOutputStream out) throws IOException {
+		if (payload != null) {
+			for (PayloadCodec codec : this.payloadCodecs) {
+				if (codec.canEncode(payload)) {
+					out.writeByte(codec.getTypeId());
+					codec.encode(payload, out);
+					return;
+				}
+			}
+			if (!(payload instanceof Serializable)) {
+				throw new NotSerializableException(payload.getClass().getName());
+			}
+		}
+		writeValue(payload, out);
+	}
+
+	private Object readPayload(DataInputStream in) throws IOException {
+		int type = in.readUnsignedByte();
+		if (type >= MIN_CUSTOM_TYPE_ID) {
+			PayloadCodec codec = type <= MAX_CUSTOM_TYPE_ID ? this.payloadCodecsByTypeId[type] : null;
+			if (codec == null) {
+				throw new IOException("No PayloadCodec registered for type id: " + type);
+			}
+			return codec.decode(in);
+		}
+		return readValue(type, in);
+	}
+
+	private void writeValue(Object value, DataOutputStream out) throws IOException {
+		if (value == null) {
+			out.writeByte(TYPE_NULL);
+		}
+		else if (value instanceof String) {
+			out.writeByte(TYPE_STRING);
+			writeString((String) value, out);
+		}
+		else if (value instanceof byte[]) {
+			out.writeByte(TYPE_BYTES);
+			writeBytes((byte[]) value, out);
+		}
+		else if (value instanceof Integer) {
+			out.writeByte(TYPE_INTEGER);
+			int intValue = (Integer) value;
+			writeVarInt((intValue << 1) ^ (intValue >> 31), out);
+		}
+		else if (value instanceof Long) {
+			out.writeByte(TYPE_LONG);
+			out.writeLong((Long) value);
+		}
+		else if (value instanceof Boolean) {
+			out.writeByte(TYPE_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof UUID) {
+			out.writeByte(TYPE_UUID);
+			out.writeLong(((UUID) value).getMostSignificantBits());
+			out.writeLong(((UUID) value).getLeastSignificantBits());
+		}
+		else {
+			out.writeByte(TYPE_SERIALIZABLE);
+			writeSerializable(value, out);
+		}
+	}
+
+	private Object readValue(DataInputStream in) throws IOException {
+		return readValue(in.readUnsignedByte(), in);
+	}
+
+	private Object readValue(int type, DataInputStream in) throws IOException {
+		switch (type) {
+			case TYPE_NULL:
+				return null;
+			case TYPE_STRING:
+				return readString(in);
+			case TYPE_BYTES:
+				return readBytes(in);
+			case TYPE_INTEGER:
+				int zigZag = readVarInt(in);
+				return (zigZag >>> 1) ^ -(zigZag & 1);
+			case TYPE_LONG:
+				return in.readLong();
+			case TYPE_BOOLEAN:
+				return in.readBoolean();
+			case TYPE_UUID:
+				return new UUID(in.readLong(), in.readLong());
+			case TYPE_SERIALIZABLE:
+				return readSerializable(in);
+			default:
+				throw new IOException("Unknown value type: " + type);
+		}
+	}
+
+	private void writeSerializable(Object value, DataOutputStream out) throws IOException {
+		// length-prefixed, as ObjectInputStream may read ahead of the object
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes);
+		objectOutputStream.writeObject(value);
+		objectOutputStream.flush();
+		writeVarInt(bytes.size(), out);
+		bytes.writeTo(out);
+	}
+
+	private Object readSerializable(DataInputStream in) throws IOException {
+		return readObject(new ObjectInputStream(new ByteArrayInputStream(readBytes(in))));
+	}
+
+	private Object readObject(ObjectInputStream objectInputStream) throws IOException {
+		try {
+			return objectInputStream.readObject();
+		}
+		catch (ClassNotFoundException e) {
+			IOException exception = new IOException("Failed to deserialize object type");
+			exception.initCause(e);
+			throw exception;
+		}
+	}
+
+	private void writeString(String value, DataOutputStream out) throws IOException {
+		writeBytes(value.getBytes("UTF-8"), out);
+	}
+
+	private String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in), "UTF-8");
+	}
+
+	private void writeBytes(byte[] value, DataOutputStream out) throws IOException {
+		writeVarInt(value.length, out);
+		out.write(value);
+	}
+
+	private byte[] readBytes(DataInputStream in) throws IOException {
+		int length = readVarInt(in);
+		if (length < 0) {
+			throw new IOException("Invalid length: " + length);
+		}
+		byte[] value = new byte[length];
+		in.readFully(value);
+		return value;
+	}
+
+	private static void writeVarInt(int value, DataOutputStream out) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length integer");
+	}
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.serializer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Strategy for encoding message payloads of a particular type with the
+ * {@link CompactMessageSerializer}. The type id is written in front of the
+ * encoded payload and is used to select the codec when the message is read,
+ * so it must remain stable for as long as stored messages may be read.
+ *
+ * @since 3.0
+ */
+public interface PayloadCodec {
+
+	/**
+	 * @return the id written in front of payloads encoded by this codec; must be
+	 * between {@link CompactMessageSerializer#MIN_CUSTOM_TYPE_ID} and
+	 * {@link CompactMessageSerializer#MAX_CUSTOM_TYPE_ID}.
+	 */
+	int getTypeId();
+
+	/**
+	 * @param payload the payload, never null
+	 * @return true if this codec can encode the payload
+	 */
+	boolean canEncode(Object payload);
+
+	/**
+	 * Write the payload. The codec is responsible for writing enough information
+	 * (for example a length) to read the payload back without consuming any
+	 * further bytes.
+	 *
+	 * @param payload the payload
+	 * @param out the stream to write to
+	 * @throws IOException
+	 */
+	void encode(Object payload, DataOutputStream out) throws IOException;
+
+	/**
+	 * Read a payload written by {@link #encode(Object, DataOutputStream)}.
+	 *
+	 * @param in the stream to read from
+	 * @return the payload
+	 * @throws IOException
+	 */
+	Object decode(DataInputStream in) throws IOException;
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Provides classes supporting the serialization of messages for persistent stores.
+ */
+package org.springframework.integration.support.serializer;
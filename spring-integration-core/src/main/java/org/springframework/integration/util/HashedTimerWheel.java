@@ -0,0 +1,325 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
+
+/**
+ * A hashed timer wheel: items are placed in one of a fixed number of buckets
+ * according to the tick in which they become due, and a single task, run
+ * once per tick on a {@link TaskScheduler}, hands all items that are due to
+ * the {@link ExpiryCallback} as one batch.
+ * <p>
+ * Scheduling an item is O(1) and only contends with other items that fall
+ * into the same bucket; each pending item costs one small entry rather than
+ * a scheduled task. The price is precision: items are released at the
+ * first tick boundary at or after their due time, so the tick duration is
+ * the resolution of the wheel.
+ *
+ * @since 3.0
+ */
+public class HashedTimerWheel<T> {
+
+	public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+	protected final Log logger = LogFactory.getLog(this.getClass());
+
+	private final long tickDuration;
+
+	private final Bucket<T>[] buckets;
+
+	private final int mask;
+
+	private final ExpiryCallback<T> callback;
+
+	private final Queue<Entry<T>> overdue = new ConcurrentLinkedQueue<Entry<T>>();
+
+	private final Object tickMonitor = new Object();
+
+	private final AtomicInteger pendingCount = new AtomicInteger();
+
+	private final AtomicLong releasedCount = new AtomicLong();
+
+	private final AtomicLong totalLag = new AtomicLong();
+
+	private final AtomicLong maxLag = new AtomicLong();
+
+	private volatile long lastTick;
+
+	private volatile long lastTickTime;
+
+	private volatile long lastTickLag;
+
+	private volatile ScheduledFuture<?> tickTask;
+
+	/**
+	 * Create a wheel with {@value #DEFAULT_TICKS_PER_WHEEL} buckets.
+	 * @param tickDuration the duration of one tick in milliseconds.
+	 * @param callback the callback that receives the items due in each tick.
+	 */
+	public HashedTimerWheel(long tickDuration, ExpiryCallback<T> callback) {
+		this(tickDuration, DEFAULT_TICKS_PER_WHEEL, callback);
+	}
+
+	/**
+	 * Create a wheel with the given number of buckets, rounded up to a power of two.
+	 * The wheel covers 'tickDuration * ticksPerWheel' milliseconds per revolution;
+	 * items due further in the future stay in their bucket for more revolutions.
+	 * @param tickDuration the duration of one tick in milliseconds.
+	 * @param ticksPerWheel the number of buckets.
+	 * @param callback the callback that receives the items due in each tick.
+	 */
+	public HashedTimerWheel(long tickDuration, int ticksPerWheel, ExpiryCallback<T> callback) {
+		Assert.isTrue(tickDuration > 0, "'tickDuration' must be greater than 0");
+		Assert.isTrue(ticksPerWheel > 0 && ticksPerWheel <= 1 << 30, "'ticksPerWheel' must be between 1 and 2^30");
+		Assert.notNull(callback, "'callback' must not be null");
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.tickDuration = tickDuration;
+		@SuppressWarnings("unchecked")
+		Bucket<T>[] buckets = (Bucket<T>[]) new Bucket<?>[size];
+		for (int i = 0; i < size; i++) {
+			buckets[i] = new Bucket<T>();
+		}
+		this.buckets = buckets;
+		this.mask = size - 1;
+		this.callback = callback;
+		this.lastTick = System.currentTimeMillis() / tickDuration;
+	}
+
+	/**
+	 * Start ticking on the given scheduler. Has no effect if already started.
+	 */
+	public synchronized void start(TaskScheduler taskScheduler) {
+		Assert.notNull(taskScheduler, "'taskScheduler' must not be null");
+		if (this.tickTask == null) {
+			this.tickTask = taskScheduler.scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					tick();
+				}
+			}, this.tickDuration);
+		}
+	}
+
+	/**
+	 * Stop ticking; items still pending remain in the wheel and are released
+	 * if the wheel is started again.
+	 */
+	public synchronized void stop() {
+		if (this.tickTask != null) {
+			this.tickTask.cancel(false);
+			this.tickTask = null;
+		}
+	}
+
+	public boolean isRunning() {
+		return this.tickTask != null;
+	}
+
+	/**
+	 * Schedule an item for release at the given time. Items already due are
+	 * released with the next tick.
+	 * @param item the item.
+	 * @param dueTime the release time in milliseconds since the epoch.
+	 */
+	public void schedule(T item, long dueTime) {
+		Assert.notNull(item, "'item' must not be null");
+		Entry<T> entry = new Entry<T>(item, dueTime);
+		long dueTick = (dueTime + this.tickDuration - 1) / this.tickDuration;
+		this.pendingCount.incrementAndGet();
+		if (dueTick <= this.lastTick || !this.buckets[(int) (dueTick & this.mask)].add(entry, dueTick)) {
+			this.overdue.add(entry);
+		}
+	}
+
+	/**
+	 * Release everything that has become due since the previous tick. Invoked
+	 * by the scheduled tick task; exposed so that the wheel can also be driven
+	 * by the caller.
+	 */
+	public void tick() {
+		List<T> batch;
+		synchronized (this.tickMonitor) {
+			long now = System.currentTimeMillis();
+			long currentTick = now / this.tickDuration;
+			long lastTick = this.lastTick;
+			if (this.lastTickTime > 0) {
+				this.lastTickLag = Math.max(0, now - this.lastTickTime - this.tickDuration);
+			}
+			this.lastTickTime = now;
+			List<Entry<T>> expired = new ArrayList<Entry<T>>();
+			// after a long pause a single pass over all buckets is enough
+			for (long tick = Math.max(lastTick + 1, currentTick - this.mask); tick <= currentTick; tick++) {
+				this.buckets[(int) (tick & this.mask)].expire(currentTick, expired);
+			}
+			this.lastTick = Math.max(lastTick, currentTick);
+			Entry<T> entry;
+			while ((entry = this.overdue.poll()) != null) {
+				expired.add(entry);
+			}
+			if (expired.isEmpty()) {
+				return;
+			}
+			batch = new ArrayList<T>(expired.size());
+			long maxLag = 0;
+			long totalLag = 0;
+			for (Entry<T> expiredEntry : expired) {
+				long lag = Math.max(0, now - expiredEntry.dueTime);
+				totalLag += lag;
+				maxLag = Math.max(maxLag, lag);
+				batch.add(expiredEntry.item);
+			}
+			this.pendingCount.addAndGet(-batch.size());
+			this.releasedCount.addAndGet(batch.size());
+			this.totalLag.addAndGet(totalLag);
+			if (maxLag > this.maxLag.get()) {
+				this.maxLag.set(maxLag);
+			}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Releasing " + batch.size() + " items");
+		}
+		this.callback.expired(batch);
+	}
+
+	public long getTickDuration() {
+		return this.tickDuration;
+	}
+
+	public int getTicksPerWheel() {
+		return this.buckets.length;
+	}
+
+	/**
+	 * @return the number of items waiting to be released.
+	 */
+	public int getPendingCount() {
+		return this.pendingCount.get();
+	}
+
+	/**
+	 * @return the number of items released so far.
+	 */
+	public long getReleasedCount() {
+		return this.releasedCount.get();
+	}
+
+	/**
+	 * @return the largest delay in milliseconds between an item's due time
+	 * and its release.
+	 */
+	public long getMaxLag() {
+		return this.maxLag.get();
+	}
+
+	/**
+	 * @return the mean delay in milliseconds between an item's due time and
+	 * its release.
+	 */
+	public double getMeanLag() {
+		long released = this.releasedCount.get();
+		return released == 0 ? 0 : (double) this.totalLag.get() / released;
+	}
+
+	/**
+	 * @return how much later, in milliseconds, the most recent tick ran than
+	 * one tick duration after the previous one; a steadily growing value
+	 * indicates that the scheduler cannot keep up.
+	 */
+	public long getLastTickLag() {
+		return this.lastTickLag;
+	}
+
+	/**
+	 * Callback invoked with the items released by one tick.
+	 */
+	public interface ExpiryCallback<T> {
+
+		void expired(List<T> items);
+
+	}
+
+
+	private static class Bucket<T> {
+
+		private final List<Entry<T>> entries = new ArrayList<Entry<T>>();
+
+		private long lastExpiredTick = Long.MIN_VALUE;
+
+		/**
+		 * @return false if the tick has already been processed and the entry
+		 * must be released with the next tick.
+		 */
+		public synchronized boolean add(Entry<T> entry, long dueTick) {
+			if (dueTick <= this.lastExpiredTick) {
+				return false;
+			}
+			entry.dueTick = dueTick;
+			this.entries.add(entry);
+			return true;
+		}
+
+		public synchronized void expire(long currentTick, List<Entry<T>> expired) {
+			this.lastExpiredTick = currentTick;
+			int size = this.entries.size();
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				Entry<T> entry = this.entries.get(i);
+				if (entry.dueTick <= currentTick) {
+					expired.add(entry);
+				}
+				else {
+					this.entries.set(kept++, entry);
+				}
+			}
+			if (kept < size) {
+				this.entries.subList(kept, size).clear();
+			}
+		}
+
+	}
+
+
+	private static class Entry<T> {
+
+		private final T item;
+
+		private final long dueTime;
+
+		private long dueTick;
+
+		public Entry(T item, long dueTime) {
+			this.item = item;
+			this.dueTime = dueTime;
+		}
+
+	}
+
+}
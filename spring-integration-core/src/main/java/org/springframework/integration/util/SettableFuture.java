@@ -0,0 +1,221 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Future} that is completed explicitly, by whichever thread produces
+ * the result, rather than by a task running on an executor. Callbacks can be
+ * registered to react to the completion without blocking a thread in
+ * {@link #get()}; they are invoked by the completing thread, or immediately by
+ * the registering thread if the future is already complete.
+ * <p>
+ * Only the first of {@link #set(Object)}, {@link #setException(Throwable)} and
+ * {@link #cancel(boolean)} has an effect.
+ *
+ * @since 3.0
+ */
+public class SettableFuture<T> implements Future<T> {
+
+	private static final Log logger = LogFactory.getLog(SettableFuture.class);
+
+	private final Object monitor = new Object();
+
+	private List<Callback<? super T>> callbacks = new ArrayList<Callback<? super T>>(1);
+
+	private volatile boolean done;
+
+	private volatile boolean cancelled;
+
+	private T value;
+
+	private Throwable exception;
+
+	/**
+	 * Complete the future with the given value.
+	 * @return true if this call completed the future, false if it was already complete.
+	 */
+	public boolean set(T value) {
+		List<Callback<? super T>> callbacks;
+		synchronized (this.monitor) {
+			if (this.done) {
+				return false;
+			}
+			this.value = value;
+			callbacks = this.complete();
+		}
+		for (Callback<? super T> callback : callbacks) {
+			this.notifySuccess(callback, value);
+		}
+		return true;
+	}
+
+	/**
+	 * Complete the future exceptionally; {@link #get()} will throw an
+	 * {@link ExecutionException} with the given cause.
+	 * @return true if this call completed the future, false if it was already complete.
+	 */
+	public boolean setException(Throwable exception) {
+		Assert.notNull(exception, "'exception' must not be null");
+		List<Callback<? super T>> callbacks;
+		synchronized (this.monitor) {
+			if (this.done) {
+				return false;
+			}
+			this.exception = exception;
+			callbacks = this.complete();
+		}
+		for (Callback<? super T> callback : callbacks) {
+			this.notifyFailure(callback, exception);
+		}
+		return true;
+	}
+
+	/**
+	 * Cancel the future. Since the result is not produced by a task of its own,
+	 * 'mayInterruptIfRunning' has no effect; callbacks are notified with a
+	 * {@link CancellationException}.
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		CancellationException exception = new CancellationException();
+		List<Callback<? super T>> callbacks;
+		synchronized (this.monitor) {
+			if (this.done) {
+				return false;
+			}
+			this.cancelled = true;
+			this.exception = exception;
+			callbacks = this.complete();
+		}
+		for (Callback<? super T> callback : callbacks) {
+			this.notifyFailure(callback, exception);
+		}
+		return true;
+	}
+
+	/**
+	 * Register a callback to be notified when the future completes.
+	 */
+	public void addCallback(Callback<? super T> callback) {
+		Assert.notNull(callback, "'callback' must not be null");
+		synchronized (this.monitor) {
+			if (!this.done) {
+				this.callbacks.add(callback);
+				return;
+			}
+		}
+		if (this.exception != null) {
+			this.notifyFailure(callback, this.exception);
+		}
+		else {
+			this.notifySuccess(callback, this.value);
+		}
+	}
+
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	public boolean isDone() {
+		return this.done;
+	}
+
+	public T get() throws InterruptedException, ExecutionException {
+		synchronized (this.monitor) {
+			while (!this.done) {
+				this.monitor.wait();
+			}
+		}
+		return this.getResult();
+	}
+
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		long remaining = unit.toNanos(timeout);
+		long deadline = System.nanoTime() + remaining;
+		synchronized (this.monitor) {
+			while (!this.done) {
+				if (remaining <= 0) {
+					throw new TimeoutException();
+				}
+				TimeUnit.NANOSECONDS.timedWait(this.monitor, remaining);
+				remaining = deadline - System.nanoTime();
+			}
+		}
+		return this.getResult();
+	}
+
+	// guarded by monitor
+	private List<Callback<? super T>> complete() {
+		this.done = true;
+		this.monitor.notifyAll();
+		List<Callback<? super T>> callbacks = this.callbacks;
+		this.callbacks = null;
+		return callbacks;
+	}
+
+	private T getResult() throws ExecutionException {
+		if (this.cancelled) {
+			throw (CancellationException) this.exception;
+		}
+		if (this.exception != null) {
+			throw new ExecutionException(this.exception);
+		}
+		return this.value;
+	}
+
+	private void notifySuccess(Callback<? super T> callback, T value) {
+		try {
+			callback.onSuccess(value);
+		}
+		catch (RuntimeException e) {
+			logger.error("Future callback failed", e);
+		}
+	}
+
+	private void notifyFailure(Callback<? super T> callback, Throwable exception) {
+		try {
+			callback.onFailure(exception);
+		}
+		catch (RuntimeException e) {
+			logger.error("Future callback failed", e);
+		}
+	}
+
+
+	/**
+	 * Callback notified when a {@link SettableFuture} completes.
+	 */
+	public interface Callback<T> {
+
+		void onSuccess(T result);
+
+		void onFailure(Throwable exception);
+
+	}
+
+}
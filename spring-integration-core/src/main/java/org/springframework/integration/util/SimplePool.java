@@ -15,14 +15,16 @@
  */
 package org.springframework.integration.util;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,12 +35,22 @@ import org.springframework.util.Assert;
  * Implementation of {@link Pool} supporting dynamic resizing and a variable
  * timeout when attempting to obtain an item from the pool. Pool grows on
  * demand up to the limit.
+ * <p>
+ * Obtaining and releasing items does not lock the pool; idle items are kept on a
+ * lock-free stack, so the most recently used items are reused first, and the
+ * number of items in use is limited by a semaphore. Items may be given a maximum
+ * lifetime, after which they are removed from the pool, and idle items may be
+ * validated and evicted by invoking {@link #evictIdleItems()} periodically, rather
+ * than when they are obtained. The time spent waiting for an item is recorded in
+ * a histogram.
  * @author Gary Russell
  * @since 2.2
  *
  */
 public class SimplePool<T> implements Pool<T> {
 
+	private static final long[] WAIT_TIME_HISTOGRAM_BOUNDS = { 1, 10, 100, 1000 };
+
 	protected final Log logger = LogFactory.getLog(this.getClass());
 
 	private final Semaphore permits = new Semaphore(0);
@@ -47,11 +59,20 @@ public class SimplePool<T> implements Pool<T> {
 
 	private final AtomicInteger targetPoolSize = new AtomicInteger();
 
-	private long waitTimeout = Long.MAX_VALUE;
+	private volatile long waitTimeout = Long.MAX_VALUE;
+
+	private volatile long maxItemLifetime;
+
+	private final IdleStack<T> available = new IdleStack<T>();
+
+	/*
+	 * Allocated items, with the time they were created.
+	 */
+	private final Map<T, Long> allocated = new ConcurrentHashMap<T, Long>();
 
-	private final BlockingQueue<T> available = new LinkedBlockingQueue<T>();
+	private final AtomicLongArray waitTimeCounts = new AtomicLongArray(WAIT_TIME_HISTOGRAM_BOUNDS.length + 1);
 
-	private final Set<T> allocated = Collections.synchronizedSet(new HashSet<T>());
+	private final AtomicLong maxWaitTime = new AtomicLong();
 
 	private final PoolItemCallback<T> callback;
 
@@ -96,7 +117,7 @@ public class SimplePool<T> implements Pool<T> {
 			if (!this.permits.tryAcquire()) {
 				break;
 			}
-			T item = this.available.poll();
+			T item = this.available.pop();
 			if (item == null) {
 				this.permits.release();
 				break;
@@ -142,6 +163,20 @@ public class SimplePool<T> implements Pool<T> {
 		this.waitTimeout = waitTimeout;
 	}
 
+	/**
+	 * Sets the maximum lifetime of items; an item is removed from the pool (with
+	 * {@link PoolItemCallback#removedFromPool(Object)}) instead of being reused,
+	 * once this time has elapsed since it was created.
+	 * <br>
+	 * Default: 0 (no limit).
+	 * @param maxItemLifetime The maximum lifetime in milliseconds.
+	 * @since 3.0
+	 */
+	public void setMaxItemLifetime(long maxItemLifetime) {
+		Assert.isTrue(maxItemLifetime >= 0, "'maxItemLifetime' cannot be negative");
+		this.maxItemLifetime = maxItemLifetime;
+	}
+
 	/**
 	 * Obtains an item from the pool; waits up to waitTime milliseconds (default infinity).
 	 * @throws MessagingException if no items become available in time.
@@ -149,6 +184,7 @@ public class SimplePool<T> implements Pool<T> {
 	public T getItem() {
 		boolean permitted = false;
 		try {
+			long start = System.nanoTime();
 			try {
 				permitted = this.permits.tryAcquire(this.waitTimeout, TimeUnit.MILLISECONDS);
 			}
@@ -156,6 +192,9 @@ public class SimplePool<T> implements Pool<T> {
 				Thread.currentThread().interrupt();
 				throw new MessagingException("Interrupted awaiting a pooled resource", e);
 			}
+			finally {
+				this.recordWaitTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+			}
 			if (!permitted) {
 				throw new IllegalStateException("Timed out while waiting to aquire a pool entry.");
 			}
@@ -174,7 +213,7 @@ public class SimplePool<T> implements Pool<T> {
 	}
 
 	private T doGetItem() {
-		T item = this.available.poll();
+		T item = this.available.pop();
 		if (item != null && logger.isDebugEnabled()) {
 			logger.debug("Obtained " + item + " from pool.");
 		}
@@ -183,12 +222,20 @@ public class SimplePool<T> implements Pool<T> {
 			if (logger.isDebugEnabled()) {
 				logger.debug("Obtained new " + item + ".");
 			}
-			allocated.add(item);
+			allocated.put(item, System.currentTimeMillis());
+		}
+		else if (this.isExpired(item)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Received an expired item, will attempt to get a new one.");
+			}
+			doRemoveItem(item);
+			item = doGetItem();
 		}
 		else if (this.callback.isStale(item)) {
 			if (logger.isDebugEnabled()) {
 				logger.debug("Received a stale item, will attempt to get a new one.");
 			}
+			this.allocated.remove(item);
 			item = doGetItem();
 		}
 		return item;
@@ -198,33 +245,152 @@ public class SimplePool<T> implements Pool<T> {
 	 * Returns an item to the pool. Item may be null, in which case a subsequent getItem()
 	 * will return a new instance.
 	 */
-	public synchronized void releaseItem(T item) {
-		Assert.isTrue(item == null || this.allocated.contains(item),
+	public void releaseItem(T item) {
+		Assert.isTrue(item == null || this.allocated.containsKey(item),
 				"You can only release items that were obtained from the pool");
-		if (this.poolSize.get() > targetPoolSize.get()) {
-			poolSize.decrementAndGet();
-			if (item != null) {
-				doRemoveItem(item);
+		int size = this.poolSize.get();
+		while (size > this.targetPoolSize.get()) {
+			if (this.poolSize.compareAndSet(size, size - 1)) {
+				if (item != null) {
+					doRemoveItem(item);
+				}
+				return;
+			}
+			size = this.poolSize.get();
+		}
+		if (item != null && this.isExpired(item)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Removing expired " + item + " from the pool");
 			}
+			doRemoveItem(item);
 		}
 		else {
 			if (logger.isDebugEnabled()){
 				logger.debug("Releasing " + item + " back to the pool");
 			}
 			if (item != null) {
-				available.add(item);
+				available.push(item);
 			}
-			permits.release();
 		}
+		permits.release();
 	}
 
-	public synchronized void removeAllIdleItems() {
+	public void removeAllIdleItems() {
 		T item;
-		while ((item = this.available.poll()) != null) {
+		while ((item = this.available.pop()) != null) {
 			doRemoveItem(item);
 		}
 	}
 
+	/**
+	 * Removes idle items that have exceeded the maximum lifetime, and discards idle
+	 * items that are stale, so they are not found by {@link #getItem()}. Intended to
+	 * be invoked periodically, for example by a scheduler. The items are checked
+	 * while no other thread can obtain them, but without preventing other threads
+	 * from obtaining items unless the pool is exhausted.
+	 * @return the number of items removed or discarded.
+	 * @since 3.0
+	 */
+	public int evictIdleItems() {
+		List<T> retained = new ArrayList<T>();
+		int evicted = 0;
+		try {
+			/*
+			 * Each idle item is removed from the stack while holding a permit, so the
+			 * number of idle items never exceeds the number of permits; a thread that
+			 * obtains a permit meanwhile creates a new item, rather than exceeding the
+			 * pool size.
+			 */
+			int idle = this.available.size();
+			for (int i = 0; i < idle && this.permits.tryAcquire(); i++) {
+				T item = this.available.pop();
+				if (item == null) {
+					this.permits.release();
+					break;
+				}
+				if (this.isExpired(item)) {
+					doRemoveItem(item);
+					this.permits.release();
+					evicted++;
+				}
+				else if (this.callback.isStale(item)) {
+					this.allocated.remove(item);
+					this.permits.release();
+					evicted++;
+				}
+				else {
+					retained.add(item);
+				}
+			}
+		}
+		finally {
+			for (int i = retained.size() - 1; i >= 0; i--) {
+				this.available.push(retained.get(i));
+			}
+			this.permits.release(retained.size());
+		}
+		if (evicted > 0 && logger.isDebugEnabled()) {
+			logger.debug("Evicted " + evicted + " idle item(s)");
+		}
+		return evicted;
+	}
+
+	/**
+	 * Returns the number of times {@link #getItem()} has waited for an item, in each
+	 * range of wait times: less than 1 millisecond, 1-10ms, 10-100ms, 100ms-1s and 1s
+	 * or more (including waits that timed out).
+	 * @return the counts.
+	 * @since 3.0
+	 */
+	public long[] getWaitTimeHistogram() {
+		long[] counts = new long[this.waitTimeCounts.length()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = this.waitTimeCounts.get(i);
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the longest time, in milliseconds, that {@link #getItem()} has waited
+	 * for an item.
+	 * @since 3.0
+	 */
+	public long getMaxWaitTime() {
+		return this.maxWaitTime.get();
+	}
+
+	/**
+	 * Clears the wait time histogram and the maximum wait time.
+	 * @since 3.0
+	 */
+	public void resetWaitTimeStatistics() {
+		for (int i = 0; i < this.waitTimeCounts.length(); i++) {
+			this.waitTimeCounts.set(i, 0);
+		}
+		this.maxWaitTime.set(0);
+	}
+
+	private void recordWaitTime(long waitTime) {
+		int bucket = 0;
+		while (bucket < WAIT_TIME_HISTOGRAM_BOUNDS.length && waitTime >= WAIT_TIME_HISTOGRAM_BOUNDS[bucket]) {
+			bucket++;
+		}
+		this.waitTimeCounts.incrementAndGet(bucket);
+		long max = this.maxWaitTime.get();
+		while (waitTime > max && !this.maxWaitTime.compareAndSet(max, waitTime)) {
+			max = this.maxWaitTime.get();
+		}
+	}
+
+	private boolean isExpired(T item) {
+		long maxItemLifetime = this.maxItemLifetime;
+		if (maxItemLifetime <= 0) {
+			return false;
+		}
+		Long created = this.allocated.get(item);
+		return created != null && System.currentTimeMillis() - created >= maxItemLifetime;
+	}
+
 	private void doRemoveItem(T item) {
 		this.allocated.remove(item);
 		this.callback.removedFromPool(item);
@@ -262,4 +428,54 @@ public class SimplePool<T> implements Pool<T> {
 		 */
 		void removedFromPool(T item);
 	}
+
+	/**
+	 * A lock-free (Treiber) stack of idle items.
+	 */
+	private static class IdleStack<T> {
+
+		private final AtomicReference<Node<T>> top = new AtomicReference<Node<T>>();
+
+		private final AtomicInteger size = new AtomicInteger();
+
+		void push(T item) {
+			Node<T> node = new Node<T>(item);
+			do {
+				node.next = this.top.get();
+			}
+			while (!this.top.compareAndSet(node.next, node));
+			this.size.incrementAndGet();
+		}
+
+		T pop() {
+			Node<T> node;
+			do {
+				node = this.top.get();
+				if (node == null) {
+					return null;
+				}
+			}
+			while (!this.top.compareAndSet(node, node.next));
+			this.size.decrementAndGet();
+			return node.item;
+		}
+
+		int size() {
+			return Math.max(this.size.get(), 0);
+		}
+
+	}
+
+	private static class Node<T> {
+
+		private final T item;
+
+		private Node<T> next;
+
+		Node(T item) {
+			this.item = item;
+		}
+
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -70,6 +70,28 @@ public final class UpperBound {
 		return true;
 	}
 
+	/**
+	 * Acquires the given number of permits from the underlying semaphore if this UpperBound is bounded
+	 * and returns true if it succeeds within the given timeout. If the timeout is less than 0, it will
+	 * block indefinitely.
+	 */
+	public boolean tryAcquire(int permits, long timeoutInMilliseconds) {
+		if (this.semaphore != null) {
+			try {
+				if (timeoutInMilliseconds < 0) {
+					this.semaphore.acquire(permits);
+					return true;
+				}
+				return this.semaphore.tryAcquire(permits, timeoutInMilliseconds, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Releases one lock on the underlying semaphore. This is typically not done by the same Thread
 	 * that acquired the lock, but by the thread that picked up the message.
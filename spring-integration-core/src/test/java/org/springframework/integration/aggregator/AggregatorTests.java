@@ -69,6 +69,18 @@ public class AggregatorTests {
 		assertEquals(reply.getPayload(), 105);
 	}
 
+	@Test
+	public void testCompleteGroupWithSequenceSizeOnLastMessage() {
+		QueueChannel replyChannel = new QueueChannel();
+		this.aggregator.handleMessage(createMessage(3, "ABC", 0, 1, replyChannel, null));
+		this.aggregator.handleMessage(createMessage(7, "ABC", 3, 3, replyChannel, null));
+		assertNull(replyChannel.receive(0));
+		this.aggregator.handleMessage(createMessage(5, "ABC", 0, 2, replyChannel, null));
+		Message<?> reply = replyChannel.receive(0);
+		assertNotNull(reply);
+		assertEquals(105, reply.getPayload());
+	}
+
 	@Test
 	public void testShouldNotSendPartialResultOnTimeoutByDefault() throws InterruptedException {
 		QueueChannel discardChannel = new QueueChannel();
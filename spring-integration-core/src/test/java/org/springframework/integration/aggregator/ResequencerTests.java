@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,12 +21,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Map;
 
 import org.junit.Before;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import org.springframework.integration.Message;
@@ -35,6 +38,8 @@ import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.util.StopWatch;
 
 /**
  * @author Marius Bogoevici
@@ -310,6 +315,151 @@ public class ResequencerTests {
 		assertEquals(0, store.getMessageGroup(correlationId).size());
 	}
 
+	@Test
+	public void testStreamingReleasesContiguousRuns() {
+		QueueChannel replyChannel = new QueueChannel();
+		this.resequencer.setWindowSize(10);
+		this.resequencer.handleMessage(createMessage("A", "ABC", 0, 1, replyChannel));
+		assertEquals(1, replyChannel.receive(0).getHeaders().getSequenceNumber().intValue());
+		assertEquals(0, store.getMessageGroup("ABC").size());
+		this.resequencer.handleMessage(createMessage("C", "ABC", 0, 3, replyChannel));
+		this.resequencer.handleMessage(createMessage("D", "ABC", 0, 4, replyChannel));
+		assertNull(replyChannel.receive(0));
+		assertEquals(2, store.getMessageGroup("ABC").size());
+		this.resequencer.handleMessage(createMessage("B", "ABC", 0, 2, replyChannel));
+		assertEquals(2, replyChannel.receive(0).getHeaders().getSequenceNumber().intValue());
+		assertEquals(3, replyChannel.receive(0).getHeaders().getSequenceNumber().intValue());
+		assertEquals(4, replyChannel.receive(0).getHeaders().getSequenceNumber().intValue());
+		assertEquals(0, store.getMessageGroup("ABC").size());
+		assertEquals(4, store.getMessageGroup("ABC").getLastReleasedMessageSequenceNumber());
+	}
+
+	@Test
+	public void testStreamingDiscardsDuplicatesAndCompletes() {
+		QueueChannel replyChannel = new QueueChannel();
+		QueueChannel discardChannel = new QueueChannel();
+		this.resequencer.setWindowSize(10);
+		this.resequencer.setDiscardChannel(discardChannel);
+		this.resequencer.handleMessage(createMessage("B", "ABC", 3, 2, replyChannel));
+		this.resequencer.handleMessage(createMessage("B", "ABC", 3, 2, replyChannel));
+		this.resequencer.handleMessage(createMessage("A", "ABC", 3, 1, replyChannel));
+		this.resequencer.handleMessage(createMessage("A", "ABC", 3, 1, replyChannel));
+		assertEquals("B", discardChannel.receive(0).getPayload());
+		assertEquals("A", discardChannel.receive(0).getPayload());
+		this.resequencer.handleMessage(createMessage("C", "ABC", 3, 3, replyChannel));
+		assertEquals("A", replyChannel.receive(0).getPayload());
+		assertEquals("B", replyChannel.receive(0).getPayload());
+		assertEquals("C", replyChannel.receive(0).getPayload());
+		assertEquals(0, store.getMessageGroupCount());
+	}
+
+	@Test
+	public void testStreamingSkipsGapBeyondWindow() {
+		QueueChannel replyChannel = new QueueChannel();
+		this.resequencer.setWindowSize(3);
+		this.resequencer.handleMessage(createMessage("B", "ABC", 0, 2, replyChannel));
+		this.resequencer.handleMessage(createMessage("C", "ABC", 0, 3, replyChannel));
+		assertNull(replyChannel.receive(0));
+		// 5 does not fit in the window [1..3], so 1 and 2 are given up on
+		this.resequencer.handleMessage(createMessage("E", "ABC", 0, 5, replyChannel));
+		assertEquals("B", replyChannel.receive(0).getPayload());
+		assertEquals("C", replyChannel.receive(0).getPayload());
+		assertNull(replyChannel.receive(0));
+		this.resequencer.handleMessage(createMessage("D", "ABC", 0, 4, replyChannel));
+		assertEquals("D", replyChannel.receive(0).getPayload());
+		assertEquals("E", replyChannel.receive(0).getPayload());
+	}
+
+	@Test(timeout = 10000)
+	public void testStreamingSkipsLargeGapDirectly() {
+		QueueChannel replyChannel = new QueueChannel();
+		this.resequencer.setWindowSize(4);
+		this.resequencer.handleMessage(createMessage("B", "ABC", 0, 2, replyChannel));
+		this.resequencer.handleMessage(createMessage("X", "ABC", 0, Integer.MAX_VALUE / 2, replyChannel));
+		assertEquals("B", replyChannel.receive(0).getPayload());
+		assertNull(replyChannel.receive(0));
+		// the window now ends at the new message
+		assertEquals(Integer.MAX_VALUE / 2 - 4, store.getMessageGroup("ABC").getLastReleasedMessageSequenceNumber());
+		this.resequencer.handleMessage(createMessage("W", "ABC", 0, Integer.MAX_VALUE / 2 - 3, replyChannel));
+		assertEquals("W", replyChannel.receive(0).getPayload());
+		assertNull(replyChannel.receive(0));
+	}
+
+	@Test
+	public void testStreamingInOrderReleaseTouchesStoredGroup() throws Exception {
+		QueueChannel replyChannel = new QueueChannel();
+		this.resequencer.setWindowSize(10);
+		this.resequencer.handleMessage(createMessage("B", "ABC", 0, 2, replyChannel));
+		this.resequencer.handleMessage(createMessage("A", "ABC", 0, 1, replyChannel));
+		long lastModified = store.getMessageGroup("ABC").getLastModified();
+		Thread.sleep(10);
+		this.resequencer.handleMessage(createMessage("C", "ABC", 0, 3, replyChannel));
+		assertTrue(store.getMessageGroup("ABC").getLastModified() > lastModified);
+		assertEquals(3, store.getMessageGroup("ABC").getLastReleasedMessageSequenceNumber());
+	}
+
+	@Test
+	public void testStreamingDiscardsIdleWindows() throws Exception {
+		QueueChannel replyChannel = new QueueChannel();
+		this.resequencer.setWindowSize(10);
+		this.resequencer.setWindowIdleTimeout(50);
+		// neither stream ever completes: no sequence size, and B has a message out of order
+		this.resequencer.handleMessage(createMessage("A1", "A", 0, 1, replyChannel));
+		this.resequencer.handleMessage(createMessage("A2", "A", 0, 2, replyChannel));
+		this.resequencer.handleMessage(createMessage("B3", "B", 0, 3, replyChannel));
+		Map<?, ?> windows = TestUtils.getPropertyValue(this.resequencer, "windows", Map.class);
+		assertEquals(2, windows.size());
+		Thread.sleep(100);
+		this.resequencer.handleMessage(createMessage("C1", "C", 0, 1, replyChannel));
+		assertEquals(Collections.singleton("C"), windows.keySet());
+		// the out-of-order message is still stored, and the window is restored from the store
+		this.resequencer.handleMessage(createMessage("B1", "B", 0, 1, replyChannel));
+		this.resequencer.handleMessage(createMessage("B2", "B", 0, 2, replyChannel));
+		assertEquals("A1", replyChannel.receive(0).getPayload());
+		assertEquals("A2", replyChannel.receive(0).getPayload());
+		assertEquals("C1", replyChannel.receive(0).getPayload());
+		assertEquals("B1", replyChannel.receive(0).getPayload());
+		assertEquals("B2", replyChannel.receive(0).getPayload());
+		assertEquals("B3", replyChannel.receive(0).getPayload());
+	}
+
+	@Test
+	public void testStreamingRestoresWindowFromStore() {
+		QueueChannel replyChannel = new QueueChannel();
+		this.resequencer.setWindowSize(10);
+		this.resequencer.handleMessage(createMessage("A", "ABC", 0, 1, replyChannel));
+		this.resequencer.handleMessage(createMessage("C", "ABC", 0, 3, replyChannel));
+		replyChannel.receive(0);
+		ResequencingMessageHandler restarted = new ResequencingMessageHandler(processor, store, null, null);
+		restarted.setWindowSize(10);
+		restarted.handleMessage(createMessage("B", "ABC", 0, 2, replyChannel));
+		assertEquals("B", replyChannel.receive(0).getPayload());
+		assertEquals("C", replyChannel.receive(0).getPayload());
+	}
+
+	@Test
+	@Ignore
+	public void performanceTest() {
+		int count = 100000;
+		for (int windowSize : new int[] {0, 100}) {
+			ResequencingMessageHandler resequencer = new ResequencingMessageHandler(processor, new SimpleMessageStore());
+			resequencer.setReleasePartialSequences(true);
+			resequencer.setWindowSize(windowSize);
+			QueueChannel replyChannel = new QueueChannel();
+			StopWatch watch = new StopWatch();
+			watch.start();
+			// swap each pair of messages, so that half of them arrive out of order
+			for (int i = 1; i <= count; i += 2) {
+				resequencer.handleMessage(createMessage("X", "ABC", 0, i + 1, replyChannel));
+				resequencer.handleMessage(createMessage("X", "ABC", 0, i, replyChannel));
+			}
+			watch.stop();
+			assertEquals(count, replyChannel.getQueueSize());
+			System.out.println("window size " + windowSize + ": " + count + " messages in "
+					+ watch.getTotalTimeMillis() + "ms");
+		}
+	}
+
 	private static Message<?> createMessage(String payload, Object correlationId, int sequenceSize, int sequenceNumber,
 			MessageChannel replyChannel) {
 		return MessageBuilder.withPayload(payload).setCorrelationId(correlationId).setSequenceSize(sequenceSize)
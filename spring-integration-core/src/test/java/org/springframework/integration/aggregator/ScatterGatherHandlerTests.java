@@ -0,0 +1,194 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.aggregator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.MessageTimeoutException;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.NullChannel;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * @since 3.0
+ */
+public class ScatterGatherHandlerTests {
+
+	private ThreadPoolTaskExecutor executor;
+
+	private PublishSubscribeChannel scatterChannel;
+
+	private QueueChannel output;
+
+	@Before
+	public void setUp() {
+		this.executor = new ThreadPoolTaskExecutor();
+		this.executor.setCorePoolSize(5);
+		this.executor.afterPropertiesSet();
+		this.scatterChannel = new PublishSubscribeChannel(this.executor);
+		this.scatterChannel.setApplySequence(true);
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("errorChannel", new NullChannel());
+		this.scatterChannel.setBeanFactory(beanFactory);
+		this.scatterChannel.afterPropertiesSet();
+		this.output = new QueueChannel();
+	}
+
+	@After
+	public void tearDown() {
+		this.executor.destroy();
+	}
+
+	@Test
+	public void testRepliesGatheredInSubscriberOrder() {
+		this.scatterChannel.subscribe(new Recipient("a", 200, false));
+		this.scatterChannel.subscribe(new Recipient("b", 100, false));
+		this.scatterChannel.subscribe(new Recipient("c", 0, false));
+		assertEquals(3, this.scatterChannel.getSubscriberCount());
+		ScatterGatherHandler handler = this.createHandler();
+		long start = System.currentTimeMillis();
+		handler.handleMessage(MessageBuilder.withPayload("foo").setHeader("bar", "baz").build());
+		long elapsed = System.currentTimeMillis() - start;
+		Message<?> result = this.output.receive(0);
+		assertEquals(Arrays.asList("foo.a", "foo.b", "foo.c"), result.getPayload());
+		assertEquals("baz", result.getHeaders().get("bar"));
+		// recipients run in parallel, so the exchange takes about as long as the slowest of them
+		assertTrue("elapsed: " + elapsed, elapsed < 290);
+	}
+
+	@Test
+	public void testTimeoutGathersPartialResult() {
+		this.scatterChannel.subscribe(new Recipient("a", 0, false));
+		this.scatterChannel.subscribe(new Recipient("b", 500, false));
+		ScatterGatherHandler handler = this.createHandler();
+		handler.setRecipientTimeout(100);
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		assertEquals(Arrays.asList("foo.a"), this.output.receive(0).getPayload());
+	}
+
+	@Test
+	public void testRequireAllReplies() {
+		this.scatterChannel.subscribe(new Recipient("a", 0, false));
+		this.scatterChannel.subscribe(new Recipient("b", 500, false));
+		ScatterGatherHandler handler = this.createHandler();
+		handler.setRecipientTimeout(100);
+		handler.setRequireAllReplies(true);
+		try {
+			handler.handleMessage(new GenericMessage<String>("foo"));
+			fail("expected MessageTimeoutException");
+		}
+		catch (MessageTimeoutException e) {
+			assertEquals("1 of 2 recipients did not reply within 100ms", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testFailures() {
+		this.scatterChannel.subscribe(new Recipient("a", 0, false));
+		this.scatterChannel.subscribe(new Recipient("b", 0, true));
+		ScatterGatherHandler handler = this.createHandler();
+		try {
+			handler.handleMessage(new GenericMessage<String>("foo"));
+			fail("expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertEquals("b failed", e.getMessage());
+		}
+		handler.setIgnoreFailures(true);
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		assertEquals(Arrays.asList("foo.a"), this.output.receive(0).getPayload());
+	}
+
+	@Test
+	public void testOutputProcessor() {
+		this.scatterChannel.subscribe(new Recipient("a", 50, false));
+		this.scatterChannel.subscribe(new Recipient("b", 0, false));
+		ScatterGatherHandler handler = this.createHandler();
+		handler.setOutputProcessor(new DefaultAggregatingMessageGroupProcessor());
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		List<?> payload = (List<?>) this.output.receive(0).getPayload();
+		assertEquals(Arrays.asList("foo.a", "foo.b"), payload);
+	}
+
+	@Test
+	public void testSynchronousScatterChannelRejected() {
+		try {
+			new ScatterGatherHandler(new PublishSubscribeChannel());
+			fail("expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals("'scatterChannel' must have an Executor, so that the recipients are invoked in parallel",
+					e.getMessage());
+		}
+	}
+
+	private ScatterGatherHandler createHandler() {
+		ScatterGatherHandler handler = new ScatterGatherHandler(this.scatterChannel);
+		handler.setOutputChannel(this.output);
+		return handler;
+	}
+
+
+	private static class Recipient implements MessageHandler {
+
+		private final String name;
+
+		private final long delay;
+
+		private final boolean fail;
+
+		private Recipient(String name, long delay, boolean fail) {
+			this.name = name;
+			this.delay = delay;
+			this.fail = fail;
+		}
+
+		public void handleMessage(Message<?> message) throws MessagingException {
+			try {
+				Thread.sleep(this.delay);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (this.fail) {
+				throw new MessageHandlingException(message, this.name + " failed");
+			}
+			((MessageChannel) message.getHeaders().getReplyChannel()).send(MessageBuilder
+					.withPayload(message.getPayload() + "." + this.name)
+					.copyHeaders(message.getHeaders()).build());
+		}
+
+	}
+
+}
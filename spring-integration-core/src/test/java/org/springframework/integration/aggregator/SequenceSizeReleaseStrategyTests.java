@@ -51,6 +51,18 @@ public class SequenceSizeReleaseStrategyTests {
 		assertTrue(releaseStrategy.canRelease(messages));
 	}
 
+	@Test
+	public void testSequenceSizeOnLastMessageOnly() {
+		SimpleMessageGroup messages = new SimpleMessageGroup("FOO");
+		messages.add(MessageBuilder.withPayload("test1").setSequenceNumber(1).setSequenceSize(0).build());
+		SequenceSizeReleaseStrategy releaseStrategy = new SequenceSizeReleaseStrategy();
+		assertFalse(releaseStrategy.canRelease(messages));
+		messages.add(MessageBuilder.withPayload("test3").setSequenceNumber(3).setSequenceSize(3).build());
+		assertFalse(releaseStrategy.canRelease(messages));
+		messages.add(MessageBuilder.withPayload("test2").setSequenceNumber(2).setSequenceSize(0).build());
+		assertTrue(releaseStrategy.canRelease(messages));
+	}
+
 	@Test
 	public void testEmptyList() {
 		SequenceSizeReleaseStrategy releaseStrategy = new SequenceSizeReleaseStrategy();
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,15 +19,20 @@ package org.springframework.integration.channel;
 import java.util.Comparator;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.Ignore;
 import org.junit.Test;
 
 import org.springframework.integration.Message;
+import org.springframework.integration.core.MessageSelector;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.StopWatch;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -303,6 +308,105 @@ public class PriorityChannelTests {
 		assertEquals("test-2", message2.getPayload());
 	}
 
+	@Test
+	public void testPriorityLevels() {
+		PriorityChannel channel = new PriorityChannel(5, 0, 9);
+		channel.send(createPriorityMessage(3));
+		channel.send(MessageBuilder.withPayload("first:5").setPriority(5).build());
+		channel.send(createPriorityMessage(-1));
+		channel.send(MessageBuilder.withPayload("second:5").setPriority(5).build());
+		channel.send(createPriorityMessage(42));
+		assertFalse(channel.send(createPriorityMessage(7), 0));
+		assertEquals(0, channel.getRemainingCapacity());
+		assertEquals("test:42", channel.receive(0).getPayload());
+		assertEquals("first:5", channel.receive(0).getPayload());
+		assertEquals("second:5", channel.receive(0).getPayload());
+		assertEquals("test:3", channel.receive(0).getPayload());
+		assertEquals("test:-1", channel.receive(0).getPayload());
+		assertNull(channel.receive(0));
+		assertEquals(5, channel.getRemainingCapacity());
+	}
+
+	@Test
+	public void testPriorityLevelsPurge() {
+		PriorityChannel channel = new PriorityChannel(0, 0, 9);
+		channel.send(createPriorityMessage(1));
+		channel.send(createPriorityMessage(2));
+		channel.send(createPriorityMessage(3));
+		assertEquals(1, channel.purge(new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				return !message.getPayload().equals("test:2");
+			}
+		}).size());
+		assertEquals(2, channel.getQueueSize());
+		assertEquals(2, channel.clear().size());
+		assertNull(channel.receive(0));
+	}
+
+	@Test
+	public void testPriorityLevelsConcurrentReceivers() throws Exception {
+		final PriorityChannel channel = new PriorityChannel(100, 0, 3);
+		final int count = 10000;
+		final AtomicInteger received = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int i = 0; i < 2; i++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					for (int j = 0; j < count / 2; j++) {
+						channel.send(createPriorityMessage(j % 4));
+					}
+				}
+			});
+			executor.execute(new Runnable() {
+				public void run() {
+					while (channel.receive(1000) != null) {
+						received.incrementAndGet();
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(count, received.get());
+		assertEquals(100, channel.getRemainingCapacity());
+	}
+
+	@Test
+	@Ignore
+	public void performanceTest() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			this.runPerformanceTest("comparator", new PriorityChannel(1000));
+			this.runPerformanceTest("levels", new PriorityChannel(1000, 0, 9));
+		}
+	}
+
+	private void runPerformanceTest(String name, final PriorityChannel channel) throws Exception {
+		final int count = 1000000;
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		StopWatch watch = new StopWatch(name);
+		watch.start();
+		for (int i = 0; i < 2; i++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					for (int j = 0; j < count / 2; j++) {
+						channel.send(createPriorityMessage(j % 10));
+					}
+				}
+			});
+			executor.execute(new Runnable() {
+				public void run() {
+					for (int j = 0; j < count / 2; j++) {
+						channel.receive();
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(60, TimeUnit.SECONDS));
+		watch.stop();
+		System.out.println(name + ": " + count + " messages in " + watch.getTotalTimeMillis() + "ms");
+	}
+
 
 	private static Message<String> createPriorityMessage(int priority) {
 		return MessageBuilder.withPayload("test:" + priority).setPriority(priority).build(); 
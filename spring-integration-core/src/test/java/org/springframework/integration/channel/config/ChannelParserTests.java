@@ -37,6 +37,7 @@ import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageDeliveryException;
 import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.PriorityLevelQueue;
 import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.config.TestChannelInterceptor;
@@ -45,6 +46,7 @@ import org.springframework.integration.dispatcher.RoundRobinLoadBalancingStrateg
 import org.springframework.integration.dispatcher.UnicastingDispatcher;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
 import org.springframework.integration.util.ErrorHandlingTaskExecutor;
 
 /**
@@ -259,4 +261,17 @@ public class ChannelParserTests {
 		assertTrue(threwException);
 	}
 
+	@Test
+	public void testPriorityChannelWithPriorityLevels() {
+		ApplicationContext context = new ClassPathXmlApplicationContext("priorityChannelParserTests.xml", this
+				.getClass());
+		QueueChannel channel = context.getBean("priorityLevelChannel", QueueChannel.class);
+		assertThat(TestUtils.getPropertyValue(channel, "queue"), instanceOf(PriorityLevelQueue.class));
+		channel.send(MessageBuilder.withPayload("low").setPriority(1).build());
+		channel.send(MessageBuilder.withPayload("high").setPriority(8).build());
+		assertEquals("high", channel.receive(0).getPayload());
+		assertEquals("low", channel.receive(0).getPayload());
+		assertEquals(10, channel.getRemainingCapacity());
+	}
+
 }
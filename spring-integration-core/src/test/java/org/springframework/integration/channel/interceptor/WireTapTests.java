@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,6 +20,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import org.junit.Test;
 
 import org.springframework.integration.Message;
@@ -117,6 +121,87 @@ public class WireTapTests {
 		wireTapChannel.send(MessageBuilder.withPayload("test").build());
 	}
 
+	@Test
+	public void bufferedWireTapDropsNewest() throws Exception {
+		QueueChannel secondaryChannel = new QueueChannel();
+		DeferredExecutor executor = new DeferredExecutor();
+		WireTap wireTap = new WireTap(secondaryChannel);
+		wireTap.setBufferCapacity(3);
+		wireTap.setTaskExecutor(executor);
+		this.sendMessages(wireTap, 5);
+		assertNull(secondaryChannel.receive(0));
+		assertEquals(3, wireTap.getBufferSize());
+		assertEquals(2, wireTap.getDroppedCount());
+		Thread drainer = executor.start();
+		this.assertReceived(secondaryChannel, 0, 1, 2);
+		wireTap.destroy();
+		drainer.join(10000);
+	}
+
+	@Test
+	public void bufferedWireTapDropsOldest() throws Exception {
+		QueueChannel secondaryChannel = new QueueChannel();
+		DeferredExecutor executor = new DeferredExecutor();
+		WireTap wireTap = new WireTap(secondaryChannel);
+		wireTap.setBufferCapacity(3);
+		wireTap.setOverflowPolicy(WireTap.OverflowPolicy.DROP_OLDEST);
+		wireTap.setTaskExecutor(executor);
+		this.sendMessages(wireTap, 5);
+		assertEquals(2, wireTap.getDroppedCount());
+		Thread drainer = executor.start();
+		this.assertReceived(secondaryChannel, 2, 3, 4);
+		wireTap.destroy();
+		drainer.join(10000);
+	}
+
+	@Test
+	public void bufferedWireTapSamples() throws Exception {
+		QueueChannel secondaryChannel = new QueueChannel();
+		DeferredExecutor executor = new DeferredExecutor();
+		WireTap wireTap = new WireTap(secondaryChannel);
+		wireTap.setBufferCapacity(4);
+		wireTap.setOverflowPolicy(WireTap.OverflowPolicy.SAMPLE);
+		wireTap.setSampleRate(2);
+		wireTap.setTaskExecutor(executor);
+		this.sendMessages(wireTap, 10);
+		// once half full, every second message is buffered until the buffer is full
+		assertEquals(6, wireTap.getDroppedCount());
+		Thread drainer = executor.start();
+		this.assertReceived(secondaryChannel, 0, 1, 3, 5);
+		wireTap.destroy();
+		drainer.join(10000);
+	}
+
+	@Test
+	public void bufferedWireTapDefaultExecutor() {
+		QueueChannel mainChannel = new QueueChannel();
+		QueueChannel secondaryChannel = new QueueChannel();
+		WireTap wireTap = new WireTap(secondaryChannel);
+		wireTap.setBufferCapacity(10);
+		mainChannel.addInterceptor(wireTap);
+		mainChannel.send(new GenericMessage<String>("testing"));
+		assertNotNull(mainChannel.receive(0));
+		assertEquals("testing", secondaryChannel.receive(10000).getPayload());
+		wireTap.destroy();
+	}
+
+	private void sendMessages(WireTap wireTap, int count) {
+		QueueChannel mainChannel = new QueueChannel();
+		mainChannel.addInterceptor(wireTap);
+		for (int i = 0; i < count; i++) {
+			mainChannel.send(new GenericMessage<Integer>(i));
+		}
+	}
+
+	private void assertReceived(QueueChannel channel, int... payloads) {
+		for (int payload : payloads) {
+			Message<?> message = channel.receive(10000);
+			assertNotNull(message);
+			assertEquals(payload, message.getPayload());
+		}
+		assertNull(channel.receive(100));
+	}
+
 	private static class TestSelector implements MessageSelector {
 
 		private boolean shouldAccept;
@@ -130,4 +215,23 @@ public class WireTapTests {
 		}
 	}
 
+	/**
+	 * Holds on to the tasks until started, so that the buffer fills up.
+	 */
+	private static class DeferredExecutor implements Executor {
+
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		public void execute(Runnable task) {
+			this.tasks.add(task);
+		}
+
+		public Thread start() {
+			assertEquals(1, this.tasks.size());
+			Thread thread = new Thread(this.tasks.get(0));
+			thread.start();
+			return thread;
+		}
+	}
+
 }
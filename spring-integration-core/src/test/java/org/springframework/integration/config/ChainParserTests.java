@@ -138,6 +138,13 @@ public class ChainParserTests {
 	@Qualifier("chainWithSendTimeout.handler")
 	private MessageHandlerChain chainWithSendTimeout;
 
+	@Autowired
+	@Qualifier("flattenedChain.handler")
+	private MessageHandlerChain flattenedChain;
+
+	@Autowired
+	private MessageChannel flattenedChainInput;
+
 	@Autowired
 	@Qualifier("claimCheckInput")
 	private MessageChannel claimCheckInput;
@@ -279,6 +286,15 @@ public class ChainParserTests {
 		assertEquals(9876, sendTimeout);
 	}
 
+	@Test
+	public void flattenedChain() {
+		assertTrue(TestUtils.getPropertyValue(this.flattenedChain, "flatten", Boolean.class));
+		this.flattenedChainInput.send(MessageBuilder.withPayload("a,b,c").build());
+		assertEquals("A", this.output.receive(0).getPayload());
+		assertEquals("C", this.output.receive(0).getPayload());
+		assertNull(this.output.receive(0));
+	}
+
 	@Test //INT-1622
 	public void chainWithClaimChecks() {
 		Message<?> message = MessageBuilder.withPayload("test").build();
@@ -139,6 +139,15 @@ public class ResequencerParserTests {
 				true, getPropertyValue(getPropertyValue(resequencer, "releaseStrategy"), "releasePartialSequences"));
 	}
 
+	@Test
+	public void testWindowSize() {
+		EventDrivenConsumer endpoint = (EventDrivenConsumer) context.getBean("streamingResequencer");
+		ResequencingMessageHandler resequencer = TestUtils.getPropertyValue(endpoint, "handler",
+				ResequencingMessageHandler.class);
+		assertEquals(100, getPropertyValue(resequencer, "windowSize"));
+		assertEquals(5000L, getPropertyValue(resequencer, "windowIdleTimeout"));
+	}
+
 	@Test
 	public void testCorrelationStrategyRefAndMethod() throws Exception {
 		EventDrivenConsumer endpoint = (EventDrivenConsumer) context
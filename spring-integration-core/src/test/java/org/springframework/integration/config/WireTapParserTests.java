@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.config;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.util.Map;
 
@@ -106,9 +107,26 @@ public class WireTapParserTests {
 				otherTimeoutCount++;
 			}
 		}
-		assertEquals(4, defaultTimeoutCount);
+		assertEquals(5, defaultTimeoutCount);
 		assertEquals(1, expectedTimeoutCount);
 		assertEquals(0, otherTimeoutCount);
 	}
 
+	@Test
+	public void bufferedWireTap() {
+		ClassPathXmlApplicationContext context = new ClassPathXmlApplicationContext(
+				"wireTapParserTests.xml", this.getClass());
+		WireTap wireTap = context.getBean("bufferedWireTap", WireTap.class);
+		DirectFieldAccessor accessor = new DirectFieldAccessor(wireTap);
+		assertEquals(100, accessor.getPropertyValue("bufferCapacity"));
+		assertEquals(WireTap.OverflowPolicy.SAMPLE, accessor.getPropertyValue("overflowPolicy"));
+		assertEquals(5, accessor.getPropertyValue("sampleRate"));
+		assertSame(context.getBean("executor"), accessor.getPropertyValue("taskExecutor"));
+		MessageChannel mainChannel = context.getBean("buffered", MessageChannel.class);
+		PollableChannel wireTapChannel = context.getBean("wireTapChannel", PollableChannel.class);
+		mainChannel.send(new GenericMessage<String>("foo"));
+		assertEquals("foo", wireTapChannel.receive(10000).getPayload());
+		context.close();
+	}
+
 }
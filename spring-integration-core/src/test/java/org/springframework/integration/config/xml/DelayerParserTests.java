@@ -101,6 +101,25 @@ public class DelayerParserTests {
 		assertEquals(context.getBean("testMessageStore"), accessor.getPropertyValue("messageStore"));
 	}
 
+	@Test
+	public void timerWheel() {
+		Object endpoint = context.getBean("delayerWithTimerWheel");
+		DelayHandler delayHandler = TestUtils.getPropertyValue(endpoint, "handler", DelayHandler.class);
+		assertEquals(10L, TestUtils.getPropertyValue(delayHandler, "timerWheel.tickDuration"));
+		assertEquals(64, TestUtils.getPropertyValue(delayHandler, "timerWheel.buckets", Object[].class).length);
+	}
+
+	@Test
+	public void releasePolling() {
+		Object endpoint = context.getBean("delayerWithReleasePolling");
+		DelayHandler delayHandler = TestUtils.getPropertyValue(endpoint, "handler", DelayHandler.class);
+		assertSame(context.getBean("testDelayedMessageStore"), TestUtils.getPropertyValue(delayHandler, "messageStore"));
+		assertEquals(1000L, TestUtils.getPropertyValue(delayHandler, "releasePollInterval"));
+		assertEquals(50, TestUtils.getPropertyValue(delayHandler, "releaseBatchSize"));
+		assertSame(context.getBean("transactionManager"),
+				TestUtils.getPropertyValue(delayHandler, "releaseTransactionManager"));
+	}
+
 	@Test //INT-2649
 	public void transactionalSubElement() {
 		Object endpoint = context.getBean("delayerWithTransactional");
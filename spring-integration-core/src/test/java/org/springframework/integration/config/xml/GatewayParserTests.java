@@ -17,11 +17,14 @@
 package org.springframework.integration.config.xml;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 import org.springframework.beans.factory.BeanNameAware;
@@ -31,9 +34,11 @@ import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.core.PollableChannel;
+import org.springframework.integration.core.ReplyCorrelatingChannel;
 import org.springframework.integration.gateway.TestService;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.util.SettableFuture;
 import org.springframework.scheduling.annotation.AsyncResult;
 
 /**
@@ -86,6 +91,39 @@ public class GatewayParserTests {
 	}
 
 
+	@Test
+	public void testNonBlockingGateway() throws Exception {
+		ApplicationContext context = new ClassPathXmlApplicationContext("gatewayParserTests.xml", this.getClass());
+		PollableChannel requestChannel = (PollableChannel) context.getBean("requestChannel");
+		MessageChannel replyChannel = (MessageChannel) context.getBean("replyChannel");
+		TestService service = context.getBean("nonBlocking", TestService.class);
+		Future<Message<?>> result = service.async("foo");
+		assertTrue(result instanceof SettableFuture);
+		assertFalse(result.isDone());
+		this.startResponder(requestChannel, replyChannel);
+		Message<?> reply = result.get(1, TimeUnit.SECONDS);
+		assertEquals("foo", reply.getPayload());
+	}
+
+	@Test
+	public void testReplyCorrelatingChannel() {
+		ApplicationContext context = new ClassPathXmlApplicationContext("gatewayParserTests.xml", this.getClass());
+		final PollableChannel requestChannel = (PollableChannel) context.getBean("requestChannel");
+		final MessageChannel replyChannel = (MessageChannel) context.getBean("replyChannel");
+		final AtomicReference<Object> replyChannelHeader = new AtomicReference<Object>();
+		Executors.newSingleThreadExecutor().execute(new Runnable() {
+			public void run() {
+				Message<?> request = requestChannel.receive();
+				replyChannelHeader.set(request.getHeaders().getReplyChannel());
+				replyChannel.send(MessageBuilder.fromMessage(request).build());
+			}
+		});
+		TestService service = context.getBean("correlated", TestService.class);
+		assertEquals("foo", service.requestReply("foo"));
+		assertEquals("replies", replyChannelHeader.get());
+		assertEquals(0, context.getBean("replies", ReplyCorrelatingChannel.class).getPendingReplyCount());
+	}
+
 	private void startResponder(final PollableChannel requestChannel, final MessageChannel replyChannel) {
 		Executors.newSingleThreadExecutor().execute(new Runnable() {
 			public void run() {
@@ -19,6 +19,7 @@ package org.springframework.integration.core;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -212,6 +213,58 @@ public class MessagingTemplateTests {
 		assertNull(defaultChannel.receive(0));
 	}
 
+	@Test
+	public void sendAndReceiveWithReplyCorrelatingChannel() throws Exception {
+		TestApplicationContext context = TestUtils.createTestApplicationContext();
+		ReplyCorrelatingChannel replies = new ReplyCorrelatingChannel();
+		replies.setBeanName("replies");
+		context.registerChannel("replies", replies);
+		final AtomicReference<Object> replyChannelHeader = new AtomicReference<Object>();
+		AbstractReplyProducingMessageHandler handler = new AbstractReplyProducingMessageHandler() {
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				replyChannelHeader.set(requestMessage.getHeaders().getReplyChannel());
+				return requestMessage.getPayload().toString().toUpperCase();
+			}
+		};
+		handler.setBeanFactory(context);
+		handler.afterPropertiesSet();
+		DirectChannel requestChannel = new DirectChannel();
+		requestChannel.subscribe(handler);
+		context.refresh();
+		try {
+			MessagingTemplate template = new MessagingTemplate();
+			template.setReceiveTimeout(3000);
+			template.setReplyCorrelatingChannel(replies);
+			for (int i = 0; i < 3; i++) {
+				Message<?> reply = template.sendAndReceive(requestChannel, new GenericMessage<String>("test" + i));
+				assertEquals("TEST" + i, reply.getPayload());
+				assertNull(reply.getHeaders().getReplyChannel());
+				assertNull(reply.getHeaders().get(ReplyCorrelatingChannel.REPLY_CORRELATION_ID));
+			}
+			assertEquals("replies", replyChannelHeader.get());
+			assertEquals(0, replies.getPendingReplyCount());
+		}
+		finally {
+			context.close();
+		}
+	}
+
+	@Test
+	public void sendAndReceiveWithReplyCorrelatingChannelTimesOut() {
+		ReplyCorrelatingChannel replies = new ReplyCorrelatingChannel();
+		MessagingTemplate template = new MessagingTemplate();
+		template.setReceiveTimeout(50);
+		template.setReplyCorrelatingChannel(replies);
+		QueueChannel requestChannel = new QueueChannel();
+		assertNull(template.sendAndReceive(requestChannel, new GenericMessage<String>("test")));
+		assertEquals(0, replies.getPendingReplyCount());
+		Message<?> request = requestChannel.receive(0);
+		assertSame(replies, request.getHeaders().getReplyChannel());
+		replies.send(MessageBuilder.withPayload("late").copyHeaders(request.getHeaders()).build());
+		assertEquals(1, replies.getLateReplyCount());
+	}
+
 	@Test(expected = IllegalStateException.class)
 	public void sendAndReceiveWithoutChannelArgFailsIfNoDefaultAvailable() {
 		MessagingTemplate template = new MessagingTemplate();
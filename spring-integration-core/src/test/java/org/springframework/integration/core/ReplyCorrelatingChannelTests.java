@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageDeliveryException;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.util.SettableFuture;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * @since 3.0
+ */
+public class ReplyCorrelatingChannelTests {
+
+	@Test
+	public void testReplyCompletesRegisteredExchange() throws Exception {
+		ReplyCorrelatingChannel channel = new ReplyCorrelatingChannel();
+		SettableFuture<Message<?>> first = channel.register("foo", -1);
+		SettableFuture<Message<?>> second = channel.register("bar", -1);
+		assertEquals(2, channel.getPendingReplyCount());
+		Message<String> reply = MessageBuilder.withPayload("reply")
+				.setHeader(ReplyCorrelatingChannel.REPLY_CORRELATION_ID, "bar").build();
+		assertTrue(channel.send(reply));
+		assertSame(reply, second.get(0, TimeUnit.MILLISECONDS));
+		assertFalse(first.isDone());
+		assertEquals(1, channel.getPendingReplyCount());
+		assertEquals(0, channel.getLateReplyCount());
+	}
+
+	@Test
+	public void testErrorMessageCorrelatedByFailedMessage() throws Exception {
+		ReplyCorrelatingChannel channel = new ReplyCorrelatingChannel();
+		SettableFuture<Message<?>> future = channel.register("foo", -1);
+		Message<String> request = MessageBuilder.withPayload("request")
+				.setHeader(ReplyCorrelatingChannel.REPLY_CORRELATION_ID, "foo").build();
+		ErrorMessage error = new ErrorMessage(new MessageHandlingException(request, "failed"));
+		channel.send(error);
+		assertSame(error, future.get(0, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testLateReply() throws Exception {
+		ReplyCorrelatingChannel channel = new ReplyCorrelatingChannel();
+		channel.register("foo", -1);
+		channel.cancel("foo");
+		Message<String> reply = MessageBuilder.withPayload("reply")
+				.setHeader(ReplyCorrelatingChannel.REPLY_CORRELATION_ID, "foo").build();
+		assertTrue(channel.send(reply));
+		assertEquals(1, channel.getLateReplyCount());
+		channel.setThrowExceptionOnLateReply(true);
+		try {
+			channel.send(reply);
+			fail("expected MessageDeliveryException");
+		}
+		catch (MessageDeliveryException e) {
+			assertSame(reply, e.getFailedMessage());
+		}
+		assertEquals(2, channel.getLateReplyCount());
+	}
+
+	@Test
+	public void testSweepCompletesExpiredExchanges() throws Exception {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		ReplyCorrelatingChannel channel = new ReplyCorrelatingChannel();
+		channel.setTaskScheduler(scheduler);
+		channel.setSweepInterval(10);
+		try {
+			SettableFuture<Message<?>> expiring = channel.register("foo", 20);
+			SettableFuture<Message<?>> waiting = channel.register("bar", -1);
+			assertNull(expiring.get(1, TimeUnit.SECONDS));
+			assertFalse(waiting.isDone());
+			assertEquals(1, channel.getPendingReplyCount());
+		}
+		finally {
+			channel.destroy();
+			scheduler.destroy();
+		}
+	}
+
+}
@@ -17,18 +17,33 @@
 package org.springframework.integration.gateway;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.PollableChannel;
+import org.springframework.integration.core.ReplyCorrelatingChannel;
 import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.util.SettableFuture;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Mark Fisher
@@ -99,6 +114,191 @@ public class AsyncGatewayTests {
 		assertEquals("foobar", result);
 	}
 
+	@Test
+	public void nonBlockingFutureCompletedByReplyingThread() throws Exception {
+		QueueChannel requestChannel = new QueueChannel();
+		startResponder(requestChannel);
+		GatewayProxyFactoryBean proxyFactory = new GatewayProxyFactoryBean();
+		proxyFactory.setDefaultRequestChannel(requestChannel);
+		proxyFactory.setServiceInterface(TestEchoService.class);
+		proxyFactory.setNonBlocking(true);
+		proxyFactory.setAsyncExecutor(new Executor() {
+			public void execute(Runnable command) {
+				fail("the async executor should not be used");
+			}
+		});
+		proxyFactory.setBeanName("testGateway");
+		proxyFactory.afterPropertiesSet();
+		TestEchoService service = (TestEchoService) proxyFactory.getObject();
+		Future<String> f = service.returnString("foo");
+		assertTrue(f instanceof SettableFuture);
+		final AtomicReference<Object> callbackResult = new AtomicReference<Object>();
+		final CountDownLatch latch = new CountDownLatch(1);
+		((SettableFuture<String>) f).addCallback(new SettableFuture.Callback<String>() {
+			public void onSuccess(String result) {
+				callbackResult.set(result);
+				latch.countDown();
+			}
+			public void onFailure(Throwable exception) {
+				callbackResult.set(exception);
+				latch.countDown();
+			}
+		});
+		assertEquals("foobar", f.get(1000, TimeUnit.MILLISECONDS));
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		assertEquals("foobar", callbackResult.get());
+
+		Future<Message<?>> m = service.returnMessage("foo");
+		startResponder(requestChannel);
+		assertEquals("foobar", m.get(1000, TimeUnit.MILLISECONDS).getPayload());
+	}
+
+	@Test
+	public void nonBlockingFutureTimesOut() throws Exception {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		try {
+			GatewayProxyFactoryBean proxyFactory = new GatewayProxyFactoryBean();
+			proxyFactory.setDefaultRequestChannel(new QueueChannel());
+			proxyFactory.setDefaultReplyTimeout(50);
+			proxyFactory.setServiceInterface(TestEchoService.class);
+			proxyFactory.setNonBlocking(true);
+			proxyFactory.setTaskScheduler(scheduler);
+			proxyFactory.setBeanName("testGateway");
+			proxyFactory.afterPropertiesSet();
+			TestEchoService service = (TestEchoService) proxyFactory.getObject();
+			Future<String> f = service.returnString("foo");
+			assertNull(f.get(1000, TimeUnit.MILLISECONDS));
+		}
+		finally {
+			scheduler.destroy();
+		}
+	}
+
+	@Test
+	public void nonBlockingFutureWithReplyCorrelatingChannel() throws Exception {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		ReplyCorrelatingChannel replies = new ReplyCorrelatingChannel();
+		replies.setTaskScheduler(scheduler);
+		replies.setSweepInterval(10);
+		try {
+			QueueChannel requestChannel = new QueueChannel();
+			GatewayProxyFactoryBean proxyFactory = new GatewayProxyFactoryBean();
+			proxyFactory.setDefaultRequestChannel(requestChannel);
+			proxyFactory.setDefaultReplyTimeout(2000);
+			proxyFactory.setServiceInterface(TestEchoService.class);
+			proxyFactory.setNonBlocking(true);
+			proxyFactory.setReplyCorrelatingChannel(replies);
+			proxyFactory.setBeanName("testGateway");
+			proxyFactory.afterPropertiesSet();
+			TestEchoService service = (TestEchoService) proxyFactory.getObject();
+			Future<String> f = service.returnString("foo");
+			Message<?> request = requestChannel.receive(1000);
+			// replies are correlated by header, so they must carry the request headers
+			((MessageChannel) request.getHeaders().getReplyChannel()).send(MessageBuilder.withPayload("foobar")
+					.copyHeaders(request.getHeaders()).build());
+			assertEquals("foobar", f.get(1000, TimeUnit.MILLISECONDS));
+			assertEquals(0, replies.getPendingReplyCount());
+
+			proxyFactory = new GatewayProxyFactoryBean();
+			proxyFactory.setDefaultRequestChannel(requestChannel);
+			proxyFactory.setDefaultReplyTimeout(20);
+			proxyFactory.setServiceInterface(TestEchoService.class);
+			proxyFactory.setNonBlocking(true);
+			proxyFactory.setReplyCorrelatingChannel(replies);
+			proxyFactory.setBeanName("timingOutGateway");
+			proxyFactory.afterPropertiesSet();
+			service = (TestEchoService) proxyFactory.getObject();
+			Future<Message<?>> m = service.returnMessage("foo");
+			assertNull(m.get(1000, TimeUnit.MILLISECONDS));
+			assertEquals(0, replies.getPendingReplyCount());
+		}
+		finally {
+			replies.destroy();
+			scheduler.destroy();
+		}
+	}
+
+	@Test
+	public void nonBlockingFutureWithReplyCorrelatingChannelWithoutScheduler() throws Exception {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		// the channel cannot sweep, so the gateway times out the request
+		ReplyCorrelatingChannel replies = new ReplyCorrelatingChannel();
+		try {
+			GatewayProxyFactoryBean proxyFactory = new GatewayProxyFactoryBean();
+			proxyFactory.setDefaultRequestChannel(new QueueChannel());
+			proxyFactory.setDefaultReplyTimeout(20);
+			proxyFactory.setServiceInterface(TestEchoService.class);
+			proxyFactory.setNonBlocking(true);
+			proxyFactory.setReplyCorrelatingChannel(replies);
+			proxyFactory.setTaskScheduler(scheduler);
+			proxyFactory.setBeanName("timingOutGateway");
+			proxyFactory.afterPropertiesSet();
+			TestEchoService service = (TestEchoService) proxyFactory.getObject();
+			Future<String> f = service.returnString("foo");
+			assertNull(f.get(1000, TimeUnit.MILLISECONDS));
+			assertFalse(replies.isSweeping());
+			assertEquals(0, replies.getPendingReplyCount());
+		}
+		finally {
+			scheduler.destroy();
+		}
+	}
+
+	@Test
+	public void nonBlockingFutureWithException() throws Exception {
+		DirectChannel requestChannel = new DirectChannel();
+		requestChannel.subscribe(new MessageHandler() {
+			public void handleMessage(Message<?> message) throws MessagingException {
+				throw new MessageHandlingException(message, "fail");
+			}
+		});
+		GatewayProxyFactoryBean proxyFactory = new GatewayProxyFactoryBean();
+		proxyFactory.setDefaultRequestChannel(requestChannel);
+		proxyFactory.setServiceInterface(TestEchoService.class);
+		proxyFactory.setNonBlocking(true);
+		proxyFactory.setBeanName("testGateway");
+		proxyFactory.afterPropertiesSet();
+		TestEchoService service = (TestEchoService) proxyFactory.getObject();
+		Future<String> f = service.returnString("foo");
+		assertTrue(f.isDone());
+		try {
+			f.get();
+			fail("expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof MessageHandlingException);
+		}
+	}
+
+	@Test
+	public void nonBlockingFutureWithErrorFlow() throws Exception {
+		DirectChannel requestChannel = new DirectChannel();
+		requestChannel.subscribe(new MessageHandler() {
+			public void handleMessage(Message<?> message) throws MessagingException {
+				throw new MessageHandlingException(message, "fail");
+			}
+		});
+		DirectChannel errorChannel = new DirectChannel();
+		errorChannel.subscribe(new MessageHandler() {
+			public void handleMessage(Message<?> message) throws MessagingException {
+				((MessageChannel) message.getHeaders().getReplyChannel()).send(new GenericMessage<String>("handled"));
+			}
+		});
+		GatewayProxyFactoryBean proxyFactory = new GatewayProxyFactoryBean();
+		proxyFactory.setDefaultRequestChannel(requestChannel);
+		proxyFactory.setErrorChannel(errorChannel);
+		proxyFactory.setServiceInterface(TestEchoService.class);
+		proxyFactory.setNonBlocking(true);
+		proxyFactory.setBeanName("testGateway");
+		proxyFactory.afterPropertiesSet();
+		TestEchoService service = (TestEchoService) proxyFactory.getObject();
+		Future<String> f = service.returnString("foo");
+		assertEquals("handled", f.get(1000, TimeUnit.MILLISECONDS));
+	}
+
 
 	private static void startResponder(final PollableChannel requestChannel) {
 		new Thread(new Runnable() {
@@ -21,7 +21,12 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -39,12 +44,15 @@ import org.springframework.integration.channel.MessagePublishingErrorHandler;
 import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.store.DelayedMessageGroupStore;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.transaction.PseudoTransactionManager;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * @author Mark Fisher
@@ -400,6 +408,109 @@ public class DelayHandlerTests {
 		assertEquals(0, messageGroupStore.messageGroupSize(DELAYER_MESSAGE_GROUP_ID));
 	}
 
+	@Test
+	public void timerWheelReleasesDelayedMessages() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(3);
+		output.unsubscribe(resultHandler);
+		output.subscribe(new MessageHandler() {
+			public void handleMessage(Message<?> message) {
+				latch.countDown();
+			}
+		});
+		delayHandler.setDefaultDelay(50);
+		delayHandler.setTickDuration(10);
+		delayHandler.setTicksPerWheel(8);
+		this.startDelayerHandler();
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 3; i++) {
+			input.send(MessageBuilder.withPayload("test" + i).build());
+		}
+		assertEquals(3, delayHandler.getDelayedMessageCount());
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertTrue(System.currentTimeMillis() - start >= 50);
+		assertEquals(0, delayHandler.getDelayedMessageCount());
+		assertTrue(delayHandler.getMaxReleaseLag() >= 0);
+		delayHandler.destroy();
+	}
+
+	@Test
+	public void timerWheelReschedulesPersistedMessages() throws Exception {
+		MessageGroupStore messageGroupStore = new SimpleMessageStore();
+		this.delayHandler.setDefaultDelay(100);
+		this.delayHandler.setMessageStore(messageGroupStore);
+		this.delayHandler.setTickDuration(10);
+		this.startDelayerHandler();
+		Message<?> message = MessageBuilder.withPayload("test").build();
+		this.input.send(message);
+
+		// emulate restart
+		this.delayHandler.destroy();
+		assertEquals(1, messageGroupStore.messageGroupSize(DELAYER_MESSAGE_GROUP_ID));
+
+		this.delayHandler = new DelayHandler(DELAYER_MESSAGE_GROUP_ID, this.taskScheduler);
+		this.delayHandler.setOutputChannel(output);
+		this.delayHandler.setDefaultDelay(100);
+		this.delayHandler.setMessageStore(messageGroupStore);
+		this.delayHandler.setTickDuration(10);
+		this.startDelayerHandler();
+
+		assertTrue(this.latch.await(10, TimeUnit.SECONDS));
+		assertSame(message.getPayload(), this.resultHandler.lastMessage.getPayload());
+		assertEquals(0, messageGroupStore.messageGroupSize(DELAYER_MESSAGE_GROUP_ID));
+		this.delayHandler.destroy();
+	}
+
+	@Test
+	public void releasePollingFromDelayedMessageStore() throws Exception {
+		TestDelayedMessageStore messageGroupStore = new TestDelayedMessageStore();
+		this.delayHandler.setDefaultDelay(100);
+		this.delayHandler.setMessageStore(messageGroupStore);
+		this.delayHandler.setReleasePollInterval(10);
+		this.startDelayerHandler();
+		Message<?> message = MessageBuilder.withPayload("test").build();
+		this.input.send(message);
+		assertEquals(1, messageGroupStore.dueTimes.size());
+		assertEquals(1, this.delayHandler.getDelayedMessageCount());
+
+		// emulate restart; nothing is scheduled in memory
+		this.delayHandler.destroy();
+		this.delayHandler = new DelayHandler(DELAYER_MESSAGE_GROUP_ID, this.taskScheduler);
+		this.delayHandler.setOutputChannel(output);
+		this.delayHandler.setMessageStore(messageGroupStore);
+		this.delayHandler.setReleasePollInterval(10);
+		this.startDelayerHandler();
+
+		assertTrue(this.latch.await(10, TimeUnit.SECONDS));
+		assertSame(message.getPayload(), this.resultHandler.lastMessage.getPayload());
+		assertEquals(0, messageGroupStore.messageGroupSize(DELAYER_MESSAGE_GROUP_ID));
+		assertEquals(0, messageGroupStore.dueTimes.size());
+		this.delayHandler.destroy();
+	}
+
+	@Test
+	public void releasePollingClaimsInTransaction() throws Exception {
+		TestDelayedMessageStore messageGroupStore = new TestDelayedMessageStore();
+		this.delayHandler.setDefaultDelay(100);
+		this.delayHandler.setMessageStore(messageGroupStore);
+		this.delayHandler.setReleasePollInterval(10);
+		this.delayHandler.setReleaseTransactionManager(new PseudoTransactionManager());
+		this.startDelayerHandler();
+		Message<?> message = MessageBuilder.withPayload("test").build();
+		this.input.send(message);
+
+		assertTrue(this.latch.await(10, TimeUnit.SECONDS));
+		assertSame(message.getPayload(), this.resultHandler.lastMessage.getPayload());
+		assertEquals(Boolean.TRUE, messageGroupStore.claimedInTransaction);
+		this.delayHandler.destroy();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void releasePollingRequiresDelayedMessageStore() {
+		this.delayHandler.setReleasePollInterval(10);
+		this.delayHandler.setMessageStore(new SimpleMessageStore());
+		this.startDelayerHandler();
+	}
+
 	@Test //INT-1132
 	// Can happen in the parent-child context e.g. Spring-MVC applications
 	public void testDoubleOnApplicationEvent() throws Exception {
@@ -451,4 +562,33 @@ public class DelayHandlerTests {
 		}
 	}
 
+
+	private static class TestDelayedMessageStore extends SimpleMessageStore implements DelayedMessageGroupStore {
+
+		private final Map<UUID, Long> dueTimes = new ConcurrentHashMap<UUID, Long>();
+
+		private volatile Boolean claimedInTransaction;
+
+		public void addMessageToGroup(Object groupId, Message<?> message, long dueTime) {
+			this.dueTimes.put(message.getHeaders().getId(), dueTime);
+			addMessageToGroup(groupId, message);
+		}
+
+		public synchronized List<Message<?>> claimDueMessages(Object groupId, long dueTime, int maxMessages) {
+			List<Message<?>> messages = new ArrayList<Message<?>>();
+			for (Message<?> message : getMessageGroup(groupId).getMessages()) {
+				Long messageDueTime = this.dueTimes.get(message.getHeaders().getId());
+				if (messages.size() < maxMessages && messageDueTime != null && messageDueTime <= dueTime) {
+					this.dueTimes.remove(message.getHeaders().getId());
+					messages.add(message);
+				}
+			}
+			if (!messages.isEmpty()) {
+				this.claimedInTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+			}
+			return messages;
+		}
+
+	}
+
 }
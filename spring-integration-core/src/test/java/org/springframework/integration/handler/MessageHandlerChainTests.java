@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,19 +18,25 @@ package org.springframework.integration.handler;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.junit.Ignore;
 import org.junit.Test;
 
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
+import org.springframework.integration.channel.NullChannel;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.MessageProducer;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.StopWatch;
 
 /**
  * @author Mark Fisher
@@ -172,6 +178,117 @@ public class MessageHandlerChainTests {
 		chain.afterPropertiesSet();
 	}
 
+	@Test
+	public void flattenedChainInvokesHandlersInLoop() {
+		List<MessageHandler> handlers = new ArrayList<MessageHandler>();
+		List<Integer> depths = new ArrayList<Integer>();
+		handlers.add(new AppendingHandler("1", depths));
+		handlers.add(new AppendingHandler("2", depths));
+		handlers.add(new AppendingHandler("3", depths));
+		handlers.add(new AppendingHandler("4", depths));
+		QueueChannel output = new QueueChannel();
+		MessageHandlerChain chain = new MessageHandlerChain();
+		chain.setBeanName("testChain");
+		chain.setHandlers(handlers);
+		chain.setOutputChannel(output);
+		chain.setFlatten(true);
+		chain.handleMessage(MessageBuilder.withPayload("foo").setHeader("bar", "baz").build());
+		Message<?> reply = output.receive(0);
+		assertEquals("foo1234", reply.getPayload());
+		assertEquals("baz", reply.getHeaders().get("bar"));
+		// the handlers before the last one are invoked at the same stack depth
+		assertEquals(4, depths.size());
+		assertEquals(depths.get(0), depths.get(1));
+		assertEquals(depths.get(0), depths.get(2));
+	}
+
+	@Test
+	public void flattenedChainSplitsAndFilters() {
+		List<MessageHandler> handlers = new ArrayList<MessageHandler>();
+		handlers.add(new AbstractReplyProducingMessageHandler() {
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				List<Message<?>> replies = new ArrayList<Message<?>>();
+				for (String part : ((String) requestMessage.getPayload()).split(",")) {
+					replies.add(MessageBuilder.withPayload(part).build());
+				}
+				return replies;
+			}
+		});
+		handlers.add(new AbstractReplyProducingMessageHandler() {
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				return "b".equals(requestMessage.getPayload()) ? null : requestMessage;
+			}
+		});
+		handlers.add(producer1);
+		handlers.add(new AppendingHandler("!", new ArrayList<Integer>()));
+		handler1.handleMessage(isA(Message.class));
+		expectLastCall().times(2);
+		replay(allMocks);
+		QueueChannel output = new QueueChannel();
+		MessageHandlerChain chain = new MessageHandlerChain();
+		chain.setBeanName("testChain");
+		chain.setHandlers(handlers);
+		chain.setOutputChannel(output);
+		chain.setFlatten(true);
+		chain.handleMessage(MessageBuilder.withPayload("a,b,c").build());
+		assertEquals("a!", output.receive(0).getPayload());
+		assertEquals("c!", output.receive(0).getPayload());
+		assertNull(output.receive(0));
+		verify(allMocks);
+	}
+
+	@Test
+	@Ignore
+	public void performanceTest() {
+		int count = 1000000;
+		StopWatch watch = new StopWatch("chain");
+		for (int length : Arrays.asList(1, 5, 20)) {
+			for (boolean flatten : Arrays.asList(false, true)) {
+				List<MessageHandler> handlers = new ArrayList<MessageHandler>();
+				for (int i = 0; i < length; i++) {
+					handlers.add(new AbstractReplyProducingMessageHandler() {
+						@Override
+						protected Object handleRequestMessage(Message<?> requestMessage) {
+							return requestMessage;
+						}
+					});
+				}
+				MessageHandlerChain chain = new MessageHandlerChain();
+				chain.setBeanName("testChain");
+				chain.setHandlers(handlers);
+				chain.setOutputChannel(new NullChannel());
+				chain.setFlatten(flatten);
+				chain.afterPropertiesSet();
+				watch.start(length + " handlers, flatten=" + flatten);
+				for (int i = 0; i < count; i++) {
+					chain.handleMessage(message);
+				}
+				watch.stop();
+			}
+		}
+		System.out.println(watch.prettyPrint());
+	}
+
+	private static class AppendingHandler extends AbstractReplyProducingMessageHandler {
+
+		private final String suffix;
+
+		private final List<Integer> depths;
+
+		public AppendingHandler(String suffix, List<Integer> depths) {
+			this.suffix = suffix;
+			this.depths = depths;
+		}
+
+		@Override
+		protected Object handleRequestMessage(Message<?> requestMessage) {
+			this.depths.add(Thread.currentThread().getStackTrace().length);
+			return requestMessage.getPayload() + this.suffix;
+		}
+	}
+
 	private static class ProducingHandlerStub extends IntegrationObjectSupport implements MessageHandler, MessageProducer {
 
 		private volatile MessageChannel output;
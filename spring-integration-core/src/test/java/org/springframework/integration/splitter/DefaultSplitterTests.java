@@ -20,17 +20,23 @@ import static org.junit.Assert.assertEquals;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.springframework.integration.Message;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.endpoint.EventDrivenConsumer;
 import org.springframework.integration.support.MessageBuilder;
 
@@ -107,4 +113,89 @@ public class DefaultSplitterTests {
 		Message<?> output = replyChannel.receive(15);
 		assertThat(output, is(nullValue()));
 	}
+	@Test
+	public void splitIteratorLazilyWithSequenceSizeOnLastMessage() throws Exception {
+		final AtomicInteger pulled = new AtomicInteger();
+		Iterator<String> payload = new Iterator<String>() {
+
+			public boolean hasNext() {
+				return pulled.get() < 3;
+			}
+
+			public String next() {
+				return "x" + pulled.incrementAndGet();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		final List<Integer> pulledAtSend = new ArrayList<Integer>();
+		final List<Message<?>> replies = new ArrayList<Message<?>>();
+		DirectChannel replyChannel = new DirectChannel();
+		replyChannel.subscribe(new MessageHandler() {
+			public void handleMessage(Message<?> message) {
+				pulledAtSend.add(pulled.get());
+				replies.add(message);
+			}
+		});
+		DefaultMessageSplitter splitter = new DefaultMessageSplitter();
+		splitter.setSequenceSizeMode(SequenceSizeMode.LAST);
+		splitter.setOutputChannel(replyChannel);
+		splitter.handleMessage(MessageBuilder.withPayload(payload).build());
+		assertEquals(Arrays.asList(1, 2, 3), pulledAtSend);
+		assertEquals("x1", replies.get(0).getPayload());
+		assertEquals(Integer.valueOf(1), replies.get(0).getHeaders().getSequenceNumber());
+		assertEquals(Integer.valueOf(0), replies.get(0).getHeaders().getSequenceSize());
+		assertEquals(Integer.valueOf(0), replies.get(1).getHeaders().getSequenceSize());
+		assertEquals(Integer.valueOf(3), replies.get(2).getHeaders().getSequenceNumber());
+		assertEquals(Integer.valueOf(3), replies.get(2).getHeaders().getSequenceSize());
+	}
+
+	@Test
+	public void splitIteratorWithSequenceSizeModes() throws Exception {
+		QueueChannel replyChannel = new QueueChannel();
+		DefaultMessageSplitter splitter = new DefaultMessageSplitter();
+		splitter.setOutputChannel(replyChannel);
+		splitter.handleMessage(MessageBuilder.withPayload(Arrays.asList("x", "y").iterator()).build());
+		List<Message<?>> replies = replyChannel.clear();
+		assertEquals(2, replies.size());
+		assertEquals(Integer.valueOf(2), replies.get(0).getHeaders().getSequenceSize());
+		assertEquals(Integer.valueOf(2), replies.get(1).getHeaders().getSequenceSize());
+
+		splitter.setSequenceSizeMode(SequenceSizeMode.NONE);
+		splitter.handleMessage(MessageBuilder.withPayload(Arrays.asList("x", "y")).build());
+		replies = replyChannel.clear();
+		assertEquals(2, replies.size());
+		assertEquals(Integer.valueOf(2), replies.get(1).getHeaders().getSequenceNumber());
+		assertEquals(Integer.valueOf(0), replies.get(1).getHeaders().getSequenceSize());
+	}
+
+	@Test
+	public void splitIterableThatIsNotACollectionAsSingleMessage() throws Exception {
+		Iterable<String> payload = new Iterable<String>() {
+			public Iterator<String> iterator() {
+				return Arrays.asList("x", "y").iterator();
+			}
+		};
+		QueueChannel replyChannel = new QueueChannel();
+		DefaultMessageSplitter splitter = new DefaultMessageSplitter();
+		splitter.setOutputChannel(replyChannel);
+		splitter.handleMessage(MessageBuilder.withPayload(payload).build());
+		List<Message<?>> replies = replyChannel.clear();
+		assertEquals(1, replies.size());
+		assertSame(payload, replies.get(0).getPayload());
+		assertEquals(Integer.valueOf(1), replies.get(0).getHeaders().getSequenceSize());
+	}
+
+	@Test
+	public void splitEmptyIterator() throws Exception {
+		QueueChannel replyChannel = new QueueChannel();
+		DefaultMessageSplitter splitter = new DefaultMessageSplitter();
+		splitter.setSequenceSizeMode(SequenceSizeMode.LAST);
+		splitter.setOutputChannel(replyChannel);
+		splitter.handleMessage(MessageBuilder.withPayload(Collections.emptyList().iterator()).build());
+		assertNull(replyChannel.receive(0));
+	}
+
 }
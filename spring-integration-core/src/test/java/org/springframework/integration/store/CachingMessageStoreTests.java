@@ -0,0 +1,267 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.integration.Message;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.scheduling.TaskScheduler;
+
+/**
+ * @since 3.0
+ */
+public class CachingMessageStoreTests {
+
+	private final CountingMessageStore backingStore = new CountingMessageStore();
+
+	@Test
+	public void testReadThrough() {
+		Message<String> message = new GenericMessage<String>("foo");
+		backingStore.addMessage(message);
+		CachingMessageStore store = new CachingMessageStore(backingStore);
+		assertSame(message, store.getMessage(message.getHeaders().getId()));
+		assertSame(message, store.getMessage(message.getHeaders().getId()));
+		assertEquals(1, backingStore.gets.get());
+		assertEquals(1, store.getHitCount());
+		assertEquals(1, store.getMissCount());
+		assertSame(message, store.removeMessage(message.getHeaders().getId()));
+		assertNull(store.getMessage(message.getHeaders().getId()));
+		assertEquals(0, backingStore.getMessageCount());
+	}
+
+	@Test
+	public void testCapacity() {
+		CachingMessageStore store = new CachingMessageStore(backingStore);
+		store.setCapacity(2);
+		Message<String> first = store.addMessage(new GenericMessage<String>("foo"));
+		Message<String> second = store.addMessage(new GenericMessage<String>("bar"));
+		store.getMessage(first.getHeaders().getId());
+		store.addMessage(new GenericMessage<String>("baz"));
+		assertEquals(2, store.getCacheSize());
+		assertSame(first, store.getMessage(first.getHeaders().getId()));
+		assertEquals(0, backingStore.gets.get());
+		assertSame(second, store.getMessage(second.getHeaders().getId()));
+		assertEquals(1, backingStore.gets.get());
+	}
+
+	@Test
+	public void testTimeToLive() throws Exception {
+		CachingMessageStore store = new CachingMessageStore(backingStore);
+		store.setTimeToLive(20);
+		Message<String> message = store.addMessage(new GenericMessage<String>("foo"));
+		store.getMessage(message.getHeaders().getId());
+		assertEquals(0, backingStore.gets.get());
+		Thread.sleep(50);
+		assertSame(message, store.getMessage(message.getHeaders().getId()));
+		assertEquals(1, backingStore.gets.get());
+	}
+
+	@Test
+	public void testExpiredMessagesEvicted() throws Exception {
+		CachingMessageStore store = new CachingMessageStore(backingStore);
+		store.setTimeToLive(20);
+		store.afterPropertiesSet();
+		store.addMessage(new GenericMessage<String>("foo"));
+		assertEquals(1, store.getCacheSize());
+		int n = 0;
+		while (n++ < 100 && store.getCacheSize() > 0) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, store.getCacheSize());
+		assertEquals(0, backingStore.gets.get());
+		store.destroy();
+	}
+
+	@Test
+	public void testWriteBehindBatches() throws Exception {
+		BatchingCountingMessageStore batchingStore = new BatchingCountingMessageStore();
+		CachingMessageStore store = new CachingMessageStore(batchingStore);
+		store.setWriteDelay(10000);
+		store.setWriteBatchSize(2);
+		// the scheduler does not run the flush task, so the messages are written by a single flush
+		store.setTaskScheduler(mock(TaskScheduler.class));
+		store.afterPropertiesSet();
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 5; i++) {
+			messages.add(new GenericMessage<Integer>(i));
+		}
+		for (Message<?> message : messages) {
+			store.addMessage(message);
+		}
+		store.destroy();
+		assertEquals(Arrays.asList(2, 2, 1), batchingStore.batchSizes);
+		assertEquals(5, batchingStore.getMessageCount());
+		assertEquals(5, store.getFlushedMessageCount());
+		// the written messages are cached
+		assertSame(messages.get(4), store.getMessage(messages.get(4).getHeaders().getId()));
+		assertEquals(1, store.getHitCount());
+	}
+
+	@Test
+	public void testWriteBehind() throws Exception {
+		CachingMessageStore store = new CachingMessageStore(backingStore);
+		store.setWriteDelay(10000);
+		store.setWriteBatchSize(3);
+		store.afterPropertiesSet();
+		Message<String> first = store.addMessage(new GenericMessage<String>("foo"));
+		Message<String> second = store.addMessage(new GenericMessage<String>("bar"));
+		assertEquals(0, backingStore.adds.get());
+		assertSame(first, store.getMessage(first.getHeaders().getId()));
+		assertSame(first, store.removeMessage(first.getHeaders().getId()));
+		assertEquals(1, store.getMessageCount());
+
+		store.addMessage(new GenericMessage<String>("baz"));
+		store.addMessage(new GenericMessage<String>("qux"));
+		int n = 0;
+		while (n++ < 100 && store.getFlushedMessageCount() < 3) {
+			Thread.sleep(50);
+		}
+		assertEquals(3, backingStore.adds.get());
+		assertEquals(1, store.getFlushCount());
+		assertSame(second, store.getMessage(second.getHeaders().getId()));
+		assertEquals(0, backingStore.gets.get());
+
+		Message<String> last = store.addMessage(new GenericMessage<String>("fiz"));
+		store.addMessageToGroup("group", last);
+		assertEquals(1, store.messageGroupSize("group"));
+		store.destroy();
+		assertEquals(4, backingStore.adds.get());
+		assertEquals(4, backingStore.getMessageCount());
+		assertEquals(0, store.getPendingWriteCount());
+	}
+
+	@Test
+	public void testRemoveDuringFlush() throws Exception {
+		final CountDownLatch writing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		CountingMessageStore blockingStore = new CountingMessageStore() {
+
+			@Override
+			public <T> Message<T> addMessage(Message<T> message) {
+				writing.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.addMessage(message);
+			}
+
+		};
+		final CachingMessageStore store = new CachingMessageStore(blockingStore);
+		store.setWriteDelay(10000);
+		store.setTaskScheduler(mock(TaskScheduler.class));
+		store.afterPropertiesSet();
+		final UUID id = store.addMessage(new GenericMessage<String>("foo")).getHeaders().getId();
+		Thread flusher = new Thread(new Runnable() {
+			public void run() {
+				store.flush();
+			}
+		});
+		flusher.start();
+		assertTrue(writing.await(10, TimeUnit.SECONDS));
+		Thread remover = new Thread(new Runnable() {
+			public void run() {
+				store.removeMessage(id);
+			}
+		});
+		remover.start();
+		// let the removal wait for the flush
+		Thread.sleep(100);
+		release.countDown();
+		flusher.join(10000);
+		remover.join(10000);
+		assertNull(store.getMessage(id));
+		assertEquals(0, blockingStore.getMessageCount());
+		store.destroy();
+	}
+
+	@Test
+	public void testDestroyFlushes() throws Exception {
+		CachingMessageStore store = new CachingMessageStore(backingStore);
+		store.setWriteDelay(10000);
+		store.afterPropertiesSet();
+		Message<String> message = store.addMessage(new GenericMessage<String>("foo"));
+		assertNull(backingStore.getMessage(message.getHeaders().getId()));
+		store.destroy();
+		assertSame(message, backingStore.getMessage(message.getHeaders().getId()));
+	}
+
+	@Test
+	public void testGroupOperations() {
+		CachingMessageStore store = new CachingMessageStore(backingStore);
+		Message<String> message = new GenericMessage<String>("foo");
+		store.addMessageToGroup("group", message);
+		assertEquals(1, store.getMessageGroup("group").size());
+		assertSame(message, store.pollMessageFromGroup("group"));
+		assertEquals(0, store.messageGroupSize("group"));
+	}
+
+
+	private static class CountingMessageStore extends SimpleMessageStore {
+
+		private final AtomicInteger gets = new AtomicInteger();
+
+		private final AtomicInteger adds = new AtomicInteger();
+
+		@Override
+		public Message<?> getMessage(UUID key) {
+			gets.incrementAndGet();
+			return super.getMessage(key);
+		}
+
+		@Override
+		public <T> Message<T> addMessage(Message<T> message) {
+			adds.incrementAndGet();
+			return super.addMessage(message);
+		}
+
+	}
+
+	private static class BatchingCountingMessageStore extends CountingMessageStore implements BatchingMessageStore {
+
+		private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+		public List<Message<?>> addMessages(Collection<? extends Message<?>> messages) {
+			batchSizes.add(messages.size());
+			List<Message<?>> results = new ArrayList<Message<?>>();
+			for (Message<?> message : messages) {
+				results.add(super.addMessage(message));
+			}
+			return results;
+		}
+
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,10 @@
 
 package org.springframework.integration.store;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
@@ -36,6 +39,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Dave Syer
@@ -91,6 +95,38 @@ public class MessageGroupQueueTests {
 		assertNotNull(result);
 	}
 
+	@Test
+	public void testAddAllAndDrainTo() throws Exception {
+		MessageGroupQueue queue = new MessageGroupQueue(new SimpleMessageStore(), "FOO");
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 5; i++) {
+			messages.add(new GenericMessage<Integer>(i));
+		}
+		assertTrue(queue.addAll(messages));
+		assertEquals(5, queue.size());
+		List<Message<?>> drained = new ArrayList<Message<?>>();
+		assertEquals(0, queue.drainTo(drained, 0));
+		assertEquals(5, queue.size());
+		assertEquals(3, queue.drainTo(drained, 3));
+		assertEquals(messages.subList(0, 3), drained);
+		assertEquals(2, queue.drainTo(drained));
+		assertEquals(messages, drained);
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void testAddAllBounded() throws Exception {
+		MessageGroupQueue queue = new MessageGroupQueue(new SimpleMessageStore(), "FOO", 2);
+		try {
+			queue.addAll(Arrays.<Message<?>>asList(new GenericMessage<String>("foo"), new GenericMessage<String>("bar"),
+					new GenericMessage<String>("baz")));
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertEquals(2, queue.size());
+		}
+	}
+
 	@Test
 	@Ignore
 	public void testConcurrentAccess() throws Exception {
@@ -2,11 +2,15 @@ package org.springframework.integration.store;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -68,4 +72,49 @@ public class SimpleMessageGroupTests {
 		SimpleMessageGroup grp = new SimpleMessageGroup(messages, 1);
 		assertEquals(2, grp.getMessages().size());
 	}
+
+	@Test
+	public void shouldReturnImmutableSnapshotOfMessages() throws Exception {
+		Message<?> message1 = MessageBuilder.withPayload("foo").build();
+		Message<?> message2 = MessageBuilder.withPayload("bar").build();
+		group.add(message1);
+		Collection<Message<?>> snapshot = group.getMessages();
+		group.add(message2);
+		group.remove(message1);
+		assertEquals(1, snapshot.size());
+		assertSame(message1, snapshot.iterator().next());
+		assertEquals(1, group.size());
+		assertSame(message2, group.getOne());
+	}
+
+	@Test
+	public void shouldIsolateCopyFromOriginal() throws Exception {
+		Message<?> message1 = MessageBuilder.withPayload("foo").build();
+		Message<?> message2 = MessageBuilder.withPayload("bar").build();
+		Message<?> message3 = MessageBuilder.withPayload("baz").build();
+		group.add(message1);
+		group.add(message2);
+		SimpleMessageGroup copy = new SimpleMessageGroup(group);
+		copy.remove(message2);
+		group.add(message3);
+		copy.add(message2);
+		assertEquals(Arrays.asList(message1, message2, message3), new ArrayList<Message<?>>(group.getMessages()));
+		assertEquals(Arrays.asList(message1, message2), new ArrayList<Message<?>>(copy.getMessages()));
+	}
+
+	@Test
+	public void shouldRemoveInArrivalOrder() throws Exception {
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 10; i++) {
+			Message<?> message = MessageBuilder.withPayload(i).build();
+			messages.add(message);
+			group.add(message);
+		}
+		for (int i = 0; i < 10; i++) {
+			assertSame(messages.get(i), group.getOne());
+			group.remove(group.getOne());
+			assertEquals(9 - i, group.size());
+		}
+		assertNull(group.getOne());
+	}
 }
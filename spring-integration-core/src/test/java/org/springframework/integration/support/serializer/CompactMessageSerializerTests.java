@@ -0,0 +1,192 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.message.ErrorMessage;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.StopWatch;
+
+/**
+ * @since 3.0
+ */
+public class CompactMessageSerializerTests {
+
+	private final CompactMessageSerializer serializer = new CompactMessageSerializer();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Date date = new Date();
+		Message<String> message = MessageBuilder.withPayload("foo")
+				.setCorrelationId(UUID.randomUUID())
+				.setSequenceNumber(3)
+				.setSequenceSize(-5)
+				.setHeader("string", "bar")
+				.setHeader("long", 42L)
+				.setHeader("boolean", true)
+				.setHeader("bytes", new byte[] { 1, 2, 3 })
+				.setHeader("date", date)
+				.build();
+		Message<?> result = roundTrip(message);
+		assertEquals(message.getHeaders().getId(), result.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), result.getHeaders().getTimestamp());
+		assertEquals("foo", result.getPayload());
+		assertEquals(message.getHeaders().getCorrelationId(), result.getHeaders().getCorrelationId());
+		assertEquals(Integer.valueOf(3), result.getHeaders().getSequenceNumber());
+		assertEquals(Integer.valueOf(-5), result.getHeaders().getSequenceSize());
+		assertEquals("bar", result.getHeaders().get("string"));
+		assertEquals(42L, result.getHeaders().get("long"));
+		assertEquals(true, result.getHeaders().get("boolean"));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) result.getHeaders().get("bytes"));
+		assertEquals(date, result.getHeaders().get("date"));
+		assertEquals(message.getHeaders().size(), result.getHeaders().size());
+	}
+
+	@Test
+	public void testPayloads() throws Exception {
+		assertArrayEquals(new byte[] { 4, 5 }, (byte[]) roundTrip(MessageBuilder.withPayload(new byte[] { 4, 5 }).build()).getPayload());
+		assertEquals(Arrays.asList("a", "b"), roundTrip(MessageBuilder.withPayload(Arrays.asList("a", "b")).build()).getPayload());
+		assertEquals(7, roundTrip(MessageBuilder.withPayload(7).build()).getPayload());
+	}
+
+	@Test
+	public void testNonSerializableHeaderIsDropped() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo").setReplyChannel(new QueueChannel()).build();
+		Message<?> result = roundTrip(message);
+		assertFalse(result.getHeaders().containsKey(MessageHeaders.REPLY_CHANNEL));
+	}
+
+	@Test
+	public void testErrorMessage() throws Exception {
+		Message<?> result = roundTrip(new ErrorMessage(new MessagingException("foo")));
+		assertTrue(result instanceof ErrorMessage);
+		assertEquals("foo", ((MessagingException) result.getPayload()).getMessage());
+	}
+
+	@Test
+	public void testReadsJavaSerializedMessage() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		byte[] bytes = new SerializingConverter().convert(message);
+		Object result = deserializingConverter().convert(bytes);
+		assertEquals(message, result);
+	}
+
+	@Test
+	public void testPayloadCodec() throws Exception {
+		serializer.setPayloadCodecs(Arrays.<PayloadCodec>asList(new PayloadCodec() {
+
+			public int getTypeId() {
+				return 32;
+			}
+
+			public boolean canEncode(Object payload) {
+				return payload instanceof Date;
+			}
+
+			public void encode(Object payload, DataOutputStream out) throws IOException {
+				out.writeLong(((Date) payload).getTime());
+			}
+
+			public Object decode(DataInputStream in) throws IOException {
+				return new Date(in.readLong());
+			}
+		}));
+		Date date = new Date();
+		Message<Date> message = MessageBuilder.withPayload(date).build();
+		byte[] bytes = serializingConverter().convert(message);
+		assertEquals(date, ((Message<?>) deserializingConverter().convert(bytes)).getPayload());
+		assertEquals(32, bytes[bytes.length - 9]);
+	}
+
+	@Test
+	public void testSmallerThanJavaSerialization() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo").setCorrelationId("bar").build();
+		assertTrue(serializingConverter().convert(message).length
+				< new SerializingConverter().convert(message).length / 4);
+	}
+
+	@Test
+	@Ignore
+	public void performanceTest() {
+		int times = 1000000;
+		Message<String> message = MessageBuilder.withPayload("Cartman and Kenny")
+				.setCorrelationId(UUID.randomUUID())
+				.setSequenceNumber(1)
+				.setSequenceSize(10)
+				.setHeader("homeTown", "Southpark")
+				.build();
+		run("Java serialization", new SerializingConverter(), new DeserializingConverter(), message, times);
+		run("Compact serialization", serializingConverter(), deserializingConverter(), message, times);
+	}
+
+	private void run(String name, SerializingConverter serializingConverter, DeserializingConverter deserializingConverter,
+			Message<?> message, int times) {
+		byte[] bytes = serializingConverter.convert(message);
+		StopWatch watch = new StopWatch();
+		watch.start();
+		for (int i = 0; i < times; i++) {
+			serializingConverter.convert(message);
+		}
+		watch.stop();
+		double encodeTime = watch.getTotalTimeSeconds();
+		watch = new StopWatch();
+		watch.start();
+		for (int i = 0; i < times; i++) {
+			deserializingConverter.convert(bytes);
+		}
+		watch.stop();
+		System.out.println(name + ": " + bytes.length + " bytes per message, " +
+				(int) (times / encodeTime) + " encodes/s, " + (int) (times / watch.getTotalTimeSeconds()) + " decodes/s");
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private SerializingConverter serializingConverter() {
+		return new SerializingConverter((Serializer) serializer);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private DeserializingConverter deserializingConverter() {
+		return new DeserializingConverter((Deserializer) serializer);
+	}
+
+	private Message<?> roundTrip(Message<?> message) {
+		byte[] bytes = serializingConverter().convert(message);
+		return (Message<?>) deserializingConverter().convert(bytes);
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.StopWatch;
+
+/**
+ * @since 3.0
+ */
+public class HashedTimerWheelTests {
+
+	private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+
+	private final HashedTimerWheel<String> wheel = new HashedTimerWheel<String>(10, 4,
+			new HashedTimerWheel.ExpiryCallback<String>() {
+				public void expired(List<String> items) {
+					batches.add(items);
+				}
+			});
+
+	@Test
+	public void testReleasesDueItemsInOneBatch() throws Exception {
+		long now = System.currentTimeMillis();
+		wheel.schedule("a", now + 20);
+		wheel.schedule("b", now + 20);
+		wheel.schedule("c", now + 10000);
+		assertEquals(3, wheel.getPendingCount());
+		wheel.tick();
+		assertEquals(0, batches.size());
+		Thread.sleep(50);
+		wheel.tick();
+		assertEquals(1, batches.size());
+		assertEquals(2, batches.get(0).size());
+		assertTrue(batches.get(0).contains("a"));
+		assertTrue(batches.get(0).contains("b"));
+		assertEquals(1, wheel.getPendingCount());
+		assertEquals(2, wheel.getReleasedCount());
+		assertTrue(wheel.getMaxLag() >= 10);
+	}
+
+	@Test
+	public void testItemsBeyondOneRevolution() throws Exception {
+		// the wheel covers 40ms per revolution
+		wheel.schedule("a", System.currentTimeMillis() + 100);
+		long deadline = System.currentTimeMillis() + 60;
+		while (System.currentTimeMillis() < deadline) {
+			wheel.tick();
+			Thread.sleep(5);
+		}
+		assertEquals(0, batches.size());
+		Thread.sleep(60);
+		wheel.tick();
+		assertEquals(1, batches.size());
+	}
+
+	@Test
+	public void testOverdueItemReleasedWithNextTick() {
+		wheel.schedule("a", System.currentTimeMillis() - 1000);
+		wheel.tick();
+		assertEquals(Collections.singletonList("a"), batches.get(0));
+		assertTrue(wheel.getMeanLag() >= 1000);
+	}
+
+	@Test
+	public void testScheduled() throws Exception {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		final CountDownLatch latch = new CountDownLatch(100);
+		HashedTimerWheel<Integer> wheel = new HashedTimerWheel<Integer>(5,
+				new HashedTimerWheel.ExpiryCallback<Integer>() {
+					public void expired(List<Integer> items) {
+						for (int i = 0; i < items.size(); i++) {
+							latch.countDown();
+						}
+					}
+				});
+		wheel.start(scheduler);
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < 100; i++) {
+			wheel.schedule(i, now + i);
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		wheel.stop();
+		assertEquals(0, wheel.getPendingCount());
+		scheduler.destroy();
+	}
+
+	@Test
+	@Ignore
+	public void performanceTest() throws Exception {
+		int times = 1000000;
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.afterPropertiesSet();
+		final CountDownLatch latch = new CountDownLatch(times);
+		Runnable task = new Runnable() {
+			public void run() {
+				latch.countDown();
+			}
+		};
+		StopWatch watch = new StopWatch();
+		watch.start("TaskScheduler");
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < times; i++) {
+			scheduler.schedule(task, new java.util.Date(now + 1000 + i % 1000));
+		}
+		latch.await(60, TimeUnit.SECONDS);
+		watch.stop();
+		final CountDownLatch wheelLatch = new CountDownLatch(times);
+		HashedTimerWheel<Integer> wheel = new HashedTimerWheel<Integer>(10,
+				new HashedTimerWheel.ExpiryCallback<Integer>() {
+					public void expired(List<Integer> items) {
+						for (int i = 0; i < items.size(); i++) {
+							wheelLatch.countDown();
+						}
+					}
+				});
+		wheel.start(scheduler);
+		watch.start("HashedTimerWheel");
+		now = System.currentTimeMillis();
+		Integer item = 0;
+		for (int i = 0; i < times; i++) {
+			wheel.schedule(item, now + 1000 + i % 1000);
+		}
+		wheelLatch.await(60, TimeUnit.SECONDS);
+		watch.stop();
+		wheel.stop();
+		scheduler.destroy();
+		System.out.println(watch.prettyPrint());
+		System.out.println("Max lag: " + wheel.getMaxLag() + "ms, mean lag: " + wheel.getMeanLag() + "ms");
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * @since 3.0
+ */
+public class SettableFutureTests {
+
+	@Test
+	public void testSetNotifiesWaiterAndCallbacks() throws Exception {
+		final SettableFuture<String> future = new SettableFuture<String>();
+		List<Object> results = Collections.synchronizedList(new ArrayList<Object>());
+		future.addCallback(new RecordingCallback(results));
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					Thread.sleep(50);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				future.set("foo");
+			}
+		}).start();
+		assertEquals("foo", future.get(1, TimeUnit.SECONDS));
+		assertTrue(future.isDone());
+		int n = 0;
+		while (n++ < 100 && results.isEmpty()) {
+			Thread.sleep(10);
+		}
+		assertFalse(future.set("bar"));
+		future.addCallback(new RecordingCallback(results));
+		assertEquals(2, results.size());
+		assertEquals("foo", results.get(0));
+		assertEquals("foo", results.get(1));
+	}
+
+	@Test
+	public void testSetException() throws Exception {
+		SettableFuture<String> future = new SettableFuture<String>();
+		List<Object> results = new ArrayList<Object>();
+		future.addCallback(new RecordingCallback(results));
+		RuntimeException exception = new RuntimeException("foo");
+		assertTrue(future.setException(exception));
+		assertFalse(future.set("bar"));
+		assertSame(exception, results.get(0));
+		try {
+			future.get();
+			fail("expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertSame(exception, e.getCause());
+		}
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		SettableFuture<String> future = new SettableFuture<String>();
+		assertTrue(future.cancel(true));
+		assertTrue(future.isCancelled());
+		assertFalse(future.set("foo"));
+		try {
+			future.get();
+			fail("expected CancellationException");
+		}
+		catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	@Test(expected = TimeoutException.class)
+	public void testGetTimesOut() throws Exception {
+		new SettableFuture<String>().get(10, TimeUnit.MILLISECONDS);
+	}
+
+
+	private static class RecordingCallback implements SettableFuture.Callback<String> {
+
+		private final List<Object> results;
+
+		private RecordingCallback(List<Object> results) {
+			this.results = results;
+		}
+
+		public void onSuccess(String result) {
+			this.results.add(result);
+		}
+
+		public void onFailure(Throwable exception) {
+			this.results.add(exception);
+		}
+
+	}
+
+}
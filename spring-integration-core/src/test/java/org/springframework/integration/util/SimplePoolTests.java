@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,10 +19,15 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.Test;
@@ -128,6 +133,118 @@ public class SimplePoolTests {
 		pool.releaseItem("Hello, world!");
 	}
 
+	@Test
+	public void testMaxItemLifetime() throws Exception {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(2, strings, stale);
+		pool.setMaxItemLifetime(50);
+		String s1 = pool.getItem();
+		pool.releaseItem(s1);
+		assertSame(s1, pool.getItem());
+		Thread.sleep(100);
+		// expired when released
+		pool.releaseItem(s1);
+		assertEquals(0, pool.getIdleCount());
+		assertFalse(strings.contains(s1));
+		String s2 = pool.getItem();
+		assertNotSame(s1, s2);
+		pool.releaseItem(s2);
+		Thread.sleep(100);
+		// expired when obtained
+		String s3 = pool.getItem();
+		assertNotSame(s2, s3);
+		assertFalse(strings.contains(s2));
+		assertEquals(1, pool.getAllocatedCount());
+	}
+
+	@Test
+	public void testEvictIdleItems() throws Exception {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(3, strings, stale);
+		String s1 = pool.getItem();
+		String s2 = pool.getItem();
+		String s3 = pool.getItem();
+		pool.releaseItem(s1);
+		pool.releaseItem(s2);
+		assertEquals(0, pool.evictIdleItems());
+		assertEquals(2, pool.getIdleCount());
+		// the most recently released item is reused first
+		assertSame(s2, pool.getItem());
+		pool.releaseItem(s2);
+		pool.setMaxItemLifetime(50);
+		Thread.sleep(100);
+		assertEquals(2, pool.evictIdleItems());
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(1, pool.getActiveCount());
+		assertEquals(1, strings.size());
+		// the in-use item is not evicted
+		assertTrue(strings.contains(s3));
+		pool.setMaxItemLifetime(0);
+		pool.releaseItem(s3);
+		stale.set(true);
+		assertEquals(1, pool.evictIdleItems());
+		assertEquals(0, pool.getAllocatedCount());
+		stale.set(false);
+		// all permits available
+		for (int i = 0; i < 3; i++) {
+			pool.getItem();
+		}
+	}
+
+	@Test
+	public void testWaitTimeHistogram() {
+		final Set<String> strings = new HashSet<String>();
+		final AtomicBoolean stale = new AtomicBoolean();
+		SimplePool<String> pool = stringPool(1, strings, stale);
+		pool.getItem();
+		pool.setWaitTimeout(20);
+		try {
+			pool.getItem();
+			fail("Expected exception");
+		}
+		catch (MessagingException e) {}
+		long[] histogram = pool.getWaitTimeHistogram();
+		assertEquals(5, histogram.length);
+		assertEquals(2, histogram[0] + histogram[1] + histogram[2] + histogram[3] + histogram[4]);
+		// the first item was available immediately; the wait that timed out took at least 20ms
+		assertEquals(1, histogram[0] + histogram[1]);
+		assertTrue(pool.getMaxWaitTime() >= 20);
+		pool.resetWaitTimeStatistics();
+		assertEquals(0, pool.getWaitTimeHistogram()[0]);
+		assertEquals(0, pool.getMaxWaitTime());
+	}
+
+	@Test
+	public void testConcurrentUse() throws Exception {
+		final Set<String> strings = Collections.synchronizedSet(new HashSet<String>());
+		final AtomicBoolean stale = new AtomicBoolean();
+		final SimplePool<String> pool = stringPool(4, strings, stale);
+		final Set<String> inUse = Collections.synchronizedSet(new HashSet<String>());
+		final AtomicBoolean failed = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		for (int i = 0; i < 8; i++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						String item = pool.getItem();
+						if (!inUse.add(item)) {
+							failed.set(true);
+						}
+						inUse.remove(item);
+						pool.releaseItem(item);
+					}
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+		assertFalse(failed.get());
+		assertTrue(pool.getAllocatedCount() <= 4);
+		assertEquals(pool.getAllocatedCount(), pool.getIdleCount());
+	}
+
 	private SimplePool<String> stringPool(int size, final Set<String> strings,
 			final AtomicBoolean stale) {
 		SimplePool<String> pool = new SimplePool<String>(size, new SimplePool.PoolItemCallback<String>() {
@@ -101,6 +101,10 @@ public abstract class IpAdapterParserUtils {
 
 	public static final String REPLY_CHANNEL = "reply-channel";
 
+	public static final String MAX_REQUESTS_IN_FLIGHT = "max-requests-in-flight";
+
+	public static final String CORRELATION_STRATEGY = "correlation-strategy";
+
 	public static final String LOOKUP_HOST = "lookup-host";
 
 	public static final String AUTO_STARTUP = "auto-startup";
@@ -125,6 +129,28 @@ public abstract class IpAdapterParserUtils {
 
 	public static final String MAPPER = "mapper";
 
+	public static final String BUFFER_DESERIALIZATION = "buffer-deserialization";
+
+	public static final String SELECTOR_THREADS = "selector-threads";
+
+	public static final String BUFFER_POOL = "buffer-pool";
+
+	public static final String SEND_QUEUE_CAPACITY = "send-queue-capacity";
+
+	public static final String SEND_COALESCING_THRESHOLD = "send-coalescing-threshold";
+
+	public static final String SEND_LINGER = "send-linger";
+
+	public static final String RECEIVE_BATCH_SIZE = "receive-batch-size";
+
+	public static final String EMIT_BATCHES = "emit-batches";
+
+	public static final String ACK_WINDOW_SIZE = "ack-window-size";
+
+	public static final String MAX_RETRANSMITS = "max-retransmits";
+
+	public static final String ACK_FAILURE_CHANNEL = "ack-failure-channel";
+
 	private IpAdapterParserUtils() {}
 
 	/**
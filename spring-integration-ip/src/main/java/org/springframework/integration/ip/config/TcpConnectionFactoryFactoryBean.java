@@ -30,6 +30,7 @@ import org.springframework.integration.ip.tcp.connection.AbstractServerConnectio
 import org.springframework.integration.ip.tcp.connection.DefaultTcpNetSSLSocketFactorySupport;
 import org.springframework.integration.ip.tcp.connection.DefaultTcpNetSocketFactorySupport;
 import org.springframework.integration.ip.tcp.connection.DefaultTcpNioConnectionSupport;
+import org.springframework.integration.ip.tcp.connection.NioBufferPool;
 import org.springframework.integration.ip.tcp.connection.DefaultTcpNioSSLConnectionSupport;
 import org.springframework.integration.ip.tcp.connection.DefaultTcpSocketSupport;
 import org.springframework.integration.ip.tcp.connection.TcpConnectionInterceptorFactoryChain;
@@ -93,12 +94,24 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 
 	private volatile boolean lookupHost = true;
 
+	private volatile boolean bufferDeserialization;
+
+	private volatile int selectorThreads = 1;
+
+	private volatile int sendQueueCapacity;
+
+	private volatile int sendCoalescingThreshold = 64 * 1024;
+
+	private volatile long sendLinger;
+
 	private volatile String localAddress;
 
 	private volatile boolean usingNio;
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile NioBufferPool bufferPool;
+
 	private volatile String beanName;
 
 	private volatile boolean applySequence;
@@ -127,6 +140,9 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 				this.setCommonAttributes(connectionFactory);
 				this.setServerAttributes(connectionFactory);
 				connectionFactory.setUsingDirectBuffers(this.usingDirectBuffers);
+				if (this.bufferPool != null) {
+					connectionFactory.setBufferPool(this.bufferPool);
+				}
 				connectionFactory.setTcpNioConnectionSupport(this.obtainNioConnectionSupport());
 				this.connectionFactory = connectionFactory;
 			} else {
@@ -134,6 +150,9 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 						this.host, this.port);
 				this.setCommonAttributes(connectionFactory);
 				connectionFactory.setUsingDirectBuffers(this.usingDirectBuffers);
+				if (this.bufferPool != null) {
+					connectionFactory.setBufferPool(this.bufferPool);
+				}
 				connectionFactory.setTcpNioConnectionSupport(this.obtainNioConnectionSupport());
 				this.connectionFactory = connectionFactory;
 			}
@@ -159,6 +178,11 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 		factory.setDeserializer(this.deserializer);
 		factory.setInterceptorFactoryChain(this.interceptorFactoryChain);
 		factory.setLookupHost(this.lookupHost);
+		factory.setBufferDeserialization(this.bufferDeserialization);
+		factory.setSelectorThreads(this.selectorThreads);
+		factory.setSendQueueCapacity(this.sendQueueCapacity);
+		factory.setSendCoalescingThreshold(this.sendCoalescingThreshold);
+		factory.setSendLinger(this.sendLinger);
 		this.mapper.setApplySequence(this.applySequence);
 		factory.setMapper(this.mapper);
 		factory.setSerializer(this.serializer);
@@ -322,6 +346,15 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * @param bufferPool
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setBufferPool(NioBufferPool)
+	 * @since 3.0
+	 */
+	public void setBufferPool(NioBufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
 	/**
 	 * @param taskExecutor
 	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#setTaskExecutor(java.util.concurrent.Executor)
@@ -392,6 +425,51 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 		this.lookupHost = lookupHost;
 	}
 
+	/**
+	 * @param bufferDeserialization
+	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#setBufferDeserialization(boolean)
+	 * @since 3.0
+	 */
+	public void setBufferDeserialization(boolean bufferDeserialization) {
+		this.bufferDeserialization = bufferDeserialization;
+	}
+
+	/**
+	 * @param selectorThreads
+	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#setSelectorThreads(int)
+	 * @since 3.0
+	 */
+	public void setSelectorThreads(int selectorThreads) {
+		this.selectorThreads = selectorThreads;
+	}
+
+	/**
+	 * @param sendQueueCapacity
+	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#setSendQueueCapacity(int)
+	 * @since 3.0
+	 */
+	public void setSendQueueCapacity(int sendQueueCapacity) {
+		this.sendQueueCapacity = sendQueueCapacity;
+	}
+
+	/**
+	 * @param sendCoalescingThreshold
+	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#setSendCoalescingThreshold(int)
+	 * @since 3.0
+	 */
+	public void setSendCoalescingThreshold(int sendCoalescingThreshold) {
+		this.sendCoalescingThreshold = sendCoalescingThreshold;
+	}
+
+	/**
+	 * @param sendLinger
+	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#setSendLinger(long)
+	 * @since 3.0
+	 */
+	public void setSendLinger(long sendLinger) {
+		this.sendLinger = sendLinger;
+	}
+
 	/**
 	 *
 	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#start()
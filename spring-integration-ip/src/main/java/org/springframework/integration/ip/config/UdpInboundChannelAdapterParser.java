@@ -22,6 +22,7 @@ import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.integration.config.xml.AbstractChannelAdapterParser;
 import org.springframework.integration.config.xml.IntegrationNamespaceUtils;
 import org.springframework.integration.ip.udp.MulticastReceivingChannelAdapter;
+import org.springframework.integration.ip.udp.UnicastNioReceivingChannelAdapter;
 import org.springframework.integration.ip.udp.UnicastReceivingChannelAdapter;
 import org.springframework.util.StringUtils;
 import org.w3c.dom.Element;
@@ -49,6 +50,23 @@ public class UdpInboundChannelAdapterParser extends AbstractChannelAdapterParser
 				IpAdapterParserUtils.TASK_EXECUTOR);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
 				IpAdapterParserUtils.LOOKUP_HOST);
+		if (isUsingNio(element)) {
+			IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
+					IpAdapterParserUtils.RECEIVE_BATCH_SIZE);
+			IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
+					IpAdapterParserUtils.EMIT_BATCHES);
+			IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element,
+					IpAdapterParserUtils.BUFFER_POOL);
+		}
+		else {
+			for (String attribute : new String[] { IpAdapterParserUtils.RECEIVE_BATCH_SIZE,
+					IpAdapterParserUtils.EMIT_BATCHES, IpAdapterParserUtils.BUFFER_POOL }) {
+				if (StringUtils.hasText(element.getAttribute(attribute))) {
+					parserContext.getReaderContext().error(attribute + " is only allowed when "
+							+ IpAdapterParserUtils.USING_NIO + " is true", element);
+				}
+			}
+		}
 		return builder.getBeanDefinition();
 	}
 
@@ -67,9 +85,18 @@ public class UdpInboundChannelAdapterParser extends AbstractChannelAdapterParser
 		BeanDefinitionBuilder builder;
 		String multicast = IpAdapterParserUtils.getMulticast(element);
 		if (multicast.equals("false")) {
-			builder = BeanDefinitionBuilder.genericBeanDefinition(UnicastReceivingChannelAdapter.class);
+			if (isUsingNio(element)) {
+				builder = BeanDefinitionBuilder.genericBeanDefinition(UnicastNioReceivingChannelAdapter.class);
+			}
+			else {
+				builder = BeanDefinitionBuilder.genericBeanDefinition(UnicastReceivingChannelAdapter.class);
+			}
 		}
 		else {
+			if (isUsingNio(element)) {
+				parserContext.getReaderContext().error(IpAdapterParserUtils.USING_NIO
+						+ " is not supported for a multicast UDP/IP channel adapter", element);
+			}
 			builder = BeanDefinitionBuilder.genericBeanDefinition(MulticastReceivingChannelAdapter.class);
 			String mcAddress = element
 					.getAttribute(IpAdapterParserUtils.MULTICAST_ADDRESS);
@@ -87,4 +114,8 @@ public class UdpInboundChannelAdapterParser extends AbstractChannelAdapterParser
 		return builder;
 	}
 
+	private boolean isUsingNio(Element element) {
+		return "true".equals(element.getAttribute(IpAdapterParserUtils.USING_NIO));
+	}
+
 }
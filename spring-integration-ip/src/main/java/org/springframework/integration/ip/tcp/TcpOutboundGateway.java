@@ -17,7 +17,10 @@
 package org.springframework.integration.ip.tcp;
 
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -27,6 +30,7 @@ import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageTimeoutException;
 import org.springframework.integration.MessagingException;
+import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
 import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.tcp.connection.AbstractClientConnectionFactory;
@@ -40,8 +44,15 @@ import org.springframework.util.Assert;
  * TCP outbound gateway that uses a client connection factory. If the factory is configured
  * for single-use connections, each request is sent on a new connection; if the factory does not use
  * single use connections, each request is blocked until the previous response is received
- * (or times out). Asynchronous requests/responses over the same connection are not
- * supported - use a pair of outbound/inbound adapters for that use case.
+ * (or times out).
+ * <p>
+ * Alternatively, when 'maxRequestsInFlight' is greater than 1 and the factory does not
+ * use single use connections, requests are pipelined on the shared connection: up to
+ * that many requests may await their replies at the same time. Replies are correlated
+ * with their requests by the keys a {@link CorrelationStrategy} derives from both
+ * (typically from an identifier carried in the frame); without one, the replies must
+ * arrive in the order the requests were sent. For other asynchronous use cases, use
+ * a pair of outbound/inbound adapters.
  * <p>
  * {@link SmartLifecycle} methods delegate to the underlying {@link AbstractConnectionFactory}
  *
@@ -57,6 +68,12 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 
 	private final Semaphore semaphore = new Semaphore(1, true);
 
+	private final ConcurrentMap<String, Pipeline> pipelines = new ConcurrentHashMap<String, Pipeline>();
+
+	private volatile int maxRequestsInFlight = 1;
+
+	private volatile CorrelationStrategy correlationStrategy;
+
 	private volatile long remoteTimeout = 10000L;
 
 	private volatile boolean remoteTimeoutSet = false;
@@ -82,6 +99,27 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		this.remoteTimeoutSet = true;
 	}
 
+	/**
+	 * Set the number of requests that may await a reply on the shared connection at
+	 * the same time. Values greater than 1 enable pipelining; this has no effect with
+	 * single use connections. Default 1.
+	 * @since 3.0
+	 */
+	public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+		Assert.isTrue(maxRequestsInFlight > 0, "'maxRequestsInFlight' must be greater than 0");
+		this.maxRequestsInFlight = maxRequestsInFlight;
+	}
+
+	/**
+	 * Provide the strategy that derives a correlation key from both a request and its
+	 * reply when requests are pipelined. If none is provided, replies are assumed to
+	 * arrive in the order the requests were sent.
+	 * @since 3.0
+	 */
+	public void setCorrelationStrategy(CorrelationStrategy correlationStrategy) {
+		this.correlationStrategy = correlationStrategy;
+	}
+
 	@Override
 	public void setSendTimeout(long sendTimeout) {
 		super.setSendTimeout(sendTimeout);
@@ -103,6 +141,9 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		String connectionId = null;
 		try {
 			boolean singleUseConnection = this.connectionFactory.isSingleUse();
+			if (!singleUseConnection && this.maxRequestsInFlight > 1) {
+				return this.handlePipelinedRequest(requestMessage);
+			}
 			if (!singleUseConnection) {
 				logger.debug("trying semaphore");
 				if (!this.semaphore.tryAcquire(this.requestTimeout, TimeUnit.MILLISECONDS)) {
@@ -155,12 +196,77 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		}
 	}
 
+	private Message<?> handlePipelinedRequest(Message<?> requestMessage) throws Exception {
+		TcpConnection connection = this.connectionFactory.getConnection();
+		Pipeline pipeline = this.getPipeline(connection);
+		if (!pipeline.permits.tryAcquire(this.requestTimeout, TimeUnit.MILLISECONDS)) {
+			throw new MessageTimeoutException(requestMessage, "Timed out waiting for connection");
+		}
+		try {
+			Object correlationKey = null;
+			if (this.correlationStrategy != null) {
+				correlationKey = this.correlationStrategy.getCorrelationKey(requestMessage);
+				if (correlationKey == null) {
+					throw new MessagingException(requestMessage, "No correlation key for request");
+				}
+			}
+			AsyncReply reply = new AsyncReply();
+			pipeline.send(requestMessage, correlationKey, reply);
+			Message<?> replyMessage = reply.getReply();
+			if (replyMessage == null) {
+				if (reply.isAbandoned()) {
+					throw new MessagingException(requestMessage, "Connection " + connection.getConnectionId()
+							+ " closed before the response was received");
+				}
+				if (logger.isDebugEnabled()) {
+					logger.debug("Remote Timeout on " + connection.getConnectionId());
+				}
+				if (correlationKey != null) {
+					// a late response will be discarded
+					pipeline.correlatedReplies.remove(correlationKey);
+				}
+				else {
+					// responses are correlated by order - the connection is dirty, force it closed.
+					this.pipelines.remove(connection.getConnectionId());
+					pipeline.abandon();
+					this.connectionFactory.forceClose(connection);
+				}
+				throw new MessageTimeoutException(requestMessage, "Timed out waiting for response");
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Response " + replyMessage);
+			}
+			return replyMessage;
+		}
+		finally {
+			pipeline.permits.release();
+		}
+	}
+
+	private Pipeline getPipeline(TcpConnection connection) {
+		String connectionId = connection.getConnectionId();
+		Pipeline pipeline = this.pipelines.get(connectionId);
+		if (pipeline == null) {
+			pipeline = new Pipeline(connection, this.maxRequestsInFlight);
+			Pipeline existing = this.pipelines.putIfAbsent(connectionId, pipeline);
+			if (existing != null) {
+				pipeline = existing;
+			}
+		}
+		return pipeline;
+	}
+
 	public boolean onMessage(Message<?> message) {
 		String connectionId = (String) message.getHeaders().get(IpHeaders.CONNECTION_ID);
 		if (connectionId == null) {
 			logger.error("Cannot correlate response - no connection id");
 			return false;
 		}
+		Pipeline pipeline = this.pipelines.get(connectionId);
+		if (pipeline != null) {
+			pipeline.onReply(message);
+			return false;
+		}
 		AsyncReply reply = pendingReplies.get(connectionId);
 		if (reply == null) {
 			logger.error("Cannot correlate response - no pending reply");
@@ -184,7 +290,10 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 	}
 
 	public void removeDeadConnection(TcpConnection connection) {
-		// do nothing - no asynchronous multiplexing supported
+		Pipeline pipeline = this.pipelines.remove(connection.getConnectionId());
+		if (pipeline != null) {
+			pipeline.abandon();
+		}
 	}
 
 	/**
@@ -250,6 +359,8 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 
 		private volatile Message<?> reply;
 
+		private volatile boolean abandoned;
+
 		public AsyncReply() {
 			this.latch = new CountDownLatch(1);
 		}
@@ -275,6 +386,106 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 			this.reply = reply;
 			this.latch.countDown();
 		}
+
+		/**
+		 * Release the sender without a reply, because the connection has been closed.
+		 */
+		public void abandon() {
+			this.abandoned = true;
+			this.latch.countDown();
+		}
+
+		public boolean isAbandoned() {
+			return this.abandoned;
+		}
+	}
+
+	/**
+	 * The requests awaiting a response on a connection used for pipelining.
+	 *
+	 * @since 3.0
+	 */
+	private class Pipeline {
+
+		private final TcpConnection connection;
+
+		private final Semaphore permits;
+
+		private final Queue<AsyncReply> orderedReplies = new ConcurrentLinkedQueue<AsyncReply>();
+
+		private final ConcurrentMap<Object, AsyncReply> correlatedReplies = new ConcurrentHashMap<Object, AsyncReply>();
+
+		private volatile boolean closed;
+
+		public Pipeline(TcpConnection connection, int maxRequestsInFlight) {
+			this.connection = connection;
+			this.permits = new Semaphore(maxRequestsInFlight, true);
+		}
+
+		/**
+		 * Register the pending reply and send the request; synchronized so that the
+		 * order of the pending replies is the order in which the requests are sent.
+		 */
+		public synchronized void send(Message<?> requestMessage, Object correlationKey, AsyncReply reply)
+				throws Exception {
+			if (this.closed) {
+				throw new MessagingException(requestMessage, "Connection " + this.connection.getConnectionId()
+						+ " has been closed");
+			}
+			if (correlationKey != null) {
+				if (this.correlatedReplies.putIfAbsent(correlationKey, reply) != null) {
+					throw new MessagingException(requestMessage, "A request with correlation key '"
+							+ correlationKey + "' is already awaiting a response");
+				}
+			}
+			else {
+				this.orderedReplies.add(reply);
+			}
+			try {
+				this.connection.send(requestMessage);
+			}
+			catch (Exception e) {
+				if (correlationKey != null) {
+					this.correlatedReplies.remove(correlationKey);
+				}
+				else {
+					this.orderedReplies.remove(reply);
+				}
+				throw e;
+			}
+		}
+
+		public void onReply(Message<?> message) {
+			AsyncReply reply;
+			if (correlationStrategy != null) {
+				Object correlationKey = correlationStrategy.getCorrelationKey(message);
+				reply = (correlationKey != null) ? this.correlatedReplies.remove(correlationKey) : null;
+			}
+			else {
+				reply = this.orderedReplies.poll();
+			}
+			if (reply == null) {
+				logger.error("Cannot correlate response - no pending reply");
+				return;
+			}
+			reply.setReply(message);
+		}
+
+		public void abandon() {
+			synchronized (this) {
+				this.closed = true;
+			}
+			AsyncReply reply;
+			while ((reply = this.orderedReplies.poll()) != null) {
+				reply.abandon();
+			}
+			for (Object correlationKey : this.correlatedReplies.keySet()) {
+				reply = this.correlatedReplies.remove(correlationKey);
+				if (reply != null) {
+					reply.abandon();
+				}
+			}
+		}
 	}
 
 }
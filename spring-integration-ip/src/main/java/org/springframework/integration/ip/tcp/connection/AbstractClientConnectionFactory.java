@@ -80,6 +80,8 @@ public abstract class AbstractClientConnectionFactory extends AbstractConnection
 		connection.setDeserializer(this.getDeserializer());
 		connection.setSerializer(this.getSerializer());
 		connection.setSingleUse(this.isSingleUse());
+		connection.setBufferDeserialization(this.isBufferDeserialization());
+		this.configureSendQueue(connection);
 	}
 
 	/**
@@ -37,6 +37,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
@@ -46,6 +47,7 @@ import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
 import org.springframework.util.Assert;
 
 /**
@@ -100,6 +102,8 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 
 	private volatile boolean lookupHost = true;
 
+	private volatile boolean bufferDeserialization;
+
 	private volatile List<TcpConnectionSupport> connections = new LinkedList<TcpConnectionSupport>();
 
 	private volatile TcpSocketSupport tcpSocketSupport = new DefaultTcpSocketSupport();
@@ -110,10 +114,24 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 
 	private volatile int nioHarvestInterval = DEFAULT_NIO_HARVEST_INTERVAL;
 
+	private volatile int selectorThreads = 1;
+
+	private volatile int sendQueueCapacity;
+
+	private volatile int sendCoalescingThreshold = DEFAULT_SEND_COALESCING_THRESHOLD;
+
+	private volatile long sendLinger;
+
+	private volatile NioSelectorReactor[] reactors;
+
+	private final AtomicInteger nextReactor = new AtomicInteger();
+
 	private volatile ApplicationEventPublisher applicationEventPublisher;
 
 	private static final int DEFAULT_NIO_HARVEST_INTERVAL = 2000;
 
+	private static final int DEFAULT_SEND_COALESCING_THRESHOLD = 64 * 1024;
+
 	public AbstractConnectionFactory(int port) {
 		this.port = port;
 	}
@@ -395,6 +413,26 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		return lookupHost;
 	}
 
+	/**
+	 * If true, and the deserializer is a {@link ByteBufferDeserializer}, connections
+	 * read all the available data into a buffer and extract all the complete messages
+	 * it contains, instead of reading each message from the socket's stream.
+	 * Default false.
+	 * @param bufferDeserialization the bufferDeserialization to set
+	 * @since 3.0
+	 */
+	public void setBufferDeserialization(boolean bufferDeserialization) {
+		this.bufferDeserialization = bufferDeserialization;
+	}
+
+	/**
+	 * @return the bufferDeserialization
+	 * @since 3.0
+	 */
+	public boolean isBufferDeserialization() {
+		return bufferDeserialization;
+	}
+
 	/**
 	 * How often we clean up closed NIO connections if soTimeout is 0.
 	 * Ignored when {@code soTimeout > 0} because the clean up
@@ -407,6 +445,108 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		this.nioHarvestInterval = nioHarvestInterval;
 	}
 
+	/**
+	 * The number of threads, each with its own selector, that wait for NIO connections
+	 * to become readable, and time them out; connections are assigned to them in turn.
+	 * With more than one, server factories accept connections on a separate selector.
+	 * Ignored by factories that do not use NIO. Default 1.
+	 * @param selectorThreads The number of selector threads.
+	 * @since 3.0
+	 */
+	public void setSelectorThreads(int selectorThreads) {
+		Assert.isTrue(selectorThreads > 0, "selectorThreads must be > 0");
+		this.selectorThreads = selectorThreads;
+	}
+
+	/**
+	 * @return the number of selector threads.
+	 * @since 3.0
+	 */
+	public int getSelectorThreads() {
+		return selectorThreads;
+	}
+
+	/**
+	 * When greater than 0, messages sent on connections are serialized on the sending
+	 * thread and queued, and the queued messages are written together by a task run
+	 * on the task executor, reducing the number of writes when many small messages
+	 * are sent. When the queue is full, senders wait for space, for up to the
+	 * soTimeout, if set. Ignored for single-use connections. Default 0 (no queue).
+	 * @param sendQueueCapacity The maximum number of messages queued on each connection.
+	 * @since 3.0
+	 */
+	public void setSendQueueCapacity(int sendQueueCapacity) {
+		Assert.isTrue(sendQueueCapacity >= 0, "sendQueueCapacity cannot be negative");
+		this.sendQueueCapacity = sendQueueCapacity;
+	}
+
+	/**
+	 * @return the maximum number of messages queued on each connection.
+	 * @since 3.0
+	 */
+	public int getSendQueueCapacity() {
+		return sendQueueCapacity;
+	}
+
+	/**
+	 * The maximum number of bytes of queued messages written together; a larger
+	 * message is written alone. Default 65536.
+	 * @param sendCoalescingThreshold The threshold.
+	 * @since 3.0
+	 */
+	public void setSendCoalescingThreshold(int sendCoalescingThreshold) {
+		Assert.isTrue(sendCoalescingThreshold > 0, "sendCoalescingThreshold must be > 0");
+		this.sendCoalescingThreshold = sendCoalescingThreshold;
+	}
+
+	/**
+	 * @return the maximum number of bytes of queued messages written together.
+	 * @since 3.0
+	 */
+	public int getSendCoalescingThreshold() {
+		return sendCoalescingThreshold;
+	}
+
+	/**
+	 * How long to wait for more messages to be queued before writing those already
+	 * queued, unless they reach the coalescing threshold; trades latency for fewer
+	 * writes. Default 0 (write immediately).
+	 * @param sendLinger The time in milliseconds.
+	 * @since 3.0
+	 */
+	public void setSendLinger(long sendLinger) {
+		Assert.isTrue(sendLinger >= 0, "sendLinger cannot be negative");
+		this.sendLinger = sendLinger;
+	}
+
+	/**
+	 * @return the time to wait for more messages to be queued.
+	 * @since 3.0
+	 */
+	public long getSendLinger() {
+		return sendLinger;
+	}
+
+	/**
+	 * Enables the send queue on the connection, if so configured and if the
+	 * connection supports it.
+	 * @param connection the connection.
+	 * @since 3.0
+	 */
+	protected void configureSendQueue(TcpConnectionSupport connection) {
+		if (this.sendQueueCapacity > 0 && !this.isSingleUse()) {
+			if (!connection.isSendQueueSupported()) {
+				if (logger.isWarnEnabled()) {
+					logger.warn(connection.getClass().getName() + " does not support a send queue; "
+							+ "messages are written by the sending thread");
+				}
+				return;
+			}
+			connection.enableSendQueue(this.sendQueueCapacity, this.sendCoalescingThreshold,
+					this.sendLinger, Math.max(this.getSoTimeout(), 0), this.getTaskExecutor());
+		}
+	}
+
 	/**
 	 * Closes the server.
 	 */
@@ -502,6 +642,81 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		}
 	}
 
+	/**
+	 * Start the selector threads, if more than one is configured; connections are
+	 * then registered with {@link #registerWithReactor(SocketChannel, TcpNioConnection)}
+	 * instead of with the factory's own selector.
+	 * @return true if the selector threads were started.
+	 * @throws IOException if a selector cannot be opened.
+	 * @since 3.0
+	 */
+	protected boolean startReactors() throws IOException {
+		if (this.selectorThreads <= 1) {
+			return false;
+		}
+		NioSelectorReactor[] reactors = new NioSelectorReactor[this.selectorThreads];
+		for (int i = 0; i < reactors.length; i++) {
+			reactors[i] = new NioSelectorReactor(this, i);
+		}
+		this.reactors = reactors;
+		for (NioSelectorReactor reactor : reactors) {
+			this.getTaskExecutor().execute(reactor);
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if connections are registered with the selector threads.
+	 * @since 3.0
+	 */
+	protected boolean isUsingReactors() {
+		return this.reactors != null;
+	}
+
+	/**
+	 * Assign a connection to the next selector thread, in turn.
+	 * @param channel The connection's (non-blocking) channel.
+	 * @param connection The connection.
+	 * @since 3.0
+	 */
+	protected void registerWithReactor(SocketChannel channel, TcpNioConnection connection) {
+		NioSelectorReactor[] reactors = this.reactors;
+		Assert.state(reactors != null, "Selector threads have not been started");
+		int index = (this.nextReactor.getAndIncrement() & Integer.MAX_VALUE) % reactors.length;
+		reactors[index].register(channel, connection);
+	}
+
+	/**
+	 * Stop the selector threads, if they were started.
+	 * @since 3.0
+	 */
+	protected void stopReactors() {
+		NioSelectorReactor[] reactors = this.reactors;
+		this.reactors = null;
+		if (reactors != null) {
+			for (NioSelectorReactor reactor : reactors) {
+				reactor.stop();
+			}
+		}
+	}
+
+	/**
+	 * Processes the selections of one of the selector threads.
+	 */
+	void processNioSelections(int selectionCount, Selector selector, NioSelectorReactor reactor)
+			throws IOException {
+		long now = System.currentTimeMillis();
+		if (this.soTimeout > 0 ||
+				now >= reactor.getNextCheckForClosedConnections() ||
+				selectionCount == 0) {
+			reactor.setNextCheckForClosedConnections(now + this.nioHarvestInterval);
+			this.checkNioConnections(now, reactor.getConnections());
+			// only when checking, to avoid contention between the selector threads
+			this.harvestClosedConnections();
+		}
+		this.doProcessNioSelections(selectionCount, selector, null, now);
+	}
+
 	/**
 	 *
 	 * Times out any expired connections then, if {@code selectionCount > 0},
@@ -520,43 +735,55 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 				now >= this.nextCheckForClosedNioConnections ||
 				selectionCount == 0) {
 			this.nextCheckForClosedNioConnections = now + this.nioHarvestInterval;
-			Iterator<Entry<SocketChannel, TcpNioConnection>> it = connections.entrySet().iterator();
-			while (it.hasNext()) {
-				SocketChannel channel = it.next().getKey();
-				if (!channel.isOpen()) {
-					logger.debug("Removing closed channel");
-					it.remove();
-				}
-				else if (soTimeout > 0) {
-					TcpNioConnection connection = connections.get(channel);
-					if (now - connection.getLastRead() >= this.soTimeout) {
-						/*
-						 * For client connections, we have to wait for 2 timeouts if the last
-						 * send was within the current timeout.
-						 */
-						if (!connection.isServer() &&
-							now - connection.getLastSend() < this.soTimeout &&
-							now - connection.getLastRead() < this.soTimeout * 2)
-						{
-							if (logger.isDebugEnabled()) {
-								logger.debug("Skipping a connection timeout because we have a recent send "
-										+ connection.getConnectionId());
-							}
+			this.checkNioConnections(now, connections);
+		}
+		this.harvestClosedConnections();
+		this.doProcessNioSelections(selectionCount, selector, server, now);
+	}
+
+	/**
+	 * Removes closed channels from the map and times out any expired connections.
+	 */
+	private void checkNioConnections(long now, Map<SocketChannel, TcpNioConnection> connections) {
+		Iterator<Entry<SocketChannel, TcpNioConnection>> it = connections.entrySet().iterator();
+		while (it.hasNext()) {
+			SocketChannel channel = it.next().getKey();
+			if (!channel.isOpen()) {
+				logger.debug("Removing closed channel");
+				it.remove();
+			}
+			else if (soTimeout > 0) {
+				TcpNioConnection connection = connections.get(channel);
+				if (now - connection.getLastRead() >= this.soTimeout) {
+					/*
+					 * For client connections, we have to wait for 2 timeouts if the last
+					 * send was within the current timeout.
+					 */
+					if (!connection.isServer() &&
+						now - connection.getLastSend() < this.soTimeout &&
+						now - connection.getLastRead() < this.soTimeout * 2)
+					{
+						if (logger.isDebugEnabled()) {
+							logger.debug("Skipping a connection timeout because we have a recent send "
+									+ connection.getConnectionId());
 						}
-						else {
-							if (logger.isWarnEnabled()) {
-								logger.warn("Timing out TcpNioConnection " +
-											this.port + " : " +
-										    connection.getConnectionId());
-							}
-							connection.publishConnectionExceptionEvent(new SocketTimeoutException("Timing out connection"));
-							connection.timeout();
+					}
+					else {
+						if (logger.isWarnEnabled()) {
+							logger.warn("Timing out TcpNioConnection " +
+										this.port + " : " +
+									    connection.getConnectionId());
 						}
+						connection.publishConnectionExceptionEvent(new SocketTimeoutException("Timing out connection"));
+						connection.timeout();
 					}
 				}
 			}
 		}
-		this.harvestClosedConnections();
+	}
+
+	private void doProcessNioSelections(int selectionCount, final Selector selector, ServerSocketChannel server,
+			long now) throws IOException {
 		if (logger.isTraceEnabled()) {
 			if (host == null) {
 				logger.trace("Port " + this.port + " SelectionCount: " + selectionCount);
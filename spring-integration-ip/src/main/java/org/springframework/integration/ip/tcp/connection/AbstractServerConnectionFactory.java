@@ -109,6 +109,8 @@ public abstract class AbstractServerConnectionFactory
 		connection.setDeserializer(this.getDeserializer());
 		connection.setSerializer(this.getSerializer());
 		connection.setSingleUse(this.isSingleUse());
+		connection.setBufferDeserialization(this.isBufferDeserialization());
+		this.configureSendQueue(connection);
 		/*
 		 * If we are configured
 		 * for single use; need to enforce a timeout on the socket so we will close
@@ -16,6 +16,7 @@
 package org.springframework.integration.ip.tcp.connection;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -26,12 +27,29 @@ import org.springframework.integration.MessagingException;
 import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.util.SimplePool;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.util.Assert;
 
 /**
+ * A client connection factory that maintains a pool of shared connections
+ * obtained from a target factory.
+ * <p>
+ * Connections may be given a maximum lifetime, after which they are closed
+ * instead of being reused. With a connection eviction interval, idle connections
+ * that have been closed, or have exceeded the maximum lifetime, are removed from
+ * the pool by a task run on the task scheduler, rather than being found by a request.
+ * The pool statistics, including a histogram of the time spent waiting for a
+ * connection, are exposed over JMX.
+ *
  * @author Gary Russell
  * @since 2.2
  *
  */
+@ManagedResource
 public class CachingClientConnectionFactory extends AbstractClientConnectionFactory {
 
 	private final Log logger = LogFactory.getLog(this.getClass());
@@ -42,6 +60,10 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 
 	private volatile TcpListener listener;
 
+	private volatile long connectionEvictionInterval;
+
+	private volatile ScheduledFuture<?> evictionTask;
+
 	public CachingClientConnectionFactory(AbstractClientConnectionFactory target, int poolSize) {
 		super("", 0);
 		// override single-use to true to force "close" after use
@@ -71,26 +93,83 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 		this.pool.setWaitTimeout(connectionWaitTimeout);
 	}
 
+	/**
+	 * Connections are closed, instead of being reused, once this time has elapsed
+	 * since they were established. Default 0 (no limit).
+	 * @param connectionMaxLifetime The maximum lifetime in milliseconds.
+	 * @since 3.0
+	 */
+	public void setConnectionMaxLifetime(long connectionMaxLifetime) {
+		this.pool.setMaxItemLifetime(connectionMaxLifetime);
+	}
+
+	/**
+	 * How often idle connections that have been closed, or have exceeded the maximum
+	 * lifetime, are removed from the pool; requires a task scheduler. Default 0 (such
+	 * connections are removed when they are next obtained from the pool).
+	 * @param connectionEvictionInterval The interval in milliseconds.
+	 * @since 3.0
+	 */
+	public void setConnectionEvictionInterval(long connectionEvictionInterval) {
+		Assert.isTrue(connectionEvictionInterval >= 0, "'connectionEvictionInterval' cannot be negative");
+		this.connectionEvictionInterval = connectionEvictionInterval;
+	}
+
+	@ManagedAttribute
 	public synchronized void setPoolSize(int poolSize) {
 		this.pool.setPoolSize(poolSize);
 	}
 
+	@ManagedAttribute
 	public int getPoolSize() {
 		return this.pool.getPoolSize();
 	}
 
+	@ManagedMetric
 	public int getIdleCount() {
 		return this.pool.getIdleCount();
 	}
 
+	@ManagedMetric
 	public int getActiveCount() {
 		return this.pool.getActiveCount();
 	}
 
+	@ManagedMetric
 	public int getAllocatedCount() {
 		return this.pool.getAllocatedCount();
 	}
 
+	/**
+	 * @return the number of times a request has waited for a connection, in each
+	 * range of wait times: less than 1 millisecond, 1-10ms, 10-100ms, 100ms-1s and
+	 * 1s or more.
+	 * @since 3.0
+	 */
+	@ManagedAttribute(description = "Connection wait counts: <1ms, 1-10ms, 10-100ms, 100ms-1s, >=1s")
+	public long[] getConnectionWaitTimeHistogram() {
+		return this.pool.getWaitTimeHistogram();
+	}
+
+	/**
+	 * @return the longest time, in milliseconds, that a request has waited for a
+	 * connection.
+	 * @since 3.0
+	 */
+	@ManagedMetric
+	public long getMaxConnectionWaitTime() {
+		return this.pool.getMaxWaitTime();
+	}
+
+	/**
+	 * Clears the connection wait time statistics.
+	 * @since 3.0
+	 */
+	@ManagedOperation
+	public void resetConnectionWaitTimeStatistics() {
+		this.pool.resetWaitTimeStatistics();
+	}
+
 	@Override
 	public TcpConnectionSupport obtainConnection() throws Exception {
 		return new CachedConnection(this.pool.getItem());
@@ -361,11 +440,25 @@ public class CachingClientConnectionFactory extends AbstractClientConnectionFact
 	public void start() {
 		this.setActive(true);
 		targetConnectionFactory.start();
+		if (this.connectionEvictionInterval > 0 && this.evictionTask == null) {
+			TaskScheduler taskScheduler = this.getTaskScheduler();
+			Assert.state(taskScheduler != null, "A task scheduler is required for connection eviction");
+			this.evictionTask = taskScheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					pool.evictIdleItems();
+				}
+			}, this.connectionEvictionInterval);
+		}
 		super.start();
 	}
 
 	@Override
 	public synchronized void stop() {
+		ScheduledFuture<?> evictionTask = this.evictionTask;
+		if (evictionTask != null) {
+			evictionTask.cancel(false);
+			this.evictionTask = null;
+		}
 		targetConnectionFactory.stop();
 		this.pool.removeAllIdleItems();
 	}
@@ -279,6 +279,16 @@ public class FailoverClientConnectionFactory extends AbstractClientConnectionFac
 			return this.delegate.getDeserializerStateKey();
 		}
 
+		@Override
+		protected boolean isSendQueueSupported() {
+			return this.delegate.isSendQueueSupported();
+		}
+
+		@Override
+		protected void writeQueuedFrames(List<byte[]> frames) throws IOException {
+			this.delegate.writeQueuedFrames(frames);
+		}
+
 		@Override
 		public void registerListener(TcpListener listener) {
 			this.delegate.registerListener(listener);
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A pool of {@link ByteBuffer}s shared by the connections of NIO connection
+ * factories, avoiding the cost of allocating (and the fragmentation caused by)
+ * direct buffers for each connection when connections are frequently opened and
+ * closed.
+ * <p>
+ * Buffers are pooled in size classes, each twice the size of the previous one, from
+ * the minimum to the maximum pooled size; a request is satisfied by a buffer of the
+ * smallest class that is large enough, so the capacity of the buffer may exceed the
+ * size requested. Larger buffers are allocated when requested and discarded when
+ * released. At most {@code maxPooledPerClass} free buffers are retained in each class.
+ * <p>
+ * With leak detection (enabled by default when DEBUG logging is enabled for this
+ * class), the pool records where each buffer was acquired, and logs a warning, with
+ * that location, when a buffer is garbage collected without having been released,
+ * or when a buffer is released twice. Leak detection adds significant overhead.
+ *
+ * @since 3.0
+ */
+public class NioBufferPool {
+
+	private static final Log logger = LogFactory.getLog(NioBufferPool.class);
+
+	public static final int DEFAULT_MIN_POOLED_SIZE = 1024;
+
+	public static final int DEFAULT_MAX_POOLED_SIZE = 1024 * 1024;
+
+	public static final int DEFAULT_MAX_POOLED_PER_CLASS = 64;
+
+	private final boolean direct;
+
+	private final int minPooledSize;
+
+	private final int maxPooledSize;
+
+	private final int maxPooledPerClass;
+
+	private final Queue<ByteBuffer>[] freeBuffers;
+
+	private final AtomicInteger[] freeCounts;
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	private volatile boolean leakDetection = logger.isDebugEnabled();
+
+	/*
+	 * Leak detection only; keyed by the identity hash code of the buffer, because
+	 * a buffer's own hashCode() depends on its content.
+	 */
+	private final Map<Integer, List<LeakTracker>> trackers = new HashMap<Integer, List<LeakTracker>>();
+
+	private final ReferenceQueue<ByteBuffer> collected = new ReferenceQueue<ByteBuffer>();
+
+	private final AtomicInteger leakCount = new AtomicInteger();
+
+	/**
+	 * Creates a pool with the default size classes.
+	 * @param direct true to pool direct buffers, false for heap buffers.
+	 */
+	public NioBufferPool(boolean direct) {
+		this(direct, DEFAULT_MIN_POOLED_SIZE, DEFAULT_MAX_POOLED_SIZE, DEFAULT_MAX_POOLED_PER_CLASS);
+	}
+
+	/**
+	 * @param direct true to pool direct buffers, false for heap buffers.
+	 * @param minPooledSize the capacity of the smallest buffers; rounded up to a power of two.
+	 * @param maxPooledSize the capacity of the largest pooled buffers.
+	 * @param maxPooledPerClass the maximum number of free buffers retained in each size class.
+	 */
+	public NioBufferPool(boolean direct, int minPooledSize, int maxPooledSize, int maxPooledPerClass) {
+		Assert.isTrue(minPooledSize > 0, "'minPooledSize' must be > 0");
+		Assert.isTrue(maxPooledSize >= minPooledSize, "'maxPooledSize' must be >= 'minPooledSize'");
+		Assert.isTrue(maxPooledPerClass >= 0, "'maxPooledPerClass' must be >= 0");
+		this.direct = direct;
+		this.minPooledSize = roundUp(minPooledSize);
+		this.maxPooledPerClass = maxPooledPerClass;
+		int classes = 1;
+		while (((long) this.minPooledSize << classes) <= maxPooledSize) {
+			classes++;
+		}
+		this.maxPooledSize = this.minPooledSize << (classes - 1);
+		@SuppressWarnings("unchecked")
+		Queue<ByteBuffer>[] freeBuffers = (Queue<ByteBuffer>[]) new Queue<?>[classes];
+		this.freeCounts = new AtomicInteger[classes];
+		for (int i = 0; i < classes; i++) {
+			freeBuffers[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+			this.freeCounts[i] = new AtomicInteger();
+		}
+		this.freeBuffers = freeBuffers;
+	}
+
+	/**
+	 * @param leakDetection true to track the acquired buffers, and report those
+	 * that are not released.
+	 */
+	public void setLeakDetection(boolean leakDetection) {
+		this.leakDetection = leakDetection;
+	}
+
+	public boolean isLeakDetection() {
+		return leakDetection;
+	}
+
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * Obtains a cleared buffer with a capacity of at least the size.
+	 * @param size the minimum capacity.
+	 * @return the buffer.
+	 */
+	public ByteBuffer acquire(int size) {
+		Assert.isTrue(size >= 0, "'size' cannot be negative");
+		int sizeClass = this.sizeClass(size);
+		ByteBuffer buffer = null;
+		if (sizeClass >= 0) {
+			buffer = this.freeBuffers[sizeClass].poll();
+			if (buffer != null) {
+				this.freeCounts[sizeClass].decrementAndGet();
+				buffer.clear();
+			}
+			else {
+				buffer = this.allocate(this.minPooledSize << sizeClass);
+			}
+		}
+		else {
+			buffer = this.allocate(size);
+		}
+		this.outstanding.incrementAndGet();
+		if (this.leakDetection) {
+			this.track(buffer);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool; the buffer must not be used after it has been
+	 * released.
+	 * @param buffer the buffer, which must have been obtained from this pool.
+	 */
+	public void release(ByteBuffer buffer) {
+		Assert.notNull(buffer, "'buffer' cannot be null");
+		if (this.leakDetection && !this.untrack(buffer)) {
+			return;
+		}
+		this.outstanding.decrementAndGet();
+		int capacity = buffer.capacity();
+		if (capacity > this.maxPooledSize || capacity < this.minPooledSize
+				|| Integer.bitCount(capacity) != 1 || buffer.isDirect() != this.direct) {
+			return;
+		}
+		int sizeClass = this.sizeClass(capacity);
+		if (this.freeCounts[sizeClass].incrementAndGet() > this.maxPooledPerClass) {
+			this.freeCounts[sizeClass].decrementAndGet();
+			return;
+		}
+		this.freeBuffers[sizeClass].add(buffer);
+	}
+
+	/**
+	 * @return the number of buffers acquired and not yet released.
+	 */
+	public int getOutstandingCount() {
+		return this.outstanding.get();
+	}
+
+	/**
+	 * @return the number of free buffers retained by the pool.
+	 */
+	public int getPooledCount() {
+		int count = 0;
+		for (AtomicInteger freeCount : this.freeCounts) {
+			count += freeCount.get();
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of buffers, acquired while leak detection was enabled, that
+	 * have been garbage collected without being released.
+	 */
+	public int getLeakCount() {
+		this.reportLeaks();
+		return this.leakCount.get();
+	}
+
+	private ByteBuffer allocate(int capacity) {
+		return this.direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+	}
+
+	/**
+	 * @return the index of the smallest class that can hold the size, or -1 if
+	 * buffers of that size are not pooled.
+	 */
+	private int sizeClass(int size) {
+		if (size > this.maxPooledSize) {
+			return -1;
+		}
+		if (size <= this.minPooledSize) {
+			return 0;
+		}
+		return Integer.numberOfTrailingZeros(roundUp(size)) - Integer.numberOfTrailingZeros(this.minPooledSize);
+	}
+
+	private static int roundUp(int size) {
+		int highest = Integer.highestOneBit(size);
+		return highest == size ? size : highest << 1;
+	}
+
+	private void track(ByteBuffer buffer) {
+		this.reportLeaks();
+		LeakTracker tracker = new LeakTracker(buffer, this.collected);
+		synchronized (this.trackers) {
+			List<LeakTracker> list = this.trackers.get(tracker.key);
+			if (list == null) {
+				list = new LinkedList<LeakTracker>();
+				this.trackers.put(tracker.key, list);
+			}
+			list.add(tracker);
+		}
+	}
+
+	/**
+	 * @return false if the buffer is not tracked, because it has already been released.
+	 */
+	private boolean untrack(ByteBuffer buffer) {
+		this.reportLeaks();
+		Integer key = System.identityHashCode(buffer);
+		synchronized (this.trackers) {
+			List<LeakTracker> list = this.trackers.get(key);
+			if (list != null) {
+				Iterator<LeakTracker> iterator = list.iterator();
+				while (iterator.hasNext()) {
+					LeakTracker tracker = iterator.next();
+					if (tracker.get() == buffer) {
+						iterator.remove();
+						if (list.isEmpty()) {
+							this.trackers.remove(key);
+						}
+						tracker.clear();
+						return true;
+					}
+				}
+			}
+		}
+		/*
+		 * A buffer acquired before leak detection was enabled is also untracked; it
+		 * cannot be distinguished from one that is released twice.
+		 */
+		logger.warn("Buffer released more than once, or not acquired from this pool",
+				new IllegalStateException("Buffer released here"));
+		return false;
+	}
+
+	private void reportLeaks() {
+		Reference<? extends ByteBuffer> reference;
+		while ((reference = this.collected.poll()) != null) {
+			LeakTracker tracker = (LeakTracker) reference;
+			boolean leaked;
+			synchronized (this.trackers) {
+				List<LeakTracker> list = this.trackers.get(tracker.key);
+				leaked = list != null && list.remove(tracker);
+				if (leaked && list.isEmpty()) {
+					this.trackers.remove(tracker.key);
+				}
+			}
+			if (leaked) {
+				this.outstanding.decrementAndGet();
+				this.leakCount.incrementAndGet();
+				logger.warn("Buffer was garbage collected without being released to the pool; "
+						+ "it was acquired at the location shown", tracker.acquiredAt);
+			}
+		}
+	}
+
+	private static class LeakTracker extends WeakReference<ByteBuffer> {
+
+		private final Integer key;
+
+		private final Exception acquiredAt;
+
+		LeakTracker(ByteBuffer buffer, ReferenceQueue<ByteBuffer> queue) {
+			super(buffer, queue);
+			this.key = System.identityHashCode(buffer);
+			this.acquiredAt = new IllegalStateException("Buffer acquired here");
+		}
+
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * One of the selector threads of an NIO connection factory. Each reactor has its own
+ * {@link Selector}, on which it waits for the connections assigned to it to become
+ * readable, and times out its own connections when the factory has an soTimeout.
+ * New connections are queued for registration by the reactor's thread, because
+ * registration would block while the thread is selecting.
+ *
+ * @since 3.0
+ */
+class NioSelectorReactor implements Runnable {
+
+	private static final Log logger = LogFactory.getLog(NioSelectorReactor.class);
+
+	private final AbstractConnectionFactory connectionFactory;
+
+	private final int index;
+
+	private final Selector selector;
+
+	private final Map<SocketChannel, TcpNioConnection> channelMap = new ConcurrentHashMap<SocketChannel, TcpNioConnection>();
+
+	private final BlockingQueue<SocketChannel> newChannels = new LinkedBlockingQueue<SocketChannel>();
+
+	private volatile long nextCheckForClosedConnections;
+
+	private volatile boolean stopped;
+
+	NioSelectorReactor(AbstractConnectionFactory connectionFactory, int index) throws IOException {
+		this.connectionFactory = connectionFactory;
+		this.index = index;
+		this.selector = Selector.open();
+	}
+
+	/**
+	 * Assign a connection to this reactor; its channel must be non-blocking.
+	 */
+	void register(SocketChannel channel, TcpNioConnection connection) {
+		this.channelMap.put(channel, connection);
+		this.newChannels.add(channel);
+		this.selector.wakeup();
+	}
+
+	/**
+	 * Stop the reactor; its thread exits after closing its connections.
+	 */
+	void stop() {
+		this.stopped = true;
+		this.selector.wakeup();
+	}
+
+	Map<SocketChannel, TcpNioConnection> getConnections() {
+		return this.channelMap;
+	}
+
+	long getNextCheckForClosedConnections() {
+		return this.nextCheckForClosedConnections;
+	}
+
+	void setNextCheckForClosedConnections(long nextCheckForClosedConnections) {
+		this.nextCheckForClosedConnections = nextCheckForClosedConnections;
+	}
+
+	public void run() {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Selector thread " + this.index + " running for " + this.connectionFactory);
+		}
+		try {
+			while (!this.stopped && this.connectionFactory.isActive()) {
+				int soTimeout = this.connectionFactory.getSoTimeout();
+				int selectionCount = 0;
+				try {
+					selectionCount = this.selector.select(soTimeout < 0 ? 0 : soTimeout);
+				}
+				catch (CancelledKeyException cke) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("CancelledKeyException during Selector.select()");
+					}
+				}
+				SocketChannel newChannel;
+				while ((newChannel = this.newChannels.poll()) != null) {
+					try {
+						newChannel.register(this.selector, SelectionKey.OP_READ, this.channelMap.get(newChannel));
+					}
+					catch (ClosedChannelException cce) {
+						if (logger.isDebugEnabled()) {
+							logger.debug("Channel closed before registering with selector for reading");
+						}
+					}
+				}
+				this.connectionFactory.processNioSelections(selectionCount, this.selector, this);
+			}
+		}
+		catch (Exception e) {
+			logger.error("Exception in selector thread " + this.index, e);
+		}
+		finally {
+			for (TcpNioConnection connection : this.channelMap.values()) {
+				connection.close();
+			}
+			this.channelMap.clear();
+			try {
+				this.selector.close();
+			}
+			catch (IOException e) {}
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Selector thread " + this.index + " exiting for " + this.connectionFactory);
+		}
+	}
+
+}
@@ -16,6 +16,10 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.Message;
@@ -99,6 +103,37 @@ public abstract class TcpConnectionInterceptorSupport extends TcpConnectionSuppo
 		this.theConnection.setSingleUse(singleUse);
 	}
 
+	@Override
+	public void setBufferDeserialization(boolean bufferDeserialization) {
+		this.theConnection.setBufferDeserialization(bufferDeserialization);
+	}
+
+	@Override
+	public boolean isBufferDeserialization() {
+		return this.theConnection.isBufferDeserialization();
+	}
+
+	@Override
+	public void enableSendQueue(int capacity, int coalescingThreshold, long linger,
+			long sendTimeout, Executor executor) {
+		this.theConnection.enableSendQueue(capacity, coalescingThreshold, linger, sendTimeout, executor);
+	}
+
+	@Override
+	public boolean isSendQueueEnabled() {
+		return this.theConnection.isSendQueueEnabled();
+	}
+
+	@Override
+	protected boolean isSendQueueSupported() {
+		return this.theConnection.isSendQueueSupported();
+	}
+
+	@Override
+	protected void writeQueuedFrames(List<byte[]> frames) throws IOException {
+		this.theConnection.writeQueuedFrames(frames);
+	}
+
 	@Override
 	public void setMapper(TcpMessageMapper mapper) {
 		this.theConnection.setMapper(mapper);
@@ -16,10 +16,14 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -31,6 +35,7 @@ import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.Message;
 import org.springframework.integration.ip.tcp.connection.TcpConnectionEvent.TcpConnectionEventType;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
 import org.springframework.util.Assert;
 
 /**
@@ -62,6 +67,10 @@ public abstract class TcpConnectionSupport implements TcpConnection {
 
 	private volatile boolean singleUse;
 
+	private volatile boolean bufferDeserialization;
+
+	private volatile TcpSendQueue sendQueue;
+
 	private final boolean server;
 
 	private volatile String connectionId;
@@ -144,6 +153,10 @@ public abstract class TcpConnectionSupport implements TcpConnection {
 	 * Closes this connection.
 	 */
 	public void close() {
+		TcpSendQueue sendQueue = this.sendQueue;
+		if (sendQueue != null) {
+			sendQueue.close();
+		}
 		if (this.sender != null) {
 			this.sender.removeDeadConnection(this);
 		}
@@ -282,6 +295,103 @@ public abstract class TcpConnectionSupport implements TcpConnection {
 		return this.singleUse;
 	}
 
+	/**
+	 * @param bufferDeserialization true if the connection should use the deserializer
+	 * as a {@link ByteBufferDeserializer}, when it is one.
+	 * @since 3.0
+	 */
+	public void setBufferDeserialization(boolean bufferDeserialization) {
+		this.bufferDeserialization = bufferDeserialization;
+	}
+
+	/**
+	 * @return true if messages are to be extracted from a buffer by a
+	 * {@link ByteBufferDeserializer}.
+	 * @since 3.0
+	 */
+	public boolean isBufferDeserialization() {
+		return this.bufferDeserialization
+				&& this.getDeserializer() instanceof ByteBufferDeserializer;
+	}
+
+	/**
+	 * Enables the send queue; messages sent on this connection are then serialized
+	 * on the sending thread and queued, and the queued frames are written together
+	 * by a task run on the executor.
+	 * @param capacity the maximum number of queued messages; when the queue is full,
+	 * senders wait for space.
+	 * @param coalescingThreshold the maximum number of bytes written together (a
+	 * larger message is written alone).
+	 * @param linger the time (ms) to wait for more messages before writing those that
+	 * are queued, unless they reach the coalescing threshold; 0 to write immediately.
+	 * @param sendTimeout the time (ms) a sender waits for space in the queue; 0 to
+	 * wait indefinitely.
+	 * @param executor the executor on which queued messages are written.
+	 * @since 3.0
+	 */
+	public void enableSendQueue(int capacity, int coalescingThreshold, long linger,
+			long sendTimeout, Executor executor) {
+		this.sendQueue = new TcpSendQueue(this, capacity, coalescingThreshold, linger, sendTimeout, executor);
+	}
+
+	/**
+	 * @return true if messages are queued and written by the executor.
+	 * @since 3.0
+	 */
+	public boolean isSendQueueEnabled() {
+		return this.sendQueue != null;
+	}
+
+	/**
+	 * If the send queue is enabled, serializes the message and adds it to the queue,
+	 * waiting for space if the queue is full.
+	 * @param message the message.
+	 * @return false if the send queue is not enabled, and the message must be sent
+	 * directly.
+	 * @throws Exception if the message cannot be serialized, or there is no space
+	 * in the queue within the send timeout, or the connection has been closed.
+	 * @since 3.0
+	 */
+	@SuppressWarnings("unchecked")
+	protected boolean queueForSend(Message<?> message) throws Exception {
+		TcpSendQueue sendQueue = this.sendQueue;
+		if (sendQueue == null) {
+			return false;
+		}
+		Object object = this.getMapper().fromMessage(message);
+		try {
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			((Serializer<Object>) this.getSerializer()).serialize(object, frame);
+			sendQueue.add(frame.toByteArray());
+		}
+		catch (Exception e) {
+			this.publishConnectionExceptionEvent(e);
+			throw e;
+		}
+		this.afterSend(message);
+		return true;
+	}
+
+	/**
+	 * @return true if this connection writes queued frames; connection factories
+	 * only enable the send queue on connections that do. Connections that override
+	 * {@link #writeQueuedFrames(List)} must also override this method.
+	 * @since 3.0
+	 */
+	protected boolean isSendQueueSupported() {
+		return false;
+	}
+
+	/**
+	 * Writes frames, removed from the send queue, in as few writes as possible.
+	 * @param frames the serialized messages, in order.
+	 * @throws IOException if the frames cannot be written.
+	 * @since 3.0
+	 */
+	protected void writeQueuedFrames(List<byte[]> frames) throws IOException {
+		throw new UnsupportedOperationException(this.getClass().getName() + " does not support a send queue");
+	}
+
 	public boolean isServer() {
 		return server;
 	}
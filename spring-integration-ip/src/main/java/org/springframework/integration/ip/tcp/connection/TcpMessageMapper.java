@@ -15,6 +15,8 @@
  */
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.util.Map;
 
@@ -24,12 +26,14 @@ import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.mapping.InboundMessageMapper;
 import org.springframework.integration.mapping.OutboundMessageMapper;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.FileCopyUtils;
 
 /**
  * Maps incoming data from a {@link TcpConnection} to a {@link Message}.
  * If StringToBytes is true (default),
  * payloads of type String are converted to a byte[] using the supplied
- * charset (UTF-8 by default).
+ * charset (UTF-8 by default), and payloads of type File are read into a byte[]
+ * (unless the connection sends the file directly, see {@link TcpNioConnection}).
  * Inbound messages include headers representing the remote end of the
  * connection as well as a connection id that can be used by a {@link TcpSender}
  * to correlate which connection to send a reply. If applySequence is set, adds
@@ -108,10 +112,18 @@ public class TcpMessageMapper implements
 				throw new MessageHandlingException(message, e);
 			}
 		}
+		else if (payload instanceof File) {
+			try {
+				bytes = FileCopyUtils.copyToByteArray((File) payload);
+			}
+			catch (IOException e) {
+				throw new MessageHandlingException(message, "Failed to read file " + payload, e);
+			}
+		}
 		else {
 			throw new MessageHandlingException(message,
 					"When using a byte array serializer, the socket mapper expects " +
-					"either a byte array or String payload, but received: " + payload.getClass());
+					"a byte array, String or File payload, but received: " + payload.getClass());
 		}
 		return bytes;
 	}
@@ -16,14 +16,21 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.List;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.Message;
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
 import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
 
 /**
@@ -35,6 +42,8 @@ import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamExceptio
  */
 public class TcpNetConnection extends TcpConnectionSupport {
 
+	private static final int INITIAL_READ_BUFFER_SIZE = 8192;
+
 	private final Socket socket;
 
 	private boolean noReadErrorOnClose;
@@ -43,6 +52,13 @@ public class TcpNetConnection extends TcpConnectionSupport {
 
 	private volatile long lastSend;
 
+	/*
+	 * Only used by the reading thread, with buffer deserialization.
+	 */
+	private ByteBuffer readBuffer;
+
+	private final LinkedList<byte[]> frames = new LinkedList<byte[]>();
+
 	/**
 	 * Constructs a TcpNetConnection for the socket.
 	 * @param socket the socket
@@ -94,6 +110,10 @@ public class TcpNetConnection extends TcpConnectionSupport {
 
 	@SuppressWarnings("unchecked")
 	public synchronized void send(Message<?> message) throws Exception {
+		if (this.queueForSend(message)) {
+			this.lastSend = System.currentTimeMillis();
+			return;
+		}
 		Object object = this.getMapper().fromMessage(message);
 		this.lastSend = System.currentTimeMillis();
 		try {
@@ -106,10 +126,92 @@ public class TcpNetConnection extends TcpConnectionSupport {
 		this.afterSend(message);
 	}
 
+	@Override
+	protected boolean isSendQueueSupported() {
+		return true;
+	}
+
+	/**
+	 * Copies the frames into one array, so they are sent in a single write.
+	 */
+	@Override
+	protected void writeQueuedFrames(List<byte[]> frames) throws IOException {
+		OutputStream outputStream = this.socket.getOutputStream();
+		if (frames.size() == 1) {
+			outputStream.write(frames.get(0));
+			return;
+		}
+		int length = 0;
+		for (byte[] frame : frames) {
+			length += frame.length;
+		}
+		byte[] coalesced = new byte[length];
+		int offset = 0;
+		for (byte[] frame : frames) {
+			System.arraycopy(frame, 0, coalesced, offset, frame.length);
+			offset += frame.length;
+		}
+		outputStream.write(coalesced);
+	}
+
 	public Object getPayload() throws Exception {
+		if (this.isBufferDeserialization()) {
+			return this.getBufferedPayload();
+		}
 		return this.getDeserializer().deserialize(this.socket.getInputStream());
 	}
 
+	/**
+	 * Reads whatever data is available from the socket into the read buffer,
+	 * until the {@link ByteBufferDeserializer} can extract at least one message;
+	 * subsequent messages in the same read are returned by subsequent invocations,
+	 * without reading from the socket.
+	 */
+	private byte[] getBufferedPayload() throws IOException {
+		if (!this.frames.isEmpty()) {
+			return this.frames.removeFirst();
+		}
+		ByteBufferDeserializer deserializer = (ByteBufferDeserializer) this.getDeserializer();
+		if (this.readBuffer == null) {
+			this.readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+		}
+		InputStream inputStream = this.socket.getInputStream();
+		while (this.frames.isEmpty()) {
+			if (!this.readBuffer.hasRemaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(this.readBuffer.capacity() * 2);
+				this.readBuffer.flip();
+				larger.put(this.readBuffer);
+				this.readBuffer = larger;
+			}
+			int len = inputStream.read(this.readBuffer.array(),
+					this.readBuffer.arrayOffset() + this.readBuffer.position(), this.readBuffer.remaining());
+			if (len < 0) {
+				if (this.readBuffer.position() == 0) {
+					throw new SoftEndOfStreamException("Stream closed between payloads");
+				}
+				this.readBuffer.flip();
+				try {
+					return deserializer.deserializeAtEndOfStream(this.readBuffer);
+				}
+				finally {
+					this.readBuffer.clear();
+				}
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug(this.getConnectionId() + " Read " + len + " bytes");
+			}
+			this.readBuffer.position(this.readBuffer.position() + len);
+			this.readBuffer.flip();
+			try {
+				deserializer.deserialize(this.readBuffer, this.frames);
+			}
+			finally {
+				this.readBuffer.compact();
+			}
+		}
+		return this.frames.removeFirst();
+	}
+
 	public int getPort() {
 		return this.socket.getPort();
 	}
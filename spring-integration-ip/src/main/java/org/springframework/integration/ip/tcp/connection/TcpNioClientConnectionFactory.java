@@ -44,6 +44,10 @@ public class TcpNioClientConnectionFactory extends
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile NioBufferPool bufferPool;
+
+	private final Object bufferPoolMonitor = new Object();
+
 	private volatile Selector selector;
 
 	private final Map<SocketChannel, TcpNioConnection> channelMap = new ConcurrentHashMap<SocketChannel, TcpNioConnection>();
@@ -69,7 +73,7 @@ public class TcpNioClientConnectionFactory extends
 	@Override
 	protected TcpConnectionSupport obtainConnection() throws Exception {
 		int n = 0;
-		while (this.selector == null) {
+		while (this.selector == null && !this.isUsingReactors()) {
 			try {
 				Thread.sleep(100);
 			} catch (InterruptedException e) {
@@ -91,6 +95,7 @@ public class TcpNioClientConnectionFactory extends
 		TcpNioConnection connection = this.tcpNioConnectionSupport.createNewConnection(
 				socketChannel, false, this.isLookupHost(), this.getApplicationEventPublisher(), this.getComponentName());
 		connection.setUsingDirectBuffers(this.usingDirectBuffers);
+		connection.setBufferPool(this.obtainBufferPool());
 		connection.setTaskExecutor(this.getTaskExecutor());
 		TcpConnectionSupport wrappedConnection = wrapConnection(connection);
 		initializeConnection(wrappedConnection, socketChannel.socket());
@@ -98,9 +103,14 @@ public class TcpNioClientConnectionFactory extends
 		if (this.getSoTimeout() > 0) {
 			connection.setLastRead(System.currentTimeMillis());
 		}
-		this.channelMap.put(socketChannel, connection);
-		newChannels.add(socketChannel);
-		selector.wakeup();
+		if (this.isUsingReactors()) {
+			this.registerWithReactor(socketChannel, connection);
+		}
+		else {
+			this.channelMap.put(socketChannel, connection);
+			newChannels.add(socketChannel);
+			selector.wakeup();
+		}
 		return wrappedConnection;
 	}
 
@@ -114,6 +124,33 @@ public class TcpNioClientConnectionFactory extends
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * Sets the pool from which connections obtain their buffers; a pool can be shared
+	 * by several factories. By default, each factory has its own pool, of direct
+	 * buffers if usingDirectBuffers is true.
+	 * @param bufferPool the buffer pool.
+	 * @since 3.0
+	 */
+	public void setBufferPool(NioBufferPool bufferPool) {
+		Assert.notNull(bufferPool, "'bufferPool' cannot be null");
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * @return the buffer pool, created when first needed if none was provided.
+	 * @since 3.0
+	 */
+	protected NioBufferPool obtainBufferPool() {
+		if (this.bufferPool == null) {
+			synchronized (this.bufferPoolMonitor) {
+				if (this.bufferPool == null) {
+					this.bufferPool = new NioBufferPool(this.usingDirectBuffers);
+				}
+			}
+		}
+		return this.bufferPool;
+	}
+
 	public void setTcpNioConnectionSupport(TcpNioConnectionSupport tcpNioSupport) {
 		Assert.notNull(tcpNioSupport, "TcpNioSupport must not be null");
 		this.tcpNioConnectionSupport = tcpNioSupport;
@@ -121,6 +158,9 @@ public class TcpNioClientConnectionFactory extends
 
 	@Override
 	public void close() {
+		if (!this.isActive()) {
+			this.stopReactors();
+		}
 		if (this.selector != null) {
 			this.selector.wakeup();
 		}
@@ -137,11 +177,22 @@ public class TcpNioClientConnectionFactory extends
 		super.start();
 	}
 
+	/**
+	 * Runs the selector loop for the connections or, when there is more than one
+	 * selector thread, starts them and exits.
+	 */
 	public void run() {
 		if (logger.isDebugEnabled()) {
 			logger.debug("Read selector running for connections to " + this.getHost() + ":" + this.getPort());
 		}
 		try {
+			if (this.startReactors()) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Reading connections to " + this.getHost() + ":" + this.getPort() + " with "
+							+ this.getSelectorThreads() + " selector threads");
+				}
+				return;
+			}
 			this.selector = Selector.open();
 			while (this.isActive()) {
 				SocketChannel newChannel;
@@ -182,7 +233,8 @@ public class TcpNioClientConnectionFactory extends
 	}
 
 	/**
-	 * @return the connections
+	 * @return the connections; when there is more than one selector thread, each
+	 * has its own connections, and this map is empty.
 	 */
 	protected Map<SocketChannel, TcpNioConnection> getConnections() {
 		return channelMap;
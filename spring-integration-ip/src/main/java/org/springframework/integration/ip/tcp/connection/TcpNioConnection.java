@@ -16,15 +16,21 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
@@ -37,11 +43,32 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayRawSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
 import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
 import org.springframework.util.Assert;
 
 /**
  * A TcpConnection that uses and underlying {@link SocketChannel}.
+ * <p>
+ * By default, data read from the channel is written to a pipe, from which
+ * messages are assembled by a separate thread. With buffer deserialization (and
+ * a {@link ByteBufferDeserializer}), messages are instead decoded directly from the
+ * data read from the channel, and delivered by the thread that read them; the
+ * bytes of an incomplete message are retained until the next read, so no thread
+ * waits for the rest of the message.
+ * <p>
+ * When the connection has a {@link NioBufferPool}, its read buffer (and the buffer
+ * in which small writes are collected) is obtained from the pool, and the read
+ * buffer is returned to the pool when the connection is closed.
+ * <p>
+ * Messages with a {@link File} or {@link FileChannel} payload are sent using
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * without reading the file into memory, when the serializer is a
+ * {@link ByteArrayLengthHeaderSerializer} or a {@link ByteArrayRawSerializer} and the
+ * connection has no send queue. The content of a FileChannel is sent from its current
+ * position; the channel is not closed.
  *
  * @author Gary Russell
  * @since 2.0
@@ -61,8 +88,14 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	private volatile Executor taskExecutor;
 
+	private volatile NioBufferPool bufferPool;
+
 	private volatile ByteBuffer rawBuffer;
 
+	private volatile boolean reading;
+
+	private final Object bufferMonitor = new Object();
+
 	private volatile int maxMessageSize = 60 * 1024;
 
 	private volatile long lastRead;
@@ -75,6 +108,21 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	private volatile long pipeTimeout = DEFAULT_PIPE_TIMEOUT;
 
+	/*
+	 * Counted down once the last assembled message has been delivered to the listener;
+	 * guarded by this.
+	 */
+	private CountDownLatch lastDelivery = new CountDownLatch(0);
+
+	/*
+	 * With buffer deserialization, the bytes of an incomplete message, ready for more
+	 * data to be put; null if there are none. Reads are never concurrent, so this and the decoded frames are only
+	 * accessed by one thread at a time.
+	 */
+	private volatile ByteBuffer frameBuffer;
+
+	private final LinkedList<byte[]> frames = new LinkedList<byte[]>();
+
 	/**
 	 * Constructs a TcpNetConnection for the SocketChannel.
 	 * @param socketChannel the socketChannel
@@ -122,6 +170,7 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		try {
 			this.socketChannel.close();
 		} catch (Exception e) {}
+		this.releaseBuffersIfIdle();
 		super.close();
 	}
 
@@ -131,13 +180,22 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	@SuppressWarnings("unchecked")
 	public void send(Message<?> message) throws Exception {
+		if (this.queueForSend(message)) {
+			this.lastSend = System.currentTimeMillis();
+			return;
+		}
 		synchronized(this.getMapper()) {
+			if (this.transferFile(message)) {
+				return;
+			}
 			Object object = this.getMapper().fromMessage(message);
 			this.lastSend = System.currentTimeMillis();
 			try {
 				((Serializer<Object>) this.getSerializer()).serialize(object, this.getChannelOutputStream());
+				this.getChannelOutputStream().flush();
 			}
 			catch (Exception e) {
+				this.getChannelOutputStream().discard();
 				this.publishConnectionExceptionEvent(e);
 				throw e;
 			}
@@ -145,7 +203,92 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		}
 	}
 
+	/**
+	 * Sends a File or FileChannel payload directly from the file, if the framing
+	 * allows it.
+	 * @return true if the payload was sent.
+	 */
+	private boolean transferFile(Message<?> message) throws Exception {
+		Object payload = message.getPayload();
+		if (!(payload instanceof File || payload instanceof FileChannel) || !this.isFileTransferSupported()) {
+			return false;
+		}
+		Serializer<?> serializer = this.getSerializer();
+		if (!(serializer instanceof ByteArrayLengthHeaderSerializer || serializer instanceof ByteArrayRawSerializer)) {
+			return false;
+		}
+		FileInputStream inputStream = null;
+		try {
+			FileChannel fileChannel;
+			if (payload instanceof File) {
+				inputStream = new FileInputStream((File) payload);
+				fileChannel = inputStream.getChannel();
+			}
+			else {
+				fileChannel = (FileChannel) payload;
+			}
+			long position = fileChannel.position();
+			long count = fileChannel.size() - position;
+			this.lastSend = System.currentTimeMillis();
+			try {
+				if (serializer instanceof ByteArrayLengthHeaderSerializer) {
+					if (count > Integer.MAX_VALUE) {
+						throw new IllegalArgumentException("File too large for a length header: " + count);
+					}
+					((ByteArrayLengthHeaderSerializer) serializer).serializeHeader((int) count,
+							this.getChannelOutputStream());
+				}
+				this.getChannelOutputStream().flush();
+				this.getChannelOutputStream().doTransfer(fileChannel, position, count);
+			}
+			catch (Exception e) {
+				this.getChannelOutputStream().discard();
+				this.publishConnectionExceptionEvent(e);
+				throw e;
+			}
+			this.afterSend(message);
+			return true;
+		}
+		finally {
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+	}
+
+	/**
+	 * @return true if file payloads can be sent with
+	 * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+	 * @since 3.0
+	 */
+	protected boolean isFileTransferSupported() {
+		return !this.isSendQueueEnabled();
+	}
+
+	@Override
+	protected boolean isSendQueueSupported() {
+		return true;
+	}
+
+	/**
+	 * Writes the frames in a single gathering write.
+	 */
+	@Override
+	protected void writeQueuedFrames(List<byte[]> frames) throws IOException {
+		ByteBuffer[] buffers = new ByteBuffer[frames.size()];
+		for (int i = 0; i < buffers.length; i++) {
+			buffers[i] = ByteBuffer.wrap(frames.get(i));
+		}
+		this.getChannelOutputStream().doWrite(buffers);
+	}
+
 	public Object getPayload() throws Exception {
+		if (this.isBufferDeserialization()) {
+			return this.frames.poll();
+		}
 		return this.getDeserializer().deserialize(this.channelInputStream);
 	}
 
@@ -171,6 +314,64 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		return buffer;
 	}
 
+	/**
+	 * Obtains a buffer of at least the requested length from the buffer pool or,
+	 * if there is no pool, allocates one.
+	 * @since 3.0
+	 */
+	protected ByteBuffer acquireBuffer(int length) {
+		NioBufferPool bufferPool = this.bufferPool;
+		return bufferPool == null ? this.allocate(length) : bufferPool.acquire(length);
+	}
+
+	/**
+	 * Returns a buffer obtained by {@link #acquireBuffer(int)} to the buffer pool, if any.
+	 * @since 3.0
+	 */
+	protected void releaseBuffer(ByteBuffer buffer) {
+		NioBufferPool bufferPool = this.bufferPool;
+		if (bufferPool != null && buffer != null) {
+			bufferPool.release(buffer);
+		}
+	}
+
+	/**
+	 * Releases the buffers used by this connection once it is closed and no
+	 * thread is reading or writing. The closing thread closes the channel before
+	 * checking for active threads; a reading thread that became active too late to
+	 * be seen only uses its buffer after a successful read, which fails once the
+	 * channel is closed, so a buffer is never released while it is in use.
+	 */
+	void releaseBuffersIfIdle() {
+		if (this.isOpen() || this.reading || this.isWriting()) {
+			return;
+		}
+		synchronized (this.bufferMonitor) {
+			this.releaseBuffers();
+		}
+	}
+
+	/**
+	 * Releases the buffers used by this connection; invoked once only the closed
+	 * connection is idle. Subclasses that acquire buffers must override this
+	 * method, invoking super.
+	 * @since 3.0
+	 */
+	protected void releaseBuffers() {
+		ByteBuffer rawBuffer = this.rawBuffer;
+		this.rawBuffer = null;
+		this.releaseBuffer(rawBuffer);
+	}
+
+	/**
+	 * @return true if a thread is writing using buffers that are released by
+	 * {@link #releaseBuffers()}.
+	 * @since 3.0
+	 */
+	protected boolean isWriting() {
+		return false;
+	}
+
 	/**
 	 * If there is no listener, and this connection is not for single use,
 	 * this method exits. When there is a listener, this method assembles
@@ -190,7 +391,14 @@ public class TcpNioConnection extends TcpConnectionSupport {
 			}
 			try {
 				if (dataAvailable()) {
-					Message<?> message = convert();
+					Message<?> message;
+					CountDownLatch previousDelivery;
+					CountDownLatch delivery = new CountDownLatch(1);
+					synchronized (this) {
+						message = convert();
+						previousDelivery = this.lastDelivery;
+						this.lastDelivery = delivery;
+					}
 					if (dataAvailable()) {
 						// there is more data in the pipe; run another assembler
 						// to assemble the next message, while we send ours
@@ -198,8 +406,20 @@ public class TcpNioConnection extends TcpConnectionSupport {
 						this.taskExecutor.execute(this);
 					}
 					this.executionControl.decrementAndGet();
-					if (message != null) {
-						sendToChannel(message);
+					try {
+						/*
+						 * Deliver the messages in the order they were assembled, each once the
+						 * listener has returned from the previous one, as TcpNetConnection does;
+						 * an interceptor may still be completing a negotiation when the peer's
+						 * next message has been assembled.
+						 */
+						previousDelivery.await();
+						if (message != null) {
+							sendToChannel(message);
+						}
+					}
+					finally {
+						delivery.countDown();
 					}
 				} else {
 					this.executionControl.decrementAndGet();
@@ -301,9 +521,13 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	private void doRead() throws Exception {
 		if (this.rawBuffer == null) {
-			this.rawBuffer = allocate(maxMessageSize);
+			this.rawBuffer = this.acquireBuffer(this.maxMessageSize);
 		}
 
+		if (this.isBufferDeserialization()) {
+			this.doReadAndDecode();
+			return;
+		}
 		this.writingToPipe = true;
 		try {
 			if (this.taskExecutor == null) {
@@ -362,12 +586,120 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		}
 	}
 
+	/**
+	 * Reads the available data, decodes all the complete messages it contains, and
+	 * delivers them to the listener on the current thread.
+	 */
+	private void doReadAndDecode() throws Exception {
+		int len;
+		try {
+			len = this.socketChannel.read(this.rawBuffer);
+			this.rawBuffer.flip();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Read " + this.rawBuffer.limit() + " into raw buffer");
+			}
+			this.sendToPipe(this.rawBuffer);
+		}
+		catch (Exception e) {
+			this.publishConnectionExceptionEvent(e);
+			throw e;
+		}
+		try {
+			if (len < 0 && this.frameBuffer != null) {
+				ByteBuffer remaining = this.frameBuffer;
+				this.frameBuffer = null;
+				remaining.flip();
+				byte[] last = ((ByteBufferDeserializer) this.getDeserializer()).deserializeAtEndOfStream(remaining);
+				if (last != null) {
+					this.frames.add(last);
+				}
+			}
+		}
+		finally {
+			this.deliverFrames();
+			if (len < 0) {
+				this.closeConnection();
+			}
+		}
+	}
+
+	private void deliverFrames() throws Exception {
+		if (this.getListener() == null && !this.isSingleUse()) {
+			if (!this.frames.isEmpty()) {
+				logger.debug("Discarding data - no listener and not single use");
+				this.frames.clear();
+			}
+			return;
+		}
+		while (!this.frames.isEmpty() && this.isOpen()) {
+			Message<?> message = this.getMapper().toMessage(this);
+			if (message != null) {
+				sendToChannel(message);
+			}
+		}
+	}
+
+	/**
+	 * Decodes the data with the {@link ByteBufferDeserializer}. The bytes of an
+	 * incomplete message are retained, to be completed by the next read.
+	 */
+	private void decode(ByteBuffer data) throws IOException {
+		ByteBufferDeserializer deserializer = (ByteBufferDeserializer) this.getDeserializer();
+		ByteBuffer buffer = this.frameBuffer;
+		if (buffer == null) {
+			// usually, there is no partial message, so decode in place
+			buffer = data;
+		}
+		else {
+			if (buffer.remaining() < data.remaining()) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2,
+						buffer.position() + data.remaining()));
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+			buffer.put(data);
+			buffer.flip();
+		}
+		deserializer.deserialize(buffer, this.frames);
+		if (!buffer.hasRemaining()) {
+			this.frameBuffer = null;
+		}
+		else if (buffer == data) {
+			ByteBuffer partial = ByteBuffer.allocate(Math.max(data.remaining() * 2, 1024));
+			partial.put(data);
+			this.frameBuffer = partial;
+		}
+		else {
+			buffer.compact();
+			this.frameBuffer = buffer;
+		}
+	}
+
+	/**
+	 * Writes the data to the pipe from which messages are assembled or, with buffer
+	 * deserialization, decodes it directly.
+	 * @param rawBuffer the data; cleared on return.
+	 * @throws IOException
+	 */
 	protected void sendToPipe(ByteBuffer rawBuffer) throws IOException {
 		Assert.notNull(rawBuffer, "rawBuffer cannot be null");
+		if (this.isBufferDeserialization()) {
+			this.decode(rawBuffer);
+			rawBuffer.clear();
+			return;
+		}
 		if (logger.isTraceEnabled()) {
 			logger.trace(this.getConnectionId() + " Sending " + rawBuffer.limit() + " to pipe");
 		}
-		this.channelInputStream.write(rawBuffer.array(), rawBuffer.limit());
+		if (rawBuffer.hasArray()) {
+			this.channelInputStream.write(rawBuffer.array(), rawBuffer.limit());
+		}
+		else {
+			byte[] bytes = new byte[rawBuffer.remaining()];
+			rawBuffer.get(bytes);
+			this.channelInputStream.write(bytes, bytes.length);
+		}
 		rawBuffer.clear();
 	}
 
@@ -390,6 +722,7 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		if (logger.isDebugEnabled()) {
 			logger.debug(this.getConnectionId() + " Reading...");
 		}
+		this.reading = true;
 		try {
 			doRead();
 		} catch (ClosedChannelException cce) {
@@ -403,6 +736,10 @@ public class TcpNioConnection extends TcpConnectionSupport {
 					     e.getMessage(), e);
 			this.closeConnection();
 		}
+		finally {
+			this.reading = false;
+			this.releaseBuffersIfIdle();
+		}
 	}
 
 	/**
@@ -433,6 +770,21 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		return usingDirectBuffers;
 	}
 
+	/**
+	 * @param bufferPool the pool from which this connection obtains its buffers.
+	 * @since 3.0
+	 */
+	public void setBufferPool(NioBufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * @since 3.0
+	 */
+	protected NioBufferPool getBufferPool() {
+		return bufferPool;
+	}
+
 	protected ChannelOutputStream getChannelOutputStream() {
 		return channelOutputStream;
 	}
@@ -462,20 +814,29 @@ public class TcpNioConnection extends TcpConnectionSupport {
 
 	/**
 	 * OutputStream to wrap a SocketChannel; implements timeout on write.
+	 * <p>
+	 * Small writes (such as length headers and terminators) are collected in a
+	 * buffer and written when the stream is flushed, or together with the next
+	 * large write; a large write is written directly from the caller's array, in
+	 * a single gathering write with any collected data, so a header and its payload
+	 * are sent together without copying the payload.
 	 *
 	 */
 	class ChannelOutputStream extends OutputStream {
 
+		private static final int WRITE_BUFFER_SIZE = 8192;
+
+		private static final int GATHER_THRESHOLD = 1024;
+
 		private Selector selector;
 
 		private int soTimeout;
 
+		private ByteBuffer pending;
+
 		@Override
-		public void write(int b) throws IOException {
-			byte[] bytes = new byte[1];
-			bytes[0] = (byte) b;
-			ByteBuffer buffer = ByteBuffer.wrap(bytes);
-			doWrite(buffer);
+		public synchronized void write(int b) throws IOException {
+			this.obtainPending(1).put((byte) b);
 		}
 
 		@Override
@@ -484,44 +845,131 @@ public class TcpNioConnection extends TcpConnectionSupport {
 		}
 
 		@Override
-		public void flush() throws IOException {
+		public synchronized void flush() throws IOException {
+			ByteBuffer pending = this.pending;
+			if (pending == null) {
+				return;
+			}
+			this.pending = null;
+			try {
+				pending.flip();
+				if (pending.hasRemaining()) {
+					doWrite(pending);
+				}
+			}
+			finally {
+				releaseBuffer(pending);
+			}
+		}
+
+		/**
+		 * Discards any data that has not been written.
+		 */
+		synchronized void discard() {
+			ByteBuffer pending = this.pending;
+			this.pending = null;
+			releaseBuffer(pending);
 		}
 
 		@Override
-		public void write(byte[] b, int off, int len) throws IOException {
+		public synchronized void write(byte[] b, int off, int len) throws IOException {
+			if (len <= GATHER_THRESHOLD) {
+				this.obtainPending(len).put(b, off, len);
+				return;
+			}
 			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
-			doWrite(buffer);
+			ByteBuffer pending = this.pending;
+			if (pending == null) {
+				doWrite(buffer);
+				return;
+			}
+			this.pending = null;
+			try {
+				pending.flip();
+				doWrite(new ByteBuffer[] {pending, buffer});
+			}
+			finally {
+				releaseBuffer(pending);
+			}
 		}
 
 		@Override
 		public void write(byte[] b) throws IOException {
-			ByteBuffer buffer = ByteBuffer.wrap(b);
-			doWrite(buffer);
+			this.write(b, 0, b.length);
+		}
+
+		private ByteBuffer obtainPending(int length) throws IOException {
+			if (this.pending != null && this.pending.remaining() < length) {
+				this.flush();
+			}
+			if (this.pending == null) {
+				this.pending = acquireBuffer(WRITE_BUFFER_SIZE);
+			}
+			return this.pending;
 		}
 
 		protected synchronized void doWrite(ByteBuffer buffer) throws IOException {
+			doWrite(new ByteBuffer[] {buffer});
+		}
+
+		/**
+		 * Writes the buffers, in order, to the SocketChannel.
+		 * @since 3.0
+		 */
+		protected synchronized void doWrite(ByteBuffer[] buffers) throws IOException {
+			long remaining = remaining(buffers);
 			if (logger.isDebugEnabled()) {
-				logger.debug(getConnectionId() + " writing " + buffer.remaining());
+				logger.debug(getConnectionId() + " writing " + remaining);
 			}
-			socketChannel.write(buffer);
-			int remaining = buffer.remaining();
-			if (remaining == 0) {
-				return;
+			socketChannel.write(buffers);
+			remaining = remaining(buffers);
+			while (remaining > 0) {
+				awaitWritable();
+				socketChannel.write(buffers);
+				remaining = remaining(buffers);
+			}
+		}
+
+		/**
+		 * Transfers the content of the file to the SocketChannel.
+		 * @since 3.0
+		 */
+		synchronized void doTransfer(FileChannel fileChannel, long position, long count) throws IOException {
+			if (logger.isDebugEnabled()) {
+				logger.debug(getConnectionId() + " transferring " + count);
+			}
+			long transferred = 0;
+			while (transferred < count) {
+				long n = fileChannel.transferTo(position + transferred, count - transferred, socketChannel);
+				if (n == 0) {
+					if (position + transferred >= fileChannel.size()) {
+						throw new EOFException("File truncated during transfer");
+					}
+					awaitWritable();
+				}
+				transferred += n;
 			}
+		}
+
+		private void awaitWritable() throws IOException {
 			if (this.selector == null) {
 				this.selector = Selector.open();
 				this.soTimeout = socketChannel.socket().getSoTimeout();
 			}
 			socketChannel.register(selector, SelectionKey.OP_WRITE);
-			while (remaining > 0) {
-				int selectionCount = this.selector.select(this.soTimeout);
-				if (selectionCount == 0) {
-					throw new SocketTimeoutException("Timeout on write");
-				}
-				selector.selectedKeys().clear();
-				socketChannel.write(buffer);
-				remaining = buffer.remaining();
+			int selectionCount = this.selector.select(this.soTimeout);
+			if (selectionCount == 0) {
+				throw new SocketTimeoutException("Timeout on write");
+			}
+			selector.selectedKeys().clear();
+		}
+
+		private long remaining(ByteBuffer[] buffers) {
+			long remaining = 0;
+			for (ByteBuffer buffer : buffers) {
+				remaining += buffer.remaining();
 			}
+			return remaining;
 		}
 
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,7 +17,9 @@ package org.springframework.integration.ip.tcp.connection;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SocketChannel;
+import java.util.List;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -44,7 +46,9 @@ import org.springframework.util.Assert;
  * encrypt/decrypt the data.<p>
  * Also, it may be deemed necessary to re-perform handshaking.<p>
  * This class supports the management of handshaking as necessary, both from the
- * initiating and receiving peers.
+ * initiating and receiving peers.<p>
+ * The encryption buffers are obtained from the connection's {@link NioBufferPool}, if
+ * any, and returned to it when the connection is closed.
  * @author Gary Russell
  * @since 2.2
  *
@@ -144,7 +148,7 @@ public class TcpNioSSLConnection extends TcpNioConnection {
 			}
 			Status status = result.getStatus();
 			if (status == Status.BUFFER_OVERFLOW) {
-				this.decoded = this.allocateEncryptionBuffer(this.sslEngine.getSession().getApplicationBufferSize());
+				this.decoded = this.replaceEncryptionBuffer(this.decoded, this.sslEngine.getSession().getApplicationBufferSize());
 			}
 			if (result.bytesProduced() > 0) {
 				this.decoded.flip();
@@ -159,7 +163,7 @@ public class TcpNioSSLConnection extends TcpNioConnection {
 					logger.debug("After wrap:" + resultToString(result));
 				}
 				if (result.getStatus() == Status.BUFFER_OVERFLOW) {
-					this.encoded = this.allocateEncryptionBuffer(this.sslEngine.getSession().getPacketBufferSize());
+					this.encoded = this.replaceEncryptionBuffer(this.encoded, this.sslEngine.getSession().getPacketBufferSize());
 				}
 				else {
 					this.encoded.flip();
@@ -239,11 +243,59 @@ public class TcpNioSSLConnection extends TcpNioConnection {
 	}
 
 	private ByteBuffer allocateEncryptionBuffer(int size) {
-		if (this.isUsingDirectBuffers()) {
-			return ByteBuffer.allocateDirect(size);
+		return this.acquireBuffer(size);
+	}
+
+	private ByteBuffer replaceEncryptionBuffer(ByteBuffer buffer, int size) {
+		ByteBuffer replacement = this.allocateEncryptionBuffer(size);
+		this.releaseBuffer(buffer);
+		return replacement;
+	}
+
+	@Override
+	protected void releaseBuffers() {
+		super.releaseBuffers();
+		ByteBuffer decoded = this.decoded;
+		ByteBuffer encoded = this.encoded;
+		this.decoded = null;
+		this.encoded = null;
+		this.releaseBuffer(decoded);
+		this.releaseBuffer(encoded);
+	}
+
+	@Override
+	protected boolean isWriting() {
+		return this.writerActive;
+	}
+
+	/**
+	 * File payloads must be encrypted, so they are read into memory.
+	 */
+	@Override
+	protected boolean isFileTransferSupported() {
+		return false;
+	}
+
+	/**
+	 * Copies the frames into one buffer before encrypting them, so they are sent in
+	 * as few SSL records as possible.
+	 */
+	@Override
+	protected void writeQueuedFrames(List<byte[]> frames) throws IOException {
+		int length = 0;
+		for (byte[] frame : frames) {
+			length += frame.length;
 		}
-		else {
-			return ByteBuffer.allocate(size);
+		ByteBuffer coalesced = this.acquireBuffer(length);
+		try {
+			for (byte[] frame : frames) {
+				coalesced.put(frame);
+			}
+			coalesced.flip();
+			this.getChannelOutputStream().doWrite(coalesced);
+		}
+		finally {
+			this.releaseBuffer(coalesced);
 		}
 	}
 
@@ -300,6 +352,9 @@ public class TcpNioSSLConnection extends TcpNioConnection {
 				throws IOException {
 			try {
 				TcpNioSSLConnection.this.writerActive = true;
+				if (!isOpen()) {
+					throw new ClosedChannelException();
+				}
 				int remaining = plainText.remaining();
 				while (remaining > 0) {
 					SSLEngineResult result = encode(plainText);
@@ -322,6 +377,17 @@ public class TcpNioSSLConnection extends TcpNioConnection {
 			}
 			finally {
 				TcpNioSSLConnection.this.writerActive = false;
+				releaseBuffersIfIdle();
+			}
+		}
+
+		/**
+		 * Encrypts and writes each buffer in turn.
+		 */
+		@Override
+		protected synchronized void doWrite(ByteBuffer[] plainText) throws IOException {
+			for (ByteBuffer buffer : plainText) {
+				doWrite(buffer);
 			}
 		}
 
@@ -395,7 +461,8 @@ public class TcpNioSSLConnection extends TcpNioConnection {
 				logger.debug("After wrap:" + resultToString(result) + " Plaintext buffer @" + plainText.position() + "/" + plainText.limit());
 			}
 			if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
-				TcpNioSSLConnection.this.encoded = allocateEncryptionBuffer(sslEngine.getSession().getPacketBufferSize());
+				TcpNioSSLConnection.this.encoded = replaceEncryptionBuffer(TcpNioSSLConnection.this.encoded,
+						sslEngine.getSession().getPacketBufferSize());
 				result = TcpNioSSLConnection.this.sslEngine.wrap(plainText, TcpNioSSLConnection.this.encoded);
 			}
 			return result;
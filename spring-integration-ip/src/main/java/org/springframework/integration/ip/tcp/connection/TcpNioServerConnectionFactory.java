@@ -46,6 +46,10 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile NioBufferPool bufferPool;
+
+	private final Object bufferPoolMonitor = new Object();
+
 	private final Map<SocketChannel, TcpNioConnection> channelMap = new HashMap<SocketChannel, TcpNioConnection>();
 
 	private volatile Selector selector;
@@ -90,6 +94,10 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 			}
 			final Selector selector = Selector.open();
 			this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+			if (this.startReactors() && logger.isDebugEnabled()) {
+				logger.debug("Accepting on port " + port + ", reading with " + this.getSelectorThreads()
+						+ " selector threads");
+			}
 			this.setListening(true);
 			this.selector = selector;
 			doSelect(this.serverChannel, selector);
@@ -103,12 +111,14 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		finally {
 			this.setListening(false);
 			this.setActive(false);
+			this.stopReactors();
 		}
 	}
 
 	/**
 	 * Listens for incoming connections and for notifications that a connected
-	 * socket is ready for reading.
+	 * socket is ready for reading. With more than one selector thread, this
+	 * selector only accepts connections, and the selector threads read them.
 	 * Accepts incoming connections, registers the new socket with the
 	 * selector for reading.
 	 * When a socket is ready for reading, unregisters the read interest and
@@ -166,8 +176,13 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 				}
 				connection.setTaskExecutor(this.getTaskExecutor());
 				connection.setLastRead(now);
-				this.channelMap.put(channel, connection);
-				channel.register(selector, SelectionKey.OP_READ, connection);
+				if (this.isUsingReactors()) {
+					this.registerWithReactor(channel, connection);
+				}
+				else {
+					this.channelMap.put(channel, connection);
+					channel.register(selector, SelectionKey.OP_READ, connection);
+				}
 			}
 			catch (Exception e) {
 				logger.error("Exception accepting new connection", e);
@@ -182,6 +197,7 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 					.createNewConnection(socketChannel, true,
 							this.isLookupHost(), this.getApplicationEventPublisher(), this.getComponentName());
 			connection.setUsingDirectBuffers(this.usingDirectBuffers);
+			connection.setBufferPool(this.obtainBufferPool());
 			TcpConnectionSupport wrappedConnection = wrapConnection(connection);
 			this.initializeConnection(wrappedConnection, socketChannel.socket());
 			return connection;
@@ -193,6 +209,7 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 
 	@Override
 	public void close() {
+		this.stopReactors();
 		if (this.selector != null) {
 			this.selector.wakeup();
 		}
@@ -209,6 +226,33 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * Sets the pool from which connections obtain their buffers; a pool can be shared
+	 * by several factories. By default, each factory has its own pool, of direct
+	 * buffers if usingDirectBuffers is true.
+	 * @param bufferPool the buffer pool.
+	 * @since 3.0
+	 */
+	public void setBufferPool(NioBufferPool bufferPool) {
+		Assert.notNull(bufferPool, "'bufferPool' cannot be null");
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * @return the buffer pool, created when first needed if none was provided.
+	 * @since 3.0
+	 */
+	protected NioBufferPool obtainBufferPool() {
+		if (this.bufferPool == null) {
+			synchronized (this.bufferPoolMonitor) {
+				if (this.bufferPool == null) {
+					this.bufferPool = new NioBufferPool(this.usingDirectBuffers);
+				}
+			}
+		}
+		return this.bufferPool;
+	}
+
 	public void setTcpNioConnectionSupport(TcpNioConnectionSupport tcpNioSupport) {
 		Assert.notNull(tcpNioSupport, "TcpNioSupport must not be null");
 		this.tcpNioConnectionSupport = tcpNioSupport;
@@ -229,7 +273,8 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 	}
 
 	/**
-	 * @return the connections
+	 * @return the connections; when there is more than one selector thread, each
+	 * has its own connections, and this map is empty.
 	 */
 	protected Map<SocketChannel, TcpNioConnection> getConnections() {
 		return channelMap;
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+/**
+ * The outbound queue of a connection. Senders add serialized frames to the queue
+ * and return; a writer task, run on the connection factory's executor while there
+ * are frames to write, removes as many frames as fit in the coalescing threshold and
+ * writes them to the connection together.
+ * <p>
+ * With a linger time, the writer waits for up to that time for more frames to be
+ * queued before writing, unless the queued frames already reach the threshold.
+ * When the queue is full, senders block until the writer makes space, for up to
+ * the send timeout if there is one, after which the send fails with a
+ * {@link SocketTimeoutException}. If a write fails, the connection is closed;
+ * frames still queued when the connection is closed are discarded, and subsequent
+ * sends fail.
+ *
+ * @since 3.0
+ */
+class TcpSendQueue implements Runnable {
+
+	private static final Log logger = LogFactory.getLog(TcpSendQueue.class);
+
+	private final TcpConnectionSupport connection;
+
+	private final BlockingQueue<byte[]> frames;
+
+	private final int coalescingThreshold;
+
+	private final long linger;
+
+	private final long sendTimeout;
+
+	private final Executor executor;
+
+	private final AtomicInteger queuedBytes = new AtomicInteger();
+
+	private final AtomicBoolean writerScheduled = new AtomicBoolean();
+
+	private volatile Thread lingeringWriter;
+
+	private volatile IOException failure;
+
+	/**
+	 * @param connection the connection that writes the frames.
+	 * @param capacity the maximum number of queued frames.
+	 * @param coalescingThreshold the number of bytes after which the writer stops
+	 * removing frames from the queue, and writes those it has removed.
+	 * @param linger the time (ms) the writer waits for more frames.
+	 * @param sendTimeout the time (ms) a sender waits for space in the queue; 0 to
+	 * wait indefinitely.
+	 * @param executor the executor on which the writer runs.
+	 */
+	TcpSendQueue(TcpConnectionSupport connection, int capacity, int coalescingThreshold,
+			long linger, long sendTimeout, Executor executor) {
+		Assert.isTrue(capacity > 0, "'capacity' must be > 0");
+		Assert.isTrue(coalescingThreshold > 0, "'coalescingThreshold' must be > 0");
+		Assert.isTrue(linger >= 0, "'linger' cannot be negative");
+		Assert.notNull(executor, "'executor' cannot be null");
+		this.connection = connection;
+		this.frames = new LinkedBlockingQueue<byte[]>(capacity);
+		this.coalescingThreshold = coalescingThreshold;
+		this.linger = linger;
+		this.sendTimeout = sendTimeout;
+		this.executor = executor;
+	}
+
+	/**
+	 * Adds a frame to the queue, waiting for space if the queue is full.
+	 * @param frame the serialized message.
+	 * @throws IOException if the connection has failed or been closed, or if there is
+	 * no space in the queue within the send timeout.
+	 * @throws InterruptedException if interrupted while waiting for space.
+	 */
+	void add(byte[] frame) throws IOException, InterruptedException {
+		this.checkFailure();
+		if (this.sendTimeout > 0) {
+			if (!this.frames.offer(frame, this.sendTimeout, TimeUnit.MILLISECONDS)) {
+				throw new SocketTimeoutException("Timed out waiting for space in the send queue of "
+						+ this.connection.getConnectionId());
+			}
+		}
+		else {
+			this.frames.put(frame);
+		}
+		/*
+		 * The queue may have been cleared by close() while we were waiting; if so, the
+		 * frame will not be written.
+		 */
+		this.checkFailure();
+		if (this.queuedBytes.addAndGet(frame.length) >= this.coalescingThreshold) {
+			Thread lingeringWriter = this.lingeringWriter;
+			if (lingeringWriter != null) {
+				LockSupport.unpark(lingeringWriter);
+			}
+		}
+		this.scheduleWriter();
+	}
+
+	/**
+	 * @return the number of frames waiting to be written.
+	 */
+	int size() {
+		return this.frames.size();
+	}
+
+	/**
+	 * Discards the queued frames; subsequent (and blocked) sends fail.
+	 */
+	void close() {
+		if (this.failure == null) {
+			this.failure = new ClosedChannelException();
+		}
+		this.frames.clear();
+		this.queuedBytes.set(0);
+	}
+
+	public void run() {
+		try {
+			while (true) {
+				if (this.linger > 0 && !this.frames.isEmpty()) {
+					this.awaitFrames();
+				}
+				List<byte[]> batch = new ArrayList<byte[]>();
+				int batchBytes = 0;
+				byte[] frame;
+				while (batchBytes < this.coalescingThreshold && (frame = this.frames.poll()) != null) {
+					batch.add(frame);
+					batchBytes += frame.length;
+				}
+				if (batch.isEmpty()) {
+					this.writerScheduled.set(false);
+					// a frame added after we polled may have found the writer still scheduled
+					if (this.frames.isEmpty() || !this.writerScheduled.compareAndSet(false, true)) {
+						return;
+					}
+					continue;
+				}
+				this.queuedBytes.addAndGet(-batchBytes);
+				if (this.failure != null) {
+					return;
+				}
+				if (logger.isTraceEnabled()) {
+					logger.trace(this.connection.getConnectionId() + " writing " + batch.size()
+							+ " queued frame(s), " + batchBytes + " bytes");
+				}
+				this.connection.writeQueuedFrames(batch);
+			}
+		}
+		catch (IOException e) {
+			this.fail(e);
+		}
+		catch (RuntimeException e) {
+			this.fail(new IOException("Failed to write queued frames", e));
+		}
+	}
+
+	private void scheduleWriter() {
+		if (this.writerScheduled.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(this);
+			}
+			catch (RuntimeException e) {
+				this.writerScheduled.set(false);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Waits for the linger time, or until the queued frames reach the threshold.
+	 */
+	private void awaitFrames() {
+		long deadline = System.currentTimeMillis() + this.linger;
+		this.lingeringWriter = Thread.currentThread();
+		try {
+			long remaining = this.linger;
+			while (this.queuedBytes.get() < this.coalescingThreshold && remaining > 0
+					&& this.failure == null) {
+				LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(remaining));
+				remaining = deadline - System.currentTimeMillis();
+			}
+		}
+		finally {
+			this.lingeringWriter = null;
+		}
+	}
+
+	private void fail(IOException e) {
+		if (this.failure == null) {
+			this.failure = e;
+		}
+		this.frames.clear();
+		this.queuedBytes.set(0);
+		this.writerScheduled.set(false);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Failed to write queued frames; closing " + this.connection.getConnectionId(), e);
+		}
+		this.connection.publishConnectionExceptionEvent(e);
+		this.connection.closeConnection();
+	}
+
+	private void checkFailure() throws IOException {
+		IOException failure = this.failure;
+		if (failure instanceof ClosedChannelException) {
+			throw new ClosedChannelException();
+		}
+		else if (failure != null) {
+			throw new IOException("Send queue of " + this.connection.getConnectionId() + " failed", failure);
+		}
+	}
+
+}
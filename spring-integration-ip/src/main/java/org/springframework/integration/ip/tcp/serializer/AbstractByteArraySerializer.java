@@ -17,6 +17,7 @@
 package org.springframework.integration.ip.tcp.serializer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,6 +40,18 @@ public abstract class AbstractByteArraySerializer implements
 
 	protected final Log logger = LogFactory.getLog(this.getClass());
 
+	private static final long ONES = 0x0101010101010101L;
+
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	/*
+	 * Larger scratch buffers are not retained by the threads, which may be many
+	 * and long lived.
+	 */
+	private static final int MAX_RETAINED_SCRATCH_BUFFER_SIZE = 8192;
+
+	private final ThreadLocal<byte[]> scratchBuffers = new ThreadLocal<byte[]>();
+
 	/**
 	 * The maximum supported message size for this serializer.
 	 * Default 2048.
@@ -72,6 +85,9 @@ public abstract class AbstractByteArraySerializer implements
 	 * already the correct size.
 	 */
 	protected byte[] copyToSizedArray(byte[] buffer, int size) {
+		if (size == buffer.length && buffer == this.scratchBuffers.get()) {
+			return buffer.clone();
+		}
 		if (size == buffer.length) {
 			return buffer;
 		}
@@ -80,4 +96,107 @@ public abstract class AbstractByteArraySerializer implements
 		return assembledData;
 	}
 
+	/**
+	 * Return a buffer of {@link #getMaxMessageSize()} bytes in which a message can be
+	 * assembled. Unless the max message size exceeds 8192 bytes, the buffer belongs
+	 * to the current thread and is reused for each message it assembles, so the data
+	 * must be copied out of it; larger buffers are allocated for each message.
+	 * @return The buffer.
+	 * @since 3.0
+	 */
+	protected byte[] getScratchBuffer() {
+		if (this.maxMessageSize > MAX_RETAINED_SCRATCH_BUFFER_SIZE) {
+			this.scratchBuffers.remove();
+			return new byte[this.maxMessageSize];
+		}
+		byte[] buffer = this.scratchBuffers.get();
+		if (buffer == null || buffer.length != this.maxMessageSize) {
+			buffer = new byte[this.maxMessageSize];
+			this.scratchBuffers.set(buffer);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Copy the bytes between two indexes of a buffer to a new array, leaving the
+	 * buffer's position unchanged.
+	 * @param buffer The buffer containing the data.
+	 * @param from The index of the first byte.
+	 * @param to The index after the last byte.
+	 * @return The new array.
+	 * @since 3.0
+	 */
+	protected byte[] copyToArray(ByteBuffer buffer, int from, int to) {
+		byte[] data = new byte[to - from];
+		if (buffer.hasArray()) {
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + from, data, 0, data.length);
+		}
+		else {
+			ByteBuffer view = buffer.duplicate();
+			view.limit(to).position(from);
+			view.get(data);
+		}
+		return data;
+	}
+
+	/**
+	 * Find the first occurrence of a byte between two indexes of a buffer. The buffer
+	 * is scanned eight bytes at a time, testing each word for the byte with a few
+	 * arithmetic operations rather than comparing the bytes one by one.
+	 * @param buffer The buffer to scan.
+	 * @param from The index at which to start.
+	 * @param to The index at which to stop (exclusive).
+	 * @param target The byte to find.
+	 * @return The index of the byte, or -1 if it was not found.
+	 * @since 3.0
+	 */
+	protected static int indexOf(ByteBuffer buffer, int from, int to, byte target) {
+		int i = from;
+		long pattern = (target & 0xffL) * ONES;
+		while (i + 8 <= to) {
+			long word = buffer.getLong(i) ^ pattern;
+			if (((word - ONES) & ~word & HIGH_BITS) != 0) {
+				// one of these eight bytes is the target
+				break;
+			}
+			i += 8;
+		}
+		while (i < to) {
+			if (buffer.get(i) == target) {
+				return i;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Throw an exception if an incomplete message, starting at the buffer's
+	 * position, has already reached the maximum message size.
+	 * @param buffer The buffer.
+	 * @param overhead The number of framing bytes before the data.
+	 * @param description The framing that was not found.
+	 * @throws IOException if the message is too long.
+	 * @since 3.0
+	 */
+	protected void checkIncomplete(ByteBuffer buffer, int overhead, String description) throws IOException {
+		if (buffer.remaining() - overhead >= this.maxMessageSize) {
+			throw new IOException(description + " not found before max message length: "
+					+ this.maxMessageSize);
+		}
+	}
+
+	/**
+	 * The default behavior when a stream ends during the assembly of a message:
+	 * throws an IOException.
+	 * @param buffer The buffer containing the incomplete message.
+	 * @return never returns normally.
+	 * @throws IOException always.
+	 * @since 3.0
+	 */
+	public byte[] deserializeAtEndOfStream(ByteBuffer buffer) throws IOException {
+		logger.debug("Socket closed during message assembly");
+		throw new IOException("Socket closed during message assembly");
+	}
+
 }
@@ -19,16 +19,19 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * Reads data in an InputStream to a byte[]; data must be terminated by \r\n
  * (not included in resulting byte[]).
  * Writes a byte[] to an OutputStream and adds \r\n.
+ * Also extracts \r\n terminated messages from a {@link ByteBuffer}.
  *
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer {
+public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer {
 
 	private static final byte[] CRLF = "\r\n".getBytes();
 
@@ -39,7 +42,7 @@ public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer {
 	 * being read).
 	 */
 	public byte[] deserialize(InputStream inputStream) throws IOException {
-		byte[] buffer = new byte[this.maxMessageSize];
+		byte[] buffer = this.getScratchBuffer();
 		int n = this.fillToCrLf(inputStream, buffer);
 		byte[] assembledData = this.copyToSizedArray(buffer, n);
 		return assembledData;
@@ -71,6 +74,37 @@ public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer {
 		return n-1; // trim \r
 	}
 
+	/**
+	 * Extracts the \r\n terminated messages from the buffer.
+	 */
+	public int deserialize(ByteBuffer buffer, List<byte[]> messages) throws IOException {
+		int count = 0;
+		int start = buffer.position();
+		int from = start;
+		int limit = buffer.limit();
+		while (true) {
+			int lf = indexOf(buffer, from, limit, (byte) '\n');
+			if (lf < 0) {
+				buffer.position(start);
+				this.checkIncomplete(buffer, 0, "CRLF");
+				return count;
+			}
+			if (lf == start || buffer.get(lf - 1) != '\r') {
+				// a LF that is part of the data
+				from = lf + 1;
+				continue;
+			}
+			if (lf - start >= this.maxMessageSize) {
+				throw new IOException("CRLF not found before max message length: "
+						+ this.maxMessageSize);
+			}
+			messages.add(this.copyToArray(buffer, start, lf - 1));
+			count++;
+			start = lf + 1;
+			from = start;
+		}
+	}
+
 	/**
 	 * Writes the byte[] to the stream and appends \r\n.
 	 */
@@ -19,7 +19,9 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,10 +41,14 @@ import org.apache.commons.logging.LogFactory;
  * For other header formats, override {@link #readHeader(InputStream)} and
  * {@link #writeHeader(OutputStream, int)}.
  *
+ * When used as a {@link ByteBufferDeserializer}, the header is read from
+ * the buffer with {@link #readHeader(InputStream)}, so overridden header formats
+ * are supported.
+ *
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer {
+public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer {
 
 
 	/**
@@ -107,6 +113,40 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 		return messagePart;
 	}
 
+	/**
+	 * Extracts the messages, each preceded by its length, from the buffer.
+	 * Throws an IOException if a length field exceeds the maxMessageSize.
+	 */
+	public int deserialize(ByteBuffer buffer, List<byte[]> messages) throws IOException {
+		int count = 0;
+		InputStream headerStream = new BufferInputStream(buffer);
+		while (buffer.hasRemaining()) {
+			int start = buffer.position();
+			int messageLength;
+			try {
+				messageLength = this.readHeader(headerStream);
+			}
+			catch (BufferUnderflowException e) {
+				// incomplete header
+				buffer.position(start);
+				break;
+			}
+			if (messageLength > this.maxMessageSize) {
+				throw new IOException("Message length " + messageLength +
+						" exceeds max message length: " + this.maxMessageSize);
+			}
+			if (buffer.remaining() < messageLength) {
+				buffer.position(start);
+				break;
+			}
+			int from = buffer.position();
+			messages.add(this.copyToArray(buffer, from, from + messageLength));
+			buffer.position(from + messageLength);
+			count++;
+		}
+		return count;
+	}
+
 	/**
 	 * Writes the byte[] to the output stream, preceded by a 4 byte
 	 * length in network byte order (big endian).
@@ -149,6 +189,18 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 		return 0;
 	}
 
+	/**
+	 * Writes only the header for a payload of the given length; the caller
+	 * writes the payload. Used to send payloads that are not in memory.
+	 * @param length the length of the payload.
+	 * @param outputStream the stream.
+	 * @throws IOException if the header cannot be written.
+	 * @since 3.0
+	 */
+	public void serializeHeader(int length, OutputStream outputStream) throws IOException {
+		this.writeHeader(outputStream, length);
+	}
+
 	/**
 	 * Writes the header, according to the header format.
 	 * @param outputStream
@@ -218,4 +270,44 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 		}
 		return messageLength;
 	}
+
+	/**
+	 * Presents the data remaining in a buffer as a stream, for
+	 * {@link ByteArrayLengthHeaderSerializer#readHeader(InputStream)}; rather than
+	 * blocking, or reporting the end of the stream, it throws a
+	 * {@link BufferUnderflowException} when the buffer is exhausted.
+	 */
+	private static class BufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return this.buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!this.buffer.hasRemaining()) {
+				throw new BufferUnderflowException();
+			}
+			int n = Math.min(len, this.buffer.remaining());
+			this.buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return this.buffer.remaining();
+		}
+
+	}
+
 }
@@ -18,6 +18,8 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * A byte array (de)serializer that does nothing with the payload; sends it raw.
@@ -28,12 +30,15 @@ import java.io.OutputStream;
  * Because the socket must be closed to indicate message end, this (de)serializer
  * can only be used by uni-directional (non-collaborating) channel adapters, and
  * not by gateways.
+ * <p>
+ * When used as a {@link ByteBufferDeserializer}, the data accumulates in the buffer
+ * until the end of the stream.
  *
  * @author Gary Russell
  * @since 2.0.3
  *
  */
-public class ByteArrayRawSerializer extends AbstractByteArraySerializer {
+public class ByteArrayRawSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer {
 
 	public void serialize(byte[] bytes, OutputStream outputStream)
 			throws IOException {
@@ -42,7 +47,7 @@ public class ByteArrayRawSerializer extends AbstractByteArraySerializer {
 	}
 
 	public byte[] deserialize(InputStream inputStream) throws IOException {
-		byte[] buffer = new byte[this.maxMessageSize];
+		byte[] buffer = this.getScratchBuffer();
 		int n = 0;
 		int bite = 0;
 		if (logger.isDebugEnabled()) {
@@ -67,4 +72,26 @@ public class ByteArrayRawSerializer extends AbstractByteArraySerializer {
 		return assembledData;
 	}
 
+	/**
+	 * The message is only complete at the end of the stream, so no messages are
+	 * extracted.
+	 */
+	public int deserialize(ByteBuffer buffer, List<byte[]> messages) throws IOException {
+		if (buffer.remaining() >= this.maxMessageSize) {
+			throw new IOException("Socket was not closed before max message length: "
+					+ this.maxMessageSize);
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the remaining data.
+	 */
+	@Override
+	public byte[] deserializeAtEndOfStream(ByteBuffer buffer) throws IOException {
+		byte[] data = this.copyToArray(buffer, buffer.position(), buffer.limit());
+		buffer.position(buffer.limit());
+		return data;
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,16 +19,20 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * Reads data in an InputStream to a byte[]; data must be terminated by a single
  * byte (not included in resulting byte[]).
  * Writes a byte[] to an OutputStream and adds the terminator.
+ * Also extracts terminated messages from a {@link ByteBuffer}.
  *
  * @author Gary Russell
  * @since 2.2
  */
-public class ByteArraySingleTerminatorSerializer extends AbstractByteArraySerializer {
+public class ByteArraySingleTerminatorSerializer extends AbstractByteArraySerializer
+		implements ByteBufferDeserializer {
 
 	private final byte terminator;
 
@@ -43,7 +47,7 @@ public class ByteArraySingleTerminatorSerializer extends AbstractByteArraySerial
 	 * being read).
 	 */
 	public byte[] deserialize(InputStream inputStream) throws IOException {
-		byte[] buffer = new byte[this.maxMessageSize];
+		byte[] buffer = this.getScratchBuffer();
 		int n = 0;
 		int bite;
 		if (logger.isDebugEnabled()) {
@@ -70,6 +74,32 @@ public class ByteArraySingleTerminatorSerializer extends AbstractByteArraySerial
 		return assembledData;
 	}
 
+	/**
+	 * Extracts the terminated messages from the buffer. As when reading from a stream,
+	 * a terminator at the start of a message is part of the data.
+	 */
+	public int deserialize(ByteBuffer buffer, List<byte[]> messages) throws IOException {
+		int count = 0;
+		int start = buffer.position();
+		int limit = buffer.limit();
+		while (start < limit) {
+			int end = indexOf(buffer, start + 1, limit, this.terminator);
+			if (end < 0) {
+				break;
+			}
+			if (end - start >= this.maxMessageSize) {
+				throw new IOException("Terminator not found before max message length: "
+						+ this.maxMessageSize);
+			}
+			messages.add(this.copyToArray(buffer, start, end));
+			count++;
+			start = end + 1;
+		}
+		buffer.position(start);
+		this.checkIncomplete(buffer, 0, "Terminator");
+		return count;
+	}
+
 	/**
 	 * Writes the byte[] to the stream and appends the terminator.
 	 */
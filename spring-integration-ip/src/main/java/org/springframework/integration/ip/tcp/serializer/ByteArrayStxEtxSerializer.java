@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,8 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.springframework.integration.mapping.MessageMappingException;
 
@@ -26,11 +28,12 @@ import org.springframework.integration.mapping.MessageMappingException;
  * Reads data in an InputStream to a byte[]; data must be prefixed by &lt;stx&gt; and
  * terminated by &lt;etx&gt; (not included in resulting byte[]). 
  * Writes a byte[] to an OutputStream prefixed by &lt;stx&gt; terminated by &lt;etx&gt;
+ * Also extracts such messages from a {@link ByteBuffer}.
  * 
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer {
+public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer {
 
 	public static final int STX = 0x02;
 	
@@ -52,7 +55,7 @@ public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer {
 		if (bite != STX) {
 			throw new MessageMappingException("Expected STX to begin message");
 		}
-		byte[] buffer = new byte[this.maxMessageSize];
+		byte[] buffer = this.getScratchBuffer();
 		int n = 0;
 		while ((bite = inputStream.read()) != ETX) {
 			checkClosure(bite);
@@ -67,6 +70,35 @@ public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer {
 		return assembledData;
 	}
 
+	/**
+	 * Extracts the messages, each prefixed with an ASCII STX character and terminated
+	 * with an ASCII ETX character, from the buffer.
+	 */
+	public int deserialize(ByteBuffer buffer, List<byte[]> messages) throws IOException {
+		int count = 0;
+		int start = buffer.position();
+		int limit = buffer.limit();
+		while (start < limit) {
+			if (buffer.get(start) != STX) {
+				throw new MessageMappingException("Expected STX to begin message");
+			}
+			int end = indexOf(buffer, start + 1, limit, (byte) ETX);
+			if (end < 0) {
+				break;
+			}
+			if (end - start - 1 >= this.maxMessageSize) {
+				throw new IOException("ETX not found before max message length: "
+						+ this.maxMessageSize);
+			}
+			messages.add(this.copyToArray(buffer, start + 1, end));
+			count++;
+			start = end + 1;
+		}
+		buffer.position(start);
+		this.checkIncomplete(buffer, 1, "ETX");
+		return count;
+	}
+
 	/**
 	 * Writes the byte[] to the stream, prefixed by an ASCII STX character and
 	 * terminated with an ASCII ETX character.
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.serializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Extracts messages from a buffer of bytes read from a connection, as an alternative
+ * to reading them, one at a time, from the connection's stream. The connection reads
+ * as much data as is available into its buffer, and the deserializer returns all the
+ * complete messages it contains; the bytes of an incomplete message are left in the
+ * buffer, to be completed by the next read.
+ * <p>
+ * Implementations keep no state between invocations, so a single instance can be
+ * shared by many connections.
+ *
+ * @since 3.0
+ */
+public interface ByteBufferDeserializer {
+
+	/**
+	 * Extract the complete messages between the position and the limit of the buffer,
+	 * adding them to the list. On return, the buffer's position is at the start of the
+	 * first incomplete message, or at its limit.
+	 * @param buffer the buffer containing the data.
+	 * @param messages the list to which the messages are added.
+	 * @return the number of messages added.
+	 * @throws IOException if the data is invalid, or an incomplete message exceeds
+	 * the maximum message size.
+	 */
+	int deserialize(ByteBuffer buffer, List<byte[]> messages) throws IOException;
+
+	/**
+	 * Invoked when the stream has ended while the buffer still holds the bytes of an
+	 * incomplete message.
+	 * @param buffer the buffer containing the remaining data.
+	 * @return the last message, if the format allows the end of the stream to
+	 * terminate a message.
+	 * @throws IOException if the end of the stream does not terminate a message.
+	 */
+	byte[] deserializeAtEndOfStream(ByteBuffer buffer) throws IOException;
+
+}
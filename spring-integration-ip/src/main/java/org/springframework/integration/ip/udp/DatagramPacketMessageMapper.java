@@ -18,6 +18,7 @@ package org.springframework.integration.ip.udp;
 
 import java.io.UnsupportedEncodingException;
 import java.net.DatagramPacket;
+import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.util.UUID;
 import java.util.regex.Matcher;
@@ -167,10 +168,26 @@ public class DatagramPacketMessageMapper implements InboundMessageMapper<Datagra
 	}
 
 	public Message<byte[]> toMessage(DatagramPacket packet) throws Exception {
-		int offset = packet.getOffset();
-		int length = packet.getLength();
+		return toMessage(packet.getData(), packet.getOffset(), packet.getLength(), packet.getAddress(),
+				packet.getPort());
+	}
+
+	/**
+	 * Maps the datagram in the array, copying only the received bytes to the payload;
+	 * the array can be reused once this method returns.
+	 * @param data the array containing the datagram.
+	 * @param offset the offset of the datagram in the array.
+	 * @param length the length of the datagram.
+	 * @param address the address of the sender.
+	 * @param port the port of the sender.
+	 * @return the message, or null if the datagram has no payload.
+	 * @throws Exception if the datagram cannot be mapped.
+	 * @since 3.0
+	 */
+	Message<byte[]> toMessage(byte[] data, int offset, int length, InetAddress address, int port)
+			throws Exception {
 		byte[] payload;
-		ByteBuffer buffer = ByteBuffer.wrap(packet.getData(), offset, length);
+		ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
 		Message<byte[]> message = null;
 		if (this.lengthCheck) {
 			int declaredLength = buffer.getInt();
@@ -180,25 +197,24 @@ public class DatagramPacketMessageMapper implements InboundMessageMapper<Datagra
 			offset += 4;
 			length -= 4;
 		}
-		String hostAddress = packet.getAddress().getHostAddress();
+		String hostAddress = address.getHostAddress();
 		String hostName;
 		if (this.lookupHost) {
-			hostName = packet.getAddress().getHostName();
+			hostName = address.getHostName();
 		} else {
 			hostName = hostAddress;
 		}
-		int port = packet.getPort();
 		// Peek at the message in case they didn't configure us for ack but the sending
 		// side expects it.
 		if (this.acknowledge || startsWith(buffer, IpHeaders.ACK_ADDRESS)) {
 			try {
-				String headers = new String(packet.getData(), offset, length, this.charset);
+				String headers = new String(data, offset, length, this.charset);
 				Matcher matcher = udpHeadersPattern.matcher(headers);
 				if (matcher.find()) {
 					// Strip off the ack headers and put in Message headers
 					length = length - matcher.end();
 					payload = new byte[length];
-					System.arraycopy(packet.getData(), offset + matcher.end(), payload, 0, length);
+					System.arraycopy(data, offset + matcher.end(), payload, 0, length);
 					message = MessageBuilder.withPayload(payload)
 							.setHeader(IpHeaders.ACK_ID, UUID.fromString(matcher.group(2)))
 							.setHeader(IpHeaders.ACK_ADDRESS, matcher.group(1))
@@ -214,7 +230,7 @@ public class DatagramPacketMessageMapper implements InboundMessageMapper<Datagra
 		}
 		if (message == null) {
 			payload = new byte[length];
-			System.arraycopy(packet.getData(), offset, payload, 0, length);
+			System.arraycopy(data, offset, payload, 0, length);
 			if (payload.length > 0) {
 				message = MessageBuilder.withPayload(payload)
 						.setHeader(IpHeaders.HOSTNAME, hostName)
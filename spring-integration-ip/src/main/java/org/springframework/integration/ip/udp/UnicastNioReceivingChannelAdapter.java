@@ -0,0 +1,380 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.udp;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.ip.tcp.connection.NioBufferPool;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * A channel adapter to receive incoming UDP packets using a
+ * {@link DatagramChannel}. Each datagram is received into a buffer obtained from a
+ * {@link NioBufferPool}, and only the bytes received are copied to the message
+ * payload.
+ * <p>
+ * When the channel becomes readable, the receiving thread receives up to
+ * {@code receiveBatchSize} datagrams without waiting, and hands them to the task
+ * executor as a single task, which maps them to messages and sends them. With
+ * {@code emitBatches}, the messages from each task are sent as a single message
+ * whose payload is the {@code List} of messages.
+ * <p>
+ * Datagrams that are larger than the receive buffer size (and would otherwise be
+ * silently truncated), that cannot be mapped to a message, or that are rejected by
+ * the task executor, are dropped and counted.
+ *
+ * @since 3.0
+ */
+@ManagedResource
+public class UnicastNioReceivingChannelAdapter extends UnicastReceivingChannelAdapter {
+
+	public static final int DEFAULT_RECEIVE_BATCH_SIZE = 64;
+
+	private volatile DatagramChannel channel;
+
+	private volatile Selector selector;
+
+	private volatile NioBufferPool bufferPool;
+
+	private final Object bufferPoolMonitor = new Object();
+
+	private volatile int receiveBatchSize = DEFAULT_RECEIVE_BATCH_SIZE;
+
+	private volatile boolean emitBatches;
+
+	private final AtomicLong receivedCount = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final AtomicLong truncatedCount = new AtomicLong();
+
+
+	/**
+	 * Constructs a UnicastNioReceivingChannelAdapter that listens on the specified port.
+	 * @param port The port.
+	 */
+	public UnicastNioReceivingChannelAdapter(int port) {
+		super(port);
+	}
+
+	/**
+	 * Constructs a UnicastNioReceivingChannelAdapter that listens for packets on
+	 * the specified port. Enables setting the lengthCheck option, which expects
+	 * a length to precede the incoming packets.
+	 * @param port The port.
+	 * @param lengthCheck If true, enables the lengthCheck Option.
+	 */
+	public UnicastNioReceivingChannelAdapter(int port, boolean lengthCheck) {
+		super(port, lengthCheck);
+	}
+
+
+	/**
+	 * @param bufferPool the pool from which the receive buffers are obtained; by
+	 * default, a pool of heap buffers.
+	 */
+	public void setBufferPool(NioBufferPool bufferPool) {
+		Assert.notNull(bufferPool, "'bufferPool' cannot be null");
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * @param receiveBatchSize the maximum number of datagrams received, and handed
+	 * to the task executor together, each time the channel becomes readable.
+	 */
+	public void setReceiveBatchSize(int receiveBatchSize) {
+		Assert.isTrue(receiveBatchSize > 0, "'receiveBatchSize' must be > 0");
+		this.receiveBatchSize = receiveBatchSize;
+	}
+
+	/**
+	 * @param emitBatches true to send the messages received together as a single
+	 * message with a {@code List<Message<byte[]>>} payload.
+	 */
+	public void setEmitBatches(boolean emitBatches) {
+		this.emitBatches = emitBatches;
+	}
+
+	@ManagedMetric(description = "The number of datagrams received")
+	public long getReceivedCount() {
+		return this.receivedCount.get();
+	}
+
+	@ManagedMetric(description = "The number of datagrams received that were not sent as messages")
+	public long getDroppedCount() {
+		return this.droppedCount.get();
+	}
+
+	@ManagedMetric(description = "The number of datagrams dropped because they exceeded the receive buffer size")
+	public long getTruncatedCount() {
+		return this.truncatedCount.get();
+	}
+
+	@Override
+	public void run() {
+		if (logger.isDebugEnabled()) {
+			logger.debug("UDP NIO Receiver running on port:" + this.getPort());
+		}
+		this.getSocket();
+		DatagramChannel channel = this.channel;
+		Selector selector = this.selector;
+
+		this.setListening(true);
+
+		while (this.isActive()) {
+			try {
+				selector.select(this.getSoTimeout());
+				selector.selectedKeys().clear();
+				List<ReceivedDatagram> batch = this.receiveBatch(channel);
+				if (batch.size() > 0) {
+					this.dispatch(batch);
+				}
+			}
+			catch (ClosedSelectorException e) {
+				doStop();
+			}
+			catch (IOException e) {
+				if (this.isActive() && logger.isDebugEnabled()) {
+					logger.debug("Failed to receive datagram; stopping", e);
+				}
+				doStop();
+			}
+		}
+		this.setListening(false);
+	}
+
+	private List<ReceivedDatagram> receiveBatch(DatagramChannel channel) throws IOException {
+		List<ReceivedDatagram> batch = new ArrayList<ReceivedDatagram>();
+		NioBufferPool bufferPool = this.obtainBufferPool();
+		int receiveBufferSize = this.getReceiveBufferSize();
+		while (batch.size() < this.receiveBatchSize) {
+			// one more byte than the receive buffer size, to detect larger datagrams
+			ByteBuffer buffer = bufferPool.acquire(receiveBufferSize + 1);
+			buffer.limit(receiveBufferSize + 1);
+			InetSocketAddress sender;
+			try {
+				sender = (InetSocketAddress) channel.receive(buffer);
+			}
+			catch (IOException e) {
+				bufferPool.release(buffer);
+				throw e;
+			}
+			if (sender == null) {
+				bufferPool.release(buffer);
+				break;
+			}
+			this.receivedCount.incrementAndGet();
+			buffer.flip();
+			if (buffer.remaining() > receiveBufferSize) {
+				bufferPool.release(buffer);
+				this.truncatedCount.incrementAndGet();
+				this.droppedCount.incrementAndGet();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Dropped datagram from " + sender + "; larger than the receive buffer size ("
+							+ receiveBufferSize + ")");
+				}
+				continue;
+			}
+			batch.add(new ReceivedDatagram(buffer, sender));
+		}
+		return batch;
+	}
+
+	private void dispatch(final List<ReceivedDatagram> batch) {
+		try {
+			this.getTaskExecutor().execute(new Runnable() {
+				public void run() {
+					sendMessages(toMessages(batch));
+				}
+			});
+		}
+		catch (RejectedExecutionException e) {
+			NioBufferPool bufferPool = this.obtainBufferPool();
+			for (ReceivedDatagram datagram : batch) {
+				bufferPool.release(datagram.buffer);
+			}
+			this.droppedCount.addAndGet(batch.size());
+			if (logger.isDebugEnabled()) {
+				logger.debug("Task executor rejected " + batch.size() + " datagram(s); dropped", e);
+			}
+		}
+	}
+
+	/**
+	 * Maps the datagrams, releasing their buffers.
+	 */
+	private List<Message<byte[]>> toMessages(List<ReceivedDatagram> batch) {
+		List<Message<byte[]>> messages = new ArrayList<Message<byte[]>>(batch.size());
+		NioBufferPool bufferPool = this.obtainBufferPool();
+		DatagramPacketMessageMapper mapper = this.getMapper();
+		byte[] data = null;
+		for (ReceivedDatagram datagram : batch) {
+			ByteBuffer buffer = datagram.buffer;
+			try {
+				int length = buffer.remaining();
+				InetAddress address = datagram.sender.getAddress();
+				int port = datagram.sender.getPort();
+				Message<byte[]> message;
+				if (buffer.hasArray()) {
+					message = mapper.toMessage(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+							address, port);
+				}
+				else {
+					if (data == null) {
+						data = new byte[this.getReceiveBufferSize()];
+					}
+					buffer.get(data, 0, length);
+					message = mapper.toMessage(data, 0, length, address, port);
+				}
+				if (message != null) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Received:" + message);
+					}
+					messages.add(message);
+				}
+			}
+			catch (Exception e) {
+				this.droppedCount.incrementAndGet();
+				logger.error("Failed to map packet to message ", e);
+			}
+			finally {
+				bufferPool.release(buffer);
+			}
+		}
+		return messages;
+	}
+
+	private void sendMessages(List<Message<byte[]>> messages) {
+		List<Message<byte[]>> batch = new ArrayList<Message<byte[]>>(messages.size());
+		for (Message<byte[]> message : messages) {
+			try {
+				if (message.getHeaders().containsKey(IpHeaders.ACK_ADDRESS)) {
+					sendAck(message);
+				}
+				if (this.emitBatches) {
+					batch.add(message);
+				}
+				else {
+					sendMessage(message);
+				}
+			}
+			catch (RuntimeException e) {
+				this.droppedCount.incrementAndGet();
+				logger.error("Failed to send message " + message, e);
+			}
+		}
+		if (batch.size() > 0) {
+			sendMessage(MessageBuilder.withPayload(batch).build());
+		}
+	}
+
+	@Override
+	protected synchronized DatagramSocket getSocket() {
+		if (this.channel == null) {
+			try {
+				DatagramChannel channel = DatagramChannel.open();
+				DatagramSocket socket = channel.socket();
+				this.setSocketAttributes(socket);
+				String localAddress = this.getLocalAddress();
+				if (localAddress == null) {
+					socket.bind(new InetSocketAddress(this.getPort()));
+				}
+				else {
+					InetAddress whichNic = InetAddress.getByName(localAddress);
+					socket.bind(new InetSocketAddress(whichNic, this.getPort()));
+				}
+				channel.configureBlocking(false);
+				Selector selector = Selector.open();
+				channel.register(selector, SelectionKey.OP_READ);
+				this.selector = selector;
+				this.channel = channel;
+			}
+			catch (IOException e) {
+				throw new MessagingException("failed to create DatagramChannel", e);
+			}
+		}
+		return this.channel.socket();
+	}
+
+	@Override
+	protected void doStop() {
+		super.doStop();
+		try {
+			Selector selector = this.selector;
+			this.selector = null;
+			if (selector != null) {
+				selector.close();
+			}
+		}
+		catch (Exception e) {
+			// ignore
+		}
+		try {
+			DatagramChannel channel = this.channel;
+			this.channel = null;
+			if (channel != null) {
+				channel.close();
+			}
+		}
+		catch (Exception e) {
+			// ignore
+		}
+	}
+
+	private NioBufferPool obtainBufferPool() {
+		if (this.bufferPool == null) {
+			synchronized (this.bufferPoolMonitor) {
+				if (this.bufferPool == null) {
+					this.bufferPool = new NioBufferPool(false);
+				}
+			}
+		}
+		return this.bufferPool;
+	}
+
+	private static class ReceivedDatagram {
+
+		private final ByteBuffer buffer;
+
+		private final InetSocketAddress sender;
+
+		ReceivedDatagram(ByteBuffer buffer, InetSocketAddress sender) {
+			this.buffer = buffer;
+			this.sender = sender;
+		}
+
+	}
+
+}
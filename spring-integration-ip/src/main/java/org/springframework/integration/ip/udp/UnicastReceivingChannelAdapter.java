@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -230,6 +230,10 @@ public class UnicastReceivingChannelAdapter extends AbstractInternetProtocolRece
 		this.mapper.setLookupHost(lookupHost);
 	}
 
+	DatagramPacketMessageMapper getMapper() {
+		return this.mapper;
+	}
+
 	@Override
 	public String getComponentType(){
 		return "ip:udp-inbound-channel-adapter";
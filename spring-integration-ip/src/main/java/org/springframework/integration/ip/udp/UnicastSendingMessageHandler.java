@@ -1,5 +1,5 @@
 /*
- * Copyright 2001-2011 the original author or authors.
+ * Copyright 2001-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,22 +21,32 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageDeliveryException;
 import org.springframework.integration.MessageHandlingException;
 import org.springframework.integration.MessageRejectedException;
 import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
 import org.springframework.integration.ip.AbstractInternetProtocolSendingMessageHandler;
+import org.springframework.integration.message.ErrorMessage;
 import org.springframework.util.Assert;
 
 /**
@@ -46,6 +56,15 @@ import org.springframework.util.Assert;
  * Messages can be basic, with no support for reliability, can be prefixed
  * by a length so the receiving end can detect truncation, and can require
  * a UDP acknowledgment to confirm delivery.
+ * <p>
+ * By default, when acknowledgments are required, each send waits for the
+ * acknowledgment. With an {@code ackWindowSize}, sends return without waiting,
+ * unless that many datagrams are already unacknowledged; datagrams that are not
+ * acknowledged within the {@code ackTimeout} are retransmitted, up to
+ * {@code maxRetransmits} times, after which an {@link ErrorMessage} with a
+ * {@link MessagingException} carrying the unacknowledged message is sent to the
+ * message's error channel, the {@code ackFailureChannel} or, by default, the
+ * 'errorChannel' bean; each failure is reported, and is also counted.
  *
  * @author Gary Russell
  * @since 2.0
@@ -86,6 +105,23 @@ public class UnicastSendingMessageHandler extends
 
 	private volatile Executor taskExecutor;
 
+	private volatile int ackWindowSize;
+
+	private volatile int maxRetransmits = 3;
+
+	private volatile Semaphore ackWindow;
+
+	private final ConcurrentMap<String, UnacknowledgedDatagram> unacknowledged =
+			new ConcurrentHashMap<String, UnacknowledgedDatagram>();
+
+	private final MessagePublishingErrorHandler ackFailureHandler = new MessagePublishingErrorHandler();
+
+	private final AtomicLong retransmitCount = new AtomicLong();
+
+	private final AtomicLong ackFailureCount = new AtomicLong();
+
+	private volatile long nextRetransmitCheck;
+
 	/**
 	 * Basic constructor; no reliability; no acknowledgment.
 	 * @param host Destination host.
@@ -168,6 +204,9 @@ public class UnicastSendingMessageHandler extends
 	}
 
 	public void onInit() {
+		if (this.getBeanFactory() != null) {
+			this.ackFailureHandler.setBeanFactory(this.getBeanFactory());
+		}
 		if (this.acknowledge) {
 			if (this.taskExecutor == null) {
 				Executor executor = Executors
@@ -182,6 +221,9 @@ public class UnicastSendingMessageHandler extends
 						});
 				this.taskExecutor = executor;
 			}
+			if (this.ackWindowSize > 0) {
+				this.ackWindow = new Semaphore(this.ackWindowSize);
+			}
 		}
 	}
 
@@ -203,6 +245,10 @@ public class UnicastSendingMessageHandler extends
 				}
 			}
 		}
+		if (this.ackWindow != null) {
+			this.sendWindowed(message);
+			return;
+		}
 		CountDownLatch countdownLatch = null;
 		String messageId = message.getHeaders().getId().toString();
 		try {
@@ -245,6 +291,112 @@ public class UnicastSendingMessageHandler extends
 		}
 	}
 
+	/**
+	 * Sends the message once there is space in the acknowledgment window, without
+	 * waiting for the acknowledgment.
+	 */
+	private void sendWindowed(Message<?> message) {
+		long windowTimeout = (long) this.ackTimeout * (this.maxRetransmits + 1);
+		try {
+			if (!this.ackWindow.tryAcquire(windowTimeout, TimeUnit.MILLISECONDS)) {
+				throw new MessagingException(message, "No space in the UDP Ack window in " + windowTimeout + " millis");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageHandlingException(message, "Interrupted waiting for space in the UDP Ack window", e);
+		}
+		String messageId = message.getHeaders().getId().toString();
+		UnacknowledgedDatagram datagram = null;
+		boolean sent = false;
+		try {
+			DatagramPacket packet = this.mapper.fromMessage(message);
+			datagram = new UnacknowledgedDatagram(message, packet, this.ackCounter);
+			this.unacknowledged.put(messageId, datagram);
+			this.send(packet);
+			sent = true;
+			logger.debug("Sent packet for message " + message);
+		}
+		catch (MessagingException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			try{
+				socket.close();
+			}
+			catch (Exception e1) { }
+			socket = null;
+			throw new MessageHandlingException(message, "failed to send UDP packet", e);
+		}
+		finally {
+			if (!sent && (datagram == null || this.unacknowledged.remove(messageId, datagram))) {
+				this.ackWindow.release();
+			}
+		}
+	}
+
+	/**
+	 * Releases the datagram's space in the window once it has been acknowledged
+	 * by the required number of hosts. Acknowledgments are counted per host rather
+	 * than per socket address, since receivers send each acknowledgment from a new
+	 * socket; a receiver acknowledges a retransmitted datagram again.
+	 */
+	private void acknowledged(String id, InetAddress sender) {
+		UnacknowledgedDatagram datagram = this.unacknowledged.get(id);
+		if (datagram != null && datagram.acknowledgedBy(sender)
+				&& this.unacknowledged.remove(id, datagram)) {
+			this.ackWindow.release();
+		}
+	}
+
+	/**
+	 * Retransmits the datagrams that have not been acknowledged within the ackTimeout;
+	 * those that have been retransmitted maxRetransmits times are failed instead.
+	 */
+	private void retransmitExpired() {
+		long now = System.currentTimeMillis();
+		if (now < this.nextRetransmitCheck) {
+			return;
+		}
+		this.nextRetransmitCheck = now + this.retransmitCheckInterval();
+		for (Map.Entry<String, UnacknowledgedDatagram> entry : this.unacknowledged.entrySet()) {
+			UnacknowledgedDatagram datagram = entry.getValue();
+			if (now - datagram.sentAt < this.ackTimeout) {
+				continue;
+			}
+			if (datagram.retransmits < this.maxRetransmits) {
+				datagram.retransmits++;
+				datagram.sentAt = now;
+				this.retransmitCount.incrementAndGet();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Retransmitting packet for message " + entry.getKey());
+				}
+				try {
+					this.send(datagram.packet);
+				}
+				catch (Exception e) {
+					logger.error("Failed to retransmit UDP packet for message " + entry.getKey(), e);
+				}
+			}
+			else if (this.unacknowledged.remove(entry.getKey(), datagram)) {
+				this.ackFailureCount.incrementAndGet();
+				MessagingException failure = new MessagingException(datagram.message, "Failed to receive UDP Ack in "
+						+ (this.maxRetransmits + 1) + " attempts of " + this.ackTimeout + " millis");
+				this.ackWindow.release();
+				try {
+					this.ackFailureHandler.handleError(failure);
+				}
+				catch (RuntimeException e) {
+					logger.error(failure.getMessage() + " for message " + entry.getKey(), e);
+				}
+			}
+		}
+	}
+
+	private int retransmitCheckInterval() {
+		return Math.max(this.ackTimeout / 4, 1);
+	}
+
 	protected void send(DatagramPacket packet) throws Exception {
 		DatagramSocket socket = this.getSocket();
 		packet.setSocketAddress(this.getDestinationAddress());
@@ -289,6 +441,10 @@ public class UnicastSendingMessageHandler extends
 		if (this.getSoSendBufferSize() > 0) {
 			socket.setSendBufferSize(this.getSoSendBufferSize());
 		}
+		if (this.acknowledge && this.ackWindowSize > 0) {
+			// the ack thread wakes periodically to retransmit unacknowledged packets
+			socket.setSoTimeout(this.retransmitCheckInterval());
+		}
 	}
 
 	/**
@@ -300,14 +456,29 @@ public class UnicastSendingMessageHandler extends
 			ackLatch.countDown();
 			DatagramPacket ackPack = new DatagramPacket(new byte[100], 100);
 			while(true) {
-				this.getSocket().receive(ackPack);
+				try {
+					this.getSocket().receive(ackPack);
+				}
+				catch (SocketTimeoutException e) {
+					if (this.ackWindow == null) {
+						throw e;
+					}
+					this.retransmitExpired();
+					continue;
+				}
 				String id = new String(ackPack.getData(), ackPack.getOffset(), ackPack.getLength());
 				if (logger.isDebugEnabled()) {
 					logger.debug("Received ack for " + id + " from " + ackPack.getAddress().getHostAddress());
 				}
-				CountDownLatch latch = this.ackControl.get(id);
-				if (latch != null) {
-					latch.countDown();
+				if (this.ackWindow != null) {
+					this.acknowledged(id, ackPack.getAddress());
+					this.retransmitExpired();
+				}
+				else {
+					CountDownLatch latch = this.ackControl.get(id);
+					if (latch != null) {
+						latch.countDown();
+					}
 				}
 			}
 		}
@@ -356,6 +527,82 @@ public class UnicastSendingMessageHandler extends
 		this.taskExecutor = taskExecutor;
 	}
 
+	/**
+	 * Sets the number of datagrams that can be unacknowledged before a send waits;
+	 * when greater than 0, sends do not wait for their acknowledgments.
+	 * @param ackWindowSize the window size.
+	 * @since 3.0
+	 */
+	public void setAckWindowSize(int ackWindowSize) {
+		Assert.isTrue(ackWindowSize >= 0, "'ackWindowSize' cannot be negative");
+		this.ackWindowSize = ackWindowSize;
+	}
+
+	/**
+	 * Sets the channel to which an {@link ErrorMessage} is sent for each datagram
+	 * that is not acknowledged after the last retransmission, when using an
+	 * ackWindowSize, unless the message has an error channel header. Default: the
+	 * 'errorChannel' bean.
+	 * @param ackFailureChannel the channel.
+	 * @since 3.0
+	 */
+	public void setAckFailureChannel(MessageChannel ackFailureChannel) {
+		this.ackFailureHandler.setDefaultErrorChannel(ackFailureChannel);
+	}
+
+	/**
+	 * @param maxRetransmits the number of times an unacknowledged datagram is
+	 * retransmitted when using an ackWindowSize; default 3.
+	 * @since 3.0
+	 */
+	public void setMaxRetransmits(int maxRetransmits) {
+		Assert.isTrue(maxRetransmits >= 0, "'maxRetransmits' cannot be negative");
+		this.maxRetransmits = maxRetransmits;
+	}
+
+	/**
+	 * Waits until there are no unacknowledged datagrams; only applies when
+	 * using an ackWindowSize.
+	 * @param timeout the maximum time (milliseconds) to wait.
+	 * @return true if all the datagrams have been acknowledged or have failed.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @since 3.0
+	 */
+	public boolean waitForAcks(long timeout) throws InterruptedException {
+		Assert.state(this.ackWindow != null, "Only applies when acknowledge is true and ackWindowSize is > 0");
+		if (this.ackWindow.tryAcquire(this.ackWindowSize, timeout, TimeUnit.MILLISECONDS)) {
+			this.ackWindow.release(this.ackWindowSize);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of datagrams sent and not yet acknowledged, when using
+	 * an ackWindowSize.
+	 * @since 3.0
+	 */
+	public int getUnacknowledgedCount() {
+		return this.unacknowledged.size();
+	}
+
+	/**
+	 * @return the number of datagrams retransmitted.
+	 * @since 3.0
+	 */
+	public long getRetransmitCount() {
+		return this.retransmitCount.get();
+	}
+
+	/**
+	 * @return the number of datagrams that were not acknowledged after the last
+	 * retransmission.
+	 * @since 3.0
+	 */
+	public long getAckFailureCount() {
+		return this.ackFailureCount.get();
+	}
+
 	/**
 	 * @param ackCounter the ackCounter to set
 	 */
@@ -387,4 +634,36 @@ public class UnicastSendingMessageHandler extends
 	public int getSoReceiveBufferSize() {
 		return soReceiveBufferSize;
 	}
+
+	private static class UnacknowledgedDatagram {
+
+		private final Message<?> message;
+
+		private final DatagramPacket packet;
+
+		private final int acksRequired;
+
+		private final Set<InetAddress> ackSenders = new HashSet<InetAddress>();
+
+		private volatile long sentAt = System.currentTimeMillis();
+
+		private volatile int retransmits;
+
+		UnacknowledgedDatagram(Message<?> message, DatagramPacket packet, int acksRequired) {
+			this.message = message;
+			this.packet = packet;
+			this.acksRequired = acksRequired;
+		}
+
+		/**
+		 * @return true if the datagram has now been acknowledged by the required
+		 * number of hosts.
+		 */
+		synchronized boolean acknowledgedBy(InetAddress sender) {
+			this.ackSenders.add(sender);
+			return this.ackSenders.size() >= this.acksRequired;
+		}
+
+	}
+
 }
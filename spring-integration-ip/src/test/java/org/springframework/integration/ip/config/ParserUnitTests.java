@@ -41,6 +41,7 @@ import org.springframework.core.serializer.Serializer;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
+import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.core.MessageHandler;
@@ -55,6 +56,7 @@ import org.springframework.integration.ip.tcp.connection.AbstractConnectionFacto
 import org.springframework.integration.ip.tcp.connection.DefaultTcpNetSSLSocketFactorySupport;
 import org.springframework.integration.ip.tcp.connection.DefaultTcpNioSSLConnectionSupport;
 import org.springframework.integration.ip.tcp.connection.DefaultTcpSSLContextSupport;
+import org.springframework.integration.ip.tcp.connection.NioBufferPool;
 import org.springframework.integration.ip.tcp.connection.TcpConnectionEvent;
 import org.springframework.integration.ip.tcp.connection.TcpConnectionEvent.TcpConnectionEventType;
 import org.springframework.integration.ip.tcp.connection.TcpConnectionEventListeningMessageProducer;
@@ -70,6 +72,7 @@ import org.springframework.integration.ip.tcp.connection.TcpSocketSupport;
 import org.springframework.integration.ip.udp.DatagramPacketMessageMapper;
 import org.springframework.integration.ip.udp.MulticastReceivingChannelAdapter;
 import org.springframework.integration.ip.udp.MulticastSendingMessageHandler;
+import org.springframework.integration.ip.udp.UnicastNioReceivingChannelAdapter;
 import org.springframework.integration.ip.udp.UnicastReceivingChannelAdapter;
 import org.springframework.integration.ip.udp.UnicastSendingMessageHandler;
 import org.springframework.integration.message.GenericMessage;
@@ -90,6 +93,9 @@ public class ParserUnitTests {
 	@Autowired
 	ApplicationContext ctx;
 
+	@Autowired
+	CorrelationStrategy correlationStrategy;
+
 	@Autowired
 	@Qualifier(value="testInUdp")
 	UnicastReceivingChannelAdapter udpIn;
@@ -98,6 +104,10 @@ public class ParserUnitTests {
 	@Qualifier(value="testInUdpMulticast")
 	MulticastReceivingChannelAdapter udpInMulticast;
 
+	@Autowired
+	@Qualifier(value="testInUdpNio")
+	UnicastNioReceivingChannelAdapter udpInNio;
+
 	@Autowired
 	@Qualifier(value="testInTcp")
 	TcpReceivingChannelAdapter tcpIn;
@@ -268,6 +278,9 @@ public class ParserUnitTests {
 	@Autowired
 	QueueChannel eventChannel;
 
+	@Autowired
+	NioBufferPool bufferPool;
+
 	private static volatile int adviceCalled;
 
 	@Test
@@ -289,6 +302,15 @@ public class ParserUnitTests {
 		assertFalse((Boolean)mapperAccessor.getPropertyValue("lookupHost"));
 	}
 
+	@Test
+	public void testInUdpNio() {
+		assertTrue(udpInNio.getPort() >= 5150);
+		assertEquals(16, TestUtils.getPropertyValue(udpInNio, "receiveBatchSize"));
+		assertEquals(Boolean.TRUE, TestUtils.getPropertyValue(udpInNio, "emitBatches"));
+		assertSame(bufferPool, TestUtils.getPropertyValue(udpInNio, "bufferPool"));
+		assertEquals("ip:udp-inbound-channel-adapter", udpInNio.getComponentType());
+	}
+
 	@Test
 	public void testInUdpMulticast() {
 		DirectFieldAccessor dfa = new DirectFieldAccessor(udpInMulticast);
@@ -315,6 +337,7 @@ public class ParserUnitTests {
 		assertEquals("ip:tcp-inbound-channel-adapter", tcpIn.getComponentType());
 		assertEquals(errorChannel, dfa.getPropertyValue("errorChannel"));
 		assertFalse(cfS1.isLookupHost());
+		assertTrue(cfS1.isBufferDeserialization());
 		assertFalse(tcpIn.isAutoStartup());
 		assertEquals(124, tcpIn.getPhase());
 		TcpMessageMapper cfS1Mapper = TestUtils.getPropertyValue(cfS1, "mapper", TcpMessageMapper.class);
@@ -337,6 +360,12 @@ public class ParserUnitTests {
 	@Test
 	public void testInTcpNioSSLDefaultConfig() {
 		assertFalse(cfS1Nio.isLookupHost());
+		assertFalse(cfS1Nio.isBufferDeserialization());
+		assertEquals(4, cfS1Nio.getSelectorThreads());
+		assertSame(bufferPool, TestUtils.getPropertyValue(cfS1Nio, "bufferPool"));
+		assertEquals(100, cfS1Nio.getSendQueueCapacity());
+		assertEquals(4096, cfS1Nio.getSendCoalescingThreshold());
+		assertEquals(5L, cfS1Nio.getSendLinger());
 		assertTrue((Boolean) TestUtils.getPropertyValue(
 				TestUtils.getPropertyValue(cfS1Nio, "mapper"), "applySequence"));
 		Object connectionSupport = TestUtils.getPropertyValue(cfS1Nio, "tcpNioConnectionSupport");
@@ -358,6 +387,10 @@ public class ParserUnitTests {
 		assertEquals("somehost:" + ackPort, ackAddress);
 		assertEquals(51, dfa.getPropertyValue("ackTimeout"));
 		assertEquals(true, dfa.getPropertyValue("waitForAck"));
+		assertEquals(16, dfa.getPropertyValue("ackWindowSize"));
+		assertEquals(5, dfa.getPropertyValue("maxRetransmits"));
+		assertSame(errorChannel, new DirectFieldAccessor(dfa.getPropertyValue("ackFailureHandler"))
+				.getPropertyValue("defaultErrorChannel"));
 		assertEquals(52, dfa.getPropertyValue("soReceiveBufferSize"));
 		assertEquals(53, dfa.getPropertyValue("soSendBufferSize"));
 		assertEquals(54, dfa.getPropertyValue("soTimeout"));
@@ -429,6 +462,7 @@ public class ParserUnitTests {
 		assertEquals("testOutTcpNio",tcpOut.getComponentName());
 		assertEquals("ip:tcp-outbound-channel-adapter", tcpOut.getComponentType());
 		assertFalse(cfC1.isLookupHost());
+		assertEquals(0, cfC1.getSendQueueCapacity());
 		assertEquals(35, dfa.getPropertyValue("order"));
 		assertFalse(tcpOut.isAutoStartup());
 		assertEquals(125, tcpOut.getPhase());
@@ -473,6 +507,8 @@ public class ParserUnitTests {
 				MessagingTemplate.class);
 		assertEquals(Long.valueOf(567), TestUtils.getPropertyValue(messagingTemplate, "sendTimeout", Long.class));
 		assertEquals(789L, dfa.getPropertyValue("remoteTimeout"));
+		assertEquals(8, dfa.getPropertyValue("maxRequestsInFlight"));
+		assertSame(correlationStrategy, dfa.getPropertyValue("correlationStrategy"));
 		assertEquals("outGateway",tcpOutboundGateway.getComponentName());
 		assertEquals("ip:tcp-outbound-gateway", tcpOutboundGateway.getComponentType());
 		assertTrue(cfC2.isLookupHost());
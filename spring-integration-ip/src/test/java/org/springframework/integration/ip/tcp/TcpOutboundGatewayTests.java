@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,9 +21,12 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.ArrayList;
@@ -34,6 +37,7 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -49,6 +53,7 @@ import org.springframework.core.serializer.DefaultDeserializer;
 import org.springframework.core.serializer.DefaultSerializer;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageTimeoutException;
+import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNetClientConnectionFactory;
@@ -367,4 +372,128 @@ public class TcpOutboundGatewayTests {
 		assertEquals(0, TestUtils.getPropertyValue(gateway, "pendingReplies", Map.class).size());
 	}
 
+	@Test
+	public void testPipelinedInOrder() throws Exception {
+		final int port = SocketUtils.findAvailableServerSocket();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicBoolean done = new AtomicBoolean();
+		Executors.newSingleThreadExecutor().execute(new BatchingServer(port, 5, false, latch, done));
+		TcpOutboundGateway gateway = this.createPipelinedGateway(port, latch, 5);
+		this.sendConcurrently(gateway, 5);
+		done.set(true);
+	}
+
+	@Test
+	public void testPipelinedCorrelated() throws Exception {
+		final int port = SocketUtils.findAvailableServerSocket();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final AtomicBoolean done = new AtomicBoolean();
+		// the server replies to each batch of requests in reverse order
+		Executors.newSingleThreadExecutor().execute(new BatchingServer(port, 5, true, latch, done));
+		TcpOutboundGateway gateway = this.createPipelinedGateway(port, latch, 5);
+		gateway.setCorrelationStrategy(new CorrelationStrategy() {
+			public Object getCorrelationKey(Message<?> message) {
+				Object payload = message.getPayload();
+				String frame = (payload instanceof byte[]) ? new String((byte[]) payload) : (String) payload;
+				return frame.substring(0, frame.indexOf(':'));
+			}
+		});
+		this.sendConcurrently(gateway, 5);
+		done.set(true);
+		for (Object pipeline : TestUtils.getPropertyValue(gateway, "pipelines", Map.class).values()) {
+			assertEquals(0, TestUtils.getPropertyValue(pipeline, "correlatedReplies", Map.class).size());
+		}
+	}
+
+	private TcpOutboundGateway createPipelinedGateway(int port, CountDownLatch latch, int maxRequestsInFlight)
+			throws Exception {
+		AbstractConnectionFactory ccf = new TcpNetClientConnectionFactory("localhost", port);
+		ccf.setSoTimeout(10000);
+		ccf.setSingleUse(false);
+		ccf.start();
+		assertTrue(latch.await(10000, TimeUnit.MILLISECONDS));
+		TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(ccf);
+		gateway.setRequiresReply(true);
+		gateway.setMaxRequestsInFlight(maxRequestsInFlight);
+		return gateway;
+	}
+
+	/**
+	 * Send the requests from as many threads; the server only replies once it has
+	 * received all of them, so they can only succeed if they are pipelined.
+	 */
+	private void sendConcurrently(final TcpOutboundGateway gateway, int count) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(count);
+		List<Future<Message<?>>> results = new ArrayList<Future<Message<?>>>();
+		for (int i = 0; i < count; i++) {
+			final int j = i;
+			results.add(executor.submit(new Callable<Message<?>>() {
+				public Message<?> call() throws Exception {
+					QueueChannel replyChannel = new QueueChannel();
+					gateway.handleMessage(MessageBuilder.withPayload(j + ":Test")
+							.setReplyChannel(replyChannel).build());
+					return replyChannel.receive(0);
+				}
+			}));
+		}
+		for (int i = 0; i < count; i++) {
+			Message<?> reply = results.get(i).get(10, TimeUnit.SECONDS);
+			assertNotNull(reply);
+			assertEquals(i + ":Reply", new String((byte[]) reply.getPayload()));
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * Reads CRLF-delimited requests and replies to them only when a batch is complete.
+	 */
+	private class BatchingServer implements Runnable {
+
+		private final int port;
+
+		private final int batchSize;
+
+		private final boolean reverse;
+
+		private final CountDownLatch latch;
+
+		private final AtomicBoolean done;
+
+		public BatchingServer(int port, int batchSize, boolean reverse, CountDownLatch latch, AtomicBoolean done) {
+			this.port = port;
+			this.batchSize = batchSize;
+			this.reverse = reverse;
+			this.latch = latch;
+			this.done = done;
+		}
+
+		public void run() {
+			try {
+				ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(this.port);
+				this.latch.countDown();
+				Socket socket = server.accept();
+				BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+				OutputStream out = socket.getOutputStream();
+				while (true) {
+					List<String> batch = new ArrayList<String>();
+					for (int i = 0; i < this.batchSize; i++) {
+						String request = reader.readLine();
+						batch.add(request.replace("Test", "Reply"));
+					}
+					for (int i = 0; i < this.batchSize; i++) {
+						String reply = batch.get(this.reverse ? this.batchSize - 1 - i : i);
+						out.write((reply + "\r\n").getBytes());
+					}
+					out.flush();
+				}
+			}
+			catch (Exception e) {
+				if (!this.done.get()) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
 }
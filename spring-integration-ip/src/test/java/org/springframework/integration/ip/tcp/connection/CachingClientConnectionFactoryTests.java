@@ -18,6 +18,7 @@ package org.springframework.integration.ip.tcp.connection;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
@@ -36,6 +37,7 @@ import org.junit.runner.RunWith;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessagingException;
 import org.springframework.integration.core.PollableChannel;
@@ -45,6 +47,7 @@ import org.springframework.integration.ip.util.TestingUtilities;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.annotation.DirtiesContext.ClassMode;
 import org.springframework.test.context.ContextConfiguration;
@@ -270,6 +273,72 @@ public class CachingClientConnectionFactoryTests {
 		verify(mockConn2).close();
 	}
 
+	@Test
+	public void testMaxLifetime() throws Exception {
+		AbstractClientConnectionFactory factory = mock(AbstractClientConnectionFactory.class);
+		when(factory.isRunning()).thenReturn(true);
+		TcpConnectionSupport mockConn1 = makeMockConnection("conn1", true);
+		TcpConnectionSupport mockConn2 = makeMockConnection("conn2");
+		when(factory.getConnection()).thenReturn(mockConn1).thenReturn(mockConn2);
+		CachingClientConnectionFactory cachingFactory = new CachingClientConnectionFactory(factory, 2);
+		cachingFactory.setConnectionMaxLifetime(50);
+		cachingFactory.start();
+		TcpConnection conn1 = cachingFactory.getConnection();
+		conn1.close();
+		assertEquals(1, cachingFactory.getIdleCount());
+		Thread.sleep(100);
+		TcpConnection conn2 = cachingFactory.getConnection();
+		assertEquals("Cached:" + mockConn2.toString(), conn2.toString());
+		verify(mockConn1).close();
+		assertEquals(1, cachingFactory.getAllocatedCount());
+		conn2.close();
+	}
+
+	@Test
+	public void testEvictionAndWaitTimeHistogram() throws Exception {
+		AbstractClientConnectionFactory factory = mock(AbstractClientConnectionFactory.class);
+		when(factory.isRunning()).thenReturn(true);
+		TcpConnectionSupport mockConn1 = makeMockConnection("conn1");
+		TcpConnectionSupport mockConn2 = makeMockConnection("conn2", true);
+		when(factory.getConnection()).thenReturn(mockConn1).thenReturn(mockConn2);
+		CachingClientConnectionFactory cachingFactory = new CachingClientConnectionFactory(factory, 2);
+		cachingFactory.setConnectionEvictionInterval(50);
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.initialize();
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton("taskScheduler", scheduler);
+		cachingFactory.setBeanFactory(beanFactory);
+		cachingFactory.start();
+		TcpConnection conn1 = cachingFactory.getConnection();
+		TcpConnection conn2 = cachingFactory.getConnection();
+		conn1.close();
+		conn2.close();
+		assertEquals(2, cachingFactory.getIdleCount());
+		// the closed connection is removed by the eviction task, not by a request
+		when(mockConn1.isOpen()).thenReturn(false);
+		int n = 0;
+		while (cachingFactory.getIdleCount() > 1 && n++ < 100) {
+			Thread.sleep(50);
+		}
+		assertEquals(1, cachingFactory.getIdleCount());
+		assertEquals(1, cachingFactory.getAllocatedCount());
+		TcpConnection conn2a = cachingFactory.getConnection();
+		assertEquals("Cached:" + mockConn2.toString(), conn2a.toString());
+		long[] histogram = cachingFactory.getConnectionWaitTimeHistogram();
+		assertEquals(5, histogram.length);
+		long waits = 0;
+		for (long count : histogram) {
+			waits += count;
+		}
+		assertEquals(3, waits);
+		conn2a.close();
+		cachingFactory.resetConnectionWaitTimeStatistics();
+		assertEquals(0, cachingFactory.getConnectionWaitTimeHistogram()[0]);
+		cachingFactory.stop();
+		assertNull(TestUtils.getPropertyValue(cachingFactory, "evictionTask"));
+		scheduler.destroy();
+	}
+
 	private TcpConnectionSupport makeMockConnection(String name) {
 		return makeMockConnection(name, false);
 	}
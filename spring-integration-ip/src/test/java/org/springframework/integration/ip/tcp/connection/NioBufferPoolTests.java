@@ -0,0 +1,173 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ServerSocketFactory;
+import javax.net.SocketFactory;
+
+import org.junit.Test;
+import org.springframework.integration.Message;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
+import org.springframework.integration.ip.util.TestingUtilities;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.integration.test.util.TestUtils;
+
+/**
+ * @since 3.0
+ */
+public class NioBufferPoolTests {
+
+	@Test
+	public void testSizeClasses() {
+		NioBufferPool pool = new NioBufferPool(false, 1000, 5000, 2);
+		assertEquals(1024, pool.acquire(1).capacity());
+		assertEquals(1024, pool.acquire(1024).capacity());
+		assertEquals(2048, pool.acquire(1025).capacity());
+		assertEquals(4096, pool.acquire(4096).capacity());
+		// larger than the largest class; not pooled
+		assertEquals(4097, pool.acquire(4097).capacity());
+		assertEquals(5, pool.getOutstandingCount());
+	}
+
+	@Test
+	public void testReuse() {
+		NioBufferPool pool = new NioBufferPool(true, 1024, 4096, 1);
+		ByteBuffer buffer = pool.acquire(2000);
+		assertTrue(buffer.isDirect());
+		buffer.put((byte) 1);
+		pool.release(buffer);
+		assertEquals(0, pool.getOutstandingCount());
+		assertEquals(1, pool.getPooledCount());
+		ByteBuffer reused = pool.acquire(1500);
+		assertSame(buffer, reused);
+		assertEquals(0, reused.position());
+		assertEquals(2048, reused.limit());
+		assertNotSame(buffer, pool.acquire(1500));
+		// at most one free buffer retained per class
+		pool.release(reused);
+		pool.release(ByteBuffer.allocateDirect(2048));
+		assertEquals(1, pool.getPooledCount());
+		// heap buffers are not retained by a pool of direct buffers
+		pool.release(ByteBuffer.allocate(1024));
+		assertEquals(1, pool.getPooledCount());
+	}
+
+	@Test
+	public void testLeakDetection() throws Exception {
+		NioBufferPool pool = new NioBufferPool(false);
+		pool.setLeakDetection(true);
+		ByteBuffer buffer = pool.acquire(100);
+		pool.release(buffer);
+		// released twice; not pooled again
+		pool.release(buffer);
+		assertEquals(1, pool.getPooledCount());
+		assertEquals(0, pool.getOutstandingCount());
+		buffer = null;
+		pool.acquire(100);
+		pool.acquire(100);
+		int n = 0;
+		while (pool.getLeakCount() < 2 && n++ < 100) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		assertEquals(2, pool.getLeakCount());
+		assertEquals(0, pool.getOutstandingCount());
+	}
+
+	@Test
+	public void testReadBufferReturnedOnClose() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		TcpNioServerConnectionFactory scf = new TcpNioServerConnectionFactory(port);
+		NioBufferPool pool = new NioBufferPool(true);
+		scf.setBufferPool(pool);
+		final CountDownLatch latch = new CountDownLatch(1);
+		scf.registerListener(new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				latch.countDown();
+				return false;
+			}
+		});
+		scf.start();
+		TestingUtilities.waitListening(scf, null);
+		for (int i = 0; i < 3; i++) {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+			socket.getOutputStream().write("foo\r\n".getBytes());
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+			socket.close();
+			int n = 0;
+			while (pool.getOutstandingCount() > 0 && n++ < 100) {
+				Thread.sleep(50);
+			}
+			assertEquals(0, pool.getOutstandingCount());
+			// each connection reuses the buffer released by the previous one
+			assertEquals(1, pool.getPooledCount());
+		}
+		scf.stop();
+	}
+
+	@Test
+	public void testGatheringWrite() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		TcpNioClientConnectionFactory ccf = new TcpNioClientConnectionFactory("localhost", port);
+		ccf.setSerializer(new ByteArrayLengthHeaderSerializer());
+		ccf.setDeserializer(new ByteArrayLengthHeaderSerializer());
+		ccf.start();
+		TcpConnection connection = ccf.getConnection();
+		Socket socket = server.accept();
+		socket.setSoTimeout(10000);
+		byte[] small = "foo".getBytes();
+		byte[] large = new byte[100000];
+		for (int i = 0; i < large.length; i++) {
+			large[i] = (byte) i;
+		}
+		connection.send(new GenericMessage<byte[]>(small));
+		connection.send(new GenericMessage<byte[]>(large));
+		DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+		assertEquals(small.length, inputStream.readInt());
+		byte[] received = new byte[small.length];
+		inputStream.readFully(received);
+		assertArrayEquals(small, received);
+		assertEquals(large.length, inputStream.readInt());
+		received = new byte[large.length];
+		inputStream.readFully(received);
+		assertArrayEquals(large, received);
+		NioBufferPool pool = TestUtils.getPropertyValue(ccf, "bufferPool", NioBufferPool.class);
+		// the write buffers are released after each send, and nothing has been read
+		assertEquals(0, pool.getOutstandingCount());
+		assertFalse(pool.isDirect());
+		socket.close();
+		server.close();
+		ccf.stop();
+	}
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ServerSocketFactory;
+import javax.net.SocketFactory;
+
+import org.junit.Test;
+import org.springframework.integration.Message;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+import org.springframework.integration.ip.util.TestingUtilities;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.integration.test.util.TestUtils;
+
+/**
+ * @since 3.0
+ */
+public class NioSelectorThreadsTests {
+
+	@Test
+	public void testServerConnectionsAssignedInTurn() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		TcpNioServerConnectionFactory scf = new TcpNioServerConnectionFactory(port);
+		scf.setSelectorThreads(3);
+		final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch latch = new CountDownLatch(6);
+		scf.registerListener(new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				received.add(new String((byte[]) message.getPayload()));
+				latch.countDown();
+				return false;
+			}
+		});
+		scf.start();
+		TestingUtilities.waitListening(scf, null);
+		List<Socket> sockets = new ArrayList<Socket>();
+		for (int i = 0; i < 6; i++) {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+			socket.getOutputStream().write(("foo" + i + "\r\n").getBytes());
+			sockets.add(socket);
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 6; i++) {
+			assertTrue(received.contains("foo" + i));
+		}
+		NioSelectorReactor[] reactors = TestUtils.getPropertyValue(scf, "reactors", NioSelectorReactor[].class);
+		assertEquals(3, reactors.length);
+		for (NioSelectorReactor reactor : reactors) {
+			assertEquals(2, reactor.getConnections().size());
+		}
+		assertEquals(0, scf.getConnections().size());
+		for (Socket socket : sockets) {
+			socket.close();
+		}
+		scf.stop();
+		assertNull(TestUtils.getPropertyValue(scf, "reactors"));
+	}
+
+	@Test
+	public void testServerTimeoutOnEachSelectorThread() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		TcpNioServerConnectionFactory scf = new TcpNioServerConnectionFactory(port);
+		scf.setSelectorThreads(2);
+		scf.setSoTimeout(200);
+		scf.registerListener(new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				return false;
+			}
+		});
+		scf.start();
+		TestingUtilities.waitListening(scf, null);
+		List<Socket> sockets = new ArrayList<Socket>();
+		for (int i = 0; i < 2; i++) {
+			Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+			socket.setSoTimeout(10000);
+			sockets.add(socket);
+		}
+		// each connection is timed out by its own selector thread, and closed
+		for (Socket socket : sockets) {
+			assertEquals(-1, socket.getInputStream().read());
+			socket.close();
+		}
+		scf.stop();
+	}
+
+	@Test
+	public void testClientConnectionsOnSelectorThreads() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		final ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		final int howMany = 4;
+		Thread serverThread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					for (int i = 0; i < howMany; i++) {
+						Socket socket = server.accept();
+						InputStream inputStream = socket.getInputStream();
+						String request = new String(new ByteArrayCrLfSerializer().deserialize(inputStream));
+						socket.getOutputStream().write(("reply:" + request + "\r\n").getBytes());
+					}
+				}
+				catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		serverThread.setDaemon(true);
+		serverThread.start();
+		TcpNioClientConnectionFactory ccf = new TcpNioClientConnectionFactory("localhost", port);
+		ccf.setSelectorThreads(2);
+		ccf.setSingleUse(true);
+		final List<String> replies = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch latch = new CountDownLatch(howMany);
+		ccf.registerListener(new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				replies.add(new String((byte[]) message.getPayload()));
+				latch.countDown();
+				return false;
+			}
+		});
+		ccf.start();
+		for (int i = 0; i < howMany; i++) {
+			TcpConnection connection = ccf.getConnection();
+			connection.send(new GenericMessage<String>("foo" + i));
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < howMany; i++) {
+			assertTrue(replies.contains("reply:foo" + i));
+		}
+		assertEquals(2, TestUtils.getPropertyValue(ccf, "reactors", NioSelectorReactor[].class).length);
+		ccf.stop();
+		server.close();
+	}
+
+}
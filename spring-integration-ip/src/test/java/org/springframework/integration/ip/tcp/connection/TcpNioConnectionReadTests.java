@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -28,6 +29,7 @@ import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.net.SocketFactory;
 
@@ -36,10 +38,12 @@ import org.springframework.integration.Message;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayRawSerializer;
 import org.springframework.integration.ip.tcp.serializer.ByteArrayStxEtxSerializer;
 import org.springframework.integration.ip.util.SocketTestUtils;
 import org.springframework.integration.ip.util.TestingUtilities;
 import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.integration.test.util.TestUtils;
 
 /**
  * @author Gary Russell
@@ -56,7 +60,14 @@ public class TcpNioConnectionReadTests {
 
 	private AbstractServerConnectionFactory getConnectionFactory(int port,
 			AbstractByteArraySerializer serializer, TcpListener listener, TcpSender sender) throws Exception {
+		return getConnectionFactory(port, serializer, listener, sender, false);
+	}
+
+	private AbstractServerConnectionFactory getConnectionFactory(int port,
+			AbstractByteArraySerializer serializer, TcpListener listener, TcpSender sender,
+			boolean bufferDeserialization) throws Exception {
 		AbstractServerConnectionFactory scf = new TcpNioServerConnectionFactory(port);
+		scf.setBufferDeserialization(bufferDeserialization);
 		scf.setSerializer(serializer);
 		scf.setDeserializer(serializer);
 		scf.registerListener(listener);
@@ -392,6 +403,121 @@ public class TcpNioConnectionReadTests {
 		scf.close();
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testReadCrLfDirectFraming() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		final List<Message<?>> responses = new ArrayList<Message<?>>();
+		final Semaphore semaphore = new Semaphore(0);
+		final List<TcpConnection> added = new ArrayList<TcpConnection>();
+		AbstractServerConnectionFactory scf = getConnectionFactory(port, serializer, new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				responses.add(message);
+				semaphore.release();
+				return false;
+			}
+		}, new TcpSender() {
+			public void addNewConnection(TcpConnection connection) {
+				added.add(connection);
+			}
+			public void removeDeadConnection(TcpConnection connection) {
+			}
+		}, true);
+
+		// each message arrives in two parts
+		SocketTestUtils.testSendCrLf(port, latch);
+		latch.countDown();
+		assertTrue(semaphore.tryAcquire(2, 10000, TimeUnit.MILLISECONDS));
+		for (int i = 0; i < 2; i++) {
+			assertEquals("Data", SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING,
+					new String(((Message<byte[]>) responses.get(i)).getPayload()));
+		}
+		// no assembler was needed
+		assertEquals(0, TestUtils.getPropertyValue(added.get(0), "executionControl", AtomicInteger.class).get());
+		scf.close();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testReadManyDirectFraming() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
+		final List<Message<?>> responses = new ArrayList<Message<?>>();
+		final Semaphore semaphore = new Semaphore(0);
+		AbstractServerConnectionFactory scf = getConnectionFactory(port, serializer, new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				responses.add(message);
+				semaphore.release();
+				return false;
+			}
+		}, null, true);
+		int howMany = 1000;
+		Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+		OutputStream outputStream = socket.getOutputStream();
+		for (int i = 0; i < howMany; i++) {
+			serializer.serialize(("foo" + i).getBytes(), outputStream);
+		}
+		assertTrue(semaphore.tryAcquire(howMany, 10000, TimeUnit.MILLISECONDS));
+		for (int i = 0; i < howMany; i++) {
+			assertEquals("foo" + i, new String(((Message<byte[]>) responses.get(i)).getPayload()));
+		}
+		socket.close();
+		scf.close();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testReadRawDirectFraming() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		ByteArrayRawSerializer serializer = new ByteArrayRawSerializer();
+		final List<Message<?>> responses = new ArrayList<Message<?>>();
+		final Semaphore semaphore = new Semaphore(0);
+		AbstractServerConnectionFactory scf = getConnectionFactory(port, serializer, new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				responses.add(message);
+				semaphore.release();
+				return false;
+			}
+		}, null, true);
+		SocketTestUtils.testSendRaw(port);
+		assertTrue(semaphore.tryAcquire(1, 10000, TimeUnit.MILLISECONDS));
+		assertEquals("Data", SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING,
+				new String(((Message<byte[]>) responses.get(0)).getPayload()));
+		scf.close();
+	}
+
+	@Test
+	public void testCloseCleanupDirectFraming() throws Exception {
+		final int port = SocketUtils.findAvailableServerSocket();
+		final Semaphore semaphore = new Semaphore(0);
+		final List<TcpConnection> added = new ArrayList<TcpConnection>();
+		final List<TcpConnection> removed = new ArrayList<TcpConnection>();
+		AbstractServerConnectionFactory scf = getConnectionFactory(port, new ByteArrayCrLfSerializer(),
+				new TcpListener() {
+					public boolean onMessage(Message<?> message) {
+						return false;
+					}
+				}, new TcpSender() {
+					public void addNewConnection(TcpConnection connection) {
+						added.add(connection);
+						semaphore.release();
+					}
+					public void removeDeadConnection(TcpConnection connection) {
+						removed.add(connection);
+						semaphore.release();
+					}
+				}, true);
+		Socket socket = SocketFactory.getDefault().createSocket("localhost", port);
+		socket.getOutputStream().write("xx".getBytes());
+		socket.close();
+		whileOpen(semaphore, added);
+		assertEquals(1, added.size());
+		assertTrue(semaphore.tryAcquire(10000, TimeUnit.MILLISECONDS));
+		assertTrue(removed.size() > 0);
+		scf.close();
+	}
+
 	/**
 	 * Tests socket closure when mid-message
 	 *
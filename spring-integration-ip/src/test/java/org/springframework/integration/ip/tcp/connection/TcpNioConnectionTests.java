@@ -17,6 +17,7 @@
 package org.springframework.integration.ip.tcp.connection;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doAnswer;
@@ -35,6 +36,8 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -46,6 +49,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.net.ServerSocketFactory;
 
@@ -339,6 +343,56 @@ public class TcpNioConnectionTests {
 		assertTrue(messageLatch.await(10, TimeUnit.SECONDS));
 	}
 
+	@Test
+	public void testMessagesDeliveredInOrder() throws Exception {
+		ExecutorService exec = Executors.newCachedThreadPool();
+		SocketChannel channel = mock(SocketChannel.class);
+		Socket socket = mock(Socket.class);
+		Mockito.when(channel.socket()).thenReturn(socket);
+		doAnswer(new Answer<Integer>() {
+			public Integer answer(InvocationOnMock invocation) throws Throwable {
+				ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+				buffer.put("foo\r\nbar\r\n".getBytes());
+				return 10;
+			}
+		}).when(channel).read(Mockito.any(ByteBuffer.class));
+		TcpNioConnection connection = new TcpNioConnection(channel, false, false, null, null);
+		connection.setTaskExecutor(exec);
+		final List<String> payloads = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicBoolean inListener = new AtomicBoolean();
+		final AtomicBoolean overlapped = new AtomicBoolean();
+		final CountDownLatch messageLatch = new CountDownLatch(2);
+		connection.registerListener(new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				if (!inListener.compareAndSet(false, true)) {
+					overlapped.set(true);
+				}
+				payloads.add(new String((byte[]) message.getPayload()));
+				if (payloads.size() == 1) {
+					// the next message is assembled meanwhile
+					try {
+						Thread.sleep(500);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				inListener.set(false);
+				messageLatch.countDown();
+				return false;
+			}
+		});
+		connection.setMapper(new TcpMessageMapper());
+		connection.setDeserializer(new ByteArrayCrLfSerializer());
+		Method method = TcpNioConnection.class.getDeclaredMethod("doRead");
+		method.setAccessible(true);
+		method.invoke(connection);
+		assertTrue(messageLatch.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("foo", "bar"), payloads);
+		assertFalse(overlapped.get());
+		exec.shutdownNow();
+	}
+
 	@Test
 	public void testByteArrayRead() throws Exception {
 		SocketChannel socketChannel = mock(SocketChannel.class);
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+
+import javax.net.ServerSocketFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayRawSerializer;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * @since 3.0
+ */
+public class TcpNioFileTransferTests {
+
+	private File file;
+
+	private byte[] content;
+
+	@Before
+	public void setUp() throws Exception {
+		this.file = File.createTempFile("transfer", ".bin");
+		this.content = new byte[200000];
+		for (int i = 0; i < this.content.length; i++) {
+			this.content[i] = (byte) i;
+		}
+		FileOutputStream outputStream = new FileOutputStream(this.file);
+		outputStream.write(this.content);
+		outputStream.close();
+	}
+
+	@After
+	public void tearDown() {
+		this.file.delete();
+	}
+
+	@Test
+	public void testLengthHeader() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		TcpNioClientConnectionFactory ccf = new TcpNioClientConnectionFactory("localhost", port);
+		ccf.setSerializer(new ByteArrayLengthHeaderSerializer());
+		ccf.setDeserializer(new ByteArrayLengthHeaderSerializer());
+		ccf.start();
+		TcpConnection connection = ccf.getConnection();
+		Socket socket = server.accept();
+		socket.setSoTimeout(10000);
+		connection.send(new GenericMessage<File>(this.file));
+		// a FileChannel cannot be mapped to a byte[]; it is only sent by transferring it
+		RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "r");
+		FileChannel fileChannel = randomAccessFile.getChannel();
+		fileChannel.position(100);
+		connection.send(new GenericMessage<FileChannel>(fileChannel));
+		DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+		assertEquals(this.content.length, inputStream.readInt());
+		byte[] received = new byte[this.content.length];
+		inputStream.readFully(received);
+		assertArrayEquals(this.content, received);
+		assertEquals(this.content.length - 100, inputStream.readInt());
+		received = new byte[this.content.length - 100];
+		inputStream.readFully(received);
+		byte[] expected = new byte[this.content.length - 100];
+		System.arraycopy(this.content, 100, expected, 0, expected.length);
+		assertArrayEquals(expected, received);
+		// the channel is not closed, and its position is unchanged
+		assertEquals(100, fileChannel.position());
+		randomAccessFile.close();
+		socket.close();
+		server.close();
+		ccf.stop();
+	}
+
+	@Test
+	public void testRaw() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		TcpNioClientConnectionFactory ccf = new TcpNioClientConnectionFactory("localhost", port);
+		ccf.setSerializer(new ByteArrayRawSerializer());
+		ccf.setDeserializer(new ByteArrayRawSerializer());
+		ccf.start();
+		TcpConnection connection = ccf.getConnection();
+		Socket socket = server.accept();
+		socket.setSoTimeout(10000);
+		connection.send(new GenericMessage<File>(this.file));
+		connection.close();
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		FileCopyUtils.copy(socket.getInputStream(), received);
+		assertArrayEquals(this.content, received.toByteArray());
+		server.close();
+		ccf.stop();
+	}
+
+	@Test
+	public void testOtherSerializer() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		TcpNioClientConnectionFactory ccf = new TcpNioClientConnectionFactory("localhost", port);
+		ccf.setSerializer(new ByteArrayCrLfSerializer());
+		ccf.setDeserializer(new ByteArrayCrLfSerializer());
+		ccf.start();
+		TcpConnection connection = ccf.getConnection();
+		Socket socket = server.accept();
+		socket.setSoTimeout(10000);
+		// the file is read into memory, and framed by the serializer
+		connection.send(new GenericMessage<File>(this.file));
+		DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+		byte[] received = new byte[this.content.length + 2];
+		inputStream.readFully(received);
+		assertEquals('\r', received[this.content.length]);
+		assertEquals('\n', received[this.content.length + 1]);
+		byte[] payload = new byte[this.content.length];
+		System.arraycopy(received, 0, payload, 0, payload.length);
+		assertArrayEquals(this.content, payload);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "r");
+		try {
+			connection.send(new GenericMessage<FileChannel>(randomAccessFile.getChannel()));
+			fail("Expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {}
+		randomAccessFile.close();
+		socket.close();
+		server.close();
+		ccf.stop();
+	}
+
+}
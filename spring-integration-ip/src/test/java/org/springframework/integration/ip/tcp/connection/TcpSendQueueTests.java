@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.net.ServerSocketFactory;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.test.util.SocketUtils;
+
+/**
+ * @since 3.0
+ */
+public class TcpSendQueueTests {
+
+	@Test
+	public void testCoalescingThreshold() throws Exception {
+		TcpConnectionSupport connection = mock(TcpConnectionSupport.class);
+		final List<Integer> batches = new ArrayList<Integer>();
+		doAnswer(new Answer<Object>() {
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				batches.add(((List<?>) invocation.getArguments()[0]).size());
+				return null;
+			}
+		}).when(connection).writeQueuedFrames(anyListOf(byte[].class));
+		ManualExecutor executor = new ManualExecutor();
+		TcpSendQueue queue = new TcpSendQueue(connection, 100, 10, 0, 0, executor);
+		for (int i = 0; i < 7; i++) {
+			queue.add("foo\n".getBytes());
+		}
+		// the writer is scheduled once
+		assertEquals(1, executor.tasks.size());
+		executor.runAll();
+		// writes stop removing frames once 10 bytes are removed
+		assertEquals(3, batches.size());
+		assertEquals(Integer.valueOf(3), batches.get(0));
+		assertEquals(Integer.valueOf(3), batches.get(1));
+		assertEquals(Integer.valueOf(1), batches.get(2));
+		assertEquals(0, queue.size());
+		// the writer exits when the queue is empty, and is rescheduled by the next send
+		queue.add("bar\n".getBytes());
+		assertEquals(1, executor.tasks.size());
+		executor.runAll();
+		assertEquals(4, batches.size());
+	}
+
+	@Test
+	public void testBackpressure() throws Exception {
+		TcpConnectionSupport connection = mock(TcpConnectionSupport.class);
+		ManualExecutor executor = new ManualExecutor();
+		TcpSendQueue queue = new TcpSendQueue(connection, 2, 1024, 0, 100, executor);
+		queue.add("foo".getBytes());
+		queue.add("bar".getBytes());
+		try {
+			queue.add("baz".getBytes());
+			fail("Expected timeout");
+		}
+		catch (SocketTimeoutException e) {}
+		executor.runAll();
+		queue.add("baz".getBytes());
+		assertEquals(1, queue.size());
+	}
+
+	@Test
+	public void testWriteFailure() throws Exception {
+		TcpConnectionSupport connection = mock(TcpConnectionSupport.class);
+		IOException failure = new IOException("test");
+		doThrow(failure).when(connection).writeQueuedFrames(anyListOf(byte[].class));
+		ManualExecutor executor = new ManualExecutor();
+		TcpSendQueue queue = new TcpSendQueue(connection, 10, 1024, 0, 0, executor);
+		queue.add("foo".getBytes());
+		queue.add("bar".getBytes());
+		executor.runAll();
+		verify(connection).publishConnectionExceptionEvent(failure);
+		verify(connection).closeConnection();
+		assertEquals(0, queue.size());
+		try {
+			queue.add("baz".getBytes());
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertEquals(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		TcpConnectionSupport connection = mock(TcpConnectionSupport.class);
+		ManualExecutor executor = new ManualExecutor();
+		TcpSendQueue queue = new TcpSendQueue(connection, 10, 1024, 0, 0, executor);
+		queue.add("foo".getBytes());
+		queue.close();
+		assertEquals(0, queue.size());
+		try {
+			queue.add("bar".getBytes());
+			fail("Expected ClosedChannelException");
+		}
+		catch (ClosedChannelException e) {}
+	}
+
+	@Test
+	public void testQueueNotEnabledOnUnsupportedConnection() throws Exception {
+		TcpConnectionSupport connection = mock(TcpConnectionSupport.class);
+		TcpNetClientConnectionFactory ccf = new TcpNetClientConnectionFactory("localhost", 0);
+		ccf.setSendQueueCapacity(10);
+		ccf.configureSendQueue(connection);
+		verify(connection, never()).enableSendQueue(anyInt(), anyInt(), anyLong(), anyLong(), any(Executor.class));
+	}
+
+	@Test
+	public void testNioQueuedSends() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		testQueuedSends(new TcpNioClientConnectionFactory("localhost", port), port);
+	}
+
+	@Test
+	public void testNetQueuedSends() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		testQueuedSends(new TcpNetClientConnectionFactory("localhost", port), port);
+	}
+
+	private void testQueuedSends(AbstractClientConnectionFactory ccf, int port) throws Exception {
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		ccf.setSerializer(new ByteArrayLengthHeaderSerializer());
+		ccf.setDeserializer(new ByteArrayLengthHeaderSerializer());
+		ccf.setSendQueueCapacity(10);
+		ccf.setSendCoalescingThreshold(1000);
+		ccf.setSendLinger(10);
+		ccf.start();
+		TcpConnection connection = ccf.getConnection();
+		assertTrue(((TcpConnectionSupport) connection).isSendQueueEnabled());
+		Socket socket = server.accept();
+		socket.setSoTimeout(10000);
+		for (int i = 0; i < 100; i++) {
+			connection.send(new GenericMessage<String>("foo" + i));
+		}
+		DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+		for (int i = 0; i < 100; i++) {
+			byte[] received = new byte[inputStream.readInt()];
+			inputStream.readFully(received);
+			assertEquals("foo" + i, new String(received));
+		}
+		connection.close();
+		assertFalse(connection.isOpen());
+		try {
+			connection.send(new GenericMessage<String>("bar"));
+			fail("Expected exception");
+		}
+		catch (Exception e) {}
+		socket.close();
+		server.close();
+		ccf.stop();
+	}
+
+	private static class ManualExecutor implements Executor {
+
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		public void execute(Runnable command) {
+			this.tasks.add(command);
+		}
+
+		void runAll() {
+			while (!this.tasks.isEmpty()) {
+				this.tasks.remove(0).run();
+			}
+		}
+
+	}
+
+}
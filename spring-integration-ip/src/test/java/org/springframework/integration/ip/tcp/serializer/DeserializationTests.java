@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,18 +17,30 @@
 package org.springframework.integration.ip.tcp.serializer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.net.ServerSocketFactory;
 
+import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.integration.ip.tcp.connection.TcpNetConnection;
+import org.springframework.integration.mapping.MessageMappingException;
 import org.springframework.integration.ip.util.SocketTestUtils;
 import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.util.StopWatch;
 
 /**
  * @author Gary Russell
@@ -228,4 +240,203 @@ public class DeserializationTests {
 		server.close();
 	}
 
+	@Test
+	public void testBufferCrLf() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		ByteBuffer buffer = ByteBuffer.wrap("foo\r\nba\nr\r\nbaz\r".getBytes());
+		assertEquals(2, serializer.deserialize(buffer, messages));
+		assertEquals("foo", new String(messages.get(0)));
+		assertEquals("ba\nr", new String(messages.get(1)));
+		assertEquals("baz\r", new String(buffer.array(), buffer.position(), buffer.remaining()));
+		buffer = ByteBuffer.wrap("baz\r\n".getBytes());
+		assertEquals(1, serializer.deserialize(buffer, messages));
+		assertEquals("baz", new String(messages.get(2)));
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test
+	public void testBufferSingleTerminator() throws Exception {
+		ByteArrayLfSerializer serializer = new ByteArrayLfSerializer();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		// as with a stream, a leading terminator is data
+		ByteBuffer buffer = ByteBuffer.wrap("\nfoo\nbar\nba".getBytes());
+		assertEquals(2, serializer.deserialize(buffer, messages));
+		assertEquals("\nfoo", new String(messages.get(0)));
+		assertEquals("bar", new String(messages.get(1)));
+		assertEquals(9, buffer.position());
+	}
+
+	@Test
+	public void testBufferStxEtx() throws Exception {
+		ByteArrayStxEtxSerializer serializer = new ByteArrayStxEtxSerializer();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		ByteBuffer buffer = ByteBuffer.wrap("\u0002foo\u0003\u0002bar\u0003\u0002ba".getBytes());
+		assertEquals(2, serializer.deserialize(buffer, messages));
+		assertEquals("foo", new String(messages.get(0)));
+		assertEquals("bar", new String(messages.get(1)));
+		assertEquals(10, buffer.position());
+		try {
+			serializer.deserialize(ByteBuffer.wrap("foo\u0003".getBytes()), messages);
+			fail("Expected MessageMappingException");
+		}
+		catch (MessageMappingException e) {
+			assertEquals("Expected STX to begin message", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBufferLengthHeader() throws Exception {
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize("foo".getBytes(), out);
+		serializer.serialize("".getBytes(), out);
+		serializer.serialize("bar".getBytes(), out);
+		byte[] bytes = out.toByteArray();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		// incomplete header
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, 2);
+		assertEquals(0, serializer.deserialize(buffer, messages));
+		assertEquals(0, buffer.position());
+		// incomplete data
+		buffer = ByteBuffer.wrap(bytes, 0, bytes.length - 1);
+		assertEquals(2, serializer.deserialize(buffer, messages));
+		assertEquals("foo", new String(messages.get(0)));
+		assertEquals(0, messages.get(1).length);
+		assertEquals(11, buffer.position());
+		buffer = ByteBuffer.wrap(bytes, 11, bytes.length - 11);
+		assertEquals(1, serializer.deserialize(buffer, messages));
+		assertEquals("bar", new String(messages.get(2)));
+	}
+
+	@Test
+	public void testBufferLengthHeaderOverflow() throws Exception {
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer(
+				ByteArrayLengthHeaderSerializer.HEADER_SIZE_UNSIGNED_SHORT);
+		serializer.setMaxMessageSize(1024);
+		ByteBuffer buffer = ByteBuffer.allocate(2);
+		buffer.putShort((short) 2000).flip();
+		try {
+			serializer.deserialize(buffer, new ArrayList<byte[]>());
+			fail("Expected message length exceeded exception");
+		}
+		catch (IOException e) {
+			assertEquals("Message length 2000 exceeds max message length: 1024", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBufferCrLfOverflow() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		serializer.setMaxMessageSize(16);
+		try {
+			serializer.deserialize(ByteBuffer.wrap("0123456789abcdef".getBytes()), new ArrayList<byte[]>());
+			fail("Expected message length exceeded exception");
+		}
+		catch (IOException e) {
+			assertEquals("CRLF not found before max message length: 16", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testBufferRaw() throws Exception {
+		ByteArrayRawSerializer serializer = new ByteArrayRawSerializer();
+		List<byte[]> messages = new ArrayList<byte[]>();
+		ByteBuffer buffer = ByteBuffer.wrap("foo\r\nbar".getBytes());
+		assertEquals(0, serializer.deserialize(buffer, messages));
+		assertEquals("foo\r\nbar", new String(serializer.deserializeAtEndOfStream(buffer)));
+		assertEquals(0, buffer.remaining());
+	}
+
+	@Test
+	public void testBufferedReadLength() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		server.setSoTimeout(10000);
+		SocketTestUtils.testSendLength(port, null);
+		Socket socket = server.accept();
+		socket.setSoTimeout(5000);
+		TcpNetConnection connection = new TcpNetConnection(socket, true, false, null, null);
+		connection.setDeserializer(new ByteArrayLengthHeaderSerializer());
+		connection.setBufferDeserialization(true);
+		for (int i = 0; i < 2; i++) {
+			assertEquals("Data", SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING,
+					new String((byte[]) connection.getPayload()));
+		}
+		server.close();
+	}
+
+	@Test
+	public void testBufferedReadRaw() throws Exception {
+		int port = SocketUtils.findAvailableServerSocket();
+		ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(port);
+		server.setSoTimeout(10000);
+		SocketTestUtils.testSendRaw(port);
+		Socket socket = server.accept();
+		socket.setSoTimeout(5000);
+		TcpNetConnection connection = new TcpNetConnection(socket, true, false, null, null);
+		connection.setDeserializer(new ByteArrayRawSerializer());
+		connection.setBufferDeserialization(true);
+		assertEquals("Data", SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING,
+				new String((byte[]) connection.getPayload()));
+		try {
+			connection.getPayload();
+			fail("Expected SoftEndOfStreamException");
+		}
+		catch (SoftEndOfStreamException e) {
+		}
+		server.close();
+	}
+
+	@Test
+	public void testLargeScratchBufferNotRetained() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		ThreadLocal<?> scratchBuffers = TestUtils.getPropertyValue(serializer, "scratchBuffers", ThreadLocal.class);
+		assertEquals("foo", new String(serializer.deserialize(new ByteArrayInputStream("foo\r\n".getBytes()))));
+		assertNotNull(scratchBuffers.get());
+		serializer.setMaxMessageSize(100000);
+		assertEquals("bar", new String(serializer.deserialize(new ByteArrayInputStream("bar\r\n".getBytes()))));
+		assertNull(scratchBuffers.get());
+	}
+
+	@Test
+	@Ignore
+	public void performanceTest() throws Exception {
+		int messages = 200000;
+		performanceTest(new ByteArrayCrLfSerializer(), messages);
+		performanceTest(new ByteArrayLfSerializer(), messages);
+		performanceTest(new ByteArrayStxEtxSerializer(), messages);
+		performanceTest(new ByteArrayLengthHeaderSerializer(), messages);
+	}
+
+	private <T extends AbstractByteArraySerializer & ByteBufferDeserializer> void performanceTest(
+			T serializer, int messages) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] payload = "The quick brown fox jumps over the lazy dog; 0123456789".getBytes();
+		for (int i = 0; i < messages; i++) {
+			serializer.serialize(payload, out);
+		}
+		byte[] data = out.toByteArray();
+		StopWatch watch = new StopWatch(serializer.getClass().getSimpleName());
+		watch.start("stream");
+		ByteArrayInputStream inputStream = new ByteArrayInputStream(data);
+		for (int i = 0; i < messages; i++) {
+			serializer.deserialize(inputStream);
+		}
+		watch.stop();
+		watch.start("buffer");
+		List<byte[]> frames = new ArrayList<byte[]>(messages);
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		// simulate 8k reads
+		int limit = 0;
+		while (limit < data.length) {
+			limit = Math.min(limit + 8192, data.length);
+			buffer.limit(limit);
+			serializer.deserialize(buffer, frames);
+		}
+		watch.stop();
+		assertEquals(messages, frames.size());
+		System.out.println(watch.prettyPrint());
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.ip.udp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.net.DatagramPacket;
@@ -24,7 +25,12 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -34,7 +40,10 @@ import org.apache.commons.logging.LogFactory;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.message.ErrorMessage;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.SocketUtils;
 
@@ -135,6 +144,138 @@ public class DatagramPacketSendingHandlerTests {
 		handler.shutDown();
 	}
 
+	@Test
+	public void verifySendWithAckWindow() throws Exception {
+
+		final List<Integer> openPorts = SocketUtils.findAvailableUdpSockets(SocketUtils.getRandomSeedPort(), 2);
+
+		final int testPort = openPorts.get(0);
+		final int ackPort = openPorts.get(1);
+
+		final DatagramSocket socket = new DatagramSocket(testPort);
+		final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+		final CountDownLatch latch = new CountDownLatch(1);
+		UnicastSendingMessageHandler handler =
+				new UnicastSendingMessageHandler("localhost", testPort, true,
+						true, "localhost", ackPort, 500);
+		handler.setAckWindowSize(4);
+		handler.afterPropertiesSet();
+		Executors.newSingleThreadExecutor().execute(new Runnable() {
+			public void run() {
+				try {
+					DatagramPacketMessageMapper mapper = new DatagramPacketMessageMapper();
+					mapper.setAcknowledge(true);
+					mapper.setLengthCheck(true);
+					DatagramSocket out = new DatagramSocket();
+					// 3 packets and a retransmission of the first, which is not acknowledged
+					for (int i = 0; i < 4; i++) {
+						DatagramPacket receivedPacket = new DatagramPacket(new byte[1000], 1000);
+						socket.receive(receivedPacket);
+						Message<byte[]> message = mapper.toMessage(receivedPacket);
+						received.add(new String(message.getPayload()));
+						if (i > 0) {
+							byte[] ack = message.getHeaders().get(IpHeaders.ACK_ID).toString().getBytes();
+							out.send(new DatagramPacket(ack, ack.length, new InetSocketAddress("localhost", ackPort)));
+						}
+					}
+					out.close();
+					socket.close();
+					latch.countDown();
+				}
+				catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		// the sends do not wait for the acks
+		for (int i = 0; i < 3; i++) {
+			handler.handleMessage(MessageBuilder.withPayload("foo" + i).build());
+		}
+		assertTrue(handler.waitForAcks(10000));
+		assertTrue(latch.await(10000, TimeUnit.MILLISECONDS));
+		assertEquals(4, received.size());
+		assertEquals("foo0", received.get(0));
+		assertEquals("foo0", received.get(3));
+		assertEquals(1, handler.getRetransmitCount());
+		assertEquals(0, handler.getAckFailureCount());
+		assertEquals(0, handler.getUnacknowledgedCount());
+		handler.shutDown();
+	}
+
+	@Test
+	public void verifyDuplicateAcksNotCounted() throws Exception {
+
+		final List<Integer> openPorts = SocketUtils.findAvailableUdpSockets(SocketUtils.getRandomSeedPort(), 2);
+
+		final int testPort = openPorts.get(0);
+		final int ackPort = openPorts.get(1);
+
+		DatagramSocket socket = new DatagramSocket(testPort);
+		UnicastSendingMessageHandler handler =
+				new UnicastSendingMessageHandler("localhost", testPort, true,
+						true, "localhost", ackPort, 10000);
+		handler.setAckWindowSize(1);
+		handler.setAckCounter(2);
+		handler.afterPropertiesSet();
+		handler.handleMessage(MessageBuilder.withPayload("foo").build());
+		DatagramPacket receivedPacket = new DatagramPacket(new byte[1000], 1000);
+		socket.receive(receivedPacket);
+		DatagramPacketMessageMapper mapper = new DatagramPacketMessageMapper();
+		mapper.setAcknowledge(true);
+		mapper.setLengthCheck(true);
+		Message<byte[]> message = mapper.toMessage(receivedPacket);
+		byte[] ack = message.getHeaders().get(IpHeaders.ACK_ID).toString().getBytes();
+		// the same host acknowledges twice, from different sockets
+		for (int i = 0; i < 2; i++) {
+			DatagramSocket out = new DatagramSocket();
+			out.send(new DatagramPacket(ack, ack.length, new InetSocketAddress("localhost", ackPort)));
+			out.close();
+		}
+		Thread.sleep(500);
+		assertEquals(1, handler.getUnacknowledgedCount());
+		socket.close();
+		handler.shutDown();
+	}
+
+	@Test
+	public void verifyAckWindowFailure() throws Exception {
+
+		final List<Integer> openPorts = SocketUtils.findAvailableUdpSockets(SocketUtils.getRandomSeedPort(), 2);
+
+		final int testPort = openPorts.get(0);
+		final int ackPort = openPorts.get(1);
+
+		// nothing is acknowledged
+		DatagramSocket socket = new DatagramSocket(testPort);
+		UnicastSendingMessageHandler handler =
+				new UnicastSendingMessageHandler("localhost", testPort, true,
+						true, "localhost", ackPort, 100);
+		QueueChannel ackFailures = new QueueChannel();
+		handler.setAckWindowSize(2);
+		handler.setMaxRetransmits(1);
+		handler.setAckFailureChannel(ackFailures);
+		handler.afterPropertiesSet();
+		handler.handleMessage(MessageBuilder.withPayload("foo").build());
+		handler.handleMessage(MessageBuilder.withPayload("bar").build());
+		assertEquals(2, handler.getUnacknowledgedCount());
+		assertTrue(handler.waitForAcks(10000));
+		assertEquals(2, handler.getRetransmitCount());
+		assertEquals(2, handler.getAckFailureCount());
+		assertEquals(0, handler.getUnacknowledgedCount());
+		// each failure is reported, and later sends are not affected
+		Set<Object> failed = new HashSet<Object>();
+		for (int i = 0; i < 2; i++) {
+			Message<?> errorMessage = ackFailures.receive(0);
+			assertTrue(errorMessage instanceof ErrorMessage);
+			failed.add(((MessagingException) errorMessage.getPayload()).getFailedMessage().getPayload());
+		}
+		assertEquals(new HashSet<Object>(Arrays.asList("foo", "bar")), failed);
+		assertNull(ackFailures.receive(0));
+		handler.handleMessage(MessageBuilder.withPayload("baz").build());
+		socket.close();
+		handler.shutDown();
+	}
+
 	@Test
 	@Ignore
 	public void verifySendMulticast() throws Exception {
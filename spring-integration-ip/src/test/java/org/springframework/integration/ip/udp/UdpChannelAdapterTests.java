@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,7 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.Inet4Address;
 import java.net.InetSocketAddress;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -38,9 +39,11 @@ import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.core.SubscribableChannel;
 import org.springframework.integration.handler.ServiceActivatingHandler;
 import org.springframework.integration.ip.IpHeaders;
+import org.springframework.integration.ip.tcp.connection.NioBufferPool;
 import org.springframework.integration.ip.util.SocketTestUtils;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.integration.test.util.TestUtils;
 
 /**
  *
@@ -223,6 +226,76 @@ public class UdpChannelAdapterTests {
 		assertEquals("Failed", ((Exception) receivedMessage.getPayload()).getCause().getMessage());
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testUnicastNioReceiverWithAck() throws Exception {
+		QueueChannel channel = new QueueChannel(2);
+		int port = SocketUtils.findAvailableUdpSocket();
+		UnicastNioReceivingChannelAdapter adapter = new UnicastNioReceivingChannelAdapter(port, true);
+		NioBufferPool bufferPool = new NioBufferPool(true);
+		adapter.setBufferPool(bufferPool);
+		adapter.setOutputChannel(channel);
+		adapter.start();
+		SocketTestUtils.waitListening(adapter);
+
+		UnicastSendingMessageHandler handler = new UnicastSendingMessageHandler(
+				"localhost", port, true, true, "localhost", SocketUtils.findAvailableUdpSocket(), 5000);
+		handler.afterPropertiesSet();
+		Message<byte[]> message = MessageBuilder.withPayload("ABCD".getBytes()).build();
+		// fails if the ack is not received
+		handler.handleMessage(message);
+		Message<byte[]> receivedMessage = (Message<byte[]>) channel.receive(2000);
+		assertNotNull(receivedMessage);
+		assertEquals(new String(message.getPayload()), new String(receivedMessage.getPayload()));
+		assertEquals(message.getHeaders().getId(), receivedMessage.getHeaders().get(IpHeaders.ACK_ID));
+		assertEquals(1, adapter.getReceivedCount());
+		assertEquals(0, adapter.getDroppedCount());
+		int n = 0;
+		while (bufferPool.getOutstandingCount() > 0 && n++ < 100) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, bufferPool.getOutstandingCount());
+		adapter.stop();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testUnicastNioReceiverBatches() throws Exception {
+		QueueChannel channel = new QueueChannel(2);
+		int port = SocketUtils.findAvailableUdpSocket();
+		UnicastNioReceivingChannelAdapter adapter = new UnicastNioReceivingChannelAdapter(port);
+		adapter.setOutputChannel(channel);
+		adapter.setReceiveBufferSize(10);
+		adapter.setEmitBatches(true);
+		adapter.setLookupHost(false);
+		// bind the channel before starting, so the datagrams are received together
+		adapter.getSocket();
+		DatagramSocket socket = new DatagramSocket(SocketUtils.findAvailableUdpSocket());
+		for (String payload : new String[] { "foo", "tooLongForTheBuffer", "bar" }) {
+			DatagramPacket packet = new DatagramPacket(payload.getBytes(), payload.length(),
+					new InetSocketAddress("localhost", port));
+			socket.send(packet);
+		}
+		socket.close();
+		adapter.start();
+
+		Message<List<Message<byte[]>>> batch = (Message<List<Message<byte[]>>>) channel.receive(10000);
+		assertNotNull(batch);
+		assertEquals(2, batch.getPayload().size());
+		assertEquals("foo", new String(batch.getPayload().get(0).getPayload()));
+		assertEquals("bar", new String(batch.getPayload().get(1).getPayload()));
+		assertEquals(3, adapter.getReceivedCount());
+		assertEquals(1, adapter.getTruncatedCount());
+		assertEquals(1, adapter.getDroppedCount());
+		NioBufferPool bufferPool = TestUtils.getPropertyValue(adapter, "bufferPool", NioBufferPool.class);
+		int n = 0;
+		while (bufferPool.getOutstandingCount() > 0 && n++ < 100) {
+			Thread.sleep(50);
+		}
+		assertEquals(0, bufferPool.getOutstandingCount());
+		adapter.stop();
+	}
+
 	private class FailingService {
 		@SuppressWarnings("unused")
 		public String serviceMethod(byte[] bytes) {
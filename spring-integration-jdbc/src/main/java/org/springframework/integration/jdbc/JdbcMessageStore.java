@@ -19,6 +19,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -42,11 +43,13 @@ import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
 import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.BatchingMessageStore;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageStore;
 import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
@@ -80,7 +83,7 @@ import org.springframework.util.StringUtils;
  * @since 2.0
  */
 @ManagedResource
-public class JdbcMessageStore extends AbstractMessageGroupStore implements MessageStore {
+public class JdbcMessageStore extends AbstractMessageGroupStore implements BatchingMessageStore {
 
 	private static final Log logger = LogFactory.getLog(JdbcMessageStore.class);
 
@@ -324,24 +327,14 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	}
 
 	@Override
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public <T> Message<T> addMessage(final Message<T> message) {
-		if (message.getHeaders().containsKey(SAVED_KEY)) {
-			Message<T> saved = (Message<T>) getMessage(message.getHeaders().getId());
-			if (saved != null) {
-				if (saved.equals(message)) {
-					return message;
-				} // We need to save it under its own id
-			}
+		Message<T> saved = this.getSavedMessage(message);
+		if (saved != null) {
+			return saved;
 		}
 
 		final long createdDate = System.currentTimeMillis();
-		Message<T> result = MessageBuilder.fromMessage(message).setHeader(SAVED_KEY, Boolean.TRUE)
-				.setHeader(CREATED_DATE_KEY, new Long(createdDate)).build();
-
-		Map innerMap = (Map) new DirectFieldAccessor(result.getHeaders()).getPropertyValue("headers");
-		// using reflection to set ID since it is immutable through MessageHeaders
-		innerMap.put(MessageHeaders.ID, message.getHeaders().get(MessageHeaders.ID));
+		Message<T> result = this.prepareMessageForStorage(message, createdDate);
 
 		final String messageId = getKey(result.getHeaders().getId());
 		final byte[] messageBytes = serializer.convert(result);
@@ -361,6 +354,73 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		return result;
 	}
 
+	/**
+	 * Store the messages using a single JDBC batch update. Messages that are already
+	 * stored unchanged are not stored again.
+	 */
+	public List<Message<?>> addMessages(Collection<? extends Message<?>> messages) {
+		final List<Message<?>> results = new ArrayList<Message<?>>(messages.size());
+		final List<String> messageIds = new ArrayList<String>(messages.size());
+		final List<byte[]> messageBytes = new ArrayList<byte[]>(messages.size());
+
+		final long createdDate = System.currentTimeMillis();
+		for (Message<?> message : messages) {
+			Message<?> result = this.getSavedMessage(message);
+			if (result == null) {
+				result = this.prepareMessageForStorage(message, createdDate);
+				messageIds.add(getKey(result.getHeaders().getId()));
+				messageBytes.add(serializer.convert(result));
+			}
+			results.add(result);
+		}
+
+		if (!messageIds.isEmpty()) {
+			jdbcTemplate.batchUpdate(getQuery(Query.CREATE_MESSAGE), new BatchPreparedStatementSetter() {
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					if (logger.isDebugEnabled()){
+						logger.debug("Inserting message with id key=" + messageIds.get(i));
+					}
+					ps.setString(1, messageIds.get(i));
+					ps.setString(2, region);
+					ps.setTimestamp(3, new Timestamp(createdDate));
+					lobHandler.getLobCreator().setBlobAsBytes(ps, 4, messageBytes.get(i));
+				}
+
+				public int getBatchSize() {
+					return messageIds.size();
+				}
+			});
+		}
+		return results;
+	}
+
+	/**
+	 * Return the message if it was already stored unchanged, or null if it has to be stored.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Message<T> getSavedMessage(Message<T> message) {
+		if (message.getHeaders().containsKey(SAVED_KEY)) {
+			Message<T> saved = (Message<T>) getMessage(message.getHeaders().getId());
+			if (saved != null) {
+				if (saved.equals(message)) {
+					return message;
+				} // We need to save it under its own id
+			}
+		}
+		return null;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private <T> Message<T> prepareMessageForStorage(Message<T> message, long createdDate) {
+		Message<T> result = MessageBuilder.fromMessage(message).setHeader(SAVED_KEY, Boolean.TRUE)
+				.setHeader(CREATED_DATE_KEY, new Long(createdDate)).build();
+
+		Map innerMap = (Map) new DirectFieldAccessor(result.getHeaders()).getPropertyValue("headers");
+		// using reflection to set ID since it is immutable through MessageHeaders
+		innerMap.put(MessageHeaders.ID, message.getHeaders().get(MessageHeaders.ID));
+		return result;
+	}
+
 	@Override
 	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
 		final String groupKey = getKey(groupId);
@@ -16,7 +16,8 @@ package org.springframework.integration.jdbc.store;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -43,12 +44,16 @@ import org.springframework.integration.Message;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.jdbc.JdbcMessageStore;
 import org.springframework.integration.jdbc.store.channel.DerbyChannelMessageStoreQueryProvider;
+import org.springframework.integration.jdbc.store.channel.H2ChannelMessageStoreQueryProvider;
+import org.springframework.integration.jdbc.store.channel.HsqlChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.MessageRowMapper;
 import org.springframework.integration.jdbc.store.channel.MySqlChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.OracleChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.PostgresChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.ChannelMessageStoreQueryProvider;
 import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.BatchingMessageGroupStore;
+import org.springframework.integration.store.DelayedMessageGroupStore;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
@@ -56,16 +61,23 @@ import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.transaction.TransactionSynchronizationFactory;
 import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.support.lob.DefaultLobHandler;
 import org.springframework.jdbc.support.lob.LobHandler;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedMetric;
 import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -97,7 +109,8 @@ import org.springframework.util.StringUtils;
  * @since 2.2
  */
 @ManagedResource
-public class JdbcChannelMessageStore extends AbstractMessageGroupStore implements InitializingBean {
+public class JdbcChannelMessageStore extends AbstractMessageGroupStore implements BatchingMessageGroupStore,
+		DelayedMessageGroupStore, InitializingBean {
 
 	private static final Log logger = LogFactory.getLog(JdbcChannelMessageStore.class);
 
@@ -125,6 +138,17 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 
 	public static final int DEFAULT_LONG_STRING_LENGTH = 2500;
 
+	/**
+	 * Default value for the claim timeout property, in milliseconds.
+	 */
+	public static final long DEFAULT_CLAIM_TIMEOUT = 60000;
+
+	/**
+	 * The largest fetch size used for statements that retrieve several rows; larger
+	 * batches are still retrieved completely, in several round trips.
+	 */
+	public static final int MAX_BATCH_FETCH_SIZE = 1000;
+
 	/**
 	 * The name of the message header that stores a flag to indicate that the message has been saved. This is an
 	 * optimization for the put method.
@@ -154,6 +178,16 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 
 	private boolean usingIdCache = false;
 
+	private volatile boolean usingClaims = false;
+
+	private volatile long claimTimeout = DEFAULT_CLAIM_TIMEOUT;
+
+	private volatile PlatformTransactionManager claimTransactionManager;
+
+	private volatile TransactionTemplate claimTransactionTemplate;
+
+	private volatile TransactionTemplate dueClaimTransactionTemplate;
+
 	/**
 	 * Convenient constructor for configuration use.
 	 */
@@ -168,6 +202,8 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 	 *
 	 * with {@link JdbcTemplate#setFetchSize(int)} set to <code>1</code>
 	 * and with {@link JdbcTemplate#setMaxRows(int)} set to <code>1</code>.
+	 * Statements that affect several rows, such as batch polls, use a separate
+	 * template whose fetch size is the batch size, up to {@link #MAX_BATCH_FETCH_SIZE}.
 	 *
 	 * @param dataSource a {@link DataSource}
 	 */
@@ -186,6 +222,8 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 	 * The passed-in {@link DataSource} is used to instantiate a {@link JdbcTemplate}
 	 * with {@link JdbcTemplate#setFetchSize(int)} set to <code>1</code>
 	 * and with {@link JdbcTemplate#setMaxRows(int)} set to <code>1</code>.
+	 * Statements that affect several rows, such as batch polls, use a separate
+	 * template whose fetch size is the batch size, up to {@link #MAX_BATCH_FETCH_SIZE}.
 	 *
 	 * @param dataSource a {@link DataSource}
 	 */
@@ -262,6 +300,8 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 	 * </p>
 	 * <ul>
 	 *     <li>{@link DerbyChannelMessageStoreQueryProvider}</li>
+	 *     <li>{@link H2ChannelMessageStoreQueryProvider}</li>
+	 *     <li>{@link HsqlChannelMessageStoreQueryProvider}</li>
 	 *     <li>{@link MySqlChannelMessageStoreQueryProvider}</li>
 	 *     <li>{@link OracleChannelMessageStoreQueryProvider}</li>
 	 *     <li>{@link PostgresChannelMessageStoreQueryProvider}</li>
@@ -355,11 +395,78 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 	 * </pre>
 	 *
 	 * @param usingIdCache When <code>true</code> the id cache will be used.
+	 * @deprecated in favor of {@link #setUsingClaims(boolean)}, which does not
+	 * hold the ids in memory and also works across several nodes.
 	 */
+	@Deprecated
 	public void setUsingIdCache(boolean usingIdCache) {
 		this.usingIdCache = usingIdCache;
 	}
 
+	/**
+	 * <p>Consider using this property when polling the database transactionally
+	 * using multiple parallel threads, or multiple application instances sharing
+	 * the same table.</p>
+	 *
+	 * <p>When using claims, each poll first claims the oldest unclaimed messages
+	 * by setting the <code>CLAIM_KEY</code> and <code>CLAIM_DATE</code> columns,
+	 * and reads them, in a separate, short transaction that is committed right
+	 * away. Other
+	 * pollers skip claimed rows instead of waiting for the row locks held by the
+	 * polling transaction, and the queries stay the same size regardless of how
+	 * many messages are in flight.</p>
+	 *
+	 * <p>If the polling transaction rolls back, the message stays claimed until
+	 * the {@link #setClaimTimeout(long) claim timeout} expires, after which it
+	 * is polled again. To make it available immediately, release the claim with
+	 * the corresponding {@link TransactionSynchronizationFactory}:</p>
+	 *
+	 * <pre>
+	 * {@code
+	 * <int:transaction-synchronization-factory id="syncFactory">
+	 *     <int:after-rollback expression="@jdbcChannelMessageStore.releaseClaim('jdbcChannelMessageStore:inputChannel', headers.id.toString())" />
+	 * </int:transaction-synchronization-factory>
+	 * }
+	 * </pre>
+	 *
+	 * @param usingClaims When <code>true</code> messages are claimed before being polled.
+	 * @see #setClaimTimeout(long)
+	 * @see #setClaimTransactionManager(PlatformTransactionManager)
+	 */
+	public void setUsingClaims(boolean usingClaims) {
+		this.usingClaims = usingClaims;
+	}
+
+	/**
+	 * The time in milliseconds after which a claim expires, so that a message
+	 * whose processing failed without releasing the claim (for example because
+	 * the node crashed) is polled again. Must be longer than the longest polling
+	 * transaction. Defaults to {@link #DEFAULT_CLAIM_TIMEOUT}.
+	 *
+	 * @param claimTimeout the claim timeout in milliseconds
+	 */
+	public void setClaimTimeout(long claimTimeout) {
+		Assert.isTrue(claimTimeout > 0, "'claimTimeout' must be greater than 0");
+		this.claimTimeout = claimTimeout;
+	}
+
+	/**
+	 * The {@link PlatformTransactionManager} used for claims. Claims made when
+	 * polling with {@link #setUsingClaims(boolean) usingClaims} are committed
+	 * independently of the polling transaction, which the manager must be able to
+	 * suspend; {@link #claimDueMessages(Object, long, int)} joins a transaction of
+	 * the manager that is already active. Set it to the application's transaction
+	 * manager so that claims take part in its transaction configuration; only if it
+	 * is not set is a {@link DataSourceTransactionManager} for the configured
+	 * {@link DataSource} created.
+	 *
+	 * @param claimTransactionManager the transaction manager
+	 */
+	public void setClaimTransactionManager(PlatformTransactionManager claimTransactionManager) {
+		Assert.notNull(claimTransactionManager, "The provided claimTransactionManager must not be null.");
+		this.claimTransactionManager = claimTransactionManager;
+	}
+
 	/**
 	 * Check mandatory properties ({@link DataSource} and
 	 * {@link #setChannelMessageStoreQueryProvider(ChannelMessageStoreQueryProvider)}). If no {@link MessageRowMapper} was
@@ -386,6 +493,18 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 			logger.warn("The jdbcTemplate's fetchsize is not 1 but %s. This may cause FIFO issues with Oracle databases.");
 		}
 
+		Assert.state(!(this.usingClaims && this.usingIdCache),
+				"The 'usingIdCache' and 'usingClaims' properties are mutually exclusive.");
+
+		// claims are also used by claimDueMessages(), regardless of 'usingClaims'
+		if (this.claimTransactionManager == null) {
+			this.claimTransactionManager = new DataSourceTransactionManager(this.jdbcTemplate.getDataSource());
+		}
+		this.claimTransactionTemplate = new TransactionTemplate(this.claimTransactionManager);
+		this.claimTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		this.dueClaimTransactionTemplate = new TransactionTemplate(this.claimTransactionManager);
+		this.dueClaimTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+
 	}
 
 	/**
@@ -398,18 +517,30 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 	 * @param groupId the group id to store the message under
 	 * @param message a message
 	 */
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+		this.doAddMessageToGroup(groupId, message, System.currentTimeMillis());
+		return getMessageGroup(groupId);
+	}
 
-		final String groupKey = getKey(groupId);
+	/**
+	 * Store a message in the database with the given due time, for retrieval with
+	 * {@link #claimDueMessages(Object, long, int)}. The due time is stored in the
+	 * <code>CREATED_DATE</code> column, so that messages are claimed in the order
+	 * they become due using the existing index.
+	 *
+	 * @param groupId the group id to store the message under
+	 * @param message a message
+	 * @param dueTime the due time in milliseconds since the epoch
+	 */
+	public void addMessageToGroup(Object groupId, Message<?> message, long dueTime) {
+		this.doAddMessageToGroup(groupId, message, dueTime);
+	}
 
-		final long createdDate = System.currentTimeMillis();
-		final Message<?> result = MessageBuilder.fromMessage(message).setHeader(SAVED_KEY, Boolean.TRUE)
-				.setHeader(CREATED_DATE_KEY, new Long(createdDate)).build();
+	private void doAddMessageToGroup(Object groupId, Message<?> message, final long createdDate) {
 
-		final Map innerMap = (Map) new DirectFieldAccessor(result.getHeaders()).getPropertyValue("headers");
-		// using reflection to set ID since it is immutable through MessageHeaders
-		innerMap.put(MessageHeaders.ID, message.getHeaders().get(MessageHeaders.ID));
+		final String groupKey = getKey(groupId);
+
+		final Message<?> result = this.prepareMessageForStorage(message, createdDate);
 
 		final String messageId = getKey(result.getHeaders().getId());
 		final byte[] messageBytes = serializer.convert(result);
@@ -426,8 +557,61 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 				lobHandler.getLobCreator().setBlobAsBytes(ps, 5, messageBytes);
 			}
 		});
+	}
 
-		return getMessageGroup(groupId);
+	/**
+	 * Store several messages in the database using a single JDBC batch update.
+	 * The messages are stored with ascending creation dates in the iteration
+	 * order of the provided collection, so that they are polled in that order.
+	 *
+	 * @param groupId the group id to store the messages under
+	 * @param messages the messages
+	 */
+	public void addMessagesToGroup(Object groupId, Collection<? extends Message<?>> messages) {
+
+		if (messages.isEmpty()) {
+			return;
+		}
+
+		final String groupKey = getKey(groupId);
+
+		final long createdDate = System.currentTimeMillis();
+		final List<String> messageIds = new ArrayList<String>(messages.size());
+		final List<byte[]> messageBytes = new ArrayList<byte[]>(messages.size());
+
+		for (Message<?> message : messages) {
+			final Message<?> result = this.prepareMessageForStorage(message, createdDate + messageIds.size());
+			messageIds.add(getKey(result.getHeaders().getId()));
+			messageBytes.add(serializer.convert(result));
+		}
+
+		this.createBatchJdbcTemplate(0).batchUpdate(getQuery(channelMessageStoreQueryProvider.getCreateMessageQuery()), new BatchPreparedStatementSetter() {
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				if (logger.isDebugEnabled()){
+					logger.debug("Inserting message with id key=" + messageIds.get(i));
+				}
+				ps.setString(1, messageIds.get(i));
+				ps.setString(2, groupKey);
+				ps.setString(3, region);
+				ps.setLong(4, createdDate + i);
+				lobHandler.getLobCreator().setBlobAsBytes(ps, 5, messageBytes.get(i));
+			}
+
+			public int getBatchSize() {
+				return messageIds.size();
+			}
+		});
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Message<?> prepareMessageForStorage(Message<?> message, long createdDate) {
+		final Message<?> result = MessageBuilder.fromMessage(message).setHeader(SAVED_KEY, Boolean.TRUE)
+				.setHeader(CREATED_DATE_KEY, new Long(createdDate)).build();
+
+		final Map innerMap = (Map) new DirectFieldAccessor(result.getHeaders()).getPropertyValue("headers");
+		// using reflection to set ID since it is immutable through MessageHeaders
+		innerMap.put(MessageHeaders.ID, message.getHeaders().get(MessageHeaders.ID));
+		return result;
 	}
 
 	/**
@@ -448,6 +632,11 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 	 */
 	protected Message<?> doPollForMessage(String groupIdKey) {
 
+		if (this.usingClaims) {
+			final List<Message<?>> messages = this.doPollForClaimedMessages(groupIdKey, 1);
+			return messages.isEmpty() ? null : messages.get(0);
+		}
+
 		final NamedParameterJdbcTemplate namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
 		final MapSqlParameterSource parameters = new MapSqlParameterSource();
 
@@ -498,6 +687,134 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 		return null;
 	}
 
+	/**
+	 * This method executes a single query to get up to <code>maxMessages</code> of
+	 * the oldest Messages in the MessageGroup. The row limit is applied both in the
+	 * query ({@link ChannelMessageStoreQueryProvider#getPollBatchFromGroupQuery()})
+	 * and through the JDBC <code>maxRows</code> setting of the statement.
+	 *
+	 * @param groupIdKey String representation of message group (Channel) ID
+	 * @param maxMessages the maximum number of messages to retrieve
+	 * @return the messages; could be empty if the query produced no Messages
+	 */
+	protected List<Message<?>> doPollForMessages(String groupIdKey, int maxMessages) {
+
+		final MapSqlParameterSource parameters = new MapSqlParameterSource();
+
+		parameters.addValue("region", region);
+		parameters.addValue("group_key", groupIdKey);
+		parameters.addValue("max_rows", maxMessages);
+
+		return new NamedParameterJdbcTemplate(this.createBatchJdbcTemplate(maxMessages)).query(
+				getQuery(this.channelMessageStoreQueryProvider.getPollBatchFromGroupQuery()), parameters, messageRowMapper);
+	}
+
+	/**
+	 * Claim up to <code>maxMessages</code> of the oldest unclaimed Messages in the
+	 * MessageGroup and retrieve them. The claim is committed in a separate
+	 * transaction, so that concurrent pollers skip the claimed messages. If all
+	 * of the selected messages were claimed concurrently by other pollers, the
+	 * next oldest unclaimed messages are selected.
+	 *
+	 * @param groupIdKey String representation of message group (Channel) ID
+	 * @param maxMessages the maximum number of messages to claim
+	 * @return the claimed messages; could be empty if there are no unclaimed Messages
+	 */
+	protected List<Message<?>> doPollForClaimedMessages(String groupIdKey, int maxMessages) {
+		return this.doClaimMessages(this.claimTransactionTemplate, groupIdKey, maxMessages, null);
+	}
+
+	/**
+	 * Claim up to <code>maxMessages</code> unclaimed Messages, restricted to those
+	 * due by <code>dueDate</code> unless it is null, and retrieve them.
+	 * <p>
+	 * The candidates are selected, claimed and read back within a single transaction
+	 * of the given template: a polling transaction with repeatable read isolation
+	 * may have fixed its snapshot before a separately committed claim, in which
+	 * case it would neither see the claimed rows nor the claims made concurrently
+	 * by other pollers.
+	 */
+	private List<Message<?>> doClaimMessages(TransactionTemplate transactionTemplate, final String groupIdKey,
+			final int maxMessages, final Long dueDate) {
+
+		final String candidatesQuery = getQuery(dueDate == null
+				? this.channelMessageStoreQueryProvider.getPollUnclaimedIdsFromGroupQuery()
+				: this.channelMessageStoreQueryProvider.getPollDueUnclaimedIdsFromGroupQuery());
+
+		final NamedParameterJdbcTemplate batchJdbcTemplate = new NamedParameterJdbcTemplate(this.createBatchJdbcTemplate(0));
+		final NamedParameterJdbcTemplate candidatesJdbcTemplate = new NamedParameterJdbcTemplate(
+				this.createBatchJdbcTemplate(maxMessages));
+
+		while (true) {
+			final List<Message<?>> claimedMessages = transactionTemplate.execute(
+					new TransactionCallback<List<Message<?>>>() {
+
+				public List<Message<?>> doInTransaction(TransactionStatus status) {
+					final long now = System.currentTimeMillis();
+
+					final MapSqlParameterSource parameters = new MapSqlParameterSource();
+					parameters.addValue("region", region);
+					parameters.addValue("group_key", groupIdKey);
+					parameters.addValue("claim_expiry", now - claimTimeout);
+					parameters.addValue("due_date", dueDate);
+
+					final List<String> messageIds = candidatesJdbcTemplate.queryForList(candidatesQuery, parameters,
+							String.class);
+
+					if (messageIds.isEmpty()) {
+						return null;
+					}
+
+					parameters.addValue("message_ids", messageIds);
+					parameters.addValue("claim_key", UUID.randomUUID().toString());
+					parameters.addValue("claim_date", now);
+
+					final int claimed = batchJdbcTemplate.update(
+							getQuery(channelMessageStoreQueryProvider.getClaimMessagesQuery()), parameters);
+
+					if (logger.isDebugEnabled()) {
+						logger.debug(String.format("Claimed %s of the messages with ids '%s'.", claimed, messageIds));
+					}
+
+					if (claimed == 0) {
+						return new ArrayList<Message<?>>(0);
+					}
+					return batchJdbcTemplate.query(getQuery(channelMessageStoreQueryProvider.getClaimedMessagesQuery()),
+							parameters, messageRowMapper);
+				}
+
+			});
+
+			if (claimedMessages == null) {
+				return new ArrayList<Message<?>>(0);
+			}
+			// all of the candidates were claimed concurrently by other pollers
+			if (!claimedMessages.isEmpty()) {
+				return claimedMessages;
+			}
+		}
+	}
+
+	/**
+	 * Create a {@link JdbcTemplate} for statements that affect several rows. The
+	 * configured template is usually limited to a single row (see
+	 * {@link #setJdbcTemplate(JdbcTemplate)}), and some drivers also apply that
+	 * limit to updates.
+	 *
+	 * The fetch size is the row limit, up to {@link #MAX_BATCH_FETCH_SIZE}, since
+	 * some drivers allocate their fetch buffers up front.
+	 *
+	 * @param maxRows the row limit to apply to queries, 0 for no limit
+	 */
+	private JdbcTemplate createBatchJdbcTemplate(int maxRows) {
+		final JdbcTemplate batchJdbcTemplate = new JdbcTemplate(this.jdbcTemplate.getDataSource());
+		batchJdbcTemplate.setExceptionTranslator(this.jdbcTemplate.getExceptionTranslator());
+		batchJdbcTemplate.setQueryTimeout(this.jdbcTemplate.getQueryTimeout());
+		batchJdbcTemplate.setFetchSize(Math.min(maxRows, MAX_BATCH_FETCH_SIZE));
+		batchJdbcTemplate.setMaxRows(maxRows);
+		return batchJdbcTemplate;
+	}
+
 	/**
 	 * Helper method that converts the channel id to a UUID using
 	 * {@link UUIDConverter#getUUID(Object)}.
@@ -598,6 +915,93 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 		return polledMessage;
 	}
 
+	/**
+	 * Polls the database for up to <code>maxMessages</code> messages that are persisted
+	 * for the given group id, using one query to select them and one statement to
+	 * delete them.
+	 *
+	 * When {@link #setUsingClaims(boolean) usingClaims} is enabled the messages are
+	 * claimed before being retrieved. When {@link #setUsingIdCache(boolean) usingIdCache}
+	 * is enabled the messages are polled one at a time so that each of them is
+	 * registered in the id cache.
+	 */
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+
+		if (maxMessages <= 0) {
+			return new ArrayList<Message<?>>(0);
+		}
+
+		final List<Message<?>> polledMessages;
+
+		final String key = getKey(groupId);
+
+		if (this.usingClaims) {
+			polledMessages = this.doPollForClaimedMessages(key, maxMessages);
+			this.removeMessagesFromGroup(key, polledMessages);
+			return polledMessages;
+		}
+
+		if (this.usingIdCache) {
+			polledMessages = new ArrayList<Message<?>>();
+			Message<?> polledMessage = null;
+			while (polledMessages.size() < maxMessages && (polledMessage = this.pollMessageFromGroup(groupId)) != null) {
+				polledMessages.add(polledMessage);
+			}
+			return polledMessages;
+		}
+
+		polledMessages = this.doPollForMessages(key, maxMessages);
+		this.removeMessagesFromGroup(key, polledMessages);
+
+		return polledMessages;
+	}
+
+	/**
+	 * Claims up to <code>maxMessages</code> of the messages stored with
+	 * {@link #addMessageToGroup(Object, Message, long)} that are due by
+	 * <code>dueTime</code>, in due order, independently of the
+	 * {@link #setUsingClaims(boolean) usingClaims} setting. The claimed messages
+	 * are not removed; remove each of them with
+	 * {@link #removeMessageFromGroup(Object, Message)} once processed. A message
+	 * that is not removed is claimed again once the {@link #setClaimTimeout(long)
+	 * claim timeout} has expired.
+	 * <p>
+	 * The claim runs in a transaction of the
+	 * {@link #setClaimTransactionManager(PlatformTransactionManager) claimTransactionManager},
+	 * joining the caller's transaction if there is one.
+	 */
+	public List<Message<?>> claimDueMessages(Object groupId, long dueTime, int maxMessages) {
+		if (maxMessages <= 0) {
+			return new ArrayList<Message<?>>(0);
+		}
+		return this.doClaimMessages(this.dueClaimTransactionTemplate, getKey(groupId), maxMessages, dueTime);
+	}
+
+	private void removeMessagesFromGroup(String key, List<Message<?>> polledMessages) {
+		if (!polledMessages.isEmpty()) {
+			final List<String> messageIds = new ArrayList<String>(polledMessages.size());
+			for (Message<?> polledMessage : polledMessages) {
+				messageIds.add(getKey(polledMessage.getHeaders().getId()));
+			}
+
+			final MapSqlParameterSource parameters = new MapSqlParameterSource();
+			parameters.addValue("message_ids", messageIds);
+			parameters.addValue("group_key", key);
+			parameters.addValue("region", region);
+
+			int updated = new NamedParameterJdbcTemplate(this.createBatchJdbcTemplate(0)).update(
+					getQuery(channelMessageStoreQueryProvider.getDeleteMessagesQuery()), parameters);
+
+			if (updated == messageIds.size()) {
+				if (logger.isDebugEnabled()) {
+					logger.debug(String.format("Messages with ids '%s' were deleted.", messageIds));
+				}
+			} else {
+				logger.warn(String.format("Only %s of the messages with ids '%s' were deleted.", updated, messageIds));
+			}
+		}
+	}
+
 	/**
 	 * Remove a single message from the database.
 	 *
@@ -630,7 +1034,9 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 	 * <code>true</code></p>.
 	 *
 	 * @param messageId
+	 * @deprecated in favor of {@link #setUsingClaims(boolean)} and {@link #releaseClaim(Object, String)}
 	 */
+	@Deprecated
 	public void removeFromIdCache(String messageId) {
 		if (logger.isDebugEnabled()) {
 			logger.debug("Removing Message Id:" + messageId);
@@ -644,6 +1050,32 @@ public class JdbcChannelMessageStore extends AbstractMessageGroupStore implement
 		}
 	}
 
+	/**
+	 * <p>Release the claim of a message, so that it can be polled again right away
+	 * rather than after the {@link #setClaimTimeout(long) claim timeout}. Should be
+	 * used in conjunction with the Spring Integration Transaction Synchronization
+	 * feature, once a polling transaction rolled back.</p>
+	 * <p>Only applicable if {@link #setUsingClaims(boolean)} is set to
+	 * <code>true</code>, or to messages claimed with
+	 * {@link #claimDueMessages(Object, long, int)}</p>.
+	 *
+	 * @param groupId The channel id of the message
+	 * @param messageId The message id
+	 */
+	public void releaseClaim(Object groupId, String messageId) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Releasing claim of Message Id:" + messageId);
+		}
+		final Object[] parameters = new Object[] { getKey(messageId), getKey(groupId), region };
+
+		this.claimTransactionTemplate.execute(new TransactionCallback<Integer>() {
+			public Integer doInTransaction(TransactionStatus status) {
+				return createBatchJdbcTemplate(0).update(getQuery(channelMessageStoreQueryProvider.getReleaseClaimQuery()),
+						parameters, new int[] { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR });
+			}
+		});
+	}
+
 	/**
 	 * Returns the size of the Message Id Cache, which caches Message Ids for
 	 * those messages that are currently being processed.
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -26,6 +26,43 @@ public abstract class AbstractChannelMessageStoreQueryProvider implements Channe
 	public abstract String getPollFromGroupExcludeIdsQuery();
 	public abstract String getPollFromGroupQuery();
 
+	/**
+	 * The row limit is applied through the JDBC <code>maxRows</code> setting of the
+	 * statement; dialects override this to also limit the rows in the query.
+	 */
+	public String getPollBatchFromGroupQuery() {
+		return "SELECT %PREFIX%CHANNEL_MESSAGE.MESSAGE_ID, %PREFIX%CHANNEL_MESSAGE.MESSAGE_BYTES from %PREFIX%CHANNEL_MESSAGE"
+				+ " where %PREFIX%CHANNEL_MESSAGE.GROUP_KEY = :group_key and %PREFIX%CHANNEL_MESSAGE.REGION = :region"
+				+ " order by CREATED_DATE ASC";
+	}
+
+	public String getPollUnclaimedIdsFromGroupQuery() {
+		return "SELECT MESSAGE_ID from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=:group_key and REGION=:region"
+				+ " and (CLAIM_KEY is null or CLAIM_DATE < :claim_expiry) order by CREATED_DATE ASC";
+	}
+
+	public String getPollDueUnclaimedIdsFromGroupQuery() {
+		return "SELECT MESSAGE_ID from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=:group_key and REGION=:region"
+				+ " and CREATED_DATE <= :due_date and (CLAIM_KEY is null or CLAIM_DATE < :claim_expiry)"
+				+ " order by CREATED_DATE ASC";
+	}
+
+	public String getClaimMessagesQuery() {
+		return "UPDATE %PREFIX%CHANNEL_MESSAGE set CLAIM_KEY=:claim_key, CLAIM_DATE=:claim_date"
+				+ " where MESSAGE_ID in (:message_ids) and GROUP_KEY=:group_key and REGION=:region"
+				+ " and (CLAIM_KEY is null or CLAIM_DATE < :claim_expiry)";
+	}
+
+	public String getClaimedMessagesQuery() {
+		return "SELECT MESSAGE_ID, CREATED_DATE, MESSAGE_BYTES from %PREFIX%CHANNEL_MESSAGE"
+				+ " where MESSAGE_ID in (:message_ids) and GROUP_KEY=:group_key and REGION=:region"
+				+ " and CLAIM_KEY=:claim_key order by CREATED_DATE ASC";
+	}
+
+	public String getReleaseClaimQuery() {
+		return "UPDATE %PREFIX%CHANNEL_MESSAGE set CLAIM_KEY=null, CLAIM_DATE=null where MESSAGE_ID=? and GROUP_KEY=? and REGION=?";
+	}
+
 	public String getMessageQuery() {
 		return "SELECT MESSAGE_ID, CREATED_DATE, MESSAGE_BYTES from %PREFIX%CHANNEL_MESSAGE where MESSAGE_ID=? and GROUP_KEY=? and REGION=?";
 	}
@@ -38,6 +75,10 @@ public abstract class AbstractChannelMessageStoreQueryProvider implements Channe
 		return "DELETE from %PREFIX%CHANNEL_MESSAGE where MESSAGE_ID=? and GROUP_KEY=? and REGION=?";
 	}
 
+	public String getDeleteMessagesQuery() {
+		return "DELETE from %PREFIX%CHANNEL_MESSAGE where MESSAGE_ID in (:message_ids) and GROUP_KEY=:group_key and REGION=:region";
+	}
+
 	public String getCreateMessageQuery() {
 		return "INSERT into %PREFIX%CHANNEL_MESSAGE(MESSAGE_ID, GROUP_KEY, REGION, CREATED_DATE, MESSAGE_BYTES)"
 				+ " values (?, ?, ?, ?, ?)";
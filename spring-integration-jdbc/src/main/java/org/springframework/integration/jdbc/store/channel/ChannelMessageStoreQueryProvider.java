@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -47,6 +47,60 @@ public interface ChannelMessageStoreQueryProvider {
 	 */
 	String getPollFromGroupQuery();
 
+	/**
+	 * Get the query used to retrieve the oldest messages for a channel, at most
+	 * <code>:max_rows</code> of them, in the order they were created.
+	 *
+	 * @return Sql Query
+	 */
+	String getPollBatchFromGroupQuery();
+
+	/**
+	 * Get the query used to retrieve the ids of the oldest messages for a channel
+	 * that are not claimed, or whose claim was made before <code>:claim_expiry</code>,
+	 * in the order they were created. The number of rows is limited through the
+	 * JDBC <code>maxRows</code> setting of the statement.
+	 *
+	 * @return Sql Query
+	 */
+	String getPollUnclaimedIdsFromGroupQuery();
+
+	/**
+	 * Get the query used to retrieve the ids of the unclaimed messages for a channel,
+	 * like {@link #getPollUnclaimedIdsFromGroupQuery()}, restricted to messages whose
+	 * <code>CREATED_DATE</code> is not after <code>:due_date</code>. Messages stored with
+	 * a due time hold it in the <code>CREATED_DATE</code> column.
+	 *
+	 * @return Sql Query
+	 */
+	String getPollDueUnclaimedIdsFromGroupQuery();
+
+	/**
+	 * Query to claim the messages with the provided message ids
+	 * (<code>:message_ids</code>) that are not claimed, or whose claim was made
+	 * before <code>:claim_expiry</code>, by setting their claim key
+	 * (<code>:claim_key</code>) and claim date (<code>:claim_date</code>).
+	 *
+	 * @return Sql Query
+	 */
+	String getClaimMessagesQuery();
+
+	/**
+	 * Get the query used to retrieve the messages with the provided message ids
+	 * (<code>:message_ids</code>) that hold the claim key <code>:claim_key</code>,
+	 * in the order they were created.
+	 *
+	 * @return Sql Query
+	 */
+	String getClaimedMessagesQuery();
+
+	/**
+	 * Query to release the claim of a single message.
+	 *
+	 * @return Sql Query
+	 */
+	String getReleaseClaimQuery();
+
 	/**
 	 * Query that retrieves a message for the provided message id, channel and
 	 * region.
@@ -69,6 +123,14 @@ public interface ChannelMessageStoreQueryProvider {
 	 */
 	String getDeleteMessageQuery();
 
+	/**
+	 * Query to delete the messages with the provided message ids
+	 * (<code>:message_ids</code>) from a channel.
+	 *
+	 * @return Sql Query
+	 */
+	String getDeleteMessagesQuery();
+
 	/**
 	 * Query to add a single message to the database.
 	 *
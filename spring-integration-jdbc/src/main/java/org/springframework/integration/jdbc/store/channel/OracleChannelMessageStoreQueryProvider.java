@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -41,4 +41,16 @@ public class OracleChannelMessageStoreQueryProvider extends AbstractChannelMessa
 				"order by CREATED_DATE ASC FOR UPDATE SKIP LOCKED";
 	}
 
+	/**
+	 * Oracle does not allow a row limit together with <code>FOR UPDATE SKIP LOCKED</code>;
+	 * the number of rows is limited by the JDBC <code>maxRows</code> setting instead, which
+	 * the {@link JdbcChannelMessageStore} applies to batch polls.
+	 */
+	@Override
+	public String getPollBatchFromGroupQuery() {
+		return "SELECT %PREFIX%CHANNEL_MESSAGE.MESSAGE_ID, %PREFIX%CHANNEL_MESSAGE.MESSAGE_BYTES from %PREFIX%CHANNEL_MESSAGE " +
+				"where %PREFIX%CHANNEL_MESSAGE.GROUP_KEY = :group_key and %PREFIX%CHANNEL_MESSAGE.REGION = :region " +
+				"order by CREATED_DATE ASC FOR UPDATE SKIP LOCKED";
+	}
+
 }
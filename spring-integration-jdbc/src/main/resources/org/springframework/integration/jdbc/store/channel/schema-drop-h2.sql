@@ -0,0 +1 @@
+DROP TABLE INT_CHANNEL_MESSAGE;
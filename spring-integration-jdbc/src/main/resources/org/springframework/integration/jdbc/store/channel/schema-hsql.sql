@@ -4,6 +4,8 @@ CREATE TABLE INT_CHANNEL_MESSAGE (
 	CREATED_DATE BIGINT NOT NULL,
 	MESSAGE_BYTES LONGVARBINARY,
 	REGION VARCHAR(100) NOT NULL,
+	CLAIM_KEY CHAR(36),
+	CLAIM_DATE BIGINT,
 	constraint INT_CHANNEL_MESSAGE_PK primary key (GROUP_KEY, MESSAGE_ID, REGION)
 );
 
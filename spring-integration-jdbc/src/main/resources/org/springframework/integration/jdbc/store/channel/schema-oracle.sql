@@ -4,6 +4,8 @@ CREATE TABLE INT_CHANNEL_MESSAGE (
 	CREATED_DATE NUMBER(19,0) NOT NULL,
 	MESSAGE_BYTES BLOB,
 	REGION VARCHAR2(100) NOT NULL,
+	CLAIM_KEY CHAR(36),
+	CLAIM_DATE NUMBER(19,0),
 	constraint INT_CHANNEL_MESSAGE_PK primary key (GROUP_KEY, MESSAGE_ID, REGION)
 );
 
@@ -30,6 +30,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
 
@@ -52,6 +54,7 @@ import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageGroupStore.MessageGroupCallback;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.serializer.CompactMessageSerializer;
 import org.springframework.integration.util.UUIDConverter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ContextConfiguration;
@@ -103,6 +106,22 @@ public class JdbcMessageStoreTests {
 		assertNotNull(result.getHeaders().get(JdbcMessageStore.CREATED_DATE_KEY));
 	}
 
+	@Test
+	@Transactional
+	public void testAddMessages() throws Exception {
+		Message<String> saved = messageStore.addMessage(MessageBuilder.withPayload("foo").build());
+		Message<String> message = MessageBuilder.withPayload("bar").build();
+		List<Message<?>> results = messageStore.addMessages(Arrays.<Message<?>>asList(saved, message));
+		assertEquals(2, results.size());
+		// a message that is already stored is not stored again
+		assertSame(saved, results.get(0));
+		assertEquals(message.getHeaders().getId(), results.get(1).getHeaders().getId());
+		assertNotNull(results.get(1).getHeaders().get(JdbcMessageStore.SAVED_KEY));
+		assertEquals(2, messageStore.getMessageCount());
+		Message<?> result = messageStore.getMessage(message.getHeaders().getId());
+		assertThat(results.get(1), sameExceptIgnorableHeaders(result));
+	}
+
 	@Test
 	@Transactional
 	public void testWithMessageHistory() throws Exception{
@@ -159,6 +178,22 @@ public class JdbcMessageStoreTests {
 		assertEquals("foo", result.getPayload());
 	}
 
+	@Test
+	@Transactional
+	public void testCompactMessageSerializer() throws Exception {
+		Message<String> legacy = messageStore.addMessage(MessageBuilder.withPayload("bar").build());
+		CompactMessageSerializer serializer = new CompactMessageSerializer();
+		messageStore.setSerializer(serializer);
+		messageStore.setDeserializer(serializer);
+		Message<String> message = MessageBuilder.withPayload("foo").setCorrelationId("X").build();
+		Message<String> saved = messageStore.addMessage(message);
+		Message<?> result = messageStore.getMessage(saved.getHeaders().getId());
+		assertThat(saved, sameExceptIgnorableHeaders(result));
+		assertEquals(saved.getHeaders().getTimestamp(), result.getHeaders().getTimestamp());
+		assertNotNull(result.getHeaders().get(JdbcMessageStore.SAVED_KEY));
+		assertEquals("bar", messageStore.getMessage(legacy.getHeaders().getId()).getPayload());
+	}
+
 	@Test
 	@Transactional
 	public void testAddAndGetWithDifferentRegion() throws Exception {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -20,12 +20,20 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.sql.DataSource;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.serializer.support.DeserializingConverter;
 import org.springframework.integration.Message;
 import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.lob.DefaultLobHandler;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.TransactionStatus;
@@ -90,4 +98,231 @@ public class AbstractJdbcChannelMessageStoreTests {
 		assertNotNull(messageFromDb.getHeaders().get(JdbcChannelMessageStore.CREATED_DATE_KEY));
 	}
 
+	public void testAddAndPollBatch() throws Exception {
+		final List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 5; i++) {
+			messages.add(MessageBuilder.withPayload("Kenny" + i).build());
+		}
+
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		transactionTemplate.setIsolationLevel(Isolation.READ_COMMITTED.value());
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				messageStore.addMessagesToGroup(TEST_MESSAGE_GROUP, messages);
+			}
+		});
+
+		assertEquals(0, messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 0).size());
+
+		List<Message<?>> polledMessages = messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3);
+		assertEquals(3, polledMessages.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(messages.get(i).getHeaders().getId(), polledMessages.get(i).getHeaders().getId());
+		}
+
+		polledMessages = messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3);
+		assertEquals(2, polledMessages.size());
+		assertEquals(messages.get(4).getHeaders().getId(), polledMessages.get(1).getHeaders().getId());
+		assertEquals(0, messageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3).size());
+	}
+
+	public void testPollWithClaims() throws Exception {
+		final JdbcChannelMessageStore claimingMessageStore = new JdbcChannelMessageStore(dataSource);
+		claimingMessageStore.setRegion("AbstractJdbcChannelMessageStoreTests");
+		claimingMessageStore.setChannelMessageStoreQueryProvider(queryProvider);
+		claimingMessageStore.setUsingClaims(true);
+		claimingMessageStore.afterPropertiesSet();
+
+		final List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 4; i++) {
+			messages.add(MessageBuilder.withPayload("Kenny" + i).build());
+		}
+		messageStore.addMessagesToGroup(TEST_MESSAGE_GROUP, messages);
+
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		transactionTemplate.setIsolationLevel(Isolation.READ_COMMITTED.value());
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+
+		final TransactionCallbackWithoutResult rolledBackPoll = new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertNotNull(claimingMessageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP));
+				status.setRollbackOnly();
+			}
+		};
+		transactionTemplate.execute(rolledBackPoll);
+
+		// the first message is still claimed after the rollback
+		Message<?> polledMessage = claimingMessageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP);
+		assertEquals(messages.get(1).getHeaders().getId(), polledMessage.getHeaders().getId());
+
+		claimingMessageStore.releaseClaim(TEST_MESSAGE_GROUP, messages.get(0).getHeaders().getId().toString());
+		polledMessage = claimingMessageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP);
+		assertEquals(messages.get(0).getHeaders().getId(), polledMessage.getHeaders().getId());
+
+		// an expired claim does not prevent the message from being polled again
+		transactionTemplate.execute(rolledBackPoll);
+		claimingMessageStore.setClaimTimeout(10);
+		Thread.sleep(50);
+
+		List<Message<?>> polledMessages = claimingMessageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3);
+		assertEquals(2, polledMessages.size());
+		assertEquals(messages.get(2).getHeaders().getId(), polledMessages.get(0).getHeaders().getId());
+		assertEquals(messages.get(3).getHeaders().getId(), polledMessages.get(1).getHeaders().getId());
+		assertNull(claimingMessageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP));
+	}
+
+	public void testPollWithClaimsInTransaction() throws Exception {
+		final ClaimTransactionManager claimTransactionManager = new ClaimTransactionManager(dataSource);
+		final ClaimTransactionMessageRowMapper messageRowMapper = new ClaimTransactionMessageRowMapper(
+				claimTransactionManager);
+		final JdbcChannelMessageStore claimingMessageStore = new JdbcChannelMessageStore(dataSource);
+		claimingMessageStore.setRegion("AbstractJdbcChannelMessageStoreTests");
+		claimingMessageStore.setChannelMessageStoreQueryProvider(queryProvider);
+		claimingMessageStore.setUsingClaims(true);
+		claimingMessageStore.setClaimTransactionManager(claimTransactionManager);
+		claimingMessageStore.setMessageRowMapper(messageRowMapper);
+		claimingMessageStore.afterPropertiesSet();
+
+		final List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 3; i++) {
+			messages.add(MessageBuilder.withPayload("Kenny" + i).build());
+		}
+		messageStore.addMessagesToGroup(TEST_MESSAGE_GROUP, messages);
+
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+		transactionTemplate.setIsolationLevel(Isolation.REPEATABLE_READ.value());
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+
+		final List<Message<?>> polledMessages = new ArrayList<Message<?>>();
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				// fixes the snapshot of the polling transaction on databases that use one
+				claimingMessageStore.messageGroupSize(TEST_MESSAGE_GROUP);
+				polledMessages.add(claimingMessageStore.pollMessageFromGroup(TEST_MESSAGE_GROUP));
+				polledMessages.addAll(claimingMessageStore.pollMessagesFromGroup(TEST_MESSAGE_GROUP, 3));
+			}
+		});
+
+		assertEquals(3, polledMessages.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(messages.get(i).getHeaders().getId(), polledMessages.get(i).getHeaders().getId());
+		}
+		// the claimed messages are read within the claim transaction
+		assertEquals(3, messageRowMapper.mappedInClaimTransaction);
+		assertEquals(0, messageRowMapper.mappedOutsideClaimTransaction);
+		assertEquals(0, claimingMessageStore.messageGroupSize(TEST_MESSAGE_GROUP));
+	}
+
+	public void testClaimDueMessages() throws Exception {
+		final List<Message<?>> messages = new ArrayList<Message<?>>();
+		final long now = System.currentTimeMillis();
+		for (int i = 0; i < 3; i++) {
+			messages.add(MessageBuilder.withPayload("Kenny" + i).build());
+		}
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, messages.get(1), now - 50);
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, messages.get(0), now - 100);
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, messages.get(2), now + 100000);
+
+		// another node sharing the table
+		final JdbcChannelMessageStore otherMessageStore = new JdbcChannelMessageStore(dataSource);
+		otherMessageStore.setRegion("AbstractJdbcChannelMessageStoreTests");
+		otherMessageStore.setChannelMessageStoreQueryProvider(queryProvider);
+		otherMessageStore.afterPropertiesSet();
+
+		List<Message<?>> claimedMessages = messageStore.claimDueMessages(TEST_MESSAGE_GROUP, now, 10);
+		assertEquals(2, claimedMessages.size());
+		assertEquals(messages.get(0).getHeaders().getId(), claimedMessages.get(0).getHeaders().getId());
+		assertEquals(messages.get(1).getHeaders().getId(), claimedMessages.get(1).getHeaders().getId());
+		assertEquals(0, otherMessageStore.claimDueMessages(TEST_MESSAGE_GROUP, now, 10).size());
+
+		messageStore.removeMessageFromGroup(TEST_MESSAGE_GROUP, claimedMessages.get(0));
+
+		// the claim of the message that was not removed expires
+		otherMessageStore.setClaimTimeout(10);
+		Thread.sleep(50);
+		claimedMessages = otherMessageStore.claimDueMessages(TEST_MESSAGE_GROUP, System.currentTimeMillis(), 10);
+		assertEquals(1, claimedMessages.size());
+		assertEquals(messages.get(1).getHeaders().getId(), claimedMessages.get(0).getHeaders().getId());
+		// the new claim must not expire before the last message is claimed
+		otherMessageStore.setClaimTimeout(JdbcChannelMessageStore.DEFAULT_CLAIM_TIMEOUT);
+		assertEquals(1, otherMessageStore.claimDueMessages(TEST_MESSAGE_GROUP, now + 100000, 10).size());
+	}
+
+	public void testClaimDueMessagesJoinsTransaction() throws Exception {
+		final long now = System.currentTimeMillis();
+		messageStore.addMessageToGroup(TEST_MESSAGE_GROUP, MessageBuilder.withPayload("Kenny").build(), now - 100);
+		messageStore.setClaimTransactionManager(transactionManager);
+		messageStore.afterPropertiesSet();
+
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				assertEquals(1, messageStore.claimDueMessages(TEST_MESSAGE_GROUP, now, 10).size());
+				status.setRollbackOnly();
+			}
+		});
+
+		// the claim was rolled back with the transaction it joined
+		assertEquals(1, messageStore.claimDueMessages(TEST_MESSAGE_GROUP, now, 10).size());
+	}
+
+	private static class ClaimTransactionManager extends DataSourceTransactionManager {
+
+		private static final long serialVersionUID = 1L;
+
+		private volatile boolean active;
+
+		public ClaimTransactionManager(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		@Override
+		protected void doBegin(Object transaction, TransactionDefinition definition) {
+			super.doBegin(transaction, definition);
+			this.active = true;
+		}
+
+		@Override
+		protected void doCleanupAfterCompletion(Object transaction) {
+			this.active = false;
+			super.doCleanupAfterCompletion(transaction);
+		}
+
+	}
+
+	private static class ClaimTransactionMessageRowMapper extends MessageRowMapper {
+
+		private final ClaimTransactionManager claimTransactionManager;
+
+		private volatile int mappedInClaimTransaction;
+
+		private volatile int mappedOutsideClaimTransaction;
+
+		public ClaimTransactionMessageRowMapper(ClaimTransactionManager claimTransactionManager) {
+			super(new DeserializingConverter(), new DefaultLobHandler());
+			this.claimTransactionManager = claimTransactionManager;
+		}
+
+		@Override
+		public Message<?> mapRow(ResultSet rs, int rowNum) throws SQLException {
+			if (this.claimTransactionManager.active) {
+				this.mappedInClaimTransaction++;
+			}
+			else {
+				this.mappedOutsideClaimTransaction++;
+			}
+			return super.mapRow(rs, rowNum);
+		}
+
+	}
+
 }
@@ -120,6 +120,7 @@ abstract class AbstractTxTimeoutMessageStoreTests {
 					for (int i = 0; i < 100; i++) {
 						boolean result = transactionTemplate.execute(new TransactionCallback<Boolean>() {
 							@Override
+							@SuppressWarnings("deprecation")
 							public Boolean doInTransaction(TransactionStatus status) {
 								Message<?> message = null;
 								try {
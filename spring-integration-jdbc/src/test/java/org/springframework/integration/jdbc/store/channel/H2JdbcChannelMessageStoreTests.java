@@ -0,0 +1,77 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.store.channel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+@ContextConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class H2JdbcChannelMessageStoreTests extends AbstractJdbcChannelMessageStoreTests {
+
+	@Before
+	@Override
+	public void init() throws Exception {
+		super.init();
+	}
+
+	@Test
+	@Override
+	public void testGetNonExistentMessageFromGroup() throws Exception {
+		super.testGetNonExistentMessageFromGroup();
+	}
+
+	@Test
+	@Override
+	public void testAddAndGet() throws Exception {
+		super.testAddAndGet();
+	}
+
+	@Test
+	@Override
+	public void testAddAndPollBatch() throws Exception {
+		super.testAddAndPollBatch();
+	}
+
+	@Test
+	@Override
+	public void testPollWithClaims() throws Exception {
+		super.testPollWithClaims();
+	}
+
+	@Test
+	@Override
+	public void testPollWithClaimsInTransaction() throws Exception {
+		super.testPollWithClaimsInTransaction();
+	}
+
+	@Test
+	@Override
+	public void testClaimDueMessages() throws Exception {
+		super.testClaimDueMessages();
+	}
+
+	@Test
+	@Override
+	public void testClaimDueMessagesJoinsTransaction() throws Exception {
+		super.testClaimDueMessagesJoinsTransaction();
+	}
+
+}
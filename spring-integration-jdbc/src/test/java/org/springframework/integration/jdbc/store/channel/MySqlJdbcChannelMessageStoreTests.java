@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2013 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -50,4 +50,34 @@ public class MySqlJdbcChannelMessageStoreTests extends AbstractJdbcChannelMessag
 		super.testAddAndGet();
 	}
 
+	@Test
+	@Override
+	public void testAddAndPollBatch() throws Exception {
+		super.testAddAndPollBatch();
+	}
+
+	@Test
+	@Override
+	public void testPollWithClaims() throws Exception {
+		super.testPollWithClaims();
+	}
+
+	@Test
+	@Override
+	public void testPollWithClaimsInTransaction() throws Exception {
+		super.testPollWithClaimsInTransaction();
+	}
+
+	@Test
+	@Override
+	public void testClaimDueMessages() throws Exception {
+		super.testClaimDueMessages();
+	}
+
+	@Test
+	@Override
+	public void testClaimDueMessagesJoinsTransaction() throws Exception {
+		super.testClaimDueMessagesJoinsTransaction();
+	}
+
 }
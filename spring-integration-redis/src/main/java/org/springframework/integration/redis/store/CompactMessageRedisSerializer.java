@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.integration.Message;
+import org.springframework.integration.support.serializer.CompactMessageSerializer;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link RedisSerializer} for the {@link RedisMessageStore} that writes
+ * {@link Message}s using a {@link CompactMessageSerializer}. Other values, such
+ * as the message group metadata, are written with Java serialization, and values
+ * previously written with the default {@link JdkSerializationRedisSerializer}
+ * can still be read.
+ *
+ * @since 3.0
+ */
+public class CompactMessageRedisSerializer implements RedisSerializer<Object> {
+
+	private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+	private final CompactMessageSerializer messageSerializer;
+
+	public CompactMessageRedisSerializer() {
+		this(new CompactMessageSerializer());
+	}
+
+	public CompactMessageRedisSerializer(CompactMessageSerializer messageSerializer) {
+		Assert.notNull(messageSerializer, "'messageSerializer' must not be null");
+		this.messageSerializer = messageSerializer;
+	}
+
+	public byte[] serialize(Object object) throws SerializationException {
+		if (object instanceof Message) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+			try {
+				this.messageSerializer.serialize((Message<?>) object, outputStream);
+			}
+			catch (IOException e) {
+				throw new SerializationException("Cannot serialize message", e);
+			}
+			return outputStream.toByteArray();
+		}
+		return this.jdkSerializer.serialize(object);
+	}
+
+	public Object deserialize(byte[] bytes) throws SerializationException {
+		if (bytes != null && bytes.length > 0 && bytes[0] == CompactMessageSerializer.MAGIC) {
+			try {
+				return this.messageSerializer.deserialize(new ByteArrayInputStream(bytes));
+			}
+			catch (IOException e) {
+				throw new SerializationException("Cannot deserialize message", e);
+			}
+		}
+		return this.jdkSerializer.deserialize(bytes);
+	}
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2013 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.serializer.CompactMessageSerializer;
+
+/**
+ * @since 3.0
+ */
+public class CompactMessageRedisSerializerTests {
+
+	private final CompactMessageRedisSerializer serializer = new CompactMessageRedisSerializer();
+
+	@Test
+	public void testMessage() {
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		byte[] bytes = serializer.serialize(message);
+		assertEquals(CompactMessageSerializer.MAGIC, bytes[0]);
+		Message<?> result = (Message<?>) serializer.deserialize(bytes);
+		assertEquals(message.getHeaders(), result.getHeaders());
+		assertEquals("foo", result.getPayload());
+	}
+
+	@Test
+	public void testOtherValuesAndExistingData() {
+		assertEquals("foo", serializer.deserialize(serializer.serialize("foo")));
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		assertEquals(message, serializer.deserialize(new JdkSerializationRedisSerializer().serialize(message)));
+		assertNull(serializer.deserialize(serializer.serialize(null)));
+	}
+
+}